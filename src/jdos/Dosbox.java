@@ -46,6 +46,8 @@ public class Dosbox {
     public static /*Bit32s*/int ticksDone;
     public static /*Bit32u*/long ticksScheduled;
     public static boolean ticksLocked;
+    // Emulated time only moves with the cycles that ran, see [dosbox] virtualtime
+    public static boolean virtualTime;
 
     static public boolean IS_TANDY_ARCH() {
         return ((machine==MachineType.MCH_TANDY) || (machine==MachineType.MCH_PCJR));
@@ -99,7 +101,10 @@ public class Dosbox {
                 }
             }
         //increaseticks:
-            if (ticksLocked) {
+            if (virtualTime) {
+                // never wait for the host clock and never adjust the cycles, a run only depends on its inputs
+                ticksRemain=20;
+            } else if (ticksLocked) {
                 ticksRemain=5;
                 /* Reset any auto cycle guessing for this frame */
                 ticksLast = Main.GetTicks();
@@ -111,6 +116,7 @@ public class Dosbox {
                 ticksNew=Main.GetTicks();
                 ticksScheduled += ticksAdded;
                 if (ticksNew > ticksLast) {
+                    Idle.hostTotal += ticksNew-ticksLast;
                     ticksRemain = ticksNew-ticksLast;
                     ticksLast = ticksNew;
                     ticksDone += ticksRemain;
@@ -174,6 +180,7 @@ public class Dosbox {
                 } else {
                     ticksAdded = 0;
                     Main.Delay(1);
+                    Idle.hostSlept += Main.GetTicks() - ticksNew;
                     ticksDone -= Main.GetTicks() - ticksNew;
                     if (ticksDone < 0)
                         ticksDone = 0;
@@ -248,6 +255,7 @@ public class Dosbox {
             ticksRemain=0;
             ticksLast=Main.GetTicks();
             ticksLocked = false;
+            virtualTime = section.Get_bool("virtualtime");
             DOSBOX_SetLoop(Normal_Loop);
             Msg.init(section);
 
@@ -349,6 +357,7 @@ public class Dosbox {
         secprop.AddInitFunction(IO.IO_Init);//done
         secprop.AddInitFunction(Paging.PAGING_Init);//done
         secprop.AddInitFunction(Memory.MEM_Init);//done
+        secprop.AddInitFunction(MemoryProfile.MEMPROFILE_Init);
         secprop.AddInitFunction(Hardware.HARDWARE_Init);//done
         Pint = secprop.Add_int("memsize", Property.Changeable.WhenIdle,16);
         Pint.SetMinMax(1,63);
@@ -357,10 +366,45 @@ public class Dosbox {
             "  This value is best left at its default to avoid problems with some games,\n" +
             "  though few games might require a higher value.\n" +
             "  There is generally no speed advantage when raising this value.");
+        Pstring = secprop.Add_string("memtype",Property.Changeable.OnlyAtStart,"int");
+        Pstring.Set_values(new String[] {"int", "direct", "mapped", "sparse"});
+        Pstring.Set_help(
+            "Where the memory of the emulated machine is kept.\n" +
+            "  int:    in the Java heap.\n" +
+            "  direct: outside of the Java heap, large memsize values won't need a larger -Xmx.\n" +
+            "  mapped: in a memory mapped file, see memfile.\n" +
+            "  sparse: in the Java heap, but only the parts that have been written to.\n" +
+            "          Checkpoints (alt-f5 to take, alt-f6 to restore) are copy on write and instant with this one,\n" +
+            "          the others copy all of memory every time.");
+        Pstring = secprop.Add_path("memfile",Property.Changeable.OnlyAtStart,"");
+        Pstring.Set_help("File used by memtype=mapped.  Left empty a temporary file is used.");
+        Pstring = secprop.Add_string("memprofile",Property.Changeable.OnlyAtStart,"off");
+        Pstring.Set_values(new String[] {"off", "handlers", "all"});
+        Pstring.Set_help(
+            "Count the memory accesses per physical page and per page handler, alt-f7 logs the busiest pages.\n" +
+            "  handlers: only accesses that go through a handler, like vga, pci and rom writes.\n" +
+            "  all:      ram and rom reads as well, this slows the emulation down a lot.");
+        Pint = secprop.Add_int("memprofiletop",Property.Changeable.OnlyAtStart,20);
+        Pint.Set_help("How many pages the memprofile report lists.");
+        Pbool = secprop.Add_bool("virtualtime",Property.Changeable.OnlyAtStart,false);
+        Pbool.Set_help(
+            "Run on a virtual clock for batch jobs and replays.  An emulated millisecond is over when its cycles have run,\n" +
+            "  the emulator never waits and cycles are never adjusted, so a run goes as fast as the host can go and gives\n" +
+            "  the same result every time with the same inputs.  Use cycles=fixed to pick how much a millisecond runs,\n" +
+            "  cycles=max stays at 3000.  The guest clock starts at 2000-01-01, sound is off and blocks are compiled\n" +
+            "  on the emulation thread.  The qemu vga and voodoo timers run on the emulated clock too and the names of\n" +
+            "  temporary files (int 21 ah=5a) are picked from it, only the ipx network timeouts and the iostats and disk\n" +
+            "  timings still read the host clock.");
+        Pbool = secprop.Add_bool("iostats",Property.Changeable.OnlyAtStart,false);
+        Pbool.Set_help(
+            "Count port io, irqs and timer events per device and time their handlers from the start.  IOSTATS.COM shows\n" +
+            "  the counters and turns counting on and off, they are also published over jmx as jdos:type=IOStats.");
         secprop.AddInitFunction(Callback.CALLBACK_Init);
         secprop.AddInitFunction(Pic.PIC_Init);//done
         secprop.AddInitFunction(Program.PROGRAMS_Init);
+        secprop.AddInitFunction(IOStats.IOSTATS_Init);
         secprop.AddInitFunction(Timer.TIMER_Init);//done
+        secprop.AddInitFunction(Checkpoint.CHECKPOINT_Init);
         secprop.AddInitFunction(Cmos.CMOS_Init);//done
         secprop.AddInitFunction(VGA.VGA_Init);
         secprop.AddInitFunction(jdos.hardware.qemu.VGA.QEMU_VGA_Init);
@@ -441,6 +485,15 @@ public class Dosbox {
         Pint.SetMinMax(1,1000000);
         Pint.Set_help("Setting it lower than 100 will be a percentage.");
 
+        Pint = secprop.Add_int("cacheblocks",Property.Changeable.OnlyAtStart,Core_dynamic.CACHE_BLOCKS);
+        Pint.SetMinMax(0,16*1024*1024);
+        Pint.Set_help("How many translated blocks the dynamic core keeps.  When there are more the code pages that haven't\n" +
+                "been run for the longest are thrown out.  0 means no limit.");
+
+        Pbool = secprop.Add_bool("idle",Property.Changeable.Always,false);
+        Pbool.Set_help("Skip ahead to the next timer event while the guest polls the keyboard or keeps reading a port that\n" +
+                "doesn't change, so an idle guest doesn't keep a host core busy.  HLT always does this.");
+
         if (Config.C_FPU) {
             secprop.AddInitFunction(FPU.FPU_Init);
             Pbool = secprop.Add_bool("softfpu",Property.Changeable.Always,false);
@@ -454,6 +507,27 @@ public class Dosbox {
 
             Pint = secprop.Add_int("min_block_size",Property.Changeable.Always,2);
             Pint.Set_help("The minimum number of ops the block must contain in order to be compiled.  In general 2 is a good value.");
+
+            Pint = secprop.Add_int("trace",Property.Changeable.Always,5000);
+            Pint.Set_help("How many times a compiled block has to be reached through a link before it and the compiled blocks it\n" +
+                    "links to are combined into a trace that loops without going back to the dynamic core.  0 turns traces off.");
+
+            Pint = secprop.Add_int("optimize",Property.Changeable.Always,2000);
+            Pint.Set_help("How many times a compiled block has to be reached through a link before it is compiled again, leaving out\n" +
+                    "the flags that the blocks it jumps to don't use.  Blocks that have been modified are never optimized.  0 turns this off.");
+
+            Pbool = secprop.Add_bool("registers",Property.Changeable.OnlyAtStart,false);
+            Pbool.Set_help("Keep the registers a compiled block uses in local variables and only write them back when the block is left\n" +
+                    "or before an instruction that can cause an exception.  Off by default, CoreBenchmark with -Dbench.registers\n" +
+                    "doesn't show a difference that is bigger than the noise between runs.");
+
+            Pint = secprop.Add_int("threads",Property.Changeable.OnlyAtStart,0);
+            Pint.SetMinMax(0,64);
+            Pint.Set_help("How many background threads compile blocks.  0 will use one less than the number of processors.");
+
+            Pstring = secprop.Add_path("cache",Property.Changeable.OnlyAtStart,"");
+            Pstring.Set_help("File used to keep compiled blocks between runs, for example ~/.jdosbox/jit.cache.  Blocks found in it are used\n" +
+                    "the first time they are seen instead of waiting for the threshold.  Empty disables the cache.");
         }
 
         secprop.AddInitFunction(DMA.DMA_Init);//done
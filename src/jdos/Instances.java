@@ -0,0 +1,127 @@
+package jdos;
+
+import jdos.cpu.core_dynamic.SharedCode;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Vector;
+
+// Runs several emulators in one JVM, each on its own thread.
+//
+// Nearly all of the emulator state is static, so instead of threading a context object through every class
+// each instance gets a class loader of its own that loads the emulator classes again, which gives it its own
+// copy of every static.  The JVM still has to load and JIT the classes once per instance, what is shared is
+// the JVM itself and the bytecode of compiled blocks, see SharedCode.
+//
+// Each instance runs the way an applet does: Log.exit and a failed start throw instead of calling System.exit
+// so one guest going down doesn't take the others with it, and no dosbox.conf is picked up from the current
+// or the user directory.
+//
+// usage: java jdos.Instances [-count n] [dosbox options] [-- dosbox options -- ...]
+//   every group of options separated by -- starts one headless instance, -count starts n instances of each
+//   group.  Anything that is not per class, like files on the host and the jit cache file, is still shared
+//   so each instance should get its own config.
+public class Instances {
+    // Classes that are loaded once for all instances
+    static private final String[] SHARED = new String[] {"jdos.Instances", "jdos.cpu.core_dynamic.SharedCode"};
+
+    static private class InstanceClassLoader extends URLClassLoader {
+        InstanceClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        protected synchronized Class loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class c = findLoadedClass(name);
+            if (c == null) {
+                if (name.startsWith("java.") || name.startsWith("javax.") || isShared(name)) {
+                    c = getParent().loadClass(name);
+                } else {
+                    try {
+                        c = findClass(name);
+                    } catch (ClassNotFoundException e) {
+                        c = getParent().loadClass(name);
+                    }
+                }
+            }
+            if (resolve)
+                resolveClass(c);
+            return c;
+        }
+    }
+
+    static private boolean isShared(String name) {
+        for (int i=0;i<SHARED.length;i++) {
+            if (SHARED[i].equals(name))
+                return true;
+        }
+        return false;
+    }
+
+    static private URL[] classPath() throws Exception {
+        String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+        URL[] urls = new URL[paths.length];
+        for (int i=0;i<paths.length;i++)
+            urls[i] = new File(paths[i]).toURI().toURL();
+        return urls;
+    }
+
+    // Starts one emulator, returns the thread it runs on
+    static public Thread start(final String name, final String[] args) throws Exception {
+        final ClassLoader loader = new InstanceClassLoader(classPath(), Instances.class.getClassLoader());
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    loader.loadClass("jdos.Dosbox").getField("applet").setBoolean(null, true);
+                    Class c = loader.loadClass("jdos.gui.Headless");
+                    Method run = c.getMethod("run", new Class[] {String[].class});
+                    run.invoke(null, new Object[] {args});
+                } catch (Throwable e) {
+                    System.out.println(name+" failed");
+                    e.printStackTrace();
+                }
+            }
+        }, name);
+        thread.setContextClassLoader(loader);
+        thread.start();
+        return thread;
+    }
+
+    // Asks the instance running on thread to shut down, the same as closing its window
+    static public void stop(Thread thread) throws Exception {
+        Class c = thread.getContextClassLoader().loadClass("jdos.gui.Main");
+        Method addEvent = c.getMethod("addEvent", new Class[] {Object.class});
+        addEvent.invoke(null, new Object[] {null});
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = 1;
+        Vector groups = new Vector();
+        Vector group = new Vector();
+        for (int i=0;i<args.length;i++) {
+            if (args[i].equals("-count") && i+1<args.length) {
+                count = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--")) {
+                groups.addElement(group);
+                group = new Vector();
+            } else {
+                group.addElement(args[i]);
+            }
+        }
+        groups.addElement(group);
+
+        SharedCode.enabled = true;
+        Vector threads = new Vector();
+        for (int i=0;i<groups.size();i++) {
+            Vector g = (Vector)groups.elementAt(i);
+            String[] a = (String[])g.toArray(new String[g.size()]);
+            for (int j=0;j<count;j++)
+                threads.addElement(start("Instance "+threads.size(), a));
+        }
+        for (int i=0;i<threads.size();i++)
+            ((Thread)threads.elementAt(i)).join();
+        System.out.println("Shared "+SharedCode.blocks+" compiled blocks, "+SharedCode.hits+" were reused");
+        System.exit(0);
+    }
+}
@@ -1,6 +1,7 @@
 package jdos.cpu;
 
 import jdos.Dosbox;
+import jdos.cpu.core_dynamic.Cache;
 import jdos.debug.Debug;
 import jdos.gui.Main;
 import jdos.gui.Mapper;
@@ -2148,6 +2149,7 @@ public class CPU extends Module_base {
                 Log.exit("36-bit addressing enabled");
             }
             Paging.PAGING_EnableGlobal((cpu.cr4 & CR4_PAGE_GLOBAL_ENABLE)!=0);
+            Paging.PAGING_EnablePSE((cpu.cr4 & CR4_PAGE_SIZE_EXTENSIONS)!=0);
             break;
         default:
             if (Log.level<=LogSeverities.LOG_ERROR) Log.log(LogTypes.LOG_CPU,LogSeverities.LOG_ERROR,"Unhandled MOV CR"+cr+","+Integer.toString(value, 16));
@@ -2830,6 +2832,7 @@ public class CPU extends Module_base {
                 CPU_Regs.reg_edx.dword=0x00000011;	/* FPU+TimeStamp/RDTSC */
                 CPU_Regs.reg_edx.dword|= (1<<8);    /* CMPXCHG8B instruction */
                 CPU_Regs.reg_edx.dword|= (1<<5);    /* MSR */
+                CPU_Regs.reg_edx.dword|= (1<<3);    /* PSE 4MB pages */
             } else if (CPU_ArchitectureType==CPU_ARCHTYPE_PENTIUM_PRO) {
                 CPU_Regs.reg_eax.dword=0x611;		/* intel pentium pro */
                 CPU_Regs.reg_ebx.dword=0;			/* Not Supported */
@@ -2838,6 +2841,7 @@ public class CPU extends Module_base {
                 CPU_Regs.reg_edx.dword|= (1<<5);    /* MSR */
                 CPU_Regs.reg_edx.dword|= (1<<15);   /* support CMOV instructions */
                 CPU_Regs.reg_edx.dword|= (1<<13);   /* PTE Global Flag */
+                CPU_Regs.reg_edx.dword|= (1<<3);    /* PSE 4MB pages */
                 CPU_Regs.reg_edx.dword|= (1<<8);    /* CMPXCHG8B instruction */
             }
             break;
@@ -2860,8 +2864,7 @@ public class CPU extends Module_base {
             if (CPU_Regs.reg_eip!=cpu.hlt.eip || CPU_Regs.reg_csVal.dword != cpu.hlt.cs) {
                 cpudecoder=cpu.hlt.old_decoder;
             } else {
-                CPU_IODelayRemoved += CPU_Cycles;
-                CPU_Cycles=0;
+                Idle.skip();
             }
             return 0;
         }
@@ -2870,8 +2873,7 @@ public class CPU extends Module_base {
 
     static public void CPU_HLT( /*Bitu*/int oldeip) {
         CPU_Regs.reg_eip=oldeip;
-        CPU_IODelayRemoved += CPU_Cycles;
-        CPU_Cycles=0;
+        Idle.skip();
         cpu.hlt.cs=CPU_Regs.reg_csVal.dword;
         cpu.hlt.eip=CPU_Regs.reg_eip;
         cpu.hlt.old_decoder=cpudecoder;
@@ -3145,6 +3147,8 @@ public class CPU extends Module_base {
 
         CPU_CycleUp=section.Get_int("cycleup");
         CPU_CycleDown=section.Get_int("cycledown");
+        Cache.maxBlocks=section.Get_int("cacheblocks");
+        Idle.enabled=section.Get_bool("idle");
         String core = section.Get_string("core");
         cpudecoder=Core_normal.CPU_Core_Normal_Run;
         if (core.equals("normal")) {
@@ -3214,12 +3218,145 @@ public class CPU extends Module_base {
         return true;
     }
 
+    // The registers and the rest of the cpu state that Checkpoint saves, guest memory, paging and the fpu are
+    // saved on their own
+    static private final CPU_Regs.Reg[] SAVED_REGS = new CPU_Regs.Reg[] {
+            CPU_Regs.reg_eax, CPU_Regs.reg_ecx, CPU_Regs.reg_edx, CPU_Regs.reg_ebx, CPU_Regs.reg_esp, CPU_Regs.reg_ebp, CPU_Regs.reg_esi, CPU_Regs.reg_edi,
+            CPU_Regs.reg_esVal, CPU_Regs.reg_csVal, CPU_Regs.reg_ssVal, CPU_Regs.reg_dsVal, CPU_Regs.reg_fsVal, CPU_Regs.reg_gsVal,
+            CPU_Regs.reg_esPhys, CPU_Regs.reg_csPhys, CPU_Regs.reg_ssPhys, CPU_Regs.reg_dsPhys, CPU_Regs.reg_fsPhys, CPU_Regs.reg_gsPhys};
+
+    static private final class SavedState {
+        final int[] regs = new int[SAVED_REGS.length];
+        int eip;
+        int flags;
+        int lf_var1, lf_var2, lf_res;
+        boolean lf_oldcf;
+        Flags.GetFlags lf_type;
+        int cpl, mpl, cr0, cr4;
+        boolean pmode;
+        int gdt_base, gdt_limit, idt_base, idt_limit;
+        int ldt_base, ldt_value;
+        long ldt_limit;
+        int stack_mask, stack_notmask;
+        boolean stack_big, code_big;
+        int hlt_cs, hlt_eip;
+        CPU_Decoder hlt_decoder;
+        int exception_which, exception_error;
+        int direction;
+        boolean trap_skip;
+        int[] drx, trx;
+        long tss_desc;
+        int tss_selector, tss_base, tss_is386;
+        long tss_limit;
+        boolean tss_valid;
+        int cycles, cycleLeft, cycleMax;
+        CPU_Decoder decoder;
+    }
+
+    static public Object CPU_SaveState() {
+        SavedState s = new SavedState();
+        for (int i=0;i<SAVED_REGS.length;i++)
+            s.regs[i] = SAVED_REGS[i].dword;
+        s.eip = CPU_Regs.reg_eip;
+        s.flags = CPU_Regs.flags;
+        s.lf_var1 = Flags.var1;
+        s.lf_var2 = Flags.var2;
+        s.lf_res = Flags.res;
+        s.lf_oldcf = Flags.oldcf;
+        s.lf_type = Flags.type;
+        s.cpl = cpu.cpl;
+        s.mpl = cpu.mpl;
+        s.cr0 = cpu.cr0;
+        s.cr4 = cpu.cr4;
+        s.pmode = cpu.pmode;
+        s.gdt_base = cpu.gdt.table_base;
+        s.gdt_limit = cpu.gdt.table_limit;
+        s.idt_base = cpu.idt.table_base;
+        s.idt_limit = cpu.idt.table_limit;
+        s.ldt_base = cpu.gdt.ldt_base;
+        s.ldt_limit = cpu.gdt.ldt_limit;
+        s.ldt_value = cpu.gdt.ldt_value;
+        s.stack_mask = cpu.stack.mask;
+        s.stack_notmask = cpu.stack.notmask;
+        s.stack_big = cpu.stack.big;
+        s.code_big = cpu.code.big;
+        s.hlt_cs = cpu.hlt.cs;
+        s.hlt_eip = cpu.hlt.eip;
+        s.hlt_decoder = cpu.hlt.old_decoder;
+        s.exception_which = cpu.exception.which;
+        s.exception_error = cpu.exception.error;
+        s.direction = cpu.direction;
+        s.trap_skip = cpu.trap_skip;
+        s.drx = cpu.drx.clone();
+        s.trx = cpu.trx.clone();
+        s.tss_desc = cpu_tss.desc.saved.seg.fill;
+        s.tss_selector = cpu_tss.selector;
+        s.tss_base = cpu_tss.base;
+        s.tss_limit = cpu_tss.limit;
+        s.tss_is386 = cpu_tss.is386;
+        s.tss_valid = cpu_tss.valid;
+        s.cycles = CPU_Cycles;
+        s.cycleLeft = CPU_CycleLeft;
+        s.cycleMax = CPU_CycleMax;
+        s.decoder = cpudecoder;
+        return s;
+    }
+
+    static public void CPU_RestoreState(Object state) {
+        SavedState s = (SavedState)state;
+        for (int i=0;i<SAVED_REGS.length;i++)
+            SAVED_REGS[i].dword = s.regs[i];
+        CPU_Regs.reg_eip = s.eip;
+        CPU_Regs.flags = s.flags;
+        Flags.var1 = s.lf_var1;
+        Flags.var2 = s.lf_var2;
+        Flags.res = s.lf_res;
+        Flags.oldcf = s.lf_oldcf;
+        Flags.type = s.lf_type;
+        cpu.cpl = s.cpl;
+        cpu.mpl = s.mpl;
+        cpu.cr0 = s.cr0;
+        cpu.cr4 = s.cr4;
+        cpu.pmode = s.pmode;
+        cpu.gdt.table_base = s.gdt_base;
+        cpu.gdt.table_limit = s.gdt_limit;
+        cpu.idt.table_base = s.idt_base;
+        cpu.idt.table_limit = s.idt_limit;
+        cpu.gdt.ldt_base = s.ldt_base;
+        cpu.gdt.ldt_limit = s.ldt_limit;
+        cpu.gdt.ldt_value = s.ldt_value;
+        cpu.stack.mask = s.stack_mask;
+        cpu.stack.notmask = s.stack_notmask;
+        cpu.stack.big = s.stack_big;
+        cpu.code.big = s.code_big;
+        cpu.hlt.cs = s.hlt_cs;
+        cpu.hlt.eip = s.hlt_eip;
+        cpu.hlt.old_decoder = s.hlt_decoder;
+        cpu.exception.which = s.exception_which;
+        cpu.exception.error = s.exception_error;
+        cpu.direction = s.direction;
+        cpu.trap_skip = s.trap_skip;
+        System.arraycopy(s.drx, 0, cpu.drx, 0, s.drx.length);
+        System.arraycopy(s.trx, 0, cpu.trx, 0, s.trx.length);
+        cpu_tss.desc.saved.fill(s.tss_desc);
+        cpu_tss.selector = s.tss_selector;
+        cpu_tss.base = s.tss_base;
+        cpu_tss.limit = s.tss_limit;
+        cpu_tss.is386 = s.tss_is386;
+        cpu_tss.valid = s.tss_valid;
+        CPU_Cycles = s.cycles;
+        CPU_CycleLeft = s.cycleLeft;
+        CPU_CycleMax = s.cycleMax;
+        cpudecoder = s.decoder;
+    }
+
     static private CPU test;
 
     final private static Section.SectionFunction CPU_ShutDown = new Section.SectionFunction() {
         public void call (Section sec) {
             if (Config.C_DYNAMIC)
                 Core_dynamic.CPU_Core_Dynamic_Cache_Close();
+            Idle.report();
             test = null;
         }
     };
@@ -107,6 +107,8 @@ public class Core_dynamic {
                     if (chandler.invalidation_map==null || (chandler.invalidation_map.p[page_ip_point]<4)) {
                         // translate up to 32 instructions
                         block = Decoder.CreateCacheBlock(chandler,ip_point,instruction_count);
+                    } else if (chandler.fallback(page_ip_point)) {
+                        block = Decoder.CreateModifiedBlock(chandler,ip_point);
                     } else {
                         // let the normal core handle this instruction to avoid zero-sized blocks
                         /*Bitu*/int old_cycles=CPU.CPU_Cycles;
@@ -133,24 +135,39 @@ public class Core_dynamic {
                     }
 
                     currentBlock = block;
+                    block.referenced = true;
                     switch (block.code.call()) {
                     case Constants.BR_Link1:
                     {
-                        CacheBlockDynRec next = block.link1.to;
+                        // currentBlock rather than block, a trace may have left from one of its other blocks
+                        CacheBlockDynRec next = currentBlock.link1.to;
                         if (next == null)
-                            block=LinkBlocks(block, Constants.BR_Link1);
-                        else
+                            block=LinkBlocks(currentBlock, Constants.BR_Link1);
+                        else {
                             block = next;
+                            int hits = ++next.linkHits;
+                            if (hits == Trace.threshold)
+                                Trace.hot(next);
+                            else if (hits == BlockProfile.optimizeThreshold)
+                                BlockProfile.hot(next);
+                        }
                         if (block!=null && CPU.CPU_Cycles>0) continue;
                         break;
                     }
                     case Constants.BR_Link2:
                     {
-                        CacheBlockDynRec next = block.link2.to;
+                        // currentBlock rather than block, a trace may have left from one of its other blocks
+                        CacheBlockDynRec next = currentBlock.link2.to;
                         if (next == null)
-                            block=LinkBlocks(block, Constants.BR_Link2);
-                        else
+                            block=LinkBlocks(currentBlock, Constants.BR_Link2);
+                        else {
                             block = next;
+                            int hits = ++next.linkHits;
+                            if (hits == Trace.threshold)
+                                Trace.hot(next);
+                            else if (hits == BlockProfile.optimizeThreshold)
+                                BlockProfile.hot(next);
+                        }
                         if (block!=null && CPU.CPU_Cycles>0) continue;
                         break;
                     }
@@ -0,0 +1,111 @@
+package jdos.cpu;
+
+import jdos.hardware.Pic;
+import jdos.misc.Log;
+
+// Finds out when the guest is only waiting and skips ahead to the next pic event instead of running the cycles
+// in between.  Once the cycles of a millisecond are used up Normal_Loop sleeps until the host catches up, so an
+// idle guest leaves the host core alone.
+//
+// HLT with interrupts enabled always does this.  With [cpu] idle the guest is also considered idle when it
+//   - polls the keyboard through int 16h ah=01/11 or calls int 28h many times in the same millisecond
+//   - asks to give up its time slice with int 2fh ax=1680
+//   - keeps reading the same value from the same port in a tight loop, except for ports like the vga status,
+//     the joystick and the pit that change with time
+// The checks only run on the slow paths of callbacks and port reads.
+public class Idle {
+    static public boolean enabled = false;
+
+    static private final int POLLS = 8;            // polls in one millisecond before the guest counts as idle
+    static private final int PORT_READS = 100;     // reads of an unchanging port
+    static private final int PORT_CYCLES = 64;     // at most this many cycles between two reads of a tight loop
+
+    // cycles that were skipped or spent halted and how many ran in total
+    static public long idleCycles;
+    static public long totalCycles;
+    // milliseconds the emulation thread slept and how long it ran in total
+    static public long hostSlept;
+    static public long hostTotal;
+
+    static private int pollTick = -1;
+    static private int polls;
+
+    static private int lastPort = -1;
+    static private int lastValue;
+    static private int lastIndex;
+    static private int lastTick;
+    static private int portReads;
+
+    // the rest of the cycles until the next pic event are not needed
+    static public void skip() {
+        idleCycles += CPU.CPU_Cycles;
+        CPU.CPU_IODelayRemoved += CPU.CPU_Cycles;
+        CPU.CPU_Cycles = 0;
+    }
+
+    // int 16h status calls and int 28h
+    static public void poll() {
+        if (!enabled) return;
+        if (pollTick != Pic.PIC_Ticks) {
+            pollTick = Pic.PIC_Ticks;
+            polls = 0;
+        }
+        if (++polls >= POLLS)
+            skip();
+    }
+
+    static public void portRead(int port, int value) {
+        int index = Pic.PIC_TickIndexND();
+        if (port == lastPort && value == lastValue && lastTick == Pic.PIC_Ticks && index-lastIndex <= PORT_CYCLES) {
+            if (++portReads >= PORT_READS) {
+                portReads = 0;
+                skip();
+                index = Pic.PIC_TickIndexND();
+            }
+        } else {
+            if (timeBased(port))
+                port = -1;
+            lastPort = port;
+            lastValue = value;
+            portReads = 0;
+        }
+        lastIndex = index;
+        lastTick = Pic.PIC_Ticks;
+    }
+
+    // Ports whose value changes with the cycles that ran and not with a pic event.  A loop polling one of these
+    // counts its iterations, a joystick axis or a cpu speed check, and skipping ahead would cut that count short.
+    static private boolean timeBased(int port) {
+        switch (port) {
+            case 0x3da: case 0x3ba: // vga retrace
+            case 0x201:             // joystick one shots
+            case 0x61:              // pit 2 output and refresh toggle
+            case 0x40: case 0x41: case 0x42: // pit counters
+                return true;
+        }
+        return false;
+    }
+
+    // Percentage of the emulated time the guest was idle since the last reset
+    static public int percent() {
+        if (totalCycles == 0) return 0;
+        return (int)(idleCycles*100/totalCycles);
+    }
+
+    // Percentage of the host time the emulation thread slept since the last reset
+    static public int hostPercent() {
+        if (hostTotal == 0) return 0;
+        return (int)(hostSlept*100/hostTotal);
+    }
+
+    static public void reset() {
+        idleCycles = 0;
+        totalCycles = 0;
+        hostSlept = 0;
+        hostTotal = 0;
+    }
+
+    static public void report() {
+        Log.log_msg("Idle: guest "+percent()+"% of "+totalCycles+" cycles, host thread slept "+hostPercent()+"% of "+hostTotal+" ms");
+    }
+}
@@ -11,6 +11,8 @@ import jdos.types.LogSeverities;
 import jdos.types.LogTypes;
 import jdos.util.IntRef;
 
+import java.util.Arrays;
+
 public class Paging extends Module_base {
     public static final int MEM_PAGE_SIZE = 4096;
     public static final int XMS_START = 0x110;
@@ -29,6 +31,7 @@ public class Paging extends Module_base {
     static public final int TLB_BANKS;
 
     static public int LINK_START = ((1024 + 64) / 4); //Start right after the HMA
+    static public final int LINK_GROUP = 16; // pages linked together when the mapping is known without a page walk
 
     static public final int INVALID_ADDRESS = 0xFFFFFFFF;
 
@@ -149,8 +152,27 @@ public class Paging extends Module_base {
 
     static public Base base = new Base();
 
-    static final public /*HostPt*/ int[] read = new int[TLB_SIZE];
-    static final public /*HostPt*/ int[] write = new int[TLB_SIZE];
+    // One entry per linear page with the host offset for reads in the low 32 bits and the one for writes in the
+    // high 32 bits, the host address is the offset plus the linear address.  Offsets are page aligned so the low
+    // 12 bits of each half hold flags:
+    //   TLB_VALID  the page can be accessed directly
+    //   TLB_NEXT   the next page is also valid and has the same offset, it continues the host memory of this one.
+    //              An access that starts in this page can go past its end without checking for it, the next page
+    //              acts as a guard page.
+    //   TLB_GEN    the generation of the tlb the entry was made in.  Clearing the tlb only starts a new generation,
+    //              entries from an older one count as not linked: they are not valid and their handler is the
+    //              init_page_handler no matter what readhandler/writehandler still hold.  That makes a CR3 reload
+    //              cost the same no matter how many pages were linked.
+    // Pages without TLB_VALID go through readhandler/writehandler.
+    static final public long[] tlb = new long[TLB_SIZE];
+    static final public int TLB_VALID = 0x1;
+    static final public int TLB_NEXT = 0x2;
+    static final public int TLB_GEN = 0xffc;
+    static final public int TLB_OFFSET = ~0xfff;
+    static private int tlb_gen = 0;                 // the current generation, in place in the entry
+    static private int tlb_valid = TLB_VALID;       // what a valid entry of the current generation has under TLB_GEN|TLB_VALID
+    static private int tlb_next = TLB_NEXT;         // and under TLB_GEN|TLB_NEXT
+    static public int generations = 0;              // times the tlb was cleared, for the statistics
     static final public PageHandler[] readhandler = new PageHandler[TLB_SIZE];
     static final public PageHandler[] writehandler = new PageHandler[TLB_SIZE];
     static final public /*Bit32u*/ int[] phys_page = new int[TLB_SIZE];
@@ -160,41 +182,99 @@ public class Paging extends Module_base {
         public /*Bitu*/ int used;
         public /*Bit32u*/ boolean[] global = new boolean[PAGING_LINKS];
         public /*Bit32u*/ int[] entries = new int[PAGING_LINKS];
-        public void removeNonGlobal() {
-            int lastUsed = -1;
-            for (int i=0;i<used;i++) {
-                if (global[i]) {
-                    lastUsed++;
-                    global[lastUsed]=true;
-                    entries[lastUsed] = entries[i];
-                }
-            }
-            used = lastUsed+1;
-        }
     }
 
     final static public Links links = new Links();
     final static public Links ur_links = new Links();
     final static public Links krw_links = new Links();
     final static public Links kr_links = new Links();
+    final static public Links global_links = new Links(); // pages that survive a CR3 reload with global pages on
     final static public /*Bit32u*/ long[] firstmb = new long[LINK_START];
     static public boolean enabled;
     static private boolean globalEnabled;
+    static private boolean pseEnabled;
 
     public static /*HostPt*/int get_tlb_read(/*PhysPt*/int address) {
-        return read[address >>> 12];
+        int entry = (int)tlb[address >>> 12];
+        if ((entry & (TLB_GEN|TLB_VALID)) != tlb_valid)
+            return INVALID_ADDRESS;
+        return entry & TLB_OFFSET;
     }
 
     private static /*HostPt*/int get_tlb_write(/*PhysPt*/int address) {
-        return write[address >>> 12];
+        int entry = (int)(tlb[address >>> 12] >>> 32);
+        if ((entry & (TLB_GEN|TLB_VALID)) != tlb_valid)
+            return INVALID_ADDRESS;
+        return entry & TLB_OFFSET;
+    }
+
+    // true if the page was linked in the current generation.  Entries that were never linked, were zeroed when
+    // the generations wrapped or were unlinked since carry the generation as well, but they have no direct read
+    // and are back on init_page_handler.
+    static private boolean current(int page) {
+        int entry = (int)tlb[page];
+        if ((entry & TLB_GEN) != tlb_gen)
+            return false;
+        return (entry & TLB_VALID) != 0 || readhandler[page] != init_page_handler;
+    }
+
+    static private int pack(/*HostPt*/int offset) {
+        if (offset == INVALID_ADDRESS)
+            return tlb_gen;
+        if ((offset & ~TLB_OFFSET) != 0)
+            Log.exit("Host memory for a page is not page aligned: "+Integer.toHexString(offset));
+        return offset | tlb_gen | TLB_VALID;
+    }
+
+    static private void setRead(int page, /*HostPt*/int offset) {
+        tlb[page] = (tlb[page] & 0xFFFFFFFF00000000l) | (pack(offset) & 0xFFFFFFFFl);
+        linkNext(page);
+    }
+
+    static private void setWrite(int page, /*HostPt*/int offset) {
+        tlb[page] = (tlb[page] & 0xFFFFFFFFl) | ((long)pack(offset) << 32);
+        linkNext(page);
+    }
+
+    static private void setInvalid(int page) {
+        tlb[page] = ((long)tlb_gen << 32) | tlb_gen;
+        linkNext(page);
+    }
+
+    // TLB_NEXT of a page depends on the page after it, so a change to a page updates the one before it too
+    static private void linkNext(int page) {
+        updateNext(page);
+        if (page > 0)
+            updateNext(page - 1);
+    }
+
+    static private void updateNext(int page) {
+        long entry = tlb[page];
+        long next = page + 1 < TLB_SIZE ? tlb[page + 1] : 0;
+        int read = next((int)entry, (int)next);
+        int write = next((int)(entry >>> 32), (int)(next >>> 32));
+        tlb[page] = ((long)write << 32) | (read & 0xFFFFFFFFl);
+    }
+
+    static private int next(int entry, int next) {
+        entry &= ~TLB_NEXT;
+        if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid && (next & (TLB_GEN|TLB_VALID)) == tlb_valid && ((entry ^ next) & TLB_OFFSET) == 0)
+            entry |= TLB_NEXT;
+        return entry;
     }
 
     public static PageHandler get_tlb_readhandler(/*PhysPt*/int address) {
-        return readhandler[address >>> 12];
+        int page = address >>> 12;
+        if (((int)tlb[page] & TLB_GEN) != tlb_gen)
+            return init_page_handler;
+        return readhandler[page];
     }
 
     private static PageHandler get_tlb_writehandler(/*PhysPt*/int address) {
-        return writehandler[address >>> 12];
+        int page = address >>> 12;
+        if (((int)(tlb[page] >>> 32) & TLB_GEN) != tlb_gen)
+            return init_page_handler;
+        return writehandler[page];
     }
 
     /* Use these helper functions to access linear addresses in readX/writeX functions */
@@ -246,73 +326,80 @@ public class Paging extends Module_base {
         return (int) (tlb_addr + address);
     }
 
-    public static /*Bit8u*/int mem_readb_inline(/*PhysPt*/int address) {
-        /*HostPt*/
+    // Like getDirectIndexRO and getDirectIndex, but only for pages that are plain ram.  Pages with a handler of
+    // their own, like video memory, return -1 without being touched so that the caller can use the handler.
+    public static int getRAMIndexRO(int address) {
         int tlb_addr = get_tlb_read(address);
-        if (tlb_addr != INVALID_ADDRESS)
-            return RAM.readb(tlb_addr + address);
-        else return (get_tlb_readhandler(address)).readb(address);
+        if (tlb_addr != INVALID_ADDRESS) return tlb_addr + address;
+        if ((get_tlb_readhandler(address).flags & PFLAG_INIT) == 0)
+            return -1;
+        return getDirectIndexRO(address);
+    }
+
+    public static int getRAMIndex(int address) {
+        int tlb_addr = get_tlb_write(address);
+        if (tlb_addr != INVALID_ADDRESS) return tlb_addr + address;
+        if ((get_tlb_writehandler(address).flags & PFLAG_INIT) == 0)
+            return -1;
+        return getDirectIndex(address);
+    }
+
+    // Pages with TLB_NEXT, which is most of them, take the first branch without looking at where in the page the
+    // access is.  The page end only has to be checked for the last page of a mapping.
+    public static /*Bit8u*/int mem_readb_inline(/*PhysPt*/int address) {
+        int entry = (int)tlb[address >>> 12];
+        if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid)
+            return RAM.readb((entry & TLB_OFFSET) + address);
+        else return get_tlb_readhandler(address).readb(address);
     }
 
     public static /*Bit16u*/int mem_readw_inline(/*PhysPt*/int address) {
+        int entry = (int)tlb[address >>> 12];
+        if ((entry & (TLB_GEN|TLB_NEXT)) == tlb_next)
+            return RAM.readw((entry & TLB_OFFSET) + address);
         if ((address & 0xfff) < 0xfff) {
-            /*HostPt*/
-            int tlb_addr = get_tlb_read(address);
-            if (tlb_addr != INVALID_ADDRESS) return RAM.readw(tlb_addr + address);
-            else return (get_tlb_readhandler(address)).readw(address);
+            if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid) return RAM.readw((entry & TLB_OFFSET) + address);
+            else return get_tlb_readhandler(address).readw(address);
         } else return Memory.mem_unalignedreadw(address);
     }
 
     public static /*Bit32u*/int mem_readd_inline(/*PhysPt*/int address) {
-        int rem = (address & 0x3);
-        if (rem == 0) {
-            int tlb_addr = get_tlb_read(address);
-            if (tlb_addr != INVALID_ADDRESS)
-                return RAM.direct[(address + tlb_addr) >>> 2];
-            else {
-                return get_tlb_readhandler(address).readd(address);
-            }
-        }
+        int entry = (int)tlb[address >>> 12];
+        if ((entry & (TLB_GEN|TLB_NEXT)) == tlb_next)
+            return RAM.readd((entry & TLB_OFFSET) + address);
         if ((address & 0xfff) < 0xffd) {
-            /*HostPt*/
-            int tlb_addr = get_tlb_read(address);
-            if (tlb_addr != INVALID_ADDRESS) return RAM.readd(tlb_addr + address);
-            else return (get_tlb_readhandler(address)).readd(address);
+            if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid) return RAM.readd((entry & TLB_OFFSET) + address);
+            else return get_tlb_readhandler(address).readd(address);
         } else return Memory.mem_unalignedreadd(address);
     }
 
     public static void mem_writeb_inline(/*PhysPt*/int address,/*Bit8u*/int val) {
-        /*HostPt*/
-        int tlb_addr = get_tlb_write(address);
-        if (tlb_addr != INVALID_ADDRESS) RAM.writeb(tlb_addr + address, val);
-        else (get_tlb_writehandler(address)).writeb(address, val);
+        int entry = (int)(tlb[address >>> 12] >>> 32);
+        if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid) RAM.writeb((entry & TLB_OFFSET) + address, val);
+        else get_tlb_writehandler(address).writeb(address, val);
     }
 
     public static void mem_writew_inline(/*PhysPt*/int address,/*Bit16u*/int val) {
+        int entry = (int)(tlb[address >>> 12] >>> 32);
+        if ((entry & (TLB_GEN|TLB_NEXT)) == tlb_next) {
+            RAM.writew((entry & TLB_OFFSET) + address, val);
+            return;
+        }
         if ((address & 0xfff) < 0xfff) {
-            /*HostPt*/
-            int tlb_addr = get_tlb_write(address);
-            if (tlb_addr != INVALID_ADDRESS) RAM.writew(tlb_addr + address, val);
-            else (get_tlb_writehandler(address)).writew(address, val);
+            if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid) RAM.writew((entry & TLB_OFFSET) + address, val);
+            else get_tlb_writehandler(address).writew(address, val);
         } else Memory.mem_unalignedwritew(address, val);
     }
 
     public static void mem_writed_inline(/*PhysPt*/int address,/*Bit32u*/int val) {
-        int rem = (address & 0x3);
-        if (rem == 0) {
-            int tlb_addr = get_tlb_write(address);
-            if (tlb_addr != INVALID_ADDRESS) {
-                RAM.direct[(address+tlb_addr) >>> 2]=val;
-            } else {
-                get_tlb_writehandler(address).writed(address, val);
-            }
+        int entry = (int)(tlb[address >>> 12] >>> 32);
+        if ((entry & (TLB_GEN|TLB_NEXT)) == tlb_next) {
+            RAM.writed((entry & TLB_OFFSET) + address, val);
             return;
         }
         if ((address & 0xfff) < 0xffd) {
-            /*HostPt*/
-            int tlb_addr = get_tlb_write(address);
-            if (tlb_addr != INVALID_ADDRESS) RAM.writed(tlb_addr + address, val);
-            else (get_tlb_writehandler(address)).writed(address, val);
+            if ((entry & (TLB_GEN|TLB_VALID)) == tlb_valid) RAM.writed((entry & TLB_OFFSET) + address, val);
+            else get_tlb_writehandler(address).writed(address, val);
         } else Memory.mem_unalignedwrited(address, val);
     }
 
@@ -469,6 +556,7 @@ public class Paging extends Module_base {
     };
 
     final static private int PHYSPAGE_DITRY = 0x10000000;
+    final static private int PHYSPAGE_GLOBAL = 0x08000000;
     final static private int PHYSPAGE_ADDR = 0x000FFFFF;
 
     // helper functions for calculating table entry addresses
@@ -476,6 +564,11 @@ public class Paging extends Module_base {
         return base.addr | ((lin_addr >>> 22) << 2);
     }
 
+    // With CR4.PSE a directory entry with the PS bit, which is where pat is in a table entry, maps a 4MB page
+    private static boolean isLarge(X86PageEntry dir_entry) {
+        return pseEnabled && dir_entry.block.pat != 0;
+    }
+
     private static /*PhysPt*/int GetPageTableEntryAddr(/*PhysPt*/int lin_addr, X86PageEntry dir_entry) {
         return (dir_entry.block.base << 12) | ((lin_addr >>> 10) & 0xffc);
     }
@@ -598,14 +691,15 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
             dir_entry.load(Memory.phys_readd(dirEntryAddr));
             if (dir_entry.block.p == 0) Log.exit("Undesired situation 1 in page foiler.");
 
+            // a 4MB page has its dirty bit in the directory entry
             /*PhysPt*/
-            int tableEntryAddr = GetPageTableEntryAddr(addr, dir_entry);
+            int tableEntryAddr = isLarge(dir_entry) ? dirEntryAddr : GetPageTableEntryAddr(addr, dir_entry);
             table_entry.load(Memory.phys_readd(tableEntryAddr));
             if (table_entry.block.p == 0)
                 Log.exit("Undesired situation 2 in page foiler.");
 
             // for debugging...
-            if (table_entry.block.base != ppage)
+            if (table_entry.block.base != ppage && !isLarge(dir_entry))
                 if (table_entry.block.p == 0) Log.exit("Undesired situation 3 in page foiler.");
 
             // map the real write handler in our place
@@ -626,8 +720,8 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
 
             // replace this handler with the real thing
             if ((handler.flags & PFLAG_WRITEABLE) != 0)
-                write[lin_page] = handler.GetHostWritePt(ppage) - (lin_page << 12);
-            else write[lin_page] = Paging.INVALID_ADDRESS;
+                setWrite(lin_page, handler.GetHostWritePt(ppage) - (lin_page << 12));
+            else setWrite(lin_page, INVALID_ADDRESS);
             writehandler[lin_page] = handler;
         }
 
@@ -699,7 +793,8 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
 
             dir_entry.load((int) Memory.phys_readd(GetPageDirectoryEntryAddr(addr)));
             if (dir_entry.block.p == 0) return false;
-            table_entry.load((int) Memory.phys_readd(GetPageTableEntryAddr(addr, dir_entry)));
+            if (isLarge(dir_entry)) table_entry = dir_entry;
+            else table_entry.load((int) Memory.phys_readd(GetPageTableEntryAddr(addr, dir_entry)));
             if (table_entry.block.p == 0) return false;
             /*Bitu*/
             int result = translate_array[((dir_entry.load() << 1) & 0xc) | ((table_entry.load() >> 1) & 0x3)];
@@ -718,7 +813,8 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                 if (dir_entry.block.p == 0) Log.exit("Undesired situation 1 in exception handler.");
 
                 // page table entry
-                tableaddr = GetPageTableEntryAddr(addr, dir_entry);
+                if (isLarge(dir_entry)) tableaddr = GetPageDirectoryEntryAddr(addr);
+                else tableaddr = GetPageTableEntryAddr(addr, dir_entry);
                 //Bitu d_index=(addr >> 12) >> 10;
                 //tableaddr=(base.page<<12) | (d_index<<2);
             }
@@ -925,6 +1021,13 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                         if (prepare_only) return true;
                         else continue; //goto initpage_retry; // TODO maybe E_Exit after a few loops
                     }
+                    if (isLarge(dir_entry)) {
+                        if (InitLargePage(lin_addr, dir_entry, dirEntryAddr, writing, prepare_only, isUser)) {
+                            if (prepare_only) return true;
+                            else continue;
+                        }
+                        break;
+                    }
                     /*PhysPt*/int tableEntryAddr = GetPageTableEntryAddr(lin_addr, dir_entry);
                     table_entry.load(Memory.phys_readd(tableEntryAddr));
 
@@ -989,12 +1092,47 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                     break;
                 }
             } else { // paging off
+                // linear is physical memory, so the pages around this one can be linked now instead of each
+                // taking an init fault of their own
+                int first = lin_page & ~(LINK_GROUP-1);
+                for (int page = first; page < first+LINK_GROUP; page++) {
+                    if (page == lin_page || current(page)) continue;
+                    PAGING_LinkPage(page, page < LINK_START ? (int)firstmb[page] : page);
+                }
                 if (lin_page < LINK_START) phys_page = (int) firstmb[lin_page];
                 else phys_page = lin_page;
                 PAGING_LinkPage(lin_page, phys_page);
             }
             return false;
         }
+
+        // A 4MB page, the directory entry maps it without a page table.  All of its pages have the same access
+        // rights and dirty bit, so the ones around lin_addr are linked too.  Returns true if there was a fault.
+        boolean InitLargePage(/*PhysPt*/int lin_addr, X86PageEntry dir_entry, /*PhysPt*/int dirEntryAddr, boolean writing, boolean prepare_only, boolean isUser) {
+            int lin_page = lin_addr >>> 12;
+            /*Bitu*/int result = translate_array[((dir_entry.load()<<1)&0xc) | ((dir_entry.load()>>1)&0x3)];
+            /*Bitu*/int ft_index = result | (writing? 8:0) | (isUser? 4:0) | (wp? 16:0);
+            if (fault_table[ft_index]!=0) {
+                PAGING_NewPageFault(lin_addr, dirEntryAddr, prepare_only, 1 | (writing? 2:0) | (isUser? 4:0));
+                return true;
+            }
+            /*Bit32u*/int dir_load = dir_entry.load();
+            if (writing) dir_entry.block.d = 1;
+            dir_entry.block.a = 1;
+            if (dir_load != dir_entry.load())
+                Memory.phys_writed(dirEntryAddr, dir_entry.load());
+            boolean dirty = dir_entry.block.d!=0;
+            boolean global = dir_entry.block.g!=0;
+            int base = dir_entry.block.base & 0xFFC00;
+            int first = lin_page & ~(LINK_GROUP-1);
+            for (int page = first; page < first+LINK_GROUP; page++) {
+                int ppage = base | (page & 0x3FF);
+                if (page == lin_page || current(page)) continue;
+                PAGING_LinkPageNew(page, ppage, result, dirty, global);
+            }
+            PAGING_LinkPageNew(lin_page, base | (lin_page & 0x3FF), result, dirty, global);
+            return false;
+        }
     }
 
 
@@ -1007,6 +1145,10 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
             X86PageEntry table = new X86PageEntry();
             table.load((int) (Memory.phys_readd((base.page << 12) + d_index * 4)));
             if (table.block.p == 0) return false;
+            if (isLarge(table)) {
+                page.value = (table.block.base & 0xFFC00) | t_index;
+                return true;
+            }
             X86PageEntry entry = new X86PageEntry();
             entry.load((int) (Memory.phys_readd((table.block.base << 12) + t_index * 4)));
             if (entry.block.p == 0) return false;
@@ -1027,72 +1169,100 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
     }
 
     private static void PAGING_InitTLB() {
+        Arrays.fill(tlb, 0);
         for (/*Bitu*/int i = 0; i < TLB_SIZE; i++) {
-            read[i] = INVALID_ADDRESS;
-            write[i] = INVALID_ADDRESS;
             readhandler[i] = init_page_handler;
             writehandler[i] = init_page_handler;
         }
+        tlb_gen = 0;
+        tlb_valid = TLB_VALID;
+        tlb_next = TLB_NEXT;
         ur_links.used=0;
 	    krw_links.used=0;
 	    kr_links.used=0;
+        global_links.used=0;
         links.used = 0;
     }
 
-    public static void PAGING_ClearTLB() {
-        for (int i = 0; links.used > 0; links.used--, i++) {
-            /*Bitu*/
-            int page = links.entries[i];
-            read[page] = INVALID_ADDRESS;
-            write[page] = INVALID_ADDRESS;
-            readhandler[page] = init_page_handler;
-            writehandler[page] = init_page_handler;
+    // Starts a new generation, which unlinks every page
+    private static void PAGING_NewGeneration(boolean keepGlobal) {
+        generations++;
+        int old_gen = tlb_gen;
+        tlb_gen = (tlb_gen + 4) & TLB_GEN;
+        tlb_valid = tlb_gen | TLB_VALID;
+        tlb_next = tlb_gen | TLB_NEXT;
+        if (tlb_gen == 0) {
+            // out of generations, entries from the last time around would look current again
+            for (int i = 0; i < TLB_SIZE; i++) {
+                if (keepGlobal && ((int)tlb[i] & TLB_GEN) == old_gen && (phys_page[i] & PHYSPAGE_GLOBAL) != 0)
+                    continue;
+                tlb[i] = 0;
+                readhandler[i] = init_page_handler;
+                writehandler[i] = init_page_handler;
+            }
         }
+    }
+
+    public static void PAGING_ClearTLB() {
+        PAGING_NewGeneration(false);
         ur_links.used=0;
 	    krw_links.used=0;
 	    kr_links.used=0;
+        global_links.used=0;
         links.used = 0;
     }
 
     public static void PAGING_ClearNonGlobalTLB() {
-        for (int i = 0; i<links.used; i++) {
-            /*Bitu*/
-            if (globalEnabled && !links.global[i]) {
-                int page = links.entries[i];
-                read[page] = INVALID_ADDRESS;
-                write[page] = INVALID_ADDRESS;
-                readhandler[page] = init_page_handler;
-                writehandler[page] = init_page_handler;
-            }
-        }
         if (!globalEnabled) {
-            ur_links.used=0;
-	        krw_links.used=0;
-	        kr_links.used=0;
-            links.used = 0;
-        } else {
-            links.removeNonGlobal();
-            ur_links.removeNonGlobal();
-            krw_links.removeNonGlobal();
-            kr_links.removeNonGlobal();
+            PAGING_ClearTLB();
+            return;
         }
+        int old_gen = tlb_gen;
+        PAGING_NewGeneration(true);
+        ur_links.used=0;
+        krw_links.used=0;
+        kr_links.used=0;
+        links.used = 0;
+        // move the global pages over to the new generation
+        int used = 0;
+        for (int i = 0; i<global_links.used; i++) {
+            int page = global_links.entries[i];
+            long entry = tlb[page];
+            if (((int)entry & TLB_GEN) != old_gen || (phys_page[page] & PHYSPAGE_GLOBAL) == 0)
+                continue;
+            int read = ((int)entry & ~TLB_GEN) | tlb_gen;
+            int write = ((int)(entry >>> 32) & ~TLB_GEN) | tlb_gen;
+            tlb[page] = ((long)write << 32) | (read & 0xFFFFFFFFl);
+            global_links.entries[used++] = page;
+            PAGING_AddLink(page, phys_page[page] >>> 30, true);
+        }
+        global_links.used = used;
+        for (int i = 0; i<used; i++)
+            updateNext(global_links.entries[i]);
     }
 
     public static void PAGING_UnlinkPages(/*Bitu*/int lin_page,/*Bitu*/int pages) {
         for (; pages > 0; pages--) {
-            read[lin_page] = INVALID_ADDRESS;
-            write[lin_page] = INVALID_ADDRESS;
+            setInvalid(lin_page);
             readhandler[lin_page] = init_page_handler;
             writehandler[lin_page] = init_page_handler;
             lin_page++;
         }
     }
 
+    // Unlinks the linear pages that are linked to ppage, for when its handler changes
+    public static void PAGING_UnlinkPhysPage(/*Bitu*/int ppage) {
+        for (int i = 0; i < links.used; i++) {
+            int lin_page = links.entries[i];
+            if (((int)tlb[lin_page] & TLB_GEN) == tlb_gen && (phys_page[lin_page] & PHYSPAGE_ADDR) == ppage)
+                PAGING_UnlinkPages(lin_page, 1);
+        }
+    }
+
     public static void PAGING_MapPage(/*Bitu*/int lin_page,/*Bitu*/int phys_page) {
         if (lin_page < LINK_START) {
             firstmb[lin_page] = phys_page;
-            read[lin_page] = INVALID_ADDRESS;
-            write[lin_page] = INVALID_ADDRESS;
+            setInvalid(lin_page);
             readhandler[lin_page] = init_page_handler;
             writehandler[lin_page] = init_page_handler;
         } else {
@@ -1126,42 +1296,49 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
         case ACMAP_RW:
             // read
             if ((handler.flags & PFLAG_READABLE)!=0)
-                read[lin_page] = handler.GetHostReadPt(ppage)-lin_base;
+                setRead(lin_page, handler.GetHostReadPt(ppage)-lin_base);
             else
-                read[lin_page]=INVALID_ADDRESS;
+                setRead(lin_page, INVALID_ADDRESS);
             readhandler[lin_page]=handler;
 
             // write
             if (dirty) { // in case it is already dirty we don't need to check
                 if ((handler.flags & PFLAG_WRITEABLE)!=0)
-                    write[lin_page] = handler.GetHostWritePt(ppage)-lin_base;
+                    setWrite(lin_page, handler.GetHostWritePt(ppage)-lin_base);
                 else
-                    write[lin_page]=INVALID_ADDRESS;
+                    setWrite(lin_page, INVALID_ADDRESS);
                 writehandler[lin_page]=handler;
             } else {
                 writehandler[lin_page]= foiling_handler;
-                write[lin_page]=INVALID_ADDRESS;
+                setWrite(lin_page, INVALID_ADDRESS);
             }
             break;
         case ACMAP_RE:
             // read
             if ((handler.flags & PFLAG_READABLE)!=0)
-                read[lin_page] = handler.GetHostReadPt(ppage)-lin_base;
+                setRead(lin_page, handler.GetHostReadPt(ppage)-lin_base);
             else
-                read[lin_page]=INVALID_ADDRESS;
+                setRead(lin_page, INVALID_ADDRESS);
             readhandler[lin_page]=handler;
             // exception
             writehandler[lin_page]= exception_handler;
-            write[lin_page]=INVALID_ADDRESS;
+            setWrite(lin_page, INVALID_ADDRESS);
             break;
         case ACMAP_EE:
             readhandler[lin_page]= exception_handler;
             writehandler[lin_page]= exception_handler;
-            read[lin_page]=INVALID_ADDRESS;
-            write[lin_page]=INVALID_ADDRESS;
+            setInvalid(lin_page);
             break;
         }
 
+        if (global) {
+            phys_page[lin_page] |= PHYSPAGE_GLOBAL;
+            global_links.entries[global_links.used++]=lin_page;
+        }
+        PAGING_AddLink(lin_page, linkmode, global);
+    }
+
+    private static void PAGING_AddLink(/*Bitu*/int lin_page, /*Bitu*/int linkmode, boolean global) {
         switch(linkmode) {
         case ACCESS_KR:
             kr_links.global[kr_links.used] = global;
@@ -1197,12 +1374,12 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
 
         phys_page[lin_page] = ppage;
         if ((handler.flags & PFLAG_READABLE) != 0)
-            read[lin_page] = handler.GetHostReadPt(ppage) - lin_base;
-        else read[lin_page] = INVALID_ADDRESS;
+            setRead(lin_page, handler.GetHostReadPt(ppage) - lin_base);
+        else setRead(lin_page, INVALID_ADDRESS);
         if ((handler.flags & PFLAG_WRITEABLE) != 0) {
-            write[lin_page] = handler.GetHostWritePt(ppage) - lin_base;
+            setWrite(lin_page, handler.GetHostWritePt(ppage) - lin_base);
         }
-        else write[lin_page] = INVALID_ADDRESS;
+        else setWrite(lin_page, INVALID_ADDRESS);
 
         links.entries[links.used++] = lin_page;
         readhandler[lin_page] = handler;
@@ -1224,8 +1401,7 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                 /*Bitu*/int tlb_index = krw_links.entries[i];
                 readhandler[tlb_index] = exception_handler;
                 writehandler[tlb_index] = exception_handler;
-                read[tlb_index] = INVALID_ADDRESS;
-                write[tlb_index] = INVALID_ADDRESS;
+                setInvalid(tlb_index);
             }
         } else {
             // us -> sv: ee -> rw
@@ -1240,18 +1416,18 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                 // map read handler
                 readhandler[tlb_index] = handler;
                 if ((handler.flags & PFLAG_READABLE)!=0)
-                    read[tlb_index] = handler.GetHostReadPt(ppage)-lin_base;
-                else read[tlb_index] = INVALID_ADDRESS;
+                    setRead(tlb_index, handler.GetHostReadPt(ppage)-lin_base);
+                else setRead(tlb_index, INVALID_ADDRESS);
 
                 // map write handler
                 if (dirty) {
                     writehandler[tlb_index] = handler;
                     if ((handler.flags & PFLAG_WRITEABLE)!=0)
-                        write[tlb_index] = handler.GetHostWritePt(ppage)-lin_base;
-                    else write[tlb_index] = INVALID_ADDRESS;
+                        setWrite(tlb_index, handler.GetHostWritePt(ppage)-lin_base);
+                    else setWrite(tlb_index, INVALID_ADDRESS);
                 } else {
                     writehandler[tlb_index] = foiling_handler;
-                    write[tlb_index] = INVALID_ADDRESS;
+                    setWrite(tlb_index, INVALID_ADDRESS);
                 }
             }
         }
@@ -1264,7 +1440,7 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                 for(/*Bitu*/int i = 0; i < kr_links.used; i++) {
                     /*Bitu*/int tlb_index = kr_links.entries[i];
                     readhandler[tlb_index] = exception_handler;
-                    read[tlb_index] = INVALID_ADDRESS;
+                    setRead(tlb_index, INVALID_ADDRESS);
                 }
             } else {
                 // us -> sv: ee -> re
@@ -1275,8 +1451,8 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                     PageHandler handler = Memory.MEM_GetPageHandler(ppage);
                     readhandler[tlb_index] = handler;
                     if ((handler.flags & PFLAG_READABLE)!=0)
-                        read[tlb_index] = handler.GetHostReadPt(ppage)-lin_base;
-                    else read[tlb_index] = INVALID_ADDRESS;
+                        setRead(tlb_index, handler.GetHostReadPt(ppage)-lin_base);
+                    else setRead(tlb_index, INVALID_ADDRESS);
                 }
             }
         } else { // WP=0
@@ -1286,7 +1462,7 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                 for(/*Bitu*/int i = 0; i < ur_links.used; i++) {
                     /*Bitu*/int tlb_index = ur_links.entries[i];
                     writehandler[tlb_index] = exception_handler;
-                    write[tlb_index] = INVALID_ADDRESS;
+                    setWrite(tlb_index, INVALID_ADDRESS);
                 }
             } else {
                 // us -> sv: re -> rw
@@ -1300,11 +1476,11 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
                         /*Bitu*/int lin_base = tlb_index << 12;
                         writehandler[tlb_index] = handler;
                         if ((handler.flags & PFLAG_WRITEABLE)!=0)
-                            write[tlb_index] = handler.GetHostWritePt(ppage)-lin_base;
-                        else write[tlb_index] = INVALID_ADDRESS;
+                            setWrite(tlb_index, handler.GetHostWritePt(ppage)-lin_base);
+                        else setWrite(tlb_index, INVALID_ADDRESS);
                     } else {
                         writehandler[tlb_index] = foiling_handler;
-                        write[tlb_index] = INVALID_ADDRESS;
+                        setWrite(tlb_index, INVALID_ADDRESS);
                     }
                 }
             }
@@ -1338,6 +1514,13 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
         PAGING_ClearTLB();
     }
 
+    public static void PAGING_EnablePSE(boolean value) {
+        if (value == pseEnabled)
+            return;
+        pseEnabled = value;
+        PAGING_ClearTLB();
+    }
+
     public static void PAGING_Enable(boolean value) {
         /* If paging is disabled, we work from a default paging table */
         if (enabled == value) return;
@@ -1353,12 +1536,31 @@ void PrintPageInfo(const char* string, PhysPt lin_addr, bool writing, bool prepa
         return enabled;
     }
 
+    // For Checkpoint, the tlb is not saved and starts out empty after a restore
+    public static Object PAGING_SaveState() {
+        return new int[] {cr2, cr3, wp?1:0, enabled?1:0, globalEnabled?1:0, pseEnabled?1:0};
+    }
+
+    public static void PAGING_RestoreState(Object state) {
+        int[] s = (int[])state;
+        cr2 = s[0];
+        cr3 = s[1];
+        base.page = cr3 >>> 12;
+        base.addr = cr3 & ~0xFFF;
+        wp = s[2]!=0;
+        enabled = s[3]!=0;
+        globalEnabled = s[4]!=0;
+        pseEnabled = s[5]!=0;
+        PAGING_ClearTLB();
+    }
+
     static private Paging test;
 
     public Paging(Section configuration) {
         super(configuration);
         enabled = false;
         wp=false;
+        pseEnabled=false;
         PAGING_InitTLB();
         /*Bitu*/
         int i;
@@ -2,8 +2,12 @@ package jdos.cpu;
 
 import jdos.cpu.core_normal.Prefix_helpers;
 import jdos.hardware.IO;
+import jdos.hardware.IOStats;
+import jdos.hardware.IoHandler;
 import jdos.hardware.Memory;
+import jdos.hardware.RAM;
 import jdos.misc.Log;
+import jdos.misc.setup.Config;
 import jdos.types.LogSeverities;
 import jdos.types.LogTypes;
 
@@ -50,6 +54,305 @@ public class StringOp extends Prefix_helpers {
         }
     }
 
+    // Bulk path for rep MOVS, STOS, LODS, SCAS and CMPS, shared by every core.
+    //
+    // The string is done a run at a time, a run being as many elements as fit in the current page of both the
+    // source and the destination without the 16 bit offsets wrapping.  When both pages are plain ram the run is
+    // done directly on RAM, MOVS with RAM.memcpy and STOS with RAM.memset when it can.  The registers are brought
+    // up to date after every run, so anything that can fault, including getting the ram index of the next page,
+    // leaves them as if the elements before it were done one at a time.  An element that crosses a page or the
+    // end of a 16 bit segment is done on its own through Memory and the runs go on after it.  Pages with a
+    // handler are left for the per element loop, what is returned is how many elements that is.  SCAS and CMPS
+    // take a cycle for every element they compare, just like the per element loop, and set the flags themselves
+    // when they finish here.  INS and OUTS go to BlockIO.
+    static public long FastString(int type, int si_base, int di_base, long count, boolean addr32) {
+        int size;
+        switch (type) {
+            case R_MOVSB: case R_LODSB: case R_STOSB: case R_SCASB: case R_CMPSB: size = 1; break;
+            case R_MOVSW: case R_LODSW: case R_STOSW: case R_SCASW: case R_CMPSW: size = 2; break;
+            case R_MOVSD: case R_LODSD: case R_STOSD: case R_SCASD: case R_CMPSD: size = 4; break;
+            case R_OUTSB: case R_OUTSW: case R_OUTSD: case R_INSB: case R_INSW: case R_INSD:
+                return BlockIO(type, si_base, di_base, count, addr32);
+            default: return count;
+        }
+        boolean forward = CPU.cpu.direction>0;
+        int add_index = CPU.cpu.direction*size;
+        boolean readsSrc = type!=R_STOSB && type!=R_STOSW && type!=R_STOSD && type!=R_SCASB && type!=R_SCASW && type!=R_SCASD;
+        boolean usesDst = type<R_LODSB || type>R_LODSD;
+        boolean writesDst = type<=R_STOSD && usesDst;
+
+        while (count>0) {
+            int si = addr32?reg_esi.dword:reg_esi.word();
+            int di = addr32?reg_edi.dword:reg_edi.word();
+            int n = count>0x1000?0x1000:(int)count;
+            int src_index = 0;
+            int dst_index = 0;
+            int done = 1;
+            boolean stop = false;
+            int val1 = 0;
+            int val2 = 0;
+            if ((readsSrc && run(si_base, si, size, forward, 1, addr32)==0) || (usesDst && run(di_base, di, size, forward, 1, addr32)==0)) {
+                switch (type) {
+                    case R_MOVSB: case R_MOVSW: case R_MOVSD:
+                        writeMem(di_base+di, size, readMem(si_base+si, size));
+                        break;
+                    case R_STOSB: case R_STOSW: case R_STOSD:
+                        writeMem(di_base+di, size, mask(size, reg_eax.dword));
+                        break;
+                    case R_LODSB:
+                        reg_eax.low(Memory.mem_readb(si_base+si));
+                        break;
+                    case R_LODSW:
+                        reg_eax.word(Memory.mem_readw(si_base+si));
+                        break;
+                    case R_LODSD:
+                        reg_eax.dword = Memory.mem_readd(si_base+si);
+                        break;
+                    case R_SCASB: case R_SCASW: case R_SCASD:
+                        val1 = mask(size, reg_eax.dword);
+                        val2 = readMem(di_base+di, size);
+                        stop = (val1==val2)!=rep_zero;
+                        break;
+                    case R_CMPSB: case R_CMPSW: case R_CMPSD:
+                        val1 = readMem(si_base+si, size);
+                        val2 = readMem(di_base+di, size);
+                        stop = (val1==val2)!=rep_zero;
+                        break;
+                }
+            } else {
+                if (readsSrc) {
+                    n = run(si_base, si, size, forward, n, addr32);
+                    src_index = Paging.getRAMIndexRO(si_base+si);
+                    if (src_index<0) break;
+                }
+                if (usesDst) {
+                    n = run(di_base, di, size, forward, n, addr32);
+                    dst_index = writesDst?Paging.getRAMIndex(di_base+di):Paging.getRAMIndexRO(di_base+di);
+                    if (dst_index<0) break;
+                }
+                done = n;
+                switch (type) {
+                    case R_MOVSB: case R_MOVSW: case R_MOVSD:
+                        copy(dst_index, src_index, n, size, forward);
+                        break;
+                    case R_STOSB: case R_STOSW: case R_STOSD:
+                        fill(dst_index, n, size, forward, reg_eax.dword);
+                        break;
+                    case R_LODSB:
+                        reg_eax.low(RAM.readb(src_index+(n-1)*add_index));
+                        break;
+                    case R_LODSW:
+                        reg_eax.word(RAM.readw(src_index+(n-1)*add_index));
+                        break;
+                    case R_LODSD:
+                        reg_eax.dword = RAM.readd(src_index+(n-1)*add_index);
+                        break;
+                    case R_SCASB: case R_SCASW: case R_SCASD:
+                        val1 = mask(size, reg_eax.dword);
+                        for (done=0;done<n && !stop;done++) {
+                            val2 = read(dst_index, size);
+                            dst_index+=add_index;
+                            stop = (val1==val2)!=rep_zero;
+                        }
+                        break;
+                    case R_CMPSB: case R_CMPSW: case R_CMPSD:
+                        for (done=0;done<n && !stop;done++) {
+                            val1 = read(src_index, size);
+                            val2 = read(dst_index, size);
+                            src_index+=add_index;
+                            dst_index+=add_index;
+                            stop = (val1==val2)!=rep_zero;
+                        }
+                        break;
+                }
+            }
+            if (addr32) {
+                if (readsSrc) reg_esi.dword+=done*add_index;
+                if (usesDst) reg_edi.dword+=done*add_index;
+                reg_ecx.dword-=done;
+            } else {
+                if (readsSrc) reg_esi.word(si+done*add_index);
+                if (usesDst) reg_edi.word(di+done*add_index);
+                reg_ecx.word(reg_ecx.word()-done);
+            }
+            count-=done;
+            if (type>=R_SCASB) {
+                CPU.CPU_Cycles-=done;
+                if (stop || count==0) {
+                    switch (size) {
+                        case 1: CMPB(val2, val1); break;
+                        case 2: CMPW(val2, val1); break;
+                        case 4: CMPD(val2, val1); break;
+                    }
+                    return 0;
+                }
+            }
+        }
+        return count;
+    }
+
+    static private final byte[] ioBuffer = new byte[0x1000];
+
+    // rep INS and rep OUTS on a port whose handler implements IoHandler.IO_ReadBlockHandler or
+    // IO_WriteBlockHandler.  Each run of ram goes to the handler in one call through ioBuffer and is copied with
+    // one RAM.memcpy, a sector of rep insw is one call instead of 256 port reads and memory writes.  The io
+    // delay is the same as for single accesses.  Strings going backwards, v86 mode where the port can trap and
+    // anything that is not plain ram are left to the per element loop, as is the rest when the handler does
+    // nothing.
+    static private long BlockIO(int type, int si_base, int di_base, long count, boolean addr32) {
+        if (CPU.cpu.direction<0 || CPU_Regs.GETFLAG(CPU_Regs.VM)!=0)
+            return count;
+        boolean in = type>=R_INSB;
+        int width = in?type-R_INSB:type-R_OUTSB;
+        int size = 1<<width;
+        int port = reg_edx.word();
+        IoHandler.IO_ReadBlockHandler reader = null;
+        IoHandler.IO_WriteBlockHandler writer = null;
+        if (in) {
+            if (!(IoHandler.io_readhandlers[width][port] instanceof IoHandler.IO_ReadBlockHandler))
+                return count;
+            reader = (IoHandler.IO_ReadBlockHandler)IoHandler.io_readhandlers[width][port];
+        } else {
+            if (!(IoHandler.io_writehandlers[width][port] instanceof IoHandler.IO_WriteBlockHandler))
+                return count;
+            writer = (IoHandler.IO_WriteBlockHandler)IoHandler.io_writehandlers[width][port];
+        }
+        int base = in?di_base:si_base;
+        while (count>0) {
+            int offset = in?(addr32?reg_edi.dword:reg_edi.word()):(addr32?reg_esi.dword:reg_esi.word());
+            int n = count>ioBuffer.length/size?ioBuffer.length/size:(int)count;
+            n = run(base, offset, size, true, n, addr32);
+            if (n==0) break;
+            int index = in?Paging.getRAMIndex(base+offset):Paging.getRAMIndexRO(base+offset);
+            if (index<0) break;
+            int done;
+            if (in) {
+                if (IOStats.enabled) done = IOStats.readBlock(width, port, ioBuffer, 0, n);
+                else done = reader.readBlock(port, size, ioBuffer, 0, n);
+                RAM.memcpy(index, ioBuffer, 0, done*size);
+            } else {
+                RAM.memcpy(ioBuffer, 0, index, n*size);
+                if (IOStats.enabled) done = IOStats.writeBlock(width, port, ioBuffer, 0, n);
+                else done = writer.writeBlock(port, size, ioBuffer, 0, n);
+            }
+            if (done==0) break;
+            if (width<2)
+                IO.IO_USEC_block_delay(!in, done);
+            if (addr32) {
+                if (in) reg_edi.dword+=done*size; else reg_esi.dword+=done*size;
+                reg_ecx.dword-=done;
+            } else {
+                if (in) reg_edi.word(offset+done*size); else reg_esi.word(offset+done*size);
+                reg_ecx.word(reg_ecx.word()-done);
+            }
+            count-=done;
+        }
+        return count;
+    }
+
+    // How many of n elements starting at offset fit in its page and, for 16 bit addresses, before the offset
+    // wraps.  0 if the first one crosses either.
+    static private int run(int base, int offset, int size, boolean forward, int n, boolean addr32) {
+        int page = (base+offset) & 0xFFF;
+        if (page+size>0x1000)
+            return 0;
+        int room = forward?(0x1000-page)/size:page/size+1;
+        if (!addr32) {
+            if (offset+size>0x10000)
+                return 0;
+            int wrap = forward?(0x10000-offset)/size:offset/size+1;
+            if (wrap<room) room = wrap;
+        }
+        return n<room?n:room;
+    }
+
+    static private int read(int index, int size) {
+        switch (size) {
+            case 1: return RAM.readb(index);
+            case 2: return RAM.readw(index);
+            default: return RAM.readd(index);
+        }
+    }
+
+    static private int readMem(int address, int size) {
+        switch (size) {
+            case 1: return Memory.mem_readb(address);
+            case 2: return Memory.mem_readw(address);
+            default: return Memory.mem_readd(address);
+        }
+    }
+
+    static private void writeMem(int address, int size, int value) {
+        switch (size) {
+            case 1: Memory.mem_writeb(address, value); break;
+            case 2: Memory.mem_writew(address, value); break;
+            default: Memory.mem_writed(address, value); break;
+        }
+    }
+
+    static private int mask(int size, int value) {
+        switch (size) {
+            case 1: return value & 0xFF;
+            case 2: return value & 0xFFFF;
+            default: return value;
+        }
+    }
+
+    static private void write(int index, int size, int value) {
+        switch (size) {
+            case 1: RAM.writeb(index, value); break;
+            case 2: RAM.writew(index, value); break;
+            default: RAM.writed(index, value); break;
+        }
+    }
+
+    // Copies n elements in the order the guest does.  That only matters when source and destination overlap, a
+    // rep movs with di just above si repeats the first bytes instead of moving them.  As long as they are at
+    // least an element apart that is the same as a byte copy in the direction of the string, which is done in
+    // pieces that don't overlap.  Closer than that it goes an element at a time.
+    static private void copy(int dst_index, int src_index, int n, int size, boolean forward) {
+        int len = n*size;
+        int dst = forward?dst_index:dst_index-len+size;
+        int src = forward?src_index:src_index-len+size;
+        int distance = Math.abs(dst-src);
+        if (distance>=len) {
+            RAM.memcpy(dst, src, len);
+        } else if (distance==0) {
+            // nothing changes
+        } else if (distance>=size) {
+            if (forward) {
+                for (int i=0;i<len;i+=distance)
+                    RAM.memcpy(dst+i, src+i, Math.min(distance, len-i));
+            } else {
+                for (int i=len;i>0;i-=distance) {
+                    int l = Math.min(distance, i);
+                    RAM.memcpy(dst+i-l, src+i-l, l);
+                }
+            }
+        } else {
+            int add_index = forward?size:-size;
+            for (int i=0;i<n;i++) {
+                write(dst_index, size, read(src_index, size));
+                dst_index+=add_index;
+                src_index+=add_index;
+            }
+        }
+    }
+
+    static private void fill(int dst_index, int n, int size, boolean forward, int value) {
+        value = mask(size, value);
+        int start = forward?dst_index:dst_index-(n-1)*size;
+        int b = value & 0xFF;
+        if (size==1 || (size==2 && value==(b|b<<8)) || (size==4 && value==(b|b<<8|b<<16|b<<24))) {
+            RAM.memset(start, n*size, b);
+        } else {
+            for (int i=0;i<n;i++) {
+                write(start, size, value);
+                start+=size;
+            }
+        }
+    }
+
     static public void DoString16(int prefixes, int type) {
         /*PhysPt*/int  si_base;
         int di_base;
@@ -78,6 +381,8 @@ public class StringOp extends Prefix_helpers {
 //            }
         }
         add_index=CPU.cpu.direction;
+        if (Config.FAST_STRINGS && count>1)
+            count=FastString(type, si_base, di_base, count, false);
         if (count!=0) switch (type) {
         case R_OUTSB:
             for (;count>0;count--) {
@@ -331,6 +636,8 @@ public class StringOp extends Prefix_helpers {
 //            }
         }
         add_index=CPU.cpu.direction;
+        if (Config.FAST_STRINGS && count>1)
+            count=FastString(type, si_base, di_base, count, true);
         if (count!=0) switch (type) {
         case R_OUTSB:
             for (;count>0;count--) {
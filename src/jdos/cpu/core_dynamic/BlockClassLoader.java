@@ -0,0 +1,37 @@
+package jdos.cpu.core_dynamic;
+
+// Each compiled block gets its own class loader so that when the decode block is released the class and
+// class loader will be unloaded.  Defining the class from its bytes works on any JVM, unlike casting the
+// application class loader to a URLClassLoader, and it lets several compiler threads define classes at once.
+//
+// Keeping them apart is also what lets Cache throw out single pages, a loader shared by many blocks could only
+// be unloaded once every one of them was gone.
+public class BlockClassLoader extends ClassLoader {
+    static public long definedClasses = 0;
+    static public long definedBytes = 0;
+
+    private int size;
+
+    public BlockClassLoader() {
+        super(Op.class.getClassLoader());
+    }
+
+    public Class define(byte[] byteCode) {
+        size = byteCode.length;
+        count(size);
+        return defineClass(null, byteCode, 0, byteCode.length);
+    }
+
+    static private synchronized void count(int size) {
+        definedClasses++;
+        definedBytes += size;
+    }
+
+    // Size of the bytecode of a compiled op, 0 if it wasn't defined by a BlockClassLoader
+    static public int size(Op op) {
+        ClassLoader loader = op.getClass().getClassLoader();
+        if (loader instanceof BlockClassLoader)
+            return ((BlockClassLoader)loader).size;
+        return 0;
+    }
+}
@@ -0,0 +1,190 @@
+package jdos.cpu.core_dynamic;
+
+import jdos.util.LRUCache;
+
+import java.util.Vector;
+
+// Execution history of the code at one physical address.  Cache blocks come and go as pages are flushed
+// and code is rewritten, so the profile is kept by address and handed to every block decoded there.  It
+// decides how far up the tiers a block goes:
+//
+//   TIER_NORMAL     the bytes were rewritten so often that Core_dynamic runs them with Core_normal
+//   TIER_OPS        the Op chain built by the decoder and run by DecodeBlock
+//   TIER_COMPILED   compiled by Compiler after its threshold
+//   TIER_OPTIMIZED  compiled again once hot, leaving out the flags that FlagLiveness finds are never read after it
+//
+// Everything here runs on the emulation thread.
+public class BlockProfile {
+    static public final int TIER_NORMAL = 0;
+    static public final int TIER_OPS = 1;
+    static public final int TIER_COMPILED = 2;
+    static public final int TIER_OPTIMIZED = 3;
+
+    // each invalidation doubles the threshold, after this many the block is never compiled
+    static public final int MAX_INVALIDATIONS = 3;
+    // matches the count at which Core_dynamic hands the bytes to Core_normal
+    static private final int NORMAL_INVALIDATIONS = 4;
+    static final int MAX_PROFILES = 64*1024;
+
+    // how many times a compiled block has to be reached through a link before it is compiled again, 0 turns it off
+    static public int optimizeThreshold = 0;
+
+    static public int deferred = 0;
+    static public int refused = 0;
+    static public int optimized = 0;
+    static public int reverted = 0;
+
+    // the address that was decoded the longest time ago goes when it's full, code that keeps being rewritten
+    // is decoded again and again so what is known about it stays
+    static private final LRUCache profiles = new LRUCache(MAX_PROFILES);
+
+    public int address;
+    public int executions;
+    public long cycles;
+    public int invalidations;
+    public int exceptions;
+    public int tier = TIER_OPS;
+    public String reason = "";
+
+    static public BlockProfile get(CacheBlockDynRec block) {
+        Integer key = new Integer((block.page.handler.phys_page << 12) | block.page.start);
+        BlockProfile profile = (BlockProfile)profiles.get(key);
+        if (profile == null) {
+            profile = new BlockProfile();
+            profile.address = key.intValue();
+            profiles.put(key, profile);
+        }
+        return profile;
+    }
+
+    // The run count at which a newly decoded block is looked at for compiling, 0 means never
+    public int threshold() {
+        tier = TIER_OPS;
+        if (DecodeBlock.compileThreshold <= 0)
+            return 0;
+        if (invalidations >= MAX_INVALIDATIONS) {
+            reason = "self modifying, invalidated "+invalidations+" times";
+            return 0;
+        }
+        return DecodeBlock.compileThreshold << invalidations;
+    }
+
+    // Called when a DecodeBlock reaches its threshold, returns false if the block should wait or not be compiled at all
+    public boolean promote(DecodeBlock block) {
+        if (exceptions > executions / 2 && block.threshold < (DecodeBlock.compileThreshold << 2)) {
+            // most runs end in an exception, the compiled code would rarely get to the end of the block
+            block.threshold <<= 1;
+            reason = "deferred, "+exceptions+" exceptions in "+executions+" runs";
+            deferred++;
+            return false;
+        }
+        reason = "compiled after "+block.runCount+" runs";
+        return true;
+    }
+
+    // A write cleared a block that starts here
+    static void invalidated(CacheBlockDynRec block, CodePageHandlerDynRec handler) {
+        BlockProfile profile = block.profile;
+        if (profile == null)
+            return;
+        profile.invalidations++;
+        if (handler.invalidation_map != null && handler.invalidation_map.p[block.page.start] >= NORMAL_INVALIDATIONS) {
+            profile.tier = TIER_NORMAL;
+            profile.reason = "rewritten, run by the normal core";
+        } else {
+            profile.tier = TIER_OPS;
+            if (profile.invalidations == MAX_INVALIDATIONS) {
+                profile.reason = "self modifying, invalidated "+profile.invalidations+" times";
+                refused++;
+            }
+        }
+    }
+
+    // Compiled block was just entered through one of its links and its linkHits reached optimizeThreshold
+    static public void hot(CacheBlockDynRec block) {
+        if (optimizeThreshold <= 0 || Compiler.saveClasses)
+            return;
+        BlockProfile profile = block.profile;
+        DecodeBlock decode = block.decode;
+        if (profile == null || decode == null || block.optimize != null || profile.tier != TIER_COMPILED)
+            return;
+        if (block.code == decode || block.code instanceof TraceOp) {
+            // the compiled code hasn't been installed yet
+            block.linkHits = 0;
+            return;
+        }
+        if (profile.invalidations > 0) {
+            profile.reason = "not optimized, self modifying";
+            return;
+        }
+        if (decode.exits == 0) {
+            profile.reason = "not optimized, doesn't end with a direct jump";
+            return;
+        }
+        CacheBlockDynRec[] region = new CacheBlockDynRec[FlagLiveness.MAX_BLOCKS];
+        int[] count = new int[1];
+        int liveOut = FlagLiveness.liveOut(block, region, count);
+        if (liveOut == FlagLiveness.ALL_FLAGS) {
+            profile.reason = "not optimized, all flags are used after it";
+            return;
+        }
+        OptimizeOp op = new OptimizeOp();
+        op.liveOut = liveOut;
+        op.blocks = new CacheBlockDynRec[count[0]];
+        op.generations = new int[count[0]];
+        for (int i=0;i<count[0];i++) {
+            op.blocks[i] = region[i];
+            op.generations[i] = region[i].generation;
+            // if any of these blocks is cleared the flags it uses can't be known anymore
+            if (region[i].optimizedBy == null)
+                region[i].optimizedBy = new Vector();
+            region[i].optimizedBy.addElement(op);
+        }
+        op.parent = block;
+        op.compiled = block.code;
+        op.next = decode.op; // the compiler starts at next, the same as with DecodeBlock
+        op.cycle = block.code.cycle;
+        block.optimize = op;
+        block.code = op;
+        Compiler.compile(op);
+    }
+
+    // The optimized code is done, or failed, decide what the block runs from now on
+    static Op install(OptimizeOp op) {
+        CacheBlockDynRec block = op.parent;
+        if (block.optimize != op)
+            return op.compiled;
+        Op result = op.optimizedOp;
+        for (int i=0;i<op.blocks.length && result!=null;i++) {
+            if (op.blocks[i].generation != op.generations[i])
+                result = null;
+        }
+        if (result == null) {
+            block.optimize = null;
+            block.code = op.compiled;
+            if (op.failed)
+                block.profile.reason = "not optimized, compile failed";
+            return op.compiled;
+        }
+        block.code = result;
+        block.profile.tier = TIER_OPTIMIZED;
+        block.profile.reason = "optimized, flags used after it 0x"+Integer.toHexString(op.liveOut);
+        optimized++;
+        return result;
+    }
+
+    // One of the blocks the liveness of the flags was worked out from is being cleared, the code that was
+    // compiled with it can't be used anymore
+    static void revert(CacheBlockDynRec block) {
+        OptimizeOp op = block.optimize;
+        block.optimize = null;
+        block.code = op.compiled;
+        // a trace that calls the optimized code checks the generation before it goes to the block again
+        block.generation++;
+        if (block.profile != null && block.profile.tier == TIER_OPTIMIZED) {
+            block.profile.tier = TIER_COMPILED;
+            block.profile.reason = "optimization reverted, a block after it was cleared";
+            reverted++;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package jdos.cpu.core_dynamic;
 
+import jdos.cpu.Core_dynamic;
+
 public class Cache {
     public static class Block {
 		public CacheBlockDynRec first;		// the first cache block in the list
@@ -14,6 +16,14 @@ public class Cache {
 
     public static Cache cache = new Cache();
 
+    // once this many blocks are in the cache whole code pages are thrown out to make room, 0 means no limit
+    public static int maxBlocks = Core_dynamic.CACHE_BLOCKS;
+    public static int pages = 0;            // code pages in use
+    public static long codeBytes = 0;       // bytecode of the compiled blocks still in the cache
+    public static long evictedBlocks = 0;
+    public static long evictedPages = 0;
+    CodePageHandlerDynRec hand;             // where the clock stopped last time
+
     public static boolean cache_initialized = false;
     
     public static void cache_init(boolean enable) {
@@ -36,13 +46,46 @@ public class Cache {
             cache.used_pages=null;
         }
     }
+    // Throws out every compiled block, used when guest memory is replaced underneath the cache
+    public static void cache_flush() {
+        while (cache.used_pages!=null)
+            cache.used_pages.ClearRelease();
+        cache.hand=null;
+    }
+
     static public void cache_addunusedblock(CacheBlockDynRec block) {
         // block has become unused, add it to the freelist
         block.cache.next=cache.block.free;
         cache.block.free=block;
     }
 
-    public static CacheBlockDynRec cache_openblock() {
+    // Throws out code pages until the cache is back under its limit.  The pages are looked at in a circle, a
+    // page that had one of its blocks run since the last time around gets another round.  codepage is where
+    // the new block goes and is never thrown out, neither is the page of the block that is running.
+    static private void cache_evict(CodePageHandlerDynRec codepage) {
+        int target = maxBlocks - (maxBlocks >> 3); // make some room so this doesn't run again on the next block
+        int steps = pages * 2 + 2;
+        CodePageHandlerDynRec running = Core_dynamic.currentBlock == null ? null : Core_dynamic.currentBlock.page.handler;
+        while (CodePageHandlerDynRec.activeCount > target && steps-- > 0) {
+            CodePageHandlerDynRec page = cache.hand;
+            if (page == null) {
+                page = cache.used_pages;
+                if (page == null)
+                    return;
+            }
+            cache.hand = page.next;
+            if (page == codepage || page == running || page.referenced())
+                continue;
+            int before = CodePageHandlerDynRec.activeCount;
+            page.ClearRelease();
+            evictedBlocks += before - CodePageHandlerDynRec.activeCount;
+            evictedPages++;
+        }
+    }
+
+    public static CacheBlockDynRec cache_openblock(CodePageHandlerDynRec codepage) {
+        if (maxBlocks > 0 && CodePageHandlerDynRec.activeCount >= maxBlocks)
+            cache_evict(codepage);
         CacheBlockDynRec block=cache.block.active;
         CacheBlockDynRec nextblock=block.cache.next;
         if (block.page.handler!=null)
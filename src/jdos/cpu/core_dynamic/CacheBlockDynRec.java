@@ -1,7 +1,7 @@
 package jdos.cpu.core_dynamic;
 
 import jdos.Dosbox;
-import jdos.cpu.core_switch.SwitchBlock;
+import jdos.cpu.core_switch.SwitchCode;
 import jdos.misc.Log;
 
 import java.util.Vector;
@@ -17,6 +17,23 @@ public class CacheBlockDynRec {
 
 	public void Clear() {
         /*Bitu*/int ind;
+        generation++;
+        linkHits = 0;
+        trace = null;
+        if (optimizedBy != null) {
+            for (int i=0;i<optimizedBy.size();i++) {
+                OptimizeOp op = (OptimizeOp)optimizedBy.elementAt(i);
+                if (op.parent != this && op.parent.optimize == op)
+                    BlockProfile.revert(op.parent);
+            }
+            optimizedBy = null;
+        }
+        profile = null;
+        decode = null;
+        optimize = null;
+        referenced = false;
+        Cache.codeBytes -= codeBytes;
+        codeBytes = 0;
         if (code instanceof DecodeBlock && Dosbox.allPrivileges) {
             DecodeBlock op = (DecodeBlock)code;
             Compiler.removeFromQueue(op);
@@ -100,7 +117,16 @@ public class CacheBlockDynRec {
     public _Link link2;
 	CacheBlockDynRec crossblock;
     public Op code;
-    public SwitchBlock[] inst; // micro instructions used by Core_switch
+    public SwitchCode inst; // micro instructions used by Core_switch
     public byte[] originalByteCode = null; //used for dynamic core cache verification
+    public int generation; // incremented every time the block is cleared, lets a TraceOp know its blocks are still valid
+    public int linkHits; // how many times Core_dynamic entered this block through a link
+    public Trace trace; // trace waiting to be compiled with this block as its head
+    public BlockProfile profile; // only kept when the compiler is enabled
+    public DecodeBlock decode;
+    public OptimizeOp optimize; // set while the block is being or has been compiled again by BlockProfile.hot
+    public Vector optimizedBy; // OptimizeOps that depend on the flags this block uses
+    public boolean referenced; // set every time the block is run, cleared by Cache when it looks for pages to throw out
+    public int codeBytes; // size of the compiled class
 }
 
@@ -8,9 +8,17 @@ import jdos.hardware.Memory;
 import jdos.hardware.RAM;
 import jdos.util.Ptr;
 
+import java.util.Arrays;
+
 final public class CodePageHandlerDynRec extends Paging.PageHandler {
     static public int activeCount = 0;
     static public int usedCount = 0;
+    // how many times a modified instruction has to be run by the normal core before it gets a block of its own
+    static public int fallbackRuns = 16;
+    static public long fallbackBlocks = 0;
+    static public long stores = 0;		// stores that changed a code page
+    static public long codeStores = 0;	// the ones of those that hit code
+    static public long invalidatedBlocks = 0;
 
 	public CodePageHandlerDynRec() {
 		invalidation_map=null;
@@ -32,6 +40,9 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 
 		// initialize the maps with zero (no cache blocks as well as code present)
 		invalidation_map=null;
+		fallback_map=null;
+		Arrays.fill(code_map,0);
+		code_groups=0;
 	}
 
     // This will allow the current running instruction to finish, but when it moves
@@ -52,11 +63,11 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 		boolean is_current_block=false;	// if the current block is modified, it has to be exited as soon as possible
 
 		/*Bit32u*/int ip_point=(CPU_Regs.reg_csPhys.dword + CPU_Regs.reg_eip) & 0xFFF;
+		// any instruction that covers the write starts at most 14 bytes before it
+		clearFallback(start-14, end);
 		while (index>=0) {
-			/*Bitu*/int map=0;
 			// see if there is still some code in the range
-			for (/*Bitu*/int count=start;count<=end;count++) map+=write_map.p[count];
-			if (map==0) { // no more code, finished
+			if (!hasCode(start,end)) { // no more code, finished
                 if (is_current_block) {
                     DecodeBlock.smc = true;
                     invalidateRunningBlock();
@@ -71,7 +82,10 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 				if (start<=block.page.end && end>=block.page.start) {
 					if (block == Core_dynamic.currentBlock)
                         is_current_block=true;
+                    BlockProfile.invalidated(block, this);
+					clearFallback(block.page.start, block.page.end);
 					block.Clear();		// clear the block, decrements the write_map accordingly
+					invalidatedBlocks++;
 				}
 				block=nextblock;
 			}
@@ -88,8 +102,9 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 		int addr = (address & 4095);
 		if (RAM.readb(hostmem + addr)==(val & 0xFF)) return;
 		RAM.writeb(hostmem + addr, val);
+		stores++;
 		// see if there's code where we are writing to
-		if (write_map.readb(addr)==0) {
+		if (!hasCode(addr,addr)) {
 			if (active_blocks!=0) return;		// still some blocks in this page
 			active_count--;
 			if (active_count==0) Release();	// delay page releasing until active_count is zero
@@ -98,14 +113,16 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 			invalidation_map=new Ptr(4096);
 		}
 		invalidation_map.p[addr]++;
+		codeStores++;
 		InvalidateRange(addr,addr);
 	}
 	public void writew(/*PhysPt*/int address,/*Bitu*/int val){
 		int addr = (address & 4095);
 		if (RAM.readw(hostmem + addr)==(val & 0xFFFF)) return;
 		RAM.writew(hostmem + addr, val);
+		stores++;
 		// see if there's code where we are writing to
-		if (write_map.readw(addr)==0) {
+		if (!hasCode(addr,addr+1)) {
 			if (active_blocks!=0) return;		// still some blocks in this page
 			active_count--;
 			if (active_count==0) Release();	// delay page releasing until active_count is zero
@@ -114,14 +131,16 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 			invalidation_map=new Ptr(4096);
 		}
         invalidation_map.writew(addr, invalidation_map.readw(addr)+0x101);
+		codeStores++;
 		InvalidateRange(addr,addr+1);
 	}
 	public void writed(/*PhysPt*/int address,/*Bitu*/int val){
 		int addr = (address & 4095);
 		if (RAM.readd(hostmem + addr)==(val & 0xFFFFFFFF)) return;
 		RAM.writed(hostmem + addr, val);
+		stores++;
 		// see if there's code where we are writing to
-		if (write_map.readd(addr)==0) {
+		if (!hasCode(addr,addr+3)) {
 			if (active_blocks!=0) return;		// still some blocks in this page
 			active_count--;
 			if (active_count==0) Release();	// delay page releasing until active_count is zero
@@ -130,6 +149,7 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 			invalidation_map=new Ptr(4096);
 		}
         invalidation_map.writed(addr, invalidation_map.readd(addr)+0x1010101);
+		codeStores++;
 		InvalidateRange(addr,addr+3);
 	}
 
@@ -144,7 +164,7 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
         activeCount++;
         usedCount++;
         if ((usedCount % 1000)==0) {
-            System.out.println("Dynamic code cache: "+activeCount+"/"+usedCount);
+            System.out.println("Dynamic code cache: "+activeCount+"/"+usedCount+" in "+Cache.pages+" pages, "+(Cache.codeBytes/1024)+"kb compiled, evicted "+Cache.evictedBlocks+" blocks in "+Cache.evictedPages+" pages, "+fallbackBlocks+" modified instructions decoded, "+codeStores+"/"+stores+" code page stores hit code and invalidated "+invalidatedBlocks+" blocks");
         }
 	}
 	// there's a block whose code started in a different page
@@ -157,7 +177,7 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 	}
 	// remove a cache block
 	void DelCacheBlock(CacheBlockDynRec block) {
-        activeCount--;
+        if (block.hash.index!=0) activeCount--; // cross blocks aren't counted by AddCrossBlock
 		active_blocks--;
 		active_count=16;
         if (hash_map[block.hash.index]==block) {
@@ -182,29 +202,29 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 		if (block.cache.wmapmask!=null) {
 			// first part is not influenced by the mask
 			for (/*Bitu*/int i=block.page.start;i<block.cache.maskstart;i++) {
-				if (write_map.p[i]!=0) write_map.p[i]--;
+				removeCode(i);
 			}
 			/*Bitu*/int maskct=0;
 			// last part sticks to the writemap mask
 			for (/*Bitu*/int i=block.cache.maskstart;i<=block.page.end;i++,maskct++) {
-				if (write_map.p[i]!=0) {
-					// only adjust writemap if it isn't masked
-					if ((maskct>=block.cache.masklen) || (block.cache.wmapmask[maskct]==0)) write_map.p[i]--;
-				}
+				// only adjust writemap if it isn't masked
+				if ((maskct>=block.cache.masklen) || (block.cache.wmapmask[maskct]==0)) removeCode(i);
 			}
 			block.cache.wmapmask=null;
 		} else {
 			for (/*Bitu*/int i=block.page.start;i<=block.page.end;i++) {
-				if (write_map.p[i]!=0) write_map.p[i]--;
+				removeCode(i);
 			}
 		}
 	}
 
 	public void Release() {
 		Memory.MEM_SetPageHandler(phys_page,1,old_pagehandler);	// revert to old handler
-		Paging.PAGING_ClearTLB();
+		Paging.PAGING_UnlinkPhysPage(phys_page);
 
 		// remove page from the lists
+		Cache.pages--;
+		if (Cache.cache.hand==this) Cache.cache.hand=next;
 		if (prev!=null) prev.next=next;
 		else Cache.cache.used_pages=next;
 		if (next!=null) next.prev=prev;
@@ -227,6 +247,43 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 		Release();	// now can release this page
 	}
 
+	// The instruction at addr is modified too often to be translated and has to be run by the normal core.
+	// Returns true once that has happened fallbackRuns times since it was last written to, so that it gets a
+	// block of its own.  Writing to it clears the block and starts the count again.
+	public boolean fallback(/*Bitu*/int addr) {
+		if (fallbackRuns<=0) return false;
+		if (fallback_map==null) fallback_map=new Ptr(4096);
+		int runs=fallback_map.p[addr] & 0xFF;
+		if (runs>=fallbackRuns) return true;
+		fallback_map.p[addr]=(byte)(runs+1);
+		return false;
+	}
+
+	private void clearFallback(/*Bitu*/int start,/*Bitu*/int end) {
+		if (fallback_map==null) return;
+		if (start<0) start=0;
+		if (end>4095) end=4095;
+		for (int i=start;i<=end;i++) fallback_map.p[i]=0;
+	}
+
+	public boolean fallbackReady(/*Bitu*/int addr) {
+		return fallbackRuns>0 && fallback_map!=null && (fallback_map.p[addr] & 0xFF)>=fallbackRuns;
+	}
+
+	// true if a block in this page was run since the last call
+	boolean referenced() {
+		boolean result=false;
+		for (/*Bitu*/int index=1;index<(1+ Core_dynamic.DYN_PAGE_HASH);index++) {
+			for (CacheBlockDynRec block=hash_map[index];block!=null;block=block.hash.next) {
+				if (block.referenced) {
+					block.referenced=false;
+					result=true;
+				}
+			}
+		}
+		return result;
+	}
+
 	public CacheBlockDynRec FindCacheBlock(/*Bitu*/int start) {
 		CacheBlockDynRec block=hash_map[1+(start>> Core_dynamic.DYN_HASH_SHIFT)];
 		// see if there's a cache block present at the start address
@@ -237,6 +294,31 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 		return null;	// none found
 	}
 
+	// a byte of an instruction at addr has been decoded into a block
+	public void addCode(/*Bitu*/int addr) {
+		write_map.p[addr]++;
+		code_map[addr>>>6]|=1l<<addr;
+		code_groups|=1l<<(addr>>>6);
+	}
+
+	public void removeCode(/*Bitu*/int addr) {
+		if (write_map.p[addr]==0 || --write_map.p[addr]!=0) return;
+		int group=addr>>>6;
+		code_map[group]&=~(1l<<addr);
+		if (code_map[group]==0) code_groups&=~(1l<<group);
+	}
+
+	// true if any byte from start to end is part of a block, stores that don't hit code only look at code_groups
+	boolean hasCode(/*Bitu*/int start,/*Bitu*/int end) {
+		int first=start>>>6;
+		int last=end>>>6;
+		if ((code_groups & ((-1l>>>(63-last+first))<<first))==0) return false;
+		for (int i=start;i<=end;i++) {
+			if ((code_map[i>>>6] & (1l<<i))!=0) return true;
+		}
+		return false;
+	}
+
 	public /*HostPt*/int GetHostReadPt(/*Bitu*/int phys_page) {
 		hostmem=old_pagehandler.GetHostReadPt(phys_page);
 		return hostmem;
@@ -248,7 +330,11 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 
 	// the write map, there are write_map[i] cache blocks that cover the byte at address i
 	public /*Bit8u*/Ptr write_map=new Ptr(4096);
+	// one bit for every byte with a write_map count and one bit in code_groups for every 64 bytes with any
+	private final long[] code_map=new long[64];
+	long code_groups;
 	public /*Bit8u*/ Ptr invalidation_map;
+	private /*Bit8u*/ Ptr fallback_map;	// runs of modified instructions by the normal core since they were last written
 	CodePageHandlerDynRec next, prev;	// page linking
 
 	private Paging.PageHandler old_pagehandler;
@@ -259,5 +345,5 @@ final public class CodePageHandlerDynRec extends Paging.PageHandler {
 	private /*Bitu*/int active_blocks;		// the number of cache blocks in this page
 	private /*Bitu*/int active_count;		// delaying parameter to not immediately release a page
 	private /*HostPt*/int hostmem;
-	private /*Bitu*/int phys_page;
+	/*Bitu*/int phys_page;
 }
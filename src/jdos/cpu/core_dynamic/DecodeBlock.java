@@ -4,6 +4,7 @@ import jdos.Dosbox;
 import jdos.cpu.CPU;
 import jdos.cpu.CPU_Regs;
 import jdos.cpu.Core;
+import jdos.cpu.PageFaultException;
 import jdos.cpu.Paging;
 import jdos.cpu.core_share.Constants;
 import jdos.hardware.Memory;
@@ -11,16 +12,24 @@ import jdos.hardware.RAM;
 
 final public class DecodeBlock extends Op {
     public Op op;
-    public boolean active = true;
+    public volatile boolean active = true;
     public int codeStart;
     public int codeLen;
     public int runCount = 0;
+    public int threshold = 0; // run count at which BlockProfile is asked about compiling this block
     static public int compileThreshold = 0;
 
     public static boolean smc = false;
     private boolean compiled = false;
     public CacheBlockDynRec parent;
-    public Op compiledOp = null;
+    public BlockProfile profile;
+    // summary of the ops for FlagLiveness
+    public int flagsUsed;
+    public int flagsSet;
+    public int exits;
+    public volatile Op compiledOp = null;
+    public int mode;
+    public byte[] opCode = null; // only captured when the JIT cache is enabled and the block is compiled
 
     public boolean throwsException() {return false;}
     public boolean accessesMemory() {return false;}
@@ -43,6 +52,15 @@ final public class DecodeBlock extends Op {
         this.next = op; // simplifies the compiler
         this.codeStart = start;
         this.codeLen = len;
+        if (Compiler.ENABLED) {
+            profile = BlockProfile.get(parent);
+            threshold = profile.threshold();
+            parent.profile = profile;
+            parent.decode = this;
+            flagsUsed = FlagLiveness.used(op);
+            flagsSet = FlagLiveness.set(op);
+            exits = FlagLiveness.exits(op);
+        }
         if (Loader.isLoaded()) {
             Op o = Loader.load(codeStart, getOpCode(codeStart, codeLen));
             if (o != null) {
@@ -51,18 +69,34 @@ final public class DecodeBlock extends Op {
                 this.compiled = true;
             }
         }
+        if (Compiler.ENABLED && JitCache.isEnabled())
+            mode = JitCache.getMode();
     }
     final public int call() {
         if (Compiler.ENABLED) {
             runCount++;
-            if (runCount==compileThreshold && !compiled && Dosbox.allPrivileges) {
+            if (runCount==threshold && !compiled && Dosbox.allPrivileges && profile.promote(this)) {
                 compiled = true;
-                jdos.cpu.core_dynamic.Compiler.compile(this);
+                // the cache is only looked at once the block would have been compiled anyway
+                Op o = null;
+                if (JitCache.isEnabled()) {
+                    opCode = getOpCode(CPU_Regs.reg_csPhys.dword+CPU_Regs.reg_eip, codeLen);
+                    o = JitCache.load(mode, opCode);
+                }
+                if (o != null)
+                    compiledOp = o;
+                else
+                    jdos.cpu.core_dynamic.Compiler.compile(this);
             }
             if (compiledOp!=null) {
                 parent.code = compiledOp;
+                parent.codeBytes = BlockClassLoader.size(compiledOp);
+                Cache.codeBytes += parent.codeBytes;
+                profile.tier = BlockProfile.TIER_COMPILED;
                 return compiledOp.call();
             }
+            profile.executions++;
+            profile.cycles+=op.cycle;
         }
         Core.base_ds= CPU_Regs.reg_dsPhys.dword;
         Core.base_ss=CPU_Regs.reg_ssPhys.dword;
@@ -76,6 +110,15 @@ final public class DecodeBlock extends Op {
                 smc = false;
                 return Constants.BR_Jump;
             }
+            if (Compiler.ENABLED)
+                profile.exceptions++;
+            throw e;
+        } catch (PageFaultException e) {
+            // the page is mapped in and the block run again, the compiled code would handle it the same way
+            throw e;
+        } catch (RuntimeException e) {
+            if (Compiler.ENABLED)
+                profile.exceptions++;
             throw e;
         }
     }
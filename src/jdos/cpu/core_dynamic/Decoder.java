@@ -160,10 +160,9 @@ public class Decoder extends Inst1 {
         decode.code=start;
         decode.page.code=codepage;
         decode.page.index=start & 4095;
-        decode.page.wmap=codepage.write_map;
         decode.page.invmap=codepage.invalidation_map;
         decode.page.first=start >>> 12;
-        decode.active_block=decode.block=Cache.cache_openblock();
+        decode.active_block=decode.block=Cache.cache_openblock(codepage);
         decode.block.page.start=decode.page.index;
         decode.setTLB(start);
         codepage.AddCacheBlock(decode.block);
@@ -205,9 +204,14 @@ public class Decoder extends Inst1 {
                     else
                         System.out.print(Integer.toHexString(CPU_Regs.reg_csPhys.dword)+":"+Integer.toHexString(op_start)+" "+Integer.toHexString(opcode)+" ");
                 }
-                if (decode.modifiedAlot) {
-                    result = RESULT_ILLEGAL_INSTRUCTION;
-                    break;
+                if (decode.modifiedAlot && !decode.ignoreModified) {
+                    if (decode.op_start==decode.code_start && decode.block.page.handler.fallbackReady(decode.code_start & 4095)) {
+                        // the block starts with it and it has been run often enough without being changed
+                        CodePageHandlerDynRec.fallbackBlocks++;
+                    } else {
+                        result = RESULT_ILLEGAL_INSTRUCTION;
+                        break;
+                    }
                 }
                 count+=(decode.code - decode.op_start);
                 if (result == RESULT_CONTINUE) {
@@ -329,7 +333,14 @@ public class Decoder extends Inst1 {
             case RESULT_ILLEGAL_INSTRUCTION:
                 decode_putback((int)(decode.code -decode.op_start + count));
                 op = begin_op;
-                op.next = new ModifiedDecodeOp();
+                ModifiedDecodeOp modified = new ModifiedDecodeOp();
+                if (!decode.ignoreModified) {
+                    modified.page = decode.page.code;
+                    modified.index = decode.page.index;
+                    if (decode.op_start==decode.code_start)
+                        modified.block = decode.block;
+                }
+                op.next = modified;
                 op.cycle = ++cycles;
                 op = op.next;
                 break;
@@ -359,8 +370,32 @@ public class Decoder extends Inst1 {
         }
     }
 
+    // Decodes just the instruction at start even though it has been modified a lot.  Core_dynamic uses this
+    // once CodePageHandlerDynRec.fallback says it keeps being run without being changed.  Like any other block
+    // it is cleared the next time the instruction is written to.
+    public static CacheBlockDynRec CreateModifiedBlock(CodePageHandlerDynRec codepage,/*PhysPt*/int start) {
+        decode.ignoreModified = true;
+        CodePageHandlerDynRec.fallbackBlocks++;
+        try {
+            return CreateCacheBlock(codepage, start, 1);
+        } finally {
+            decode.ignoreModified = false;
+        }
+    }
+
     static public class ModifiedDecodeOp extends Op {
+        CodePageHandlerDynRec page; // where the modified instruction is, null if it always has to be run here
+        int index;
+        CacheBlockDynRec block; // set if the block starts with the modified instruction
+
         public int call() {
+            // once it is worth it leave the block and let Core_dynamic decode the instruction
+            if (page != null && page.fallback(index)) {
+                // otherwise Core_dynamic would find this block again
+                if (block != null)
+                    block.Clear();
+                return Constants.BR_Jump;
+            }
             return ModifiedDecode.call();
         }
 
@@ -369,4 +404,24 @@ public class Decoder extends Inst1 {
         public boolean usesEip() {return true;}
         public boolean setsEip() {return true;}
     }
+
+    // ModifiedDecodeOp for compiled blocks, their code is shared between pages so the page is looked up from
+    // cs:eip instead
+    static public int modifiedDecode(boolean startsBlock) {
+        int ip_point = CPU_Regs.reg_csPhys.dword + CPU_Regs.reg_eip;
+        Paging.PageHandler handler = Paging.get_tlb_readhandler(ip_point);
+        if (handler instanceof CodePageHandlerDynRec) {
+            CodePageHandlerDynRec page = (CodePageHandlerDynRec)handler;
+            int index = ip_point & 4095;
+            if (page.fallback(index)) {
+                if (startsBlock) {
+                    CacheBlockDynRec block = page.FindCacheBlock(index);
+                    if (block != null)
+                        block.Clear();
+                }
+                return Constants.BR_Jump;
+            }
+        }
+        return ModifiedDecode.call();
+    }
 }
@@ -2,6 +2,7 @@ package jdos.cpu.core_dynamic;
 
 import jdos.cpu.Paging;
 import jdos.hardware.Memory;
+import jdos.hardware.MemoryProfile;
 import jdos.misc.Log;
 import jdos.util.IntRef;
 
@@ -40,9 +41,10 @@ public class Decoder_basic {
         if (Cache.cache.last_page!=null) Cache.cache.last_page.next=cpagehandler;
         Cache.cache.last_page=cpagehandler;
         if (Cache.cache.used_pages==null) Cache.cache.used_pages=cpagehandler;
+        Cache.pages++;
 
         // initialize the code page handler and add the handler to the memory page
-        cpagehandler.SetupAt(phys_page.value,handler);
+        cpagehandler.SetupAt(phys_page.value,MemoryProfile.unwrap(handler));
         Memory.MEM_SetPageHandler(phys_page.value,1,cpagehandler);
         Paging.PAGING_UnlinkPages(lin_page,1);
         return cpagehandler;
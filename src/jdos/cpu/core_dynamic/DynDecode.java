@@ -6,6 +6,7 @@ import jdos.util.Ptr;
 // decoding information used during translation of a code block
 public final class DynDecode {
     public boolean modifiedAlot;
+    public boolean ignoreModified; // decoding a single instruction that is known to be modified, see Decoder.CreateModifiedBlock
     public int code;			// pointer to next byte in the instruction stream
     public int code_start;		// pointer to the start of the current code block
     public int op_start;		// pointer to the start of the current instruction
@@ -21,7 +22,6 @@ public final class DynDecode {
     static public final class Page {
         public CodePageHandlerDynRec code;
         public int index;		// index to the current byte of the instruction stream
-        public Ptr wmap;	// write map that indicates code presence for every byte of this page
         public Ptr invmap;	// invalidation map
         public int first;		// page number
     }
@@ -0,0 +1,130 @@
+package jdos.cpu.core_dynamic;
+
+import jdos.cpu.CPU_Regs;
+
+// Which flags can still be read after a block ends.  Within a block the compiler only has to look at the ops
+// that follow, at the end of the block it has to assume every flag is used unless it knows where the block
+// goes.  Blocks that end in a direct jump always go to the blocks in link[0]/link[1], so the flags that
+// are live at the end of a block are the ones live at the start of those blocks, which in turn depend on
+// where they go.  This walks the linked blocks and solves that backwards until nothing changes.
+//
+// Each DecodeBlock keeps a summary of its own ops (flagsUsed, flagsSet and exits) so that this never has to
+// look at the ops of the other blocks.  Anything that can't be followed, a block that doesn't end in a
+// direct jump, a link that hasn't been made yet or a block that has been modified before, uses all flags.
+public class FlagLiveness {
+    static public final int ALL_FLAGS = CPU_Regs.CF | CPU_Regs.PF | CPU_Regs.AF | CPU_Regs.ZF | CPU_Regs.SF | CPU_Regs.OF;
+    static public final int MAX_BLOCKS = 32;
+
+    // Flags read by the ops before they set them
+    static public int used(Op op) {
+        int used = 0;
+        int set = 0;
+        while (op != null) {
+            used |= op.gets() & ~set;
+            set |= killed(op);
+            op = op.next;
+        }
+        return used & ALL_FLAGS;
+    }
+
+    // Flags that are always set by the ops
+    static public int set(Op op) {
+        int set = 0;
+        while (op != null) {
+            set |= killed(op);
+            op = op.next;
+        }
+        return set & ALL_FLAGS;
+    }
+
+    static private int killed(Op op) {
+        int sets = op.sets();
+        if ((sets & CPU_Regs.MAYBE) != 0)
+            return 0;
+        return sets;
+    }
+
+    // Which of link[0] and link[1] the block can leave through, 0 if it can leave some other way
+    static public int exits(Op op) {
+        if (op == null)
+            return 0;
+        while (op.next != null)
+            op = op.next;
+        if (op instanceof Inst1.JumpCond16_b || op instanceof Inst2.JumpCond16_w || op instanceof Inst3.JumpCond32_b || op instanceof Inst4.JumpCond32_d)
+            return 3;
+        if (op instanceof Inst1.JmpJb || op instanceof Inst1.JmpJw || op instanceof Inst3.JmpJb || op instanceof Inst3.JmpJd || op instanceof Inst1.CallJw || op instanceof Inst3.CallJd)
+            return 1;
+        return 0;
+    }
+
+    static private boolean canFollow(CacheBlockDynRec block) {
+        return block.decode != null && block.profile != null && block.profile.invalidations == 0;
+    }
+
+    // Returns the flags that are live when block exits.  Every block the answer depends on is put in region
+    // (block itself is always the first), if any of them is cleared the answer is no longer valid.
+    static public int liveOut(CacheBlockDynRec block, CacheBlockDynRec[] region, int[] count) {
+        int size = 0;
+        region[size++] = block;
+        int[][] targets = new int[region.length][2];
+        // breadth first along the links of every block that ends in a direct jump
+        for (int i=0;i<size;i++) {
+            DecodeBlock decode = region[i].decode;
+            for (int l=0;l<2;l++) {
+                targets[i][l] = -1;
+                if (decode == null || (decode.exits & (1<<l)) == 0)
+                    continue;
+                CacheBlockDynRec to = region[i].link[l].to;
+                if (to == null || !canFollow(to))
+                    continue;
+                int index = indexOf(region, size, to);
+                if (index < 0 && size < region.length) {
+                    index = size;
+                    region[size++] = to;
+                }
+                targets[i][l] = index;
+            }
+        }
+        count[0] = size;
+
+        // the live flags at the start of each block only ever grow, so starting with none and repeating
+        // until nothing changes gives the smallest answer that is still safe
+        int[] liveIn = new int[size];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i=size-1;i>=0;i--) {
+                DecodeBlock decode = region[i].decode;
+                int in = decode.flagsUsed | (out(region[i], targets[i], liveIn) & ~decode.flagsSet);
+                if (in != liveIn[i]) {
+                    liveIn[i] = in;
+                    changed = true;
+                }
+            }
+        }
+        return out(block, targets[0], liveIn);
+    }
+
+    static private int out(CacheBlockDynRec block, int[] targets, int[] liveIn) {
+        int exits = block.decode.exits;
+        if (exits == 0)
+            return ALL_FLAGS;
+        int result = 0;
+        for (int l=0;l<2;l++) {
+            if ((exits & (1<<l)) == 0)
+                continue;
+            if (targets[l] < 0)
+                return ALL_FLAGS;
+            result |= liveIn[targets[l]];
+        }
+        return result;
+    }
+
+    static private int indexOf(CacheBlockDynRec[] blocks, int count, CacheBlockDynRec block) {
+        for (int i=0;i<count;i++) {
+            if (blocks[i] == block)
+                return i;
+        }
+        return -1;
+    }
+}
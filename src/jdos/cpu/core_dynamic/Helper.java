@@ -43,7 +43,7 @@ public class Helper extends CPU_Regs {
         if (decode.page.invmap!=null && decode.page.invmap.p[decode.page.index]>=4) {
             decode.modifiedAlot = true;
         }
-        decode.page.wmap.p[decode.page.index]+=0x01;
+        decode.page.code.addCode(decode.page.index);
         decode.page.index++;
         decode.code+=1;
         return RAM.readb(decode.tlb + decode.code - 1);
@@ -63,7 +63,6 @@ public class Helper extends CPU_Regs {
     	decode.active_block=newblock;
     	decode.active_block.page.start=0;
     	decode.page.code.AddCrossBlock(decode.active_block);
-    	decode.page.wmap=decode.page.code.write_map;
     	decode.page.invmap=decode.page.code.invalidation_map;
     	decode.page.index=0;
         decode.setTLB(faddr);
@@ -77,7 +76,7 @@ public class Helper extends CPU_Regs {
             if (decode.page.index<0) {
                 Log.exit("Dynamic Core:  Self modifying code across page boundries not implemented yet");
             }
-            decode.page.wmap.p[decode.page.index]-=0x01;
+            decode.page.code.removeCode(decode.page.index);
         }
     }
     static public int decode_fetchws() {
@@ -93,8 +92,8 @@ public class Helper extends CPU_Regs {
         if (decode.page.invmap!=null && (decode.page.invmap.p[decode.page.index]>=4 || decode.page.invmap.p[decode.page.index+1]>=4)) {
             decode.modifiedAlot = true;
         }
-        decode.page.wmap.p[decode.page.index]+=0x01;
-        decode.page.wmap.p[decode.page.index+1]+=0x01;
+        decode.page.code.addCode(decode.page.index);
+        decode.page.code.addCode(decode.page.index+1);
         decode.code+=2;decode.page.index+=2;
         return RAM.readw(decode.tlb + decode.code - 2);
     }
@@ -115,10 +114,10 @@ public class Helper extends CPU_Regs {
         if (decode.page.invmap!=null && (decode.page.invmap.p[decode.page.index]>=4 || decode.page.invmap.p[decode.page.index+1]>=4 || decode.page.invmap.p[decode.page.index+2]>=4 || decode.page.invmap.p[decode.page.index+3]>=4)) {
             decode.modifiedAlot = true;
         }
-        decode.page.wmap.p[decode.page.index]+=0x01;
-        decode.page.wmap.p[decode.page.index+1]+=0x01;
-        decode.page.wmap.p[decode.page.index+2]+=0x01;
-        decode.page.wmap.p[decode.page.index+3]+=0x01;
+        decode.page.code.addCode(decode.page.index);
+        decode.page.code.addCode(decode.page.index+1);
+        decode.page.code.addCode(decode.page.index+2);
+        decode.page.code.addCode(decode.page.index+3);
         decode.code+=4;decode.page.index+=4;
         return RAM.readd(decode.tlb + decode.code - 4);
     }
@@ -0,0 +1,348 @@
+package jdos.cpu.core_dynamic;
+
+import jdos.cpu.CPU;
+import jdos.fpu.FPU;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.Vector;
+import java.util.zip.CRC32;
+
+// Persistent cache of compiled blocks that survives between runs.  Unlike Loader, which only works with
+// a jar built with -compile, this file is appended to while the emulator runs and memory mapped on the
+// next launch so that hot blocks can skip both the interpreter warm up and the javassist compile.
+//
+// File layout:
+//   header: int MAGIC, int VERSION, long stamp
+//   record: int length, int crc, long key, int mode, int opLen, byte[opLen] opCode, int codeLen, byte[codeLen] byteCode
+//
+// The stamp is derived from the compiler classes so that a cache written by a different build is discarded.
+// Records are only trusted up to the first one that fails its crc, a torn write at exit just loses that block.
+public class JitCache {
+    private static final int MAGIC = 0x4A44434A; // JDCJ
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static class Entry {
+        int mode;
+        int opPos;
+        int opLen;
+        int codePos;
+        int codeLen;
+    }
+
+    private static class WriteItem {
+        WriteItem(long key, int mode, byte[] opCode, byte[] byteCode) {
+            this.key = key;
+            this.mode = mode;
+            this.opCode = opCode;
+            this.byteCode = byteCode;
+        }
+        long key;
+        int mode;
+        byte[] opCode;
+        byte[] byteCode;
+    }
+
+    private static String fileName = null;
+    private static MappedByteBuffer mapped = null;
+    private static final Hashtable index = new Hashtable();
+    private static long validLength = 0;
+    private static long stamp = 0;
+
+    private static Thread writerThread = null;
+    private static final LinkedList writeQueue = new LinkedList();
+
+    public static int hits = 0;
+    public static int misses = 0;
+    public static int rejected = 0;
+    public static int written = 0;
+
+    public static boolean isEnabled() {
+        return fileName != null || SharedCode.enabled;
+    }
+
+    // Everything that changes how the same bytes are decoded and compiled
+    public static int getMode() {
+        int mode = CPU.CPU_ArchitectureType << 8;
+        if (CPU.cpu.code.big)
+            mode |= 0x01;
+        if (FPU.softFPU)
+            mode |= 0x02;
+        if (!FPU.shouldInline)
+            mode |= 0x04;
+        if (Compiler.cacheRegisters)
+            mode |= 0x08;
+        return mode;
+    }
+
+    public static void open(String name) {
+        close();
+        if (name == null || name.length() == 0)
+            return;
+        synchronized (JitCache.class) {
+            openFile(name);
+        }
+    }
+
+    private static void openFile(String name) {
+        stamp = getStamp();
+        fileName = name;
+        File file = new File(name);
+        if (!file.exists() || file.length() < HEADER_SIZE)
+            return;
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != stamp) {
+                System.out.println("JIT cache "+name+" was written by a different version, it will be rebuilt");
+                return;
+            }
+            int count = 0;
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= 8) {
+                int start = buffer.position();
+                int len = buffer.getInt();
+                int check = buffer.getInt();
+                if (len < 20 || len > buffer.remaining())
+                    break;
+                byte[] body = new byte[len];
+                buffer.get(body);
+                crc.reset();
+                crc.update(body);
+                if ((int)crc.getValue() != check)
+                    break;
+                ByteBuffer b = ByteBuffer.wrap(body);
+                Long key = new Long(b.getLong());
+                Entry entry = new Entry();
+                entry.mode = b.getInt();
+                entry.opLen = b.getInt();
+                entry.opPos = start + 8 + b.position();
+                b.position(b.position() + entry.opLen);
+                entry.codeLen = b.getInt();
+                entry.codePos = start + 8 + b.position();
+                if (entry.codeLen < 0 || b.position() + entry.codeLen != len)
+                    break;
+                Vector bucket = (Vector)index.get(key);
+                if (bucket == null) {
+                    bucket = new Vector();
+                    index.put(key, bucket);
+                }
+                bucket.addElement(entry);
+                count++;
+                validLength = buffer.position();
+            }
+            if (validLength == 0)
+                validLength = HEADER_SIZE;
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, validLength);
+            System.out.println("JIT cache loaded " + count + " blocks from " + name);
+        } catch (Exception e) {
+            e.printStackTrace();
+            index.clear();
+            validLength = 0;
+        } finally {
+            try {if (raf != null) raf.close();} catch (Exception e) {}
+        }
+    }
+
+    public static void close() {
+        flush();
+        synchronized (JitCache.class) {
+            fileName = null;
+            mapped = null;
+            index.clear();
+            validLength = 0;
+        }
+    }
+
+    // Blocks until everything queued so far is on disk
+    public static void flush() {
+        synchronized (writeQueue) {
+            while (!writeQueue.isEmpty()) {
+                try {writeQueue.wait();} catch (InterruptedException e) {break;}
+            }
+        }
+    }
+
+    public static Op load(int mode, byte[] opCode) {
+        if (mapped == null && !SharedCode.enabled)
+            return null;
+        long key = getKey(mode, opCode);
+        if (SharedCode.enabled) {
+            byte[] byteCode = SharedCode.get(key, mode, opCode);
+            if (byteCode != null) {
+                try {
+                    Op result = (Op)new BlockClassLoader().define(byteCode).newInstance();
+                    hits++;
+                    return result;
+                } catch (Throwable e) {
+                    rejected++;
+                }
+            }
+        }
+        if (mapped == null) {
+            misses++;
+            return null;
+        }
+        Vector bucket = (Vector)index.get(new Long(key));
+        if (bucket != null) {
+            for (int i=0;i<bucket.size();i++) {
+                Entry entry = (Entry)bucket.elementAt(i);
+                if (entry.mode != mode || entry.opLen != opCode.length)
+                    continue;
+                byte[] cached = new byte[entry.opLen];
+                ByteBuffer b = mapped.duplicate();
+                b.position(entry.opPos);
+                b.get(cached);
+                if (!Arrays.equals(cached, opCode))
+                    continue;
+                byte[] byteCode = new byte[entry.codeLen];
+                b.position(entry.codePos);
+                b.get(byteCode);
+                try {
+                    // its own class loader also keeps the CacheBlock names written by different runs from colliding
+                    Op result = (Op)new BlockClassLoader().define(byteCode).newInstance();
+                    hits++;
+                    return result;
+                } catch (Throwable e) {
+                    // the entry is unusable, don't try it again this run
+                    bucket.removeElementAt(i);
+                    rejected++;
+                    return null;
+                }
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    public static void store(int mode, byte[] opCode, byte[] byteCode) {
+        if (opCode == null || byteCode == null)
+            return;
+        if (SharedCode.enabled)
+            SharedCode.put(getKey(mode, opCode), mode, opCode, byteCode);
+        if (fileName == null)
+            return;
+        synchronized (writeQueue) {
+            if (writerThread == null) {
+                writerThread = new Thread(new Runnable() {
+                    public void run() {
+                        writeLoop();
+                    }
+                }, "JIT cache writer");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+            writeQueue.add(new WriteItem(getKey(mode, opCode), mode, opCode, byteCode));
+            writeQueue.notifyAll();
+        }
+    }
+
+    private static void writeLoop() {
+        try {
+            while (true) {
+                WriteItem item;
+                synchronized (writeQueue) {
+                    while (writeQueue.isEmpty())
+                        writeQueue.wait();
+                    item = (WriteItem)writeQueue.getFirst();
+                }
+                try {
+                    write(item);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                synchronized (writeQueue) {
+                    writeQueue.removeFirst();
+                    writeQueue.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+        }
+    }
+
+    private static synchronized void write(WriteItem item) throws Exception {
+        if (fileName == null)
+            return;
+        if (validLength == 0) {
+            File parent = new File(fileName).getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists())
+                parent.mkdirs();
+        }
+        RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+        try {
+            if (validLength == 0) {
+                // new file or one written by a different version
+                raf.setLength(0);
+                raf.writeInt(MAGIC);
+                raf.writeInt(VERSION);
+                raf.writeLong(stamp);
+                validLength = HEADER_SIZE;
+            } else if (raf.length() > validLength) {
+                // drop a partially written record from a previous run
+                raf.getChannel().truncate(validLength);
+            }
+            ByteBuffer body = ByteBuffer.allocate(20 + item.opCode.length + item.byteCode.length);
+            body.putLong(item.key);
+            body.putInt(item.mode);
+            body.putInt(item.opCode.length);
+            body.put(item.opCode);
+            body.putInt(item.byteCode.length);
+            body.put(item.byteCode);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            raf.seek(validLength);
+            raf.writeInt(body.capacity());
+            raf.writeInt((int)crc.getValue());
+            raf.write(body.array());
+            validLength = raf.getFilePointer();
+            written++;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static long getKey(int mode, byte[] opCode) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            md.update((byte)mode);
+            md.update((byte)(mode >> 8));
+            md.update((byte)(mode >> 16));
+            md.update((byte)(mode >> 24));
+            byte[] digest = md.digest(opCode);
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (Exception e) {
+            return Arrays.hashCode(opCode) ^ ((long)mode << 32);
+        }
+    }
+
+    private static long getStamp() {
+        CRC32 crc = new CRC32();
+        crc.update(VERSION);
+        String[] classes = new String[] {"Compiler.class", "Compiler2.class", "Op.class", "Helper.class"};
+        byte[] buffer = new byte[4096];
+        for (int i=0;i<classes.length;i++) {
+            InputStream is = JitCache.class.getResourceAsStream(classes[i]);
+            if (is == null)
+                continue;
+            try {
+                int read;
+                while ((read = is.read(buffer)) > 0)
+                    crc.update(buffer, 0, read);
+            } catch (Exception e) {
+            }
+            try {is.close();} catch (Exception e) {}
+        }
+        return crc.getValue();
+    }
+}
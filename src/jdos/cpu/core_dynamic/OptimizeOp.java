@@ -0,0 +1,25 @@
+package jdos.cpu.core_dynamic;
+
+// Stands in for a compiled block while the compiler works on the optimized version of it, see BlockProfile.hot.
+// Like DecodeBlock it keeps running the code the block already had and swaps itself out once the compiler
+// thread is done.
+final public class OptimizeOp extends Op {
+    public CacheBlockDynRec parent;
+    public Op compiled;
+    public CacheBlockDynRec[] blocks; // the blocks FlagLiveness looked at, the first is parent
+    public int[] generations;
+    public int liveOut; // flags that can be read after the block, all the others can be left out at the end of it
+    public volatile Op optimizedOp = null;
+    public volatile boolean failed = false;
+
+    public boolean throwsException() {return true;}
+    public boolean accessesMemory() {return true;}
+    public boolean usesEip() {return true;}
+    public boolean setsEip() {return true;}
+
+    final public int call() {
+        if (optimizedOp != null || failed)
+            return BlockProfile.install(this).call();
+        return compiled.call();
+    }
+}
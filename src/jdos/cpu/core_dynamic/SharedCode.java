@@ -0,0 +1,59 @@
+package jdos.cpu.core_dynamic;
+
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Vector;
+
+// Bytecode of compiled blocks shared by every emulator running in this JVM.
+//
+// jdos.Instances runs each emulator in its own class loader, so each one has its own copy of every static
+// including JitCache.  This class is the exception, Instances loads it from the parent class loader so there is
+// only one of it.  A block that one instance has compiled is only defined again by the next instance that needs
+// it instead of going through javassist.  Only JDK types cross the class loaders.
+public class SharedCode {
+    private static class Entry {
+        int mode;
+        byte[] opCode;
+        byte[] byteCode;
+    }
+
+    public static boolean enabled = false;
+    private static final Hashtable index = new Hashtable();
+
+    public static int hits = 0;
+    public static int blocks = 0;
+
+    public static synchronized byte[] get(long key, int mode, byte[] opCode) {
+        Vector bucket = (Vector)index.get(new Long(key));
+        if (bucket != null) {
+            for (int i=0;i<bucket.size();i++) {
+                Entry entry = (Entry)bucket.elementAt(i);
+                if (entry.mode == mode && Arrays.equals(entry.opCode, opCode)) {
+                    hits++;
+                    return entry.byteCode;
+                }
+            }
+        }
+        return null;
+    }
+
+    public static synchronized void put(long key, int mode, byte[] opCode, byte[] byteCode) {
+        Long k = new Long(key);
+        Vector bucket = (Vector)index.get(k);
+        if (bucket == null) {
+            bucket = new Vector();
+            index.put(k, bucket);
+        }
+        for (int i=0;i<bucket.size();i++) {
+            Entry entry = (Entry)bucket.elementAt(i);
+            if (entry.mode == mode && Arrays.equals(entry.opCode, opCode))
+                return; // another instance compiled it at the same time
+        }
+        Entry entry = new Entry();
+        entry.mode = mode;
+        entry.opCode = opCode;
+        entry.byteCode = byteCode;
+        bucket.addElement(entry);
+        blocks++;
+    }
+}
@@ -0,0 +1,135 @@
+package jdos.cpu.core_dynamic;
+
+// A trace is a group of compiled cache blocks that link to each other, usually a loop whose back edge links
+// to the block it started in.  The compiler turns it into a single TraceOp whose call method jumps between
+// the blocks internally instead of returning to Core_dynamic on every BR_Link1/BR_Link2.
+//
+// Everything here runs on the emulation thread, only the code generation happens on the compiler threads.
+public class Trace {
+    static public final int MAX_BLOCKS = 8;
+
+    // how many times a block must be reached through a link before a trace is tried, 0 turns traces off
+    static public int threshold = 0;
+    // how often a pending or rejected trace is looked at again
+    static private final int RECHECK = 64;
+
+    static public int built = 0;
+    static public int installed = 0;
+    static public int abandoned = 0;
+    static public int invalidated = 0;
+
+    public CacheBlockDynRec[] blocks;
+    public Op[] ops;
+    public int[] generations;
+    public int[][] targets; // index of the block that link[0] and link[1] go to, -1 if it leaves the trace
+    public Op original;
+    public volatile TraceOp op;
+    public volatile boolean failed = false;
+
+    // block was just entered through one of its links and its linkHits reached the threshold
+    static public void hot(CacheBlockDynRec block) {
+        if (threshold <= 0)
+            return;
+        Trace trace = block.trace;
+        if (trace == null) {
+            trace = build(block);
+            if (trace == null) {
+                // not all of it is compiled yet, look again later
+                block.linkHits = 0;
+                return;
+            }
+            block.trace = trace;
+            block.linkHits = threshold - RECHECK;
+            built++;
+            Compiler.compile(trace);
+            return;
+        }
+        if (trace.op == null && !trace.failed) {
+            // still in the compiler queue
+            block.linkHits = threshold - RECHECK;
+            return;
+        }
+        block.trace = null;
+        block.linkHits = Integer.MIN_VALUE;
+        if (trace.op != null && block.code == trace.original && trace.isValid()) {
+            block.code = trace.op;
+            installed++;
+        } else {
+            abandoned++;
+        }
+    }
+
+    static private Trace build(CacheBlockDynRec head) {
+        if (!isCompiled(head))
+            return null;
+        CacheBlockDynRec[] blocks = new CacheBlockDynRec[MAX_BLOCKS];
+        int count = 0;
+        blocks[count++] = head;
+        // breadth first along the links, only blocks that have been compiled can be part of the trace
+        for (int i=0;i<count;i++) {
+            for (int l=0;l<2;l++) {
+                CacheBlockDynRec to = blocks[i].link[l].to;
+                if (to == null || !isCompiled(to) || indexOf(blocks, count, to)>=0)
+                    continue;
+                if (count == MAX_BLOCKS)
+                    break;
+                blocks[count++] = to;
+            }
+        }
+        boolean loop = false;
+        int[][] targets = new int[count][2];
+        for (int i=0;i<count;i++) {
+            for (int l=0;l<2;l++) {
+                targets[i][l] = blocks[i].link[l].to == null ? -1 : indexOf(blocks, count, blocks[i].link[l].to);
+                if (targets[i][l] == 0)
+                    loop = true;
+            }
+        }
+        // a straight chain would only save a single trip through the dispatcher
+        if (!loop)
+            return null;
+        Trace trace = new Trace();
+        trace.blocks = new CacheBlockDynRec[count];
+        trace.ops = new Op[count];
+        trace.generations = new int[count];
+        for (int i=0;i<count;i++) {
+            trace.blocks[i] = blocks[i];
+            trace.ops[i] = blocks[i].code;
+            trace.generations[i] = blocks[i].generation;
+        }
+        trace.targets = targets;
+        trace.original = head.code;
+        return trace;
+    }
+
+    // A block is compiled once Core_dynamic runs the compiled op directly instead of through the DecodeBlock
+    static private boolean isCompiled(CacheBlockDynRec block) {
+        return block.code != null && !(block.code instanceof DecodeBlock) && !(block.code instanceof TraceOp) && !(block.code instanceof OptimizeOp);
+    }
+
+    static private int indexOf(CacheBlockDynRec[] blocks, int count, CacheBlockDynRec block) {
+        for (int i=0;i<count;i++) {
+            if (blocks[i] == block)
+                return i;
+        }
+        return -1;
+    }
+
+    public boolean isValid() {
+        for (int i=0;i<blocks.length;i++) {
+            if (blocks[i].generation != generations[i] || blocks[i].code != (i==0?original:ops[i]))
+                return false;
+        }
+        return true;
+    }
+
+    // Called by TraceOp when it reaches a block that has been cleared since the trace was built
+    static void invalidate(TraceOp op) {
+        CacheBlockDynRec head = op.blocks[0];
+        if (head.code == op) {
+            head.code = op.original;
+            head.linkHits = 0;
+        }
+        invalidated++;
+    }
+}
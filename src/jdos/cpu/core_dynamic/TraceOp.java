@@ -0,0 +1,22 @@
+package jdos.cpu.core_dynamic;
+
+// Base class of the code generated by Compiler for a Trace.  The generated call method runs ops[0], and
+// every time a block returns BR_Link1/BR_Link2 to another block of the trace it checks the cycles and the
+// generation of both blocks before it jumps straight to the other block's op.
+abstract public class TraceOp extends Op {
+    public CacheBlockDynRec[] blocks;
+    public Op[] ops;
+    public Op original;
+
+    public boolean throwsException() {return true;}
+    public boolean accessesMemory() {return true;}
+    public boolean usesEip() {return true;}
+    public boolean setsEip() {return true;}
+
+    // One of the blocks has been cleared, put the head block back to its own compiled code and let
+    // Core_dynamic handle the link
+    protected int invalid(int ret) {
+        Trace.invalidate(this);
+        return ret;
+    }
+}
@@ -126,7 +126,7 @@ public class Decoder extends Helper {
             }
         }
     }
-    private static int instruction8(SwitchBlock block, Inst r, Inst e) {
+    private static int instruction8(SwitchBlock block, int r, int e) {
         int rm = decode_fetchb();
         if (rm >= 0xc0 ) {
             block.instruction = r;
@@ -140,16 +140,16 @@ public class Decoder extends Helper {
         return rm;
     }
 
-    private static void instruction(SwitchBlock block, Inst i, Reg reg, int value) {
+    private static void instruction(SwitchBlock block, int i, Reg reg, int value) {
         block.instruction = i;
         block.r1 = reg;
         block.value = value;
     }
-    private static void instruction(SwitchBlock block, Inst i, Reg reg) {
+    private static void instruction(SwitchBlock block, int i, Reg reg) {
         block.instruction = i;
         block.r1 = reg;
     }
-    private static void instruction8_r(SwitchBlock block, Inst r, Inst e) {
+    private static void instruction8_r(SwitchBlock block, int r, int e) {
         int rm = decode_fetchb();
         if (rm >= 0xc0 ) {
             block.instruction = r;
@@ -162,7 +162,7 @@ public class Decoder extends Helper {
         }
     }
 
-    private static void doString(SwitchBlock block, Inst instruction, int type, int width) {
+    private static void doString(SwitchBlock block, int instruction, int type, int width) {
         block.instruction = instruction;
         block.value = type;
         block.eaa_const = prefixes;
@@ -175,7 +175,7 @@ public class Decoder extends Helper {
         }
     }
 
-    private static void doFastString(SwitchBlock block, Inst i16, Inst i16r, Inst i32, Inst i32r) {
+    private static void doFastString(SwitchBlock block, int i16, int i16r, int i32, int i32r) {
         if (block.eaa_segVal==null) {block.eaa_segVal=reg_dsVal;block.eaa_segPhys=reg_dsPhys;}
         if ((prefixes & Core.PREFIX_ADDR)==0) {
             if ((prefixes & Core.PREFIX_REP)==0) {
@@ -192,7 +192,7 @@ public class Decoder extends Helper {
         }
     }
 
-    private static void instruction(SwitchBlock block, Inst r, Inst e) {
+    private static void instruction(SwitchBlock block, int r, int e) {
         int rm = decode_fetchb();
         if (rm >= 0xc0 ) {
             block.instruction = r;
@@ -205,7 +205,7 @@ public class Decoder extends Helper {
         }
     }
 
-    private static void instructionE32(SwitchBlock block, Inst r, Inst e) {
+    private static void instructionE32(SwitchBlock block, int r, int e) {
         int rm = decode_fetchb();
         if (rm >= 0xc0 ) {
             block.instruction = r;
@@ -216,7 +216,7 @@ public class Decoder extends Helper {
         }
     }
 
-    private static void instruction_r(SwitchBlock block, Inst r, Inst e) {
+    private static void instruction_r(SwitchBlock block, int r, int e) {
         int rm = decode_fetchb();
         if (rm >= 0xc0 ) {
             block.instruction = r;
@@ -489,10 +489,9 @@ public class Decoder extends Helper {
         decode.code=start;
         decode.page.code=codepage;
         decode.page.index=start & 4095;
-        decode.page.wmap=codepage.write_map;
         decode.page.invmap=codepage.invalidation_map;
         decode.page.first=start >>> 12;
-        decode.active_block=decode.block=Cache.cache_openblock();
+        decode.active_block=decode.block=Cache.cache_openblock(codepage);
         decode.block.page.start=decode.page.index;
         decode.setTLB(start);
         codepage.AddCacheBlock(decode.block);
@@ -2461,8 +2460,7 @@ public class Decoder extends Helper {
         }
         Cache.cache_closeblock();
         decode.active_block.page.end=--decode.page.index;
-        decode.block.inst = new SwitchBlock[currentInst];
-        System.arraycopy(inst, 0, decode.block.inst, 0, currentInst);
+        decode.block.inst = new SwitchCode(inst, currentInst);
         return decode.block;
     }
 }
@@ -1,163 +1,167 @@
 package jdos.cpu.core_switch;
 
-public enum Inst {
-    ADD_R8, ADD_E8, ADD_R8_R8, ADD_E8_R8, ADD_R8_E8,
-    ADD_R16, ADD_E16, ADD_R16_R16, ADD_E16_R16, ADD_R16_E16,
-    ADD_R32, ADD_E32, ADD_R32_R32, ADD_E32_R32, ADD_R32_E32,
+// The instructions of the switch core.  They are plain ints instead of an enum so that SwitchCode can store them in an
+// int[] and Core_switch can switch on them directly, a switch on an enum first looks the ordinal up in a second table.
+public final class Inst {
+    public static final int
+        ADD_R8=0, ADD_E8=1, ADD_R8_R8=2, ADD_E8_R8=3, ADD_R8_E8=4,
+        ADD_R16=5, ADD_E16=6, ADD_R16_R16=7, ADD_E16_R16=8, ADD_R16_E16=9,
+        ADD_R32=10, ADD_E32=11, ADD_R32_R32=12, ADD_E32_R32=13, ADD_R32_E32=14,
 
-    OR_R8, OR_E8, OR_R8_R8, OR_E8_R8, OR_R8_E8,
-    OR_R16, OR_E16, OR_R16_R16, OR_E16_R16, OR_R16_E16,
-    OR_R32, OR_E32, OR_R32_R32, OR_E32_R32, OR_R32_E32,
+        OR_R8=15, OR_E8=16, OR_R8_R8=17, OR_E8_R8=18, OR_R8_E8=19,
+        OR_R16=20, OR_E16=21, OR_R16_R16=22, OR_E16_R16=23, OR_R16_E16=24,
+        OR_R32=25, OR_E32=26, OR_R32_R32=27, OR_E32_R32=28, OR_R32_E32=29,
 
-    ADC_R8, ADC_E8, ADC_R8_R8, ADC_E8_R8, ADC_R8_E8,
-    ADC_R16, ADC_E16, ADC_R16_R16, ADC_E16_R16, ADC_R16_E16,
-    ADC_R32, ADC_E32, ADC_R32_R32, ADC_E32_R32, ADC_R32_E32,
+        ADC_R8=30, ADC_E8=31, ADC_R8_R8=32, ADC_E8_R8=33, ADC_R8_E8=34,
+        ADC_R16=35, ADC_E16=36, ADC_R16_R16=37, ADC_E16_R16=38, ADC_R16_E16=39,
+        ADC_R32=40, ADC_E32=41, ADC_R32_R32=42, ADC_E32_R32=43, ADC_R32_E32=44,
 
-    SBB_R8, SBB_E8, SBB_R8_R8, SBB_E8_R8, SBB_R8_E8,
-    SBB_R16, SBB_E16, SBB_R16_R16, SBB_E16_R16, SBB_R16_E16,
-    SBB_R32, SBB_E32, SBB_R32_R32, SBB_E32_R32, SBB_R32_E32,
+        SBB_R8=45, SBB_E8=46, SBB_R8_R8=47, SBB_E8_R8=48, SBB_R8_E8=49,
+        SBB_R16=50, SBB_E16=51, SBB_R16_R16=52, SBB_E16_R16=53, SBB_R16_E16=54,
+        SBB_R32=55, SBB_E32=56, SBB_R32_R32=57, SBB_E32_R32=58, SBB_R32_E32=59,
 
-    AND_R8, AND_E8, AND_R8_R8, AND_E8_R8, AND_R8_E8,
-    AND_R16, AND_E16, AND_R16_R16, AND_E16_R16, AND_R16_E16,
-    AND_R32, AND_E32, AND_R32_R32, AND_E32_R32, AND_R32_E32,
+        AND_R8=60, AND_E8=61, AND_R8_R8=62, AND_E8_R8=63, AND_R8_E8=64,
+        AND_R16=65, AND_E16=66, AND_R16_R16=67, AND_E16_R16=68, AND_R16_E16=69,
+        AND_R32=70, AND_E32=71, AND_R32_R32=72, AND_E32_R32=73, AND_R32_E32=74,
 
-    SUB_R8, SUB_E8, SUB_R8_R8, SUB_E8_R8, SUB_R8_E8,
-    SUB_R16, SUB_E16, SUB_R16_R16, SUB_E16_R16, SUB_R16_E16,
-    SUB_R32, SUB_E32, SUB_R32_R32, SUB_E32_R32, SUB_R32_E32,
+        SUB_R8=75, SUB_E8=76, SUB_R8_R8=77, SUB_E8_R8=78, SUB_R8_E8=79,
+        SUB_R16=80, SUB_E16=81, SUB_R16_R16=82, SUB_E16_R16=83, SUB_R16_E16=84,
+        SUB_R32=85, SUB_E32=86, SUB_R32_R32=87, SUB_E32_R32=88, SUB_R32_E32=89,
 
-    XOR_R8, XOR_E8, XOR_R8_R8, XOR_E8_R8, XOR_R8_E8,
-    XOR_R16, XOR_E16, XOR_R16_R16, XOR_E16_R16, XOR_R16_E16,
-    XOR_R32, XOR_E32, XOR_R32_R32, XOR_E32_R32, XOR_R32_E32,
+        XOR_R8=90, XOR_E8=91, XOR_R8_R8=92, XOR_E8_R8=93, XOR_R8_E8=94,
+        XOR_R16=95, XOR_E16=96, XOR_R16_R16=97, XOR_E16_R16=98, XOR_R16_E16=99,
+        XOR_R32=100, XOR_E32=101, XOR_R32_R32=102, XOR_E32_R32=103, XOR_R32_E32=104,
 
-    CMP_R8, CMP_E8, CMP_R8_R8, CMP_E8_R8, CMP_R8_E8,
-    CMP_R16, CMP_E16, CMP_R16_R16, CMP_E16_R16, CMP_R16_E16,
-    CMP_R32, CMP_E32, CMP_R32_R32, CMP_E32_R32, CMP_R32_E32,
+        CMP_R8=105, CMP_E8=106, CMP_R8_R8=107, CMP_E8_R8=108, CMP_R8_E8=109,
+        CMP_R16=110, CMP_E16=111, CMP_R16_R16=112, CMP_E16_R16=113, CMP_R16_E16=114,
+        CMP_R32=115, CMP_E32=116, CMP_R32_R32=117, CMP_E32_R32=118, CMP_R32_E32=119,
 
-    PUSH16_ES, POP16_ES, PUSH16_CS, /*POP16CS,*/ PUSH16_SS, POP16_SS,
-    PUSH16_DS, POP16_DS, PUSH16_FS, POP16_FS, PUSH16_GS, POP16_GS,
+        PUSH16_ES=120, POP16_ES=121, PUSH16_CS=122, PUSH16_SS=123, POP16_SS=124,
+        PUSH16_DS=125, POP16_DS=126, PUSH16_FS=127, POP16_FS=128, PUSH16_GS=129, POP16_GS=130,
 
-    PUSH32_ES, POP32_ES, PUSH32_CS, /*POP32CS,*/ PUSH32_SS, POP32_SS,
-    PUSH32_DS, POP32_DS, PUSH32_FS, POP32_FS, PUSH32_GS, POP32_GS,
-    
-    NOP, ILLEGAL, HLT,
-    
-    DAA, DAS, AAA, AAS,
+        PUSH32_ES=131, POP32_ES=132, PUSH32_CS=133, PUSH32_SS=134, POP32_SS=135,
+        PUSH32_DS=136, POP32_DS=137, PUSH32_FS=138, POP32_FS=139, PUSH32_GS=140, POP32_GS=141,
 
-    INC_R8, INC_E8, INC_R16, INC_E16, INC_R32, INC_E32,
-    DEC_R8, DEC_E8, DEC_R16, DEC_E16, DEC_R32, DEC_E32,
-    
-    PUSH16, PUSH16_R16, PUSH16_E16, PUSH32, PUSH32_R32, PUSH32_E32,
-    POP16, POP16_R16, POP16_E16, POP32, POP32_R32, POP32_E32,
+        NOP=142, ILLEGAL=143, HLT=144,
 
-    PUSH16A, PUSH32A, POP16A, POP32A,
+        DAA=145, DAS=146, AAA=147, AAS=148,
 
-    BOUND16, BOUND32,
+        INC_R8=149, INC_E8=150, INC_R16=151, INC_E16=152, INC_R32=153, INC_E32=154,
+        DEC_R8=155, DEC_E8=156, DEC_R16=157, DEC_E16=158, DEC_R32=159, DEC_E32=160,
 
-    ARPL_R16_R16, ARPL_R16_E16, ARPL_R32_R32, ARPL_R32_E32,
+        PUSH16=161, PUSH16_R16=162, PUSH16_E16=163, PUSH32=164, PUSH32_R32=165, PUSH32_E32=166,
+        POP16=167, POP16_R16=168, POP16_E16=169, POP32=170, POP32_R32=171, POP32_E32=172,
 
-    IMUL_R16_R16, IMUL_R16_E16, IMUL_R32_R32, IMUL_R32_E32,    
+        PUSH16A=173, PUSH32A=174, POP16A=175, POP32A=176,
 
-    STRING_EXCEPTION, STRING,
+        BOUND16=177, BOUND32=178,
 
-    JUMP16_JO, JUMP16_NJO, JUMP16_B, JUMP16_NB, JUMP16_Z, JUMP16_NZ, JUMP16_BE, JUMP16_NBE,
-    JUMP16_S, JUMP16_NS, JUMP16_P, JUMP16_NP, JUMP16_L, JUMP16_NL, JUMP16_LE, JUMP16_NLE,
+        ARPL_R16_R16=179, ARPL_R16_E16=180, ARPL_R32_R32=181, ARPL_R32_E32=182,
 
-    JUMP32_JO, JUMP32_NJO, JUMP32_B, JUMP32_NB, JUMP32_Z, JUMP32_NZ, JUMP32_BE, JUMP32_NBE,
-    JUMP32_S, JUMP32_NS, JUMP32_P, JUMP32_NP, JUMP32_L, JUMP32_NL, JUMP32_LE, JUMP32_NLE,
-    
-    TEST_R8, TEST_E8, TEST_R8_R8, TEST_E8_R8,
-    TEST_R16, TEST_E16, TEST_R16_R16, TEST_E16_R16,
-    TEST_R32, TEST_E32, TEST_R32_R32, TEST_E32_R32,
+        IMUL_R16_R16=183, IMUL_R16_E16=184, IMUL_R32_R32=185, IMUL_R32_E32=186,
 
-    XCHG_R8_R8, XCHG_E8_R8, XCHG_R16_R16, XCHG_E16_R16, XCHG_R32_R32, XCHG_E32_R32,
+        STRING_EXCEPTION=187, STRING=188,
 
-    MOV_R8, MOV_E8, MOV_R8_R8, MOV_E8_R8, MOV_R8_E8, MOV_E8_R8_RM5,
-    MOV_R16, MOV_E16, MOV_R16_R16, MOV_E16_R16, MOV_R16_E16,
-    MOV_R32, MOV_E32, MOV_R32_R32, MOV_E32_R32, MOV_R32_E32,
+        JUMP16_JO=189, JUMP16_NJO=190, JUMP16_B=191, JUMP16_NB=192, JUMP16_Z=193, JUMP16_NZ=194, JUMP16_BE=195, JUMP16_NBE=196,
+        JUMP16_S=197, JUMP16_NS=198, JUMP16_P=199, JUMP16_NP=200, JUMP16_L=201, JUMP16_NL=202, JUMP16_LE=203, JUMP16_NLE=204,
 
-    LEA_R16, LEA_R32,
+        JUMP32_JO=205, JUMP32_NJO=206, JUMP32_B=207, JUMP32_NB=208, JUMP32_Z=209, JUMP32_NZ=210, JUMP32_BE=211, JUMP32_NBE=212,
+        JUMP32_S=213, JUMP32_NS=214, JUMP32_P=215, JUMP32_NP=216, JUMP32_L=217, JUMP32_NL=218, JUMP32_LE=219, JUMP32_NLE=220,
 
-    MOV_ES_R16, MOV_ES_E16, MOV_SS_R16, MOV_SS_E16, MOV_DS_R16, MOV_DS_E16, MOV_FS_R16, MOV_FS_E16, MOV_GS_R16, MOV_GS_E16,
+        TEST_R8=221, TEST_E8=222, TEST_R8_R8=223, TEST_E8_R8=224,
+        TEST_R16=225, TEST_E16=226, TEST_R16_R16=227, TEST_E16_R16=228,
+        TEST_R32=229, TEST_E32=230, TEST_R32_R32=231, TEST_E32_R32=232,
 
-    CBW, CWD, CBWE, CDQ,
-        
-    PUSHF, POPF,
+        XCHG_R8_R8=233, XCHG_E8_R8=234, XCHG_R16_R16=235, XCHG_E16_R16=236, XCHG_R32_R32=237, XCHG_E32_R32=238,
 
-    SAHF, LAHF,
+        MOV_R8=239, MOV_E8=240, MOV_R8_R8=241, MOV_E8_R8=242, MOV_R8_E8=243, MOV_E8_R8_RM5=244,
+        MOV_R16=245, MOV_E16=246, MOV_R16_R16=247, MOV_E16_R16=248, MOV_R16_E16=249,
+        MOV_R32=250, MOV_E32=251, MOV_R32_R32=252, MOV_E32_R32=253, MOV_R32_E32=254,
 
-    MOV_AL_0b, MOV_0b_AL, MOV_AX_0w, MOV_0w_AX, MOV_EAX_0d, MOV_0d_EAX,
+        LEA_R16=255, LEA_R32=256,
 
-    MOVSB16, MOVSB16r, MOVSB32, MOVSB32r, MOVSW16, MOVSW16r, MOVSW32, MOVSW32r, MOVSD16, MOVSD16r, MOVSD32, MOVSD32r,
+        MOV_ES_R16=257, MOV_ES_E16=258, MOV_SS_R16=259, MOV_SS_E16=260, MOV_DS_R16=261, MOV_DS_E16=262, MOV_FS_R16=263, MOV_FS_E16=264, MOV_GS_R16=265, MOV_GS_E16=266,
 
-    ROLB_0_flags, RORB_0_flags, ROLB_E8_0_flags, RORB_E8_0_flags,
-    ROLB_R8, ROLB_E8, ROLB_R8_CL, ROLB_E8_CL,    
-    RORB_R8, RORB_E8, RORB_R8_CL, RORB_E8_CL,
-    RCLB_R8, RCLB_E8, RCLB_R8_CL, RCLB_E8_CL,
-    RCRB_R8, RCRB_E8, RCRB_R8_CL, RCRB_E8_CL,
-    SHLB_R8, SHLB_E8, SHLB_R8_CL, SHLB_E8_CL,
-    SHRB_R8, SHRB_E8, SHRB_R8_CL, SHRB_E8_CL,
-    SARB_R8, SARB_E8, SARB_R8_CL, SARB_E8_CL,
+        CBW=267, CWD=268, CBWE=269, CDQ=270,
 
-    ROLW_0_flags, RORW_0_flags, ROLW_E16_0_flags, RORW_E16_0_flags,
-    ROLW_R16, ROLW_E16, ROLW_R16_CL, ROLW_E16_CL,
-    RORW_R16, RORW_E16, RORW_R16_CL, RORW_E16_CL,
-    RCLW_R16, RCLW_E16, RCLW_R16_CL, RCLW_E16_CL,
-    RCRW_R16, RCRW_E16, RCRW_R16_CL, RCRW_E16_CL,
-    SHLW_R16, SHLW_E16, SHLW_R16_CL, SHLW_E16_CL,
-    SHRW_R16, SHRW_E16, SHRW_R16_CL, SHRW_E16_CL,
-    SARW_R16, SARW_E16, SARW_R16_CL, SARW_E16_CL,
+        PUSHF=271, POPF=272,
 
-    ROLD_R32, ROLD_E32, ROLD_R32_CL, ROLD_E32_CL,
-    RORD_R32, RORD_E32, RORD_R32_CL, RORD_E32_CL,
-    RCLD_R32, RCLD_E32, RCLD_R32_CL, RCLD_E32_CL,
-    RCRD_R32, RCRD_E32, RCRD_R32_CL, RCRD_E32_CL,
-    SHLD_R32, SHLD_E32, SHLD_R32_CL, SHLD_E32_CL,
-    SHRD_R32, SHRD_E32, SHRD_R32_CL, SHRD_E32_CL,
-    SARD_R32, SARD_E32, SARD_R32_CL, SARD_E32_CL,
+        SAHF=273, LAHF=274,
 
-    LES16, LES32, LDS16, LDS32,
+        MOV_AL_0b=275, MOV_0b_AL=276, MOV_AX_0w=277, MOV_0w_AX=278, MOV_EAX_0d=279, MOV_0d_EAX=280,
 
-    CALL16_AP, CALL16_EP, CALL16_Jw, CALL16_R16, CALL16_E16, CALL16_EP_E16,
-    CALL32_AP, CALL32_EP, CALL32_Jd, CALL32_R16, CALL32_E16, CALL32_EP_E32,
-    RETN16_Iw, RETN16, RETF_Iw, RETN32_Iw, RETN32, RETF32_Iw,
-    ENTER, LEAVE16, LEAVE32,
-    JMP16, JMP_AP, JMP16_R16, JMP16_E16, JMP16_EP,
-    JMP32, JMP32_R32, JMP32_E32, JMP32_EP,
+        MOVSB16=281, MOVSB16r=282, MOVSB32=283, MOVSB32r=284, MOVSW16=285, MOVSW16r=286, MOVSW32=287, MOVSW32r=288, MOVSD16=289, MOVSD16r=290, MOVSD32=291, MOVSD32r=292,
 
-    INT3, INTIb, INTO, IRET, ICEBP,
+        ROLB_0_flags=293, RORB_0_flags=294, ROLB_E8_0_flags=295, RORB_E8_0_flags=296,
+        ROLB_R8=297, ROLB_E8=298, ROLB_R8_CL=299, ROLB_E8_CL=300,
+        RORB_R8=301, RORB_E8=302, RORB_R8_CL=303, RORB_E8_CL=304,
+        RCLB_R8=305, RCLB_E8=306, RCLB_R8_CL=307, RCLB_E8_CL=308,
+        RCRB_R8=309, RCRB_E8=310, RCRB_R8_CL=311, RCRB_E8_CL=312,
+        SHLB_R8=313, SHLB_E8=314, SHLB_R8_CL=315, SHLB_E8_CL=316,
+        SHRB_R8=317, SHRB_E8=318, SHRB_R8_CL=319, SHRB_E8_CL=320,
+        SARB_R8=321, SARB_E8=322, SARB_R8_CL=323, SARB_E8_CL=324,
 
-    AAM, AAD,
+        ROLW_0_flags=325, RORW_0_flags=326, ROLW_E16_0_flags=327, RORW_E16_0_flags=328,
+        ROLW_R16=329, ROLW_E16=330, ROLW_R16_CL=331, ROLW_E16_CL=332,
+        RORW_R16=333, RORW_E16=334, RORW_R16_CL=335, RORW_E16_CL=336,
+        RCLW_R16=337, RCLW_E16=338, RCLW_R16_CL=339, RCLW_E16_CL=340,
+        RCRW_R16=341, RCRW_E16=342, RCRW_R16_CL=343, RCRW_E16_CL=344,
+        SHLW_R16=345, SHLW_E16=346, SHLW_R16_CL=347, SHLW_E16_CL=348,
+        SHRW_R16=349, SHRW_E16=350, SHRW_R16_CL=351, SHRW_E16_CL=352,
+        SARW_R16=353, SARW_E16=354, SARW_R16_CL=355, SARW_E16_CL=356,
 
-    SALC, CMC, CLC, STC,
+        ROLD_R32=357, ROLD_E32=358, ROLD_R32_CL=359, ROLD_E32_CL=360,
+        RORD_R32=361, RORD_E32=362, RORD_R32_CL=363, RORD_E32_CL=364,
+        RCLD_R32=365, RCLD_E32=366, RCLD_R32_CL=367, RCLD_E32_CL=368,
+        RCRD_R32=369, RCRD_E32=370, RCRD_R32_CL=371, RCRD_E32_CL=372,
+        SHLD_R32=373, SHLD_E32=374, SHLD_R32_CL=375, SHLD_E32_CL=376,
+        SHRD_R32=377, SHRD_E32=378, SHRD_R32_CL=379, SHRD_E32_CL=380,
+        SARD_R32=381, SARD_E32=382, SARD_R32_CL=383, SARD_E32_CL=384,
 
-    XLAT16, XLAT32,
+        LES16=385, LES32=386, LDS16=387, LDS32=388,
 
-    LOOPNZ16_CX, LOOPNZ16_ECX, LOOPZ16_CX, LOOPZ16_ECX, LOOP16_CX, LOOP16_ECX, JCXZ16_CX, JCXZ16_ECX,
-    LOOPNZ32_CX, LOOPNZ32_ECX, LOOPZ32_CX, LOOPZ32_ECX, LOOP32_CX, LOOP32_ECX, JCXZ32_CX, JCXZ32_ECX,
+        CALL16_AP=389, CALL16_EP=390, CALL16_Jw=391, CALL16_R16=392, CALL16_E16=393, CALL16_EP_E16=394,
+        CALL32_AP=395, CALL32_EP=396, CALL32_Jd=397, CALL32_R16=398, CALL32_E16=399, CALL32_EP_E32=400,
+        RETN16_Iw=401, RETN16=402, RETF_Iw=403, RETN32_Iw=404, RETN32=405, RETF32_Iw=406,
+        ENTER=407, LEAVE16=408, LEAVE32=409,
+        JMP16=410, JMP_AP=411, JMP16_R16=412, JMP16_E16=413, JMP16_EP=414,
+        JMP32=415, JMP32_R32=416, JMP32_E32=417, JMP32_EP=418,
 
-    IN_AL_Ib, IN_AX_Ib, IN_EAX_Ib, OUT_Ib_AL, OUT_Ib_AX, OUT_Ib_EAX,
-    IN_AL_DX, IN_AX_DX, IN_EAX_DX, OUT_DX_AL, OUT_DX_AX, OUT_DX_EAX,
+        INT3=419, INTIb=420, INTO=421, IRET=422, ICEBP=423,
 
-    NOT_R8, NOT_E8, NOT_R16, NOT_E16, NOT_R32, NOT_E32,
+        AAM=424, AAD=425,
 
-    NEG_R8, NEG_E8, NEG_R16, NEG_E16, NEG_R32, NEG_E32,
+        SALC=426, CMC=427, CLC=428, STC=429,
 
-    MUL_R8, MUL_E8, MUL_R16, MUL_E16, MUL_R32, MUL_E32,
-    IMUL_R8, IMUL_E8, IMUL_R16, IMUL_E16, IMUL_R32, IMUL_E32,
-    DIV_R8, DIV_E8, DIV_R16, DIV_E16, DIV_R32, DIV_E32,
-    IDIV_R8, IDIV_E8, IDIV_R16, IDIV_E16, IDIV_R32, IDIV_E32,
+        XLAT16=430, XLAT32=431,
 
-    CLI, STI,
-    
-    CLD, STD,
+        LOOPNZ16_CX=432, LOOPNZ16_ECX=433, LOOPZ16_CX=434, LOOPZ16_ECX=435, LOOP16_CX=436, LOOP16_ECX=437, JCXZ16_CX=438, JCXZ16_ECX=439,
+        LOOPNZ32_CX=440, LOOPNZ32_ECX=441, LOOPZ32_CX=442, LOOPZ32_ECX=443, LOOP32_CX=444, LOOP32_ECX=445, JCXZ32_CX=446, JCXZ32_ECX=447,
 
-    CALLBACK, MODIFIED,
+        IN_AL_Ib=448, IN_AX_Ib=449, IN_EAX_Ib=450, OUT_Ib_AL=451, OUT_Ib_AX=452, OUT_Ib_EAX=453,
+        IN_AL_DX=454, IN_AX_DX=455, IN_EAX_DX=456, OUT_DX_AL=457, OUT_DX_AX=458, OUT_DX_EAX=459,
 
-    SLDT_R16, SLDT_E16, STR_R16, STR_E16, LLDT_R16, LLDT_E16, LTR_R16, LTR_E16, VERR_R16, VERR_E16, VERW_R16, VERW_E16,
+        NOT_R8=460, NOT_E8=461, NOT_R16=462, NOT_E16=463, NOT_R32=464, NOT_E32=465,
 
-    SGDT, SIDT, LGDT16, LGDT32, LIDT16, LIDT32, SMSW_E16, LMSW_E16, INVLPG, LGDT_R, LIDT_R, SMSW_R16, LMSW_R16, SMSW_R32,
+        NEG_R8=466, NEG_E8=467, NEG_R16=468, NEG_E16=469, NEG_R32=470, NEG_E32=471,
 
+        MUL_R8=472, MUL_E8=473, MUL_R16=474, MUL_E16=475, MUL_R32=476, MUL_E32=477,
+        IMUL_R8=478, IMUL_E8=479, IMUL_R16=480, IMUL_E16=481, IMUL_R32=482, IMUL_E32=483,
+        DIV_R8=484, DIV_E8=485, DIV_R16=486, DIV_E16=487, DIV_R32=488, DIV_E32=489,
+        IDIV_R8=490, IDIV_E8=491, IDIV_R16=492, IDIV_E16=493, IDIV_R32=494, IDIV_E32=495,
 
-    FPU0_normal, FPU0_ea, FPU1_normal, FPU1_ea, FPU2_normal, FPU2_ea, FPU3_normal, FPU3_ea,
-    FPU4_normal, FPU4_ea, FPU5_normal, FPU5_ea, FPU6_normal, FPU6_ea, FPU7_normal, FPU7_ea
+        CLI=496, STI=497,
+
+        CLD=498, STD=499,
+
+        CALLBACK=500, MODIFIED=501,
+
+        SLDT_R16=502, SLDT_E16=503, STR_R16=504, STR_E16=505, LLDT_R16=506, LLDT_E16=507, LTR_R16=508, LTR_E16=509, VERR_R16=510, VERR_E16=511, VERW_R16=512, VERW_E16=513,
+
+        SGDT=514, SIDT=515, LGDT16=516, LGDT32=517, LIDT16=518, LIDT32=519, SMSW_E16=520, LMSW_E16=521, INVLPG=522, LGDT_R=523, LIDT_R=524, SMSW_R16=525, LMSW_R16=526, SMSW_R32=527,
+
+        FPU0_normal=528, FPU0_ea=529, FPU1_normal=530, FPU1_ea=531, FPU2_normal=532, FPU2_ea=533, FPU3_normal=534, FPU3_ea=535,
+        FPU4_normal=536, FPU4_ea=537, FPU5_normal=538, FPU5_ea=539, FPU6_normal=540, FPU6_ea=541, FPU7_normal=542, FPU7_ea=543,
+
+        COUNT=544;
 }
@@ -0,0 +1,82 @@
+package jdos.cpu.core_switch;
+
+import jdos.cpu.CPU_Regs;
+
+// The instructions of a block as parallel arrays, entry i of each array belongs to instruction i.  The decoder
+// still fills in a SwitchBlock per instruction, once the block is done they are packed in here so that the core
+// only walks a handful of arrays instead of following a reference to a record for every instruction.
+//
+// Registers are stored as an index into regs instead of a reference.  The table only ever grows and holds the
+// registers the decoder has handed out so far, index 0 is used for no register.
+public final class SwitchCode {
+    static public CPU_Regs.Reg[] regs = new CPU_Regs.Reg[] {null};
+
+    public final int length;
+    public final int[] instruction;
+    public final int[] opCode;
+    public final int[] eipCount;
+    public final int[] value;
+    public final int[] r1;
+    public final int[] r2;
+
+    public final int[] eaa_r1;
+    public final int[] eaa_r2;
+    public final int[] eaa_sib;
+    public final int[] eaa_segPhys;
+    public final int[] eaa_segVal;
+    public final int[] eaa_const;
+
+    public final boolean[] eaa16;
+    public final boolean[] zero;
+
+    public SwitchCode(SwitchBlock[] inst, int count) {
+        length = count;
+        instruction = new int[count];
+        opCode = new int[count];
+        eipCount = new int[count];
+        value = new int[count];
+        r1 = new int[count];
+        r2 = new int[count];
+        eaa_r1 = new int[count];
+        eaa_r2 = new int[count];
+        eaa_sib = new int[count];
+        eaa_segPhys = new int[count];
+        eaa_segVal = new int[count];
+        eaa_const = new int[count];
+        eaa16 = new boolean[count];
+        zero = new boolean[count];
+        for (int i=0;i<count;i++) {
+            SwitchBlock b = inst[i];
+            instruction[i] = b.instruction;
+            opCode[i] = b.opCode;
+            eipCount[i] = b.eipCount;
+            value[i] = b.value;
+            r1[i] = index(b.r1);
+            r2[i] = index(b.r2);
+            eaa_r1[i] = index(b.eaa_r1);
+            eaa_r2[i] = index(b.eaa_r2);
+            eaa_sib[i] = b.eaa_sib;
+            eaa_segPhys[i] = index(b.eaa_segPhys);
+            eaa_segVal[i] = index(b.eaa_segVal);
+            eaa_const[i] = b.eaa_const;
+            eaa16[i] = b.eaa16;
+            zero[i] = b.zero;
+        }
+    }
+
+    static private int index(CPU_Regs.Reg reg) {
+        if (reg == null)
+            return 0;
+        CPU_Regs.Reg[] table = regs;
+        for (int i=1;i<table.length;i++) {
+            if (table[i] == reg)
+                return i;
+        }
+        // the core reads regs again for every block, so a new table is seen before any index into it
+        CPU_Regs.Reg[] grown = new CPU_Regs.Reg[table.length+1];
+        System.arraycopy(table, 0, grown, 0, table.length);
+        grown[table.length] = reg;
+        regs = grown;
+        return table.length;
+    }
+}
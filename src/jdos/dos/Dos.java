@@ -1551,6 +1551,17 @@ public class Dos extends Module_base {
         }
     };
 
+    static private Callback.Handler DOS_28Handler = new Callback.Handler() {
+        public String getName() {
+            return "Dos.DOS_28Handler";
+        }
+        public /*Bitu*/int call() {
+            // dos idle interrupt, called while a program waits for input
+            Idle.poll();
+            return Callback.CBRET_NONE;
+        }
+    };
+
     static private Callback.Handler DOS_27Handler = new Callback.Handler() {
         public String getName() {
             return "Dos.DOS_27Handler";
@@ -1641,7 +1652,7 @@ public class Dos extends Module_base {
         callback[4].Install(DOS_27Handler,Callback.CB_IRET,"DOS Int 27");
         callback[4].Set_RealVec(0x27);
 
-        callback[5].Install(null,Callback.CB_IRET,"DOS Int 28");
+        callback[5].Install(DOS_28Handler,Callback.CB_IRET,"DOS Int 28");
         callback[5].Set_RealVec(0x28);
 
         callback[6].Install(null,Callback.CB_INT29,"CON Output Int 29");
@@ -1,8 +1,10 @@
 package jdos.dos;
 
+import jdos.Dosbox;
 import jdos.cpu.CPU_Regs;
 import jdos.dos.drives.Drive_virtual;
 import jdos.hardware.Memory;
+import jdos.hardware.Pic;
 import jdos.ints.Bios;
 import jdos.misc.Log;
 import jdos.types.LogSeverities;
@@ -438,6 +440,29 @@ public class Dos_files {
         return true;
     }
 
+    // Open host files can't be saved with a Checkpoint, it keeps which files were open instead and won't restore
+    // once one was opened, duplicated or closed since
+    static public Object DOS_SaveFileTable() {
+        Object[] s = new Object[DOS_FILES*2];
+        for (int i=0;i<DOS_FILES;i++) {
+            s[i*2] = Files[i];
+            if (Files[i]!=null)
+                s[i*2+1] = new Integer(Files[i].IsOpen() ? Files[i].refCtr : -1);
+        }
+        return s;
+    }
+
+    static public boolean DOS_FileTableChanged(Object state) {
+        Object[] s = (Object[])state;
+        for (int i=0;i<DOS_FILES;i++) {
+            if (s[i*2]!=Files[i])
+                return true;
+            if (Files[i]!=null && ((Integer)s[i*2+1]).intValue()!=(Files[i].IsOpen() ? Files[i].refCtr : -1))
+                return true;
+        }
+        return false;
+    }
+
     static public boolean DOS_FlushFile(/*Bit16u*/int entry) {
         /*Bit32u*/int handle=Dos.RealHandle(entry);
         if (handle>=DOS_FILES) {
@@ -744,7 +769,8 @@ public class Dos_files {
         }
         Dos.dos.errorcode=0;
         /* add random crap to the end of the name and try to open */
-        Random r = new Random();
+        // a virtual clock run has to pick the same names every time
+        Random r = Dosbox.virtualTime ? new Random(Pic.PIC_Ticks) : new Random();
         StringBuffer tempname;
 
         do {
@@ -2,6 +2,7 @@ package jdos.dos;
 
 import jdos.cpu.CPU_Regs;
 import jdos.cpu.Callback;
+import jdos.cpu.Idle;
 import jdos.hardware.Memory;
 import jdos.misc.Log;
 import jdos.types.LogSeverities;
@@ -171,7 +172,10 @@ public class Dos_misc {
                 else if (CPU_Regs.reg_ebx.word() == 0x18) return true;	// idle callout
                 else return false;
             case 0x1680:	/*  RELEASE CURRENT VIRTUAL MACHINE TIME-SLICE */
-                //TODO Maybe do some idling but could screw up other systems :)
+                if (Idle.enabled) {
+                    CPU_Regs.reg_eax.low(0); // supported
+                    Idle.skip();
+                }
                 return true; //So no warning in the debugger anymore
             case 0x1689:	/*  Kernel IDLE CALL */
             case 0x168f:	/*  Close awareness crap */
@@ -393,6 +393,9 @@ public class Dos_programs {
                 Callback.CALLBACK_RunRealInt(0x67);
                 WriteOut(Msg.get("PROGRAM_MEM_EXPAND"),new Object[]{new Long(CPU_Regs.reg_ebx.word()*16)});
             }
+            /* Show how much of the emulated memory the host has allocated */
+            if (RAM.type().equals(RAM.SPARSE))
+                WriteOut(Msg.get("PROGRAM_MEM_HOST"),new Object[]{new Integer(RAM.committed()/1024),new Integer(RAM.size()/1024)});
         }
     }
 
@@ -1708,6 +1711,7 @@ public class Dos_programs {
         Msg.add("PROGRAM_MEM_EXTEND","%10d Kb free extended memory\n");
         Msg.add("PROGRAM_MEM_EXPAND","%10d Kb free expanded memory\n");
         Msg.add("PROGRAM_MEM_UPPER","%10d Kb free upper memory in %d blocks (largest UMB %d Kb)\n");
+        Msg.add("PROGRAM_MEM_HOST","%10d Kb of %d Kb allocated on the host\n");
 
         Msg.add("PROGRAM_LOADFIX_ALLOC","%d kb allocated.\n");
         Msg.add("PROGRAM_LOADFIX_DEALLOC","%d kb freed.\n");
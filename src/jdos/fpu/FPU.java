@@ -2128,6 +2128,56 @@ public class FPU {
 
     public static boolean softFPU = false;
 
+    // For Checkpoint, both the normal and the soft fpu are saved since either one can be in use
+    static private final class SavedState {
+        double[] regs;
+        int[] tags;
+        int cw, cw_mask_all, sw, top, round;
+        long[] soft_regs;
+        int[] soft_tags;
+        int soft_cw, soft_cw_mask_all, soft_sw, soft_top, soft_round;
+    }
+
+    public static Object FPU_SaveState() {
+        SavedState s = new SavedState();
+        s.regs = regs.clone();
+        s.tags = tags.clone();
+        s.cw = cw;
+        s.cw_mask_all = cw_mask_all;
+        s.sw = sw;
+        s.top = top;
+        s.round = round;
+        s.soft_regs = new long[SoftFPU.fpu.regs.length];
+        for (int i=0;i<s.soft_regs.length;i++)
+            s.soft_regs[i] = SoftFPU.fpu.regs[i].d;
+        s.soft_tags = SoftFPU.fpu.tags.clone();
+        s.soft_cw = SoftFPU.fpu.cw;
+        s.soft_cw_mask_all = SoftFPU.fpu.cw_mask_all;
+        s.soft_sw = SoftFPU.fpu.sw;
+        s.soft_top = SoftFPU.fpu.top;
+        s.soft_round = SoftFPU.fpu.round;
+        return s;
+    }
+
+    public static void FPU_RestoreState(Object state) {
+        SavedState s = (SavedState)state;
+        System.arraycopy(s.regs, 0, regs, 0, regs.length);
+        System.arraycopy(s.tags, 0, tags, 0, tags.length);
+        cw = s.cw;
+        cw_mask_all = s.cw_mask_all;
+        sw = s.sw;
+        top = s.top;
+        round = s.round;
+        for (int i=0;i<s.soft_regs.length;i++)
+            SoftFPU.fpu.regs[i].d = s.soft_regs[i];
+        System.arraycopy(s.soft_tags, 0, SoftFPU.fpu.tags, 0, SoftFPU.fpu.tags.length);
+        SoftFPU.fpu.cw = s.soft_cw;
+        SoftFPU.fpu.cw_mask_all = s.soft_cw_mask_all;
+        SoftFPU.fpu.sw = s.soft_sw;
+        SoftFPU.fpu.top = s.soft_top;
+        SoftFPU.fpu.round = s.soft_round;
+    }
+
     public static Section.SectionFunction FPU_Init = new Section.SectionFunction() {
         public void call(Section configuration) {
             FPU_FINIT();
@@ -0,0 +1,38 @@
+package jdos.gui;
+
+import jdos.sdl.GUI;
+
+// Runs the emulator without a window, the screen is still rendered but never shown.  Used for batch jobs and
+// by jdos.Instances to run several guests in one JVM.
+public class Headless implements GUI {
+    public void setSize(int cx, int cy) {
+    }
+
+    public void dopaint() {
+    }
+
+    public void showProgress(String msg, int percent) {
+    }
+
+    public void setTitle(String title) {
+    }
+
+    public void showCursor(boolean on) {
+    }
+
+    public void captureMouse(boolean on) {
+    }
+
+    public void fullScreenToggle() {
+    }
+
+    // Returns once the emulator has shut down
+    public static void run(String[] args) {
+        Main.main(new Headless(), args);
+    }
+
+    public static void main(String[] args) {
+        run(args);
+        System.exit(0); // the midi sequencer thread would keep the JVM running
+    }
+}
@@ -3,6 +3,7 @@ package jdos.gui;
 import jdos.Dosbox;
 import jdos.cpu.CPU;
 import jdos.cpu.core_dynamic.Compiler;
+import jdos.cpu.core_dynamic.JitCache;
 import jdos.cpu.core_dynamic.Loader;
 import jdos.dos.Dos_execute;
 import jdos.dos.Dos_programs;
@@ -542,6 +543,7 @@ public class MainBase {
                 if (saveName!=null) {
                     Loader.save(saveName, false);
                 }
+                JitCache.close();
                 System.out.println("Normal Shutdown");
                 try {myconf.Destroy();} catch (Exception e1){}
             } catch (KillException e) {
@@ -0,0 +1,156 @@
+package jdos.hardware;
+
+import jdos.cpu.CPU;
+import jdos.cpu.Paging;
+import jdos.cpu.core_dynamic.Cache;
+import jdos.dos.Dos_files;
+import jdos.fpu.FPU;
+import jdos.gui.Mapper;
+import jdos.hardware.qemu.Floppy;
+import jdos.hardware.qemu.IDE;
+import jdos.ints.EMS;
+import jdos.ints.XMS;
+import jdos.misc.Log;
+import jdos.misc.setup.Section;
+import jdos.sdl.JavaMapper;
+
+// A copy of the running machine that it can be put back to any number of times, which makes it possible to
+// rewind or to try several things from the same point.
+//
+// Guest memory, which includes the vga memory, is copied by RAM.snapshot.  Only memtype=sparse is copy on
+// write, its chunks are shared until one side writes to them so taking and restoring a checkpoint only costs
+// a copy of the chunk table no matter how much memory the machine has.  The int, mapped and direct backends
+// copy the whole memory every time.  On top of that the cpu, fpu, paging, the pic with its pending events,
+// the pit, the memory handles and the XMS and EMS handles with the EMS page mappings are saved.
+//
+// The rest of the devices are not saved:
+//   - vga registers, restore refuses to run if the video mode changed since.  Palette, scrolling and other
+//     register changes within the same mode stay as they are.
+//   - sound cards and the mixer, neither take nor restore run while a mixer channel is playing.
+//   - the ide and floppy controllers, neither take nor restore run while one is in the middle of a command.
+//     Disk images are not copied, writes to them stay after a restore.
+//
+// Open dos files can't be saved either.  A checkpoint remembers which were open and restore refuses to do
+// anything once a file was opened or closed since, the handles in guest memory would no longer match.
+//
+// A checkpoint must be taken or restored between instructions, the mapper handlers below run from the main
+// loop so they always are.
+public class Checkpoint {
+    private Object ram;
+    private Object cpu;
+    private Object fpu;
+    private Object paging;
+    private Object memory;
+    private Object pic;
+    private Object timer;
+    private Object xms;
+    private Object ems;
+    private Object files;
+    private int vgaMode;
+
+    // Why the machine can't be saved or put back right now because of state that isn't saved, null if it can
+    static public String busy() {
+        String channel = Mixer.MIXER_ActiveChannel();
+        if (channel != null)
+            return "the "+channel+" sound channel is playing";
+        if (IDE.isBusy())
+            return "an ide command is running";
+        if (Floppy.isBusy())
+            return "a floppy command is running";
+        return null;
+    }
+
+    // Returns null if busy() says it can't be taken now
+    static public Checkpoint take() {
+        if (busy() != null)
+            return null;
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.ram = RAM.snapshot();
+        checkpoint.cpu = CPU.CPU_SaveState();
+        checkpoint.fpu = FPU.FPU_SaveState();
+        checkpoint.paging = Paging.PAGING_SaveState();
+        checkpoint.memory = Memory.MEM_SaveState();
+        checkpoint.pic = Pic.PIC_SaveState();
+        checkpoint.timer = Timer.TIMER_SaveState();
+        checkpoint.xms = XMS.XMS_SaveState();
+        checkpoint.ems = EMS.EMS_SaveState();
+        checkpoint.files = Dos_files.DOS_SaveFileTable();
+        if (VGA.vga != null)
+            checkpoint.vgaMode = VGA.vga.mode;
+        return checkpoint;
+    }
+
+    // Why restore would refuse to run right now, null if it can
+    public String unrestorable() {
+        String reason = busy();
+        if (reason != null)
+            return reason;
+        if (Dos_files.DOS_FileTableChanged(files))
+            return "dos files were opened or closed since it was taken";
+        if (VGA.vga != null && VGA.vga.mode != vgaMode)
+            return "the video mode changed since it was taken";
+        return null;
+    }
+
+    // Returns false and leaves the machine alone if unrestorable gives a reason
+    public boolean restore() {
+        if (unrestorable() != null)
+            return false;
+        // compiled code was made from memory that is about to be replaced, this also puts back the page
+        // handlers that the code pages took over
+        if (Cache.cache_initialized)
+            Cache.cache_flush();
+        RAM.restore(ram);
+        Memory.MEM_RestoreState(memory);
+        Paging.PAGING_RestoreState(paging);
+        CPU.CPU_RestoreState(cpu);
+        FPU.FPU_RestoreState(fpu);
+        Pic.PIC_RestoreState(pic);
+        Timer.TIMER_RestoreState(timer);
+        XMS.XMS_RestoreState(xms);
+        // after paging, this maps the page frame again
+        EMS.EMS_RestoreState(ems);
+        return true;
+    }
+
+    static private Checkpoint saved;
+
+    final static private Mapper.MAPPER_Handler CHECKPOINT_Take = new Mapper.MAPPER_Handler() {
+        public void call(boolean pressed) {
+            if (!pressed) return;
+            long start = System.currentTimeMillis();
+            Checkpoint checkpoint = take();
+            if (checkpoint == null) {
+                Log.log_msg("Checkpoint not taken, "+busy());
+                return;
+            }
+            saved = checkpoint;
+            Log.log_msg("Checkpoint taken in "+(System.currentTimeMillis()-start)+" ms");
+        }
+    };
+
+    final static private Mapper.MAPPER_Handler CHECKPOINT_Restore = new Mapper.MAPPER_Handler() {
+        public void call(boolean pressed) {
+            if (!pressed || saved == null) return;
+            long start = System.currentTimeMillis();
+            if (saved.restore())
+                Log.log_msg("Checkpoint restored in "+(System.currentTimeMillis()-start)+" ms");
+            else
+                Log.log_msg("Checkpoint not restored, "+saved.unrestorable());
+        }
+    };
+
+    public static Section.SectionFunction CHECKPOINT_Destroy = new Section.SectionFunction() {
+        public void call(Section section) {
+            saved = null;
+        }
+    };
+
+    public static Section.SectionFunction CHECKPOINT_Init = new Section.SectionFunction() {
+        public void call(Section section) {
+            JavaMapper.MAPPER_AddHandler(CHECKPOINT_Take, Mapper.MapKeys.MK_f5, Mapper.MMOD2, "checkpoint", "Checkpoint");
+            JavaMapper.MAPPER_AddHandler(CHECKPOINT_Restore, Mapper.MapKeys.MK_f6, Mapper.MMOD2, "restore", "Restore");
+            section.AddDestroyFunction(CHECKPOINT_Destroy);
+        }
+    };
+}
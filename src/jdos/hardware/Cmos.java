@@ -7,6 +7,7 @@ import jdos.misc.setup.Module_base;
 import jdos.misc.setup.Section;
 import jdos.types.LogSeverities;
 import jdos.types.LogTypes;
+import jdos.util.CalendarHelper;
 import jdos.util.StringHelper;
 
 import java.util.Calendar;
@@ -128,7 +129,7 @@ public class Cmos extends Module_base {
             /*Bitu*/int drive_a, drive_b;
             /*Bit8u*/short hdparm;
 
-            Calendar c = Calendar.getInstance();
+            Calendar c = CalendarHelper.now();
             switch (cmos.reg) {
             case 0x00:		/* Seconds */
                 return 	MAKE_RETURN(c.get(Calendar.SECOND));
@@ -84,6 +84,17 @@ public class IO extends Module_base {
         CPU.CPU_IODelayRemoved += delaycyc;
     }
 
+    // The same delay as count byte or word accesses in a row, for block transfers
+    static public void IO_USEC_block_delay(boolean write, /*Bitu*/int count) {
+        /*Bits*/int delaycyc = CPU.CPU_CycleMax/(write?IODELAY_WRITE_MICROSk:IODELAY_READ_MICROSk);
+        if (delaycyc==0) return;
+        int n = CPU.CPU_Cycles/delaycyc-2; // the single access stops delaying below 3*delaycyc
+        if (n<=0) return;
+        if (n>count) n=count;
+        CPU.CPU_Cycles -= n*delaycyc;
+        CPU.CPU_IODelayRemoved += n*delaycyc;
+    }
+
     /*
     static Bit8u crtc_index = 0;
     const char* const len_type[] = {" 8","16","32"};
@@ -188,7 +199,8 @@ public class IO extends Module_base {
         }
         else {
             IO_USEC_write_delay();
-            IoHandler.io_writehandlers[0][port].call(port,val,1);
+            if (IOStats.enabled) IOStats.write(0, port, val);
+            else IoHandler.io_writehandlers[0][port].call(port,val,1);
         }
     }
 
@@ -222,7 +234,8 @@ public class IO extends Module_base {
         }
         else {
             IO_USEC_write_delay();
-            IoHandler.io_writehandlers[1][port].call(port,val,2);
+            if (IOStats.enabled) IOStats.write(1, port, val);
+            else IoHandler.io_writehandlers[1][port].call(port,val,2);
         }
     }
 
@@ -255,7 +268,8 @@ public class IO extends Module_base {
             Flags.copy(old_lflags);
             CPU.cpudecoder=old_cpudecoder;
         } else {
-            IoHandler.io_writehandlers[2][port].call(port,val,4);
+            if (IOStats.enabled) IOStats.write(2, port, val);
+            else IoHandler.io_writehandlers[2][port].call(port,val,4);
         }
     }
 
@@ -289,8 +303,10 @@ public class IO extends Module_base {
         }
         else {
             IO_USEC_read_delay();
-            retval = IoHandler.io_readhandlers[0][port].call(port,1);
+            if (IOStats.enabled) retval = IOStats.read(0, port);
+            else retval = IoHandler.io_readhandlers[0][port].call(port,1);
         }
+        if (Idle.enabled) Idle.portRead(port, retval);
         log_io(0, false, port, retval);
         return retval;
     }
@@ -324,8 +340,10 @@ public class IO extends Module_base {
         }
         else {
             IO_USEC_read_delay();
-            retval = IoHandler.io_readhandlers[1][port].call(port,2);
+            if (IOStats.enabled) retval = IOStats.read(1, port);
+            else retval = IoHandler.io_readhandlers[1][port].call(port,2);
         }
+        if (Idle.enabled) Idle.portRead(port, retval);
         log_io(1, false, port, retval);
         return retval;
     }
@@ -357,8 +375,10 @@ public class IO extends Module_base {
             Flags.copy(old_lflags);
             CPU.cpudecoder=old_cpudecoder;
         } else {
-            retval = IoHandler.io_readhandlers[2][port].call(port,4);
+            if (IOStats.enabled) retval = IOStats.read(2, port);
+            else retval = IoHandler.io_readhandlers[2][port].call(port,4);
         }
+        if (Idle.enabled) Idle.portRead(port, retval);
         log_io(2, false, port, retval);
         return retval;
     }
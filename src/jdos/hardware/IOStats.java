@@ -0,0 +1,320 @@
+package jdos.hardware;
+
+import jdos.misc.Log;
+import jdos.misc.Program;
+import jdos.misc.setup.Section;
+import jdos.misc.setup.Section_prop;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+// Port io, irq and pic event counters to find out which emulated device is eating the host cpu.
+//
+// While counting IO sends every port access through read/write below, which counts it per port and width and
+// times the handler call.  The time is summed up per device at report time, the device being the class that
+// the handler or event was written in.  Pic counts the irqs raised and acknowledged per line, the depth of the
+// event queue and how many events each PIC_RunQueue ran, again with the time spent in each handler.
+//
+// Counting is off by default and costs one static boolean per port access and event then, [dosbox] iostats
+// turns it on at start and IOSTATS.COM or the jmx bean can turn it on and off at any time.
+public class IOStats extends Program {
+    static public volatile boolean enabled = false;
+
+    static private final int SIZE = 3*IoHandler.IO_MAX; // width*IO_MAX+port
+    static private long[] reads;
+    static private long[] writes;
+    static private long[] nanos;
+
+    static public final long[] irqRaised = new long[16];
+    static public final long[] irqAcked = new long[16];
+
+    static public int maxQueueDepth;
+    static public long queueRuns;
+    static public long eventsRun;
+    static public int maxEventsPerRun;
+    static private final Hashtable events = new Hashtable(); // event handler -> long[] {calls, nanos}
+
+    static public void start() {
+        if (reads == null) {
+            reads = new long[SIZE];
+            writes = new long[SIZE];
+            nanos = new long[SIZE];
+        }
+        enabled = true;
+    }
+
+    static public void stop() {
+        enabled = false;
+    }
+
+    static public void reset() {
+        if (reads != null) {
+            Arrays.fill(reads, 0);
+            Arrays.fill(writes, 0);
+            Arrays.fill(nanos, 0);
+        }
+        Arrays.fill(irqRaised, 0);
+        Arrays.fill(irqAcked, 0);
+        maxQueueDepth = 0;
+        queueRuns = 0;
+        eventsRun = 0;
+        maxEventsPerRun = 0;
+        events.clear();
+    }
+
+    // Called by IO while enabled, width is 0, 1 or 2 for byte, word and dword
+    static public int read(int width, int port) {
+        long start = System.nanoTime();
+        int val = IoHandler.io_readhandlers[width][port].call(port, 1 << width);
+        int i = width*IoHandler.IO_MAX+port;
+        nanos[i] += System.nanoTime()-start;
+        reads[i]++;
+        return val;
+    }
+
+    static public void write(int width, int port, int val) {
+        long start = System.nanoTime();
+        IoHandler.io_writehandlers[width][port].call(port, val, 1 << width);
+        int i = width*IoHandler.IO_MAX+port;
+        nanos[i] += System.nanoTime()-start;
+        writes[i]++;
+    }
+
+    // Block transfers of rep ins and rep outs, every item counts as one access
+    static public int readBlock(int width, int port, byte[] buf, int offset, int count) {
+        long start = System.nanoTime();
+        int done = ((IoHandler.IO_ReadBlockHandler)IoHandler.io_readhandlers[width][port]).readBlock(port, 1 << width, buf, offset, count);
+        int i = width*IoHandler.IO_MAX+port;
+        nanos[i] += System.nanoTime()-start;
+        reads[i] += done;
+        return done;
+    }
+
+    static public int writeBlock(int width, int port, byte[] buf, int offset, int count) {
+        long start = System.nanoTime();
+        int done = ((IoHandler.IO_WriteBlockHandler)IoHandler.io_writehandlers[width][port]).writeBlock(port, 1 << width, buf, offset, count);
+        int i = width*IoHandler.IO_MAX+port;
+        nanos[i] += System.nanoTime()-start;
+        writes[i] += done;
+        return done;
+    }
+
+    // Called by Pic.PIC_RunQueue while enabled
+    static public void event(Pic.PIC_EventHandler handler, long nanos) {
+        long[] totals = (long[])events.get(handler);
+        if (totals == null) {
+            totals = new long[2];
+            events.put(handler, totals);
+        }
+        totals[0]++;
+        totals[1] += nanos;
+    }
+
+    static public void queueRun(int depth, int count) {
+        queueRuns++;
+        eventsRun += count;
+        if (count > maxEventsPerRun) maxEventsPerRun = count;
+        if (depth > maxQueueDepth) maxQueueDepth = depth;
+    }
+
+    static public int queueDepth() {
+        return Pic.pic_queue == null ? 0 : Pic.pic_queue.used;
+    }
+
+    static public long portReads(int width, int port) {
+        return reads == null ? 0 : reads[width*IoHandler.IO_MAX+port];
+    }
+
+    static public long portWrites(int width, int port) {
+        return writes == null ? 0 : writes[width*IoHandler.IO_MAX+port];
+    }
+
+    static public long portNanos(int width, int port) {
+        return nanos == null ? 0 : nanos[width*IoHandler.IO_MAX+port];
+    }
+
+    static public long totalReads() {
+        return sum(reads);
+    }
+
+    static public long totalWrites() {
+        return sum(writes);
+    }
+
+    static public long totalNanos() {
+        return sum(nanos);
+    }
+
+    static private long sum(long[] a) {
+        long total = 0;
+        if (a != null) {
+            for (int i=0;i<a.length;i++)
+                total += a[i];
+        }
+        return total;
+    }
+
+    // jdos.hardware.qemu.IDE$5 -> jdos.hardware.qemu.IDE
+    static private String device(Object handler) {
+        String name = handler.getClass().getName();
+        int pos = name.indexOf('$');
+        return pos > 0 ? name.substring(0, pos) : name;
+    }
+
+    static private void add(Hashtable result, String name, long calls, long time) {
+        long[] totals = (long[])result.get(name);
+        if (totals == null) {
+            totals = new long[2];
+            result.put(name, totals);
+        }
+        totals[0] += calls;
+        totals[1] += time;
+    }
+
+    // device -> long[] {port accesses, nanos}, by the handlers that are installed now
+    static public Hashtable deviceTotals() {
+        Hashtable result = new Hashtable();
+        if (reads == null) return result;
+        for (int i=0;i<SIZE;i++) {
+            if (reads[i] == 0 && writes[i] == 0) continue;
+            int width = i/IoHandler.IO_MAX;
+            int port = i%IoHandler.IO_MAX;
+            Object handler = reads[i] >= writes[i] ? (Object)IoHandler.io_readhandlers[width][port] : (Object)IoHandler.io_writehandlers[width][port];
+            add(result, device(handler), reads[i]+writes[i], nanos[i]);
+        }
+        return result;
+    }
+
+    // device -> long[] {events, nanos}
+    static public Hashtable eventTotals() {
+        Hashtable result = new Hashtable();
+        Enumeration e = events.keys();
+        while (e.hasMoreElements()) {
+            Object handler = e.nextElement();
+            long[] totals = (long[])events.get(handler);
+            if (totals != null)
+                add(result, device(handler), totals[0], totals[1]);
+        }
+        return result;
+    }
+
+    // width*IO_MAX+port of the ports that took the most time, busiest first
+    static public int[] topPorts(int count) {
+        if (nanos == null || count <= 0)
+            return new int[0];
+        int[] result = new int[count];
+        long[] totals = new long[count];
+        int found = 0;
+        for (int i=0;i<SIZE;i++) {
+            long total = nanos[i];
+            if (reads[i]+writes[i] == 0 || (found == count && total <= totals[count-1]))
+                continue;
+            int j = found < count ? found++ : count-1;
+            for (;j>0 && totals[j-1]<total;j--) {
+                totals[j] = totals[j-1];
+                result[j] = result[j-1];
+            }
+            totals[j] = total;
+            result[j] = i;
+        }
+        if (found < count) {
+            int[] r = new int[found];
+            System.arraycopy(result, 0, r, 0, found);
+            return r;
+        }
+        return result;
+    }
+
+    static private String ms(long nanos) {
+        return Long.toString(nanos/1000000)+"."+Long.toString(nanos/100000%10)+" ms";
+    }
+
+    static private void devices(StringBuffer buf, Hashtable totals, String what) {
+        Vector names = new Vector(totals.keySet());
+        Collections.sort(names);
+        for (int i=0;i<names.size();i++) {
+            String name = (String)names.elementAt(i);
+            long[] t = (long[])totals.get(name);
+            buf.append("  ").append(name).append(": ").append(t[0]).append(what).append(", ").append(ms(t[1])).append("\n");
+        }
+    }
+
+    static public String report(int top) {
+        StringBuffer buf = new StringBuffer();
+        buf.append("Port io").append(enabled ? "" : " (stopped)").append(": ").append(totalReads()).append(" reads, ").append(totalWrites()).append(" writes, ").append(ms(totalNanos())).append("\n");
+        devices(buf, deviceTotals(), " accesses");
+        int[] ports = topPorts(top);
+        for (int i=0;i<ports.length;i++) {
+            int width = ports[i]/IoHandler.IO_MAX;
+            int port = ports[i]%IoHandler.IO_MAX;
+            buf.append("  port ").append(Integer.toString(port, 16)).append("/").append(8 << width).append(": ").append(reads[ports[i]]).append(" reads, ").append(writes[ports[i]]).append(" writes, ").append(ms(nanos[ports[i]])).append("\n");
+        }
+        buf.append("Irq raised/acked:");
+        for (int i=0;i<16;i++) {
+            if (irqRaised[i] != 0 || irqAcked[i] != 0)
+                buf.append(" ").append(i).append("=").append(irqRaised[i]).append("/").append(irqAcked[i]);
+        }
+        buf.append("\n");
+        buf.append("Events: queue depth ").append(queueDepth()).append(" (max ").append(maxQueueDepth).append("), ").append(eventsRun).append(" events in ").append(queueRuns).append(" runs (max ").append(maxEventsPerRun).append(" per run)\n");
+        devices(buf, eventTotals(), " events");
+        return buf.toString();
+    }
+
+    public void Run() {
+        if (cmd.FindExist("/?")) {
+            WriteOut("Shows which devices the port io, irqs and timer events go to.\n\nIOSTATS [/ON] [/OFF] [/RESET] [/TOP n]\n");
+            return;
+        }
+        if (cmd.FindExist("/ON")) {
+            start();
+            WriteOut("Counting port io, irqs and events.\n");
+            return;
+        }
+        if (cmd.FindExist("/OFF")) {
+            stop();
+            WriteOut("Stopped counting.\n");
+            return;
+        }
+        if (cmd.FindExist("/RESET")) {
+            reset();
+            WriteOut("Counters cleared.\n");
+            return;
+        }
+        Integer top = cmd.FindInt("/TOP");
+        if (!enabled && reads == null) {
+            WriteOut("Not counting, IOSTATS /ON starts.\n");
+            return;
+        }
+        WriteOut_NoParsing(report(top == null ? 10 : top.intValue()));
+    }
+
+    private static PROGRAMS_Main IOSTATS_ProgramStart = new PROGRAMS_Main() {
+        public Program call() {
+            return new IOStats();
+        }
+    };
+
+    public static Section.SectionFunction IOSTATS_Destroy = new Section.SectionFunction() {
+        public void call(Section section) {
+            if (enabled)
+                Log.log_msg(report(10));
+            stop();
+            IOStatsJMX.unregister();
+        }
+    };
+
+    public static Section.SectionFunction IOSTATS_Init = new Section.SectionFunction() {
+        public void call(Section configuration) {
+            Section_prop section = (Section_prop)configuration;
+            reset();
+            if (section.Get_bool("iostats"))
+                start();
+            PROGRAMS_MakeFile("IOSTATS.COM", IOSTATS_ProgramStart);
+            IOStatsJMX.register();
+            section.AddDestroyFunction(IOSTATS_Destroy);
+        }
+    };
+}
@@ -19,6 +19,17 @@ public class IoHandler {
         public void call(/*Bitu*/int port, /*Bitu*/int val, /*Bitu*/int iolen);
     }
 
+    // Optional for handlers of a port that streams data, like the ide data port.  A rep ins or rep outs on
+    // such a port hands the handler all the items of a run at once instead of making one call per item.
+    // The items are iolen bytes each, little endian, starting at buf[offset].  Returns how many of the count
+    // items were done, the ones that are left go through call() again.
+    public static interface IO_ReadBlockHandler extends IO_ReadHandler {
+        public int readBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count);
+    }
+    public static interface IO_WriteBlockHandler extends IO_WriteHandler {
+        public int writeBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count);
+    }
+
     /* Classes to manage the IO objects created by the various devices.
     * The io objects will remove itself on destruction.*/
     private static class IO_Base{
@@ -8,6 +8,7 @@ import jdos.hardware.pci.PCI_PageHandler;
 import jdos.misc.Log;
 import jdos.misc.setup.Config;
 import jdos.misc.setup.Module_base;
+import jdos.misc.setup.Prop_path;
 import jdos.misc.setup.Section;
 import jdos.misc.setup.Section_prop;
 import jdos.types.LogSeverities;
@@ -292,6 +293,13 @@ public class Memory extends Module_base {
     }
 
     static public Paging.PageHandler MEM_GetPageHandler(/*Bitu*/int phys_page) {
+        Paging.PageHandler handler = getPageHandler(phys_page);
+        if (MemoryProfile.enabled)
+            return MemoryProfile.wrap(handler);
+        return handler;
+    }
+
+    static private Paging.PageHandler getPageHandler(/*Bitu*/int phys_page) {
         if (phys_page<memory.pages) {
             return memory.phandlers[phys_page];
         } else if ((phys_page>=memory.lfb.start_page) && (phys_page<memory.lfb.end_page)) {
@@ -349,54 +357,114 @@ public class Memory extends Module_base {
         while (size-- !=0) Paging.mem_writeb_inline(dest++,Paging.mem_readb_inline(src++));
     }
 
+    // The block copies below work a page at a time.  Each page is looked up once and if it is plain ram the whole
+    // run within it is copied by RAM, pages with a handler of their own still get one call per byte.
     static public void mem_memcpy(/*PhysPt*/int dest,/*PhysPt*/int src,/*Bitu*/int size) {
-        while (size-- !=0) Paging.mem_writeb_inline(dest++,Paging.mem_readb_inline(src++));
+        while (size > 0) {
+            int len = Math.min(size, Math.min(4096 - (src & 4095), 4096 - (dest & 4095)));
+            int src_index = Paging.getRAMIndexRO(src);
+            int dst_index = src_index < 0 ? -1 : Paging.getRAMIndex(dest);
+            // overlapping runs are left to the byte loop, it repeats the pattern the way the callers expect
+            if (dst_index >= 0 && (dst_index >= src_index + len || src_index >= dst_index + len)) {
+                RAM.memcpy(dst_index, src_index, len);
+            } else {
+                for (int i=0;i<len;i++)
+                    Paging.mem_writeb_inline(dest+i,Paging.mem_readb_inline(src+i));
+            }
+            dest += len;
+            src += len;
+            size -= len;
+        }
     }
 
     static public void mem_memcpy(byte[] dest, int destOffset, /*PhysPt*/int src,/*Bitu*/int size) {
-        while (size-- !=0) dest[destOffset++]=(byte)Paging.mem_readb_inline(src++);
+        while (size > 0) {
+            int len = Math.min(size, 4096 - (src & 4095));
+            int index = Paging.getRAMIndexRO(src);
+            if (index >= 0) {
+                RAM.memcpy(dest, destOffset, index, len);
+            } else {
+                for (int i=0;i<len;i++)
+                    dest[destOffset+i]=(byte)Paging.mem_readb_inline(src+i);
+            }
+            destOffset += len;
+            src += len;
+            size -= len;
+        }
     }
 
     static public void mem_memcpy(/*PhysPt*/int dest, byte[] src, int srcOffset, /*Bitu*/int size) {
-        while (size-- !=0) Paging.mem_writeb_inline(dest++, src[srcOffset++]);
+        while (size > 0) {
+            int len = Math.min(size, 4096 - (dest & 4095));
+            int index = Paging.getRAMIndex(dest);
+            if (index >= 0) {
+                RAM.memcpy(index, src, srcOffset, len);
+            } else {
+                for (int i=0;i<len;i++)
+                    Paging.mem_writeb_inline(dest+i, src[srcOffset+i]);
+            }
+            srcOffset += len;
+            dest += len;
+            size -= len;
+        }
     }
 
     static public void mem_zero(int dest, int len) {
-        while (len-- != 0) Paging.mem_writeb_inline(dest++, 0);
+        mem_memset(dest, 0, len);
     }
 
     static public void mem_memset(int dest, int value, int len) {
-        while (len-- != 0) Paging.mem_writeb_inline(dest++, value);
+        while (len > 0) {
+            int size = Math.min(len, 4096 - (dest & 4095));
+            int index = Paging.getRAMIndex(dest);
+            if (index >= 0) {
+                RAM.memset(index, size, value);
+            } else {
+                for (int i=0;i<size;i++)
+                    Paging.mem_writeb_inline(dest+i, value);
+            }
+            dest += size;
+            len -= size;
+        }
     }
 
     static public void phys_zero(int dest, int len) {
-        while (len-- != 0) RAM.writeb(dest++, (short) 0);
+        RAM.zeroset(dest, len);
     }
 
     static public void phys_memcpy(int dest, byte[] buffer, int offset, int len) {
-        while (len-- != 0) RAM.writeb(dest++, (short) buffer[offset++]);
+        RAM.memcpy(dest, buffer, offset, len);
     }
 
+    // the word reads below go through this so they don't allocate on every call
+    static private final byte[] blockBuffer = new byte[4096];
+
     static public void MEM_BlockRead(/*PhysPt*/int pt,short[] data,int offset, /*Bitu*/int size) {
-        for (int i=0;i<size;i++) {
-            int v1 = Paging.mem_readb_inline(pt++);
-            int v2 = Paging.mem_readb_inline(pt++);
-            data[i+offset]=(short)((v1 & 0xFF) | ((v2 & 0xFF) << 16));
+        byte[] b = blockBuffer;
+        while (size>0) {
+            int len = Math.min(size, b.length/2);
+            mem_memcpy(b, 0, pt, len*2);
+            for (int i=0;i<len;i++)
+                data[i+offset]=(short)((b[i*2] & 0xFF) | ((b[i*2+1] & 0xFF) << 8));
+            pt+=len*2;
+            offset+=len;
+            size-=len;
         }
     }
     static public void MEM_BlockRead16u(/*PhysPt*/int pt,int[] data,int offset, /*Bitu*/int size) {
-        for (int i=0;i<size;i++) {
-            int v1 = Paging.mem_readb_inline(pt++);
-            int v2 = Paging.mem_readb_inline(pt++);
-            data[i+offset]=((v1 & 0xFF) | ((v2 & 0xFF) << 16));
+        byte[] b = blockBuffer;
+        while (size>0) {
+            int len = Math.min(size, b.length/2);
+            mem_memcpy(b, 0, pt, len*2);
+            for (int i=0;i<len;i++)
+                data[i+offset]=((b[i*2] & 0xFF) | ((b[i*2+1] & 0xFF) << 8));
+            pt+=len*2;
+            offset+=len;
+            size-=len;
         }
     }
     static public void MEM_BlockRead(/*PhysPt*/int pt,short[] data,/*Bitu*/int size) {
-        for (int i=0;i<size;i++) {
-            int v1 = Paging.mem_readb_inline(pt++);
-            int v2 = Paging.mem_readb_inline(pt++);
-            data[i]=(short)((v1 & 0xFF) | ((v2 & 0xFF) << 16));
-        }
+        MEM_BlockRead(pt, data, 0, size);
     }
 
     static public String MEM_BlockRead(/*PhysPt*/int pt,/*Bitu*/int size) {
@@ -406,33 +474,20 @@ public class Memory extends Module_base {
     }
 
     static public void MEM_BlockRead(/*PhysPt*/int pt,byte[] data,/*Bitu*/int size) {
-        for (int i=0;i<size;i++) {
-            data[i]=(byte)(Paging.mem_readb_inline(pt++) & 0xFF);
-        }
+        mem_memcpy(data, 0, pt, size);
     }
     static public void MEM_BlockRead(/*PhysPt*/int pt,byte[] data, int offset, /*Bitu*/int size) {
-        for (int i=0;i<size;i++) {
-            data[i+offset]=(byte)(Paging.mem_readb_inline(pt++) & 0xFF);
-        }
+        mem_memcpy(data, offset, pt, size);
     }
 
     static public void MEM_BlockWrite(/*PhysPt*/int pt,byte[] read,/*Bitu*/int size) {
-        int i;
-        for (i=0;i<size && i<read.length;i++) {
-            Paging.mem_writeb_inline(pt++,read[i]);
-        }
-        for (;i<size;i++) {
-            Paging.mem_writeb_inline(pt++,(byte)0);
-        }
+        MEM_BlockWrite(pt, read, 0, size);
     }
     static public void MEM_BlockWrite(/*PhysPt*/int pt,byte[] read, int offset, /*Bitu*/int size) {
-        int i;
-        for (i=0;i<size && i<read.length;i++) {
-            Paging.mem_writeb_inline(pt++,read[i+offset]);
-        }
-        for (;i<size;i++) {
-            Paging.mem_writeb_inline(pt++,(byte)0);
-        }
+        // anything past the end of read is written as 0
+        int len = Math.max(0, Math.min(size, read.length-offset));
+        mem_memcpy(pt, read, offset, len);
+        mem_zero(pt+len, size-len);
     }
     static public void MEM_BlockWrite(/*PhysPt*/int pt,String data,/*Bitu*/int size) {
         byte[] read = data.getBytes();
@@ -680,6 +735,20 @@ public class Memory extends Module_base {
         memory.a20.enabled=enabled;
     }
 
+    // The page handles that XMS/EMS have allocated and the A20 gate, the contents are saved by RAM.snapshot.
+    // The links are not saved since they are rebuilt once the TLB is cleared
+    public static Object MEM_SaveState() {
+        return new Object[] {memory.mhandles.clone(), Boolean.valueOf(memory.a20.enabled), new Short(memory.a20.controlport)};
+    }
+
+    public static void MEM_RestoreState(Object state) {
+        Object[] s = (Object[])state;
+        int[] mhandles = (int[])s[0];
+        System.arraycopy(mhandles, 0, memory.mhandles, 0, mhandles.length);
+        MEM_A20_Enable(((Boolean)s[1]).booleanValue());
+        memory.a20.controlport = ((Short)s[2]).shortValue();
+    }
+
 
     /* Memory access functions */
     public static /*Bit16u*/int mem_unalignedreadw(/*PhysPt*/int address) {
@@ -809,7 +878,9 @@ public class Memory extends Module_base {
                 videoCacheSize*=1024;
                 if (videoCacheSize==0) videoCacheSize = videosize*2;
                 videosize+=videoCacheSize;
-                System.out.println("About to allocate memory "+String.valueOf((highwaterMark+EXTRA_MEM+VGA_draw.TEMPLINE_SIZE+videosize)/1024)+"kb: "+String.valueOf(Runtime.getRuntime().freeMemory()/1024)+"kb free");
+                Prop_path memfile = section.Get_path("memfile");
+                RAM.setType(section.Get_string("memtype"), memfile != null ? memfile.realpath : "");
+                System.out.println("About to allocate memory "+String.valueOf((highwaterMark+EXTRA_MEM+VGA_draw.TEMPLINE_SIZE+videosize)/1024)+"kb: "+String.valueOf(Runtime.getRuntime().freeMemory()/1024)+"kb free, memtype="+RAM.type());
                 RAM.alloc(highwaterMark + EXTRA_MEM + videosize + VGA_draw.TEMPLINE_SIZE + 3);
             } catch (java.lang.OutOfMemoryError e) {
                 Log.exit("Can't allocate main memory of "+memsize+" MB");
@@ -854,6 +925,8 @@ public class Memory extends Module_base {
     static Memory test;
     public static Section.SectionFunction MEM_ShutDown = new Section.SectionFunction() {
         public void call(Section section) {
+            if (RAM.type().equals(RAM.SPARSE))
+                Log.log_msg("Guest memory: "+RAM.committed()/1024+"kb of "+RAM.size()/1024+"kb was allocated");
             RAM.free();
             test = null;
         }
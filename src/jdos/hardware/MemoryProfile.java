@@ -0,0 +1,276 @@
+package jdos.hardware;
+
+import jdos.cpu.Paging;
+import jdos.gui.Mapper;
+import jdos.misc.Log;
+import jdos.misc.setup.Section;
+import jdos.misc.setup.Section_prop;
+import jdos.sdl.JavaMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+// Counts the reads and writes that go through the page handlers, per physical page and per handler class, to
+// find out whether a slow program spends its memory accesses in ram, vga, pci mmio or rom.
+//
+// Memory.MEM_GetPageHandler is only called when the tlb links a page, while profiling it hands out a counting
+// wrapper around the real handler so the cost is one static boolean at link time when it is off.
+//   handlers: only pages that already go through a handler are counted, ram stays direct.
+//   all:      ram and rom reads are sent through the wrapper too, much slower but it sees every access.
+// Pages that hold compiled code are never wrapped, the dynamic core has to see its own handler there.
+//
+// alt-f7 logs the top pages and the totals per handler class and starts counting again, so the report
+// covers the time since the last one.
+public class MemoryProfile {
+    static public final int OFF = 0;
+    static public final int HANDLERS = 1;
+    static public final int ALL = 2;
+
+    static public boolean enabled = false;
+    static private int mode = OFF;
+    static private int top = 20;
+
+    static private final int PAGES = 0x100000; // 4GB of physical address space
+    static private long[] reads;
+    static private long[] writes;
+    static private final Hashtable wrappers = new Hashtable();
+
+    static private final class Counter extends Paging.PageHandler {
+        final Paging.PageHandler handler;
+        final boolean direct_read;
+        final boolean direct_write;
+        long reads;
+        long writes;
+
+        Counter(Paging.PageHandler handler, int mask) {
+            this.handler = handler;
+            flags = handler.flags & mask;
+            direct_read = (handler.flags & Paging.PFLAG_READABLE)!=0;
+            direct_write = (handler.flags & Paging.PFLAG_WRITEABLE)!=0;
+        }
+
+        private int read(int addr) {
+            int page = Paging.PAGING_GetPhysicalAddress(addr) >>> 12;
+            MemoryProfile.reads[page]++;
+            reads++;
+            return page;
+        }
+
+        private int write(int addr) {
+            int page = Paging.PAGING_GetPhysicalAddress(addr) >>> 12;
+            MemoryProfile.writes[page]++;
+            writes++;
+            return page;
+        }
+
+        public /*Bitu*/int readb(/*PhysPt*/int addr) {
+            int page = read(addr);
+            if (direct_read) return RAM.readb(handler.GetHostReadPt(page)+(addr & 0xfff));
+            return handler.readb(addr);
+        }
+
+        public /*Bitu*/int readw(/*PhysPt*/int addr) {
+            int page = read(addr);
+            if (direct_read) return RAM.readw(handler.GetHostReadPt(page)+(addr & 0xfff));
+            return handler.readw(addr);
+        }
+
+        public /*Bitu*/int readd(/*PhysPt*/int addr) {
+            int page = read(addr);
+            if (direct_read) return RAM.readd(handler.GetHostReadPt(page)+(addr & 0xfff));
+            return handler.readd(addr);
+        }
+
+        public void writeb(/*PhysPt*/int addr,/*Bitu*/int val) {
+            int page = write(addr);
+            if (direct_write) RAM.writeb(handler.GetHostWritePt(page)+(addr & 0xfff), val);
+            else handler.writeb(addr, val);
+        }
+
+        public void writew(/*PhysPt*/int addr,/*Bitu*/int val) {
+            int page = write(addr);
+            if (direct_write) RAM.writew(handler.GetHostWritePt(page)+(addr & 0xfff), val);
+            else handler.writew(addr, val);
+        }
+
+        public void writed(/*PhysPt*/int addr,/*Bitu*/int val) {
+            int page = write(addr);
+            if (direct_write) RAM.writed(handler.GetHostWritePt(page)+(addr & 0xfff), val);
+            else handler.writed(addr, val);
+        }
+
+        public /*HostPt*/int GetHostReadPt(/*Bitu*/int phys_page) {
+            return handler.GetHostReadPt(phys_page);
+        }
+
+        public /*HostPt*/int GetHostWritePt(/*Bitu*/int phys_page) {
+            return handler.GetHostWritePt(phys_page);
+        }
+    }
+
+    // Called by Memory.MEM_GetPageHandler while enabled
+    static public Paging.PageHandler wrap(Paging.PageHandler handler) {
+        if (handler instanceof Counter || (handler.flags & Paging.PFLAG_HASCODE)!=0)
+            return handler;
+        int direct = handler.flags & (Paging.PFLAG_READABLE|Paging.PFLAG_WRITEABLE);
+        if (mode == HANDLERS && direct == (Paging.PFLAG_READABLE|Paging.PFLAG_WRITEABLE))
+            return handler;
+        Counter counter = (Counter)wrappers.get(handler);
+        if (counter == null) {
+            counter = new Counter(handler, mode == ALL ? ~(Paging.PFLAG_READABLE|Paging.PFLAG_WRITEABLE) : ~0);
+            wrappers.put(handler, counter);
+        }
+        return counter;
+    }
+
+    static public Paging.PageHandler unwrap(Paging.PageHandler handler) {
+        if (handler instanceof Counter)
+            return ((Counter)handler).handler;
+        return handler;
+    }
+
+    static public void start(int mode) {
+        if (mode == OFF) {
+            stop();
+            return;
+        }
+        if (reads == null) {
+            reads = new long[PAGES];
+            writes = new long[PAGES];
+        }
+        MemoryProfile.mode = mode;
+        enabled = true;
+        // every page has to be linked again to pick up or drop the wrappers
+        Paging.PAGING_ClearTLB();
+    }
+
+    static public void stop() {
+        if (!enabled) return;
+        enabled = false;
+        mode = OFF;
+        Paging.PAGING_ClearTLB();
+        wrappers.clear();
+        reads = null;
+        writes = null;
+    }
+
+    static public void reset() {
+        if (reads != null) {
+            Arrays.fill(reads, 0);
+            Arrays.fill(writes, 0);
+        }
+        Enumeration e = wrappers.elements();
+        while (e.hasMoreElements()) {
+            Counter counter = (Counter)e.nextElement();
+            counter.reads = 0;
+            counter.writes = 0;
+        }
+    }
+
+    static public long pageReads(int phys_page) {
+        return reads == null ? 0 : reads[phys_page];
+    }
+
+    static public long pageWrites(int phys_page) {
+        return writes == null ? 0 : writes[phys_page];
+    }
+
+    // The physical pages with the most accesses, busiest first
+    static public int[] topPages(int count) {
+        if (reads == null || count <= 0)
+            return new int[0];
+        int[] result = new int[count];
+        long[] totals = new long[count];
+        int found = 0;
+        for (int page=0;page<reads.length;page++) {
+            long total = reads[page]+writes[page];
+            if (total == 0 || (found == count && total <= totals[count-1]))
+                continue;
+            int i = found < count ? found++ : count-1;
+            for (;i>0 && totals[i-1]<total;i--) {
+                totals[i] = totals[i-1];
+                result[i] = result[i-1];
+            }
+            totals[i] = total;
+            result[i] = page;
+        }
+        if (found < count) {
+            int[] r = new int[found];
+            System.arraycopy(result, 0, r, 0, found);
+            return r;
+        }
+        return result;
+    }
+
+    // handler class name -> long[] {reads, writes}
+    static public Hashtable classTotals() {
+        Hashtable result = new Hashtable();
+        Enumeration e = wrappers.elements();
+        while (e.hasMoreElements()) {
+            Counter counter = (Counter)e.nextElement();
+            String name = counter.handler.getClass().getName();
+            long[] totals = (long[])result.get(name);
+            if (totals == null) {
+                totals = new long[2];
+                result.put(name, totals);
+            }
+            totals[0] += counter.reads;
+            totals[1] += counter.writes;
+        }
+        return result;
+    }
+
+    static public String report(int count) {
+        StringBuffer buf = new StringBuffer();
+        buf.append("Memory profile (").append(mode == ALL ? "all" : "handlers").append(")\n");
+        Hashtable classes = classTotals();
+        Vector names = new Vector(classes.keySet());
+        Collections.sort(names);
+        for (int i=0;i<names.size();i++) {
+            String name = (String)names.elementAt(i);
+            long[] totals = (long[])classes.get(name);
+            if (totals[0]+totals[1] == 0) continue;
+            buf.append("  ").append(name).append(": ").append(totals[0]).append(" reads, ").append(totals[1]).append(" writes\n");
+        }
+        int[] pages = topPages(count);
+        for (int i=0;i<pages.length;i++) {
+            int page = pages[i];
+            Paging.PageHandler handler = unwrap(Memory.MEM_GetPageHandler(page));
+            buf.append("  page ").append(Integer.toString(page << 12, 16)).append(": ").append(reads[page]).append(" reads, ").append(writes[page]).append(" writes, ").append(handler.getClass().getName()).append("\n");
+        }
+        return buf.toString();
+    }
+
+    final static private Mapper.MAPPER_Handler MEMPROFILE_Report = new Mapper.MAPPER_Handler() {
+        public void call(boolean pressed) {
+            if (!pressed || !enabled) return;
+            Log.log_msg(report(top));
+            reset();
+        }
+    };
+
+    public static Section.SectionFunction MEMPROFILE_Destroy = new Section.SectionFunction() {
+        public void call(Section section) {
+            if (enabled)
+                Log.log_msg(report(top));
+            stop();
+        }
+    };
+
+    public static Section.SectionFunction MEMPROFILE_Init = new Section.SectionFunction() {
+        public void call(Section configuration) {
+            Section_prop section = (Section_prop)configuration;
+            String m = section.Get_string("memprofile");
+            top = section.Get_int("memprofiletop");
+            if (m.equals("all"))
+                start(ALL);
+            else if (m.equals("handlers"))
+                start(HANDLERS);
+            JavaMapper.MAPPER_AddHandler(MEMPROFILE_Report, Mapper.MapKeys.MK_f7, Mapper.MMOD2, "memprofile", "Mem Profile");
+            section.AddDestroyFunction(MEMPROFILE_Destroy);
+        }
+    };
+}
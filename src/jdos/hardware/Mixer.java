@@ -502,6 +502,17 @@ public class Mixer extends Program {
         return chan;
     }
 
+    // The name of a channel that is playing, null if they are all quiet
+    public static String MIXER_ActiveChannel() {
+        if (mixer == null)
+            return null;
+        for (MixerChannel chan=mixer.channels;chan!=null;chan=chan.next) {
+            if (chan.enabled)
+                return chan.name;
+        }
+        return null;
+    }
+
     /* Find the device you want to delete with findchannel "delchan gets deleted" */
     public static void MIXER_DelChannel(MixerChannel delchan) {
         MixerChannel chan=mixer.channels;
@@ -781,6 +792,8 @@ public class Mixer extends Program {
             /* Read out config section */
             mixer.freq=section.Get_int("rate");
             mixer.nosound=section.Get_bool("nosound");
+            if (Dosbox.virtualTime)
+                mixer.nosound=true; // the sound card would pace the emulation
             mixer.blocksize=section.Get_int("blocksize");
 
             /* Initialize the internal stuff */
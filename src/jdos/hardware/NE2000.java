@@ -1408,15 +1408,35 @@ public class NE2000 extends Module_base {
         }
     }
 
-    static final private IoHandler.IO_ReadHandler dosbox_read = new IoHandler.IO_ReadHandler() {
+    // The blocks are for rep insw/outsw on the remote dma data port, each word still goes through the 8390 so
+    // the address wraps at page_stop and the dma complete interrupt comes after the last one
+    static final private IoHandler.IO_ReadHandler dosbox_read = new IoHandler.IO_ReadBlockHandler() {
         public /*Bitu*/int call(/*Bitu*/int port, /*Bitu*/int iolen) {
             return (int) theNE2kDevice.read(port, iolen);
         }
+        public int readBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            for (int i=0;i<count;i++) {
+                int val = (int) theNE2kDevice.read(port, iolen);
+                buf[offset++] = (byte) val;
+                if (iolen == 2)
+                    buf[offset++] = (byte) (val >> 8);
+            }
+            return count;
+        }
     };
-    static final private IoHandler.IO_WriteHandler dosbox_write = new IoHandler.IO_WriteHandler() {
+    static final private IoHandler.IO_WriteHandler dosbox_write = new IoHandler.IO_WriteBlockHandler() {
         public void call(/*Bitu*/int port, /*Bitu*/int val, /*Bitu*/int iolen) {
             theNE2kDevice.write(port, (long) (val & 0xFFFFFFFFl), iolen);
         }
+        public int writeBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            for (int i=0;i<count;i++) {
+                int val = buf[offset++] & 0xFF;
+                if (iolen == 2)
+                    val |= (buf[offset++] & 0xFF) << 8;
+                theNE2kDevice.write(port, val, iolen);
+            }
+            return count;
+        }
     };
 
     static private final Pic.PIC_EventHandler NE2000_TX_Event = new Pic.PIC_EventHandler() {
@@ -12,8 +12,11 @@ import jdos.types.LogTypes;
 import jdos.types.MachineType;
 
 public class Pic extends Module_base {
-    public interface PIC_EventHandler {
-        public void call(/*Bitu*/int val);
+    public static abstract class PIC_EventHandler {
+        // the first of its events in the queue, the rest follow through PICEntry.next
+        private PICEntry pending;
+
+        abstract public void call(/*Bitu*/int val);
     }
 
     public static float PIC_TickIndex() {
@@ -35,6 +38,7 @@ public class Pic extends Module_base {
     public static void PIC_ActivateIRQ(/*Bitu*/int irq) {
         /*Bitu*/int t = irq>7 ? (irq - 8): irq;
         PIC_Controller pic = pics[irq>7 ? 1 : 0];
+        if (IOStats.enabled) IOStats.irqRaised[irq]++;
 
         /*Bit32s*/int OldCycles = CPU.CPU_Cycles;
         pic.raise_irq(t); //Will set the CPU_Cycles to zero if this IRQ will be handled directly
@@ -77,11 +81,13 @@ public class Pic extends Module_base {
 
         slave.start_irq(pic1_irq);
         master.start_irq(2);
+        if (IOStats.enabled) IOStats.irqAcked[8+pic1_irq]++;
         CPU.CPU_HW_Interrupt(slave.vector_base + pic1_irq);
     }
 
     static void master_startIRQ(/*Bitu*/int i){
         master.start_irq(i);
+        if (IOStats.enabled) IOStats.irqAcked[i]++;
         CPU.CPU_HW_Interrupt(master.vector_base + i);
     }
 
@@ -115,24 +121,35 @@ public class Pic extends Module_base {
         }
         /* Check the queue for an entry */
         /*Bits*/int index_nd=PIC_TickIndexND();
+        boolean stats = IOStats.enabled;
+        int depth = pic_queue.used;
+        int count = 0;
         InEventService = true;
-        while (pic_queue.next_entry!=null && (pic_queue.next_entry.index*CPU.CPU_CycleMax<=index_nd)) {
-            PICEntry entry=pic_queue.next_entry;
-            pic_queue.next_entry=entry.next;
+        while (pic_queue.used>0 && ((pic_queue.heap[0].index-PIC_Ticks)*CPU.CPU_CycleMax<=index_nd)) {
+            PICEntry entry=pic_queue.heap[0];
+            RemoveEntry(entry);
 
             srv_lag = entry.index;
             //System.out.println("PIC_RunQueue "+entry.pic_event+" "+String.valueOf(entry.value));
-            entry.pic_event.call(entry.value); // call the event handler
+            if (stats) {
+                long start = System.nanoTime();
+                entry.pic_event.call(entry.value);
+                IOStats.event(entry.pic_event, System.nanoTime()-start);
+                count++;
+            } else
+                entry.pic_event.call(entry.value); // call the event handler
 
             /* Put the entry in the free list */
+            entry.pic_event=null;
             entry.next=pic_queue.free_entry;
             pic_queue.free_entry=entry;
         }
         InEventService = false;
+        if (stats) IOStats.queueRun(depth, count);
 
         /* Check when to set the new cycle end */
-        if (pic_queue.next_entry!=null) {
-            /*Bits*/int cycles=(/*Bits*/int)(pic_queue.next_entry.index*CPU.CPU_CycleMax-index_nd);
+        if (pic_queue.used>0) {
+            /*Bits*/int cycles=(/*Bits*/int)((pic_queue.heap[0].index-PIC_Ticks)*CPU.CPU_CycleMax-index_nd);
             if (cycles==0) cycles=1;
             if (cycles<CPU.CPU_CycleLeft) {
                 CPU.CPU_Cycles=cycles;
@@ -150,67 +167,40 @@ public class Pic extends Module_base {
         PIC_AddEvent(handler, delay, 0);
     }
     public static void PIC_AddEvent(PIC_EventHandler handler,float delay,/*Bitu*/int val/*=0*/) {
-        if (pic_queue.free_entry==null) {
-		    Log.log(LogTypes.LOG_PIC, LogSeverities.LOG_ERROR,"Event queue full");
-		    return;
-        }
         PICEntry entry=pic_queue.free_entry;
+        if (entry==null) entry=new PICEntry();
+        else pic_queue.free_entry=entry.next;
         if(InEventService) entry.index = delay + srv_lag;
-        else entry.index = delay + PIC_TickIndex();
+        else entry.index = delay + PIC_FullIndex();
 
         entry.pic_event=handler;
         entry.value=val;
-        pic_queue.free_entry=pic_queue.free_entry.next;
         AddEntry(entry);
     }
 
     public static void PIC_RemoveEvents(PIC_EventHandler handler) {
-        PICEntry entry=pic_queue.next_entry;
-	    PICEntry prev_entry = null;
-
+        PICEntry entry=handler.pending;
         while (entry!=null) {
-            if (entry.pic_event==handler) {
-                if (prev_entry != null) {
-                    prev_entry.next=entry.next;
-                    entry.next=pic_queue.free_entry;
-                    pic_queue.free_entry=entry;
-                    entry=prev_entry.next;
-                    continue;
-                } else {
-                    pic_queue.next_entry=entry.next;
-                    entry.next=pic_queue.free_entry;
-                    pic_queue.free_entry=entry;
-                    entry=pic_queue.next_entry;
-                    continue;
-                }
-            }
-            prev_entry=entry;
-            entry=entry.next;
+            PICEntry next=entry.next;
+            RemoveEntry(entry);
+            entry.pic_event=null;
+            entry.next=pic_queue.free_entry;
+            pic_queue.free_entry=entry;
+            entry=next;
         }
     }
 
     public static void PIC_RemoveSpecificEvents(PIC_EventHandler handler, /*Bitu*/int val) {
-        PICEntry entry=pic_queue.next_entry;
-        PICEntry prev_entry = null;
-
-        while (entry != null) {
-            if (entry.pic_event == handler && entry.value == val) {
-                if (prev_entry!=null) {
-                    prev_entry.next=entry.next;
-                    entry.next=pic_queue.free_entry;
-                    pic_queue.free_entry=entry;
-                    entry=prev_entry.next;
-                    continue;
-                } else {
-                    pic_queue.next_entry=entry.next;
-                    entry.next=pic_queue.free_entry;
-                    pic_queue.free_entry=entry;
-                    entry=pic_queue.next_entry;
-                    continue;
-                }
+        PICEntry entry=handler.pending;
+        while (entry!=null) {
+            PICEntry next=entry.next;
+            if (entry.value == val) {
+                RemoveEntry(entry);
+                entry.pic_event=null;
+                entry.next=pic_queue.free_entry;
+                pic_queue.free_entry=entry;
             }
-            prev_entry=entry;
-            entry=entry.next;
+            entry=next;
         }
     }
 
@@ -225,7 +215,7 @@ public class Pic extends Module_base {
         pic.set_imr(newmask);
     }
 
-    static private int PIC_QUEUESIZE = 512;
+    static private int PIC_QUEUESIZE = 512;  // starting size, the queue grows when more events are pending
     
     static private class PIC_Controller {
         /*Bitu*/int icw_words;
@@ -238,6 +228,23 @@ public class Pic extends Module_base {
         boolean request_issr;
         /*Bit8u*/int vector_base;
 
+        void copy(PIC_Controller from) {
+            icw_words = from.icw_words;
+            icw_index = from.icw_index;
+            special = from.special;
+            auto_eoi = from.auto_eoi;
+            rotate_on_auto_eoi = from.rotate_on_auto_eoi;
+            single = from.single;
+            request_issr = from.request_issr;
+            vector_base = from.vector_base;
+            irr = from.irr;
+            imr = from.imr;
+            imrr = from.imrr;
+            isr = from.isr;
+            isrr = from.isrr;
+            active_irq = from.active_irq;
+        }
+
         /*Bit8u*/int irr;        // request register
 	    /*Bit8u*/int imr;        // mask register
 	    /*Bit8u*/int imrr;       // mask register reversed (makes bit tests simpler)
@@ -354,20 +361,26 @@ public class Pic extends Module_base {
     static public /*Bitu*/int PIC_Ticks = 0;
     static public /*Bitu*/int PIC_IRQCheck = 0; //Maybe make it a bool and/or ensure 32bit size (x86 dynamic core seems to assume 32 bit variable size)
 
+    // index is the absolute time the event is due in milliseconds since PIC_Ticks started, so nothing has to
+    // be adjusted when a new millisecond starts.  Events due at the same time run in the order they were added.
     static public class PICEntry {
         double index;
         /*Bitu*/int value;
         PIC_EventHandler pic_event;
-        PICEntry next;
+        long seq;
+        int pos;            // place in the heap
+        PICEntry next;      // next pending event of the same handler, or next free entry
+        PICEntry prev;
     }
+
+    // The pending events in a binary heap, heap[0] is the next one to run.  Each handler keeps a list of its
+    // own events in PIC_EventHandler.pending so they can be removed without looking at the other ones, adding
+    // or removing an event is O(log n) for the heap and O(1) for that list.
     static public class Pic_queue {
-        public Pic_queue() {
-            for (int i=0;i<entries.length;i++)
-                entries[i] = new PICEntry();
-        }
-        PICEntry[] entries = new PICEntry[PIC_QUEUESIZE];
+        PICEntry[] heap = new PICEntry[PIC_QUEUESIZE];
+        int used;
+        long seq;
         PICEntry free_entry;
-        PICEntry next_entry;
     }
     
     static public Pic_queue pic_queue;
@@ -484,42 +497,159 @@ public class Pic extends Module_base {
         }
     };
 
+    static private boolean before(PICEntry a, PICEntry b) {
+        return a.index<b.index || (a.index==b.index && a.seq<b.seq);
+    }
+
+    static private void siftUp(PICEntry entry, int pos) {
+        PICEntry[] heap=pic_queue.heap;
+        while (pos>0) {
+            int parent=(pos-1)>>1;
+            if (!before(entry, heap[parent])) break;
+            heap[pos]=heap[parent];
+            heap[pos].pos=pos;
+            pos=parent;
+        }
+        heap[pos]=entry;
+        entry.pos=pos;
+    }
+
+    static private void siftDown(PICEntry entry, int pos) {
+        PICEntry[] heap=pic_queue.heap;
+        int used=pic_queue.used;
+        while (true) {
+            int child=pos*2+1;
+            if (child>=used) break;
+            if (child+1<used && before(heap[child+1], heap[child])) child++;
+            if (!before(heap[child], entry)) break;
+            heap[pos]=heap[child];
+            heap[pos].pos=pos;
+            pos=child;
+        }
+        heap[pos]=entry;
+        entry.pos=pos;
+    }
+
+    static private void LinkEntry(PICEntry entry) {
+        PICEntry first=entry.pic_event.pending;
+        entry.pic_event.pending=entry;
+        entry.prev=null;
+        entry.next=first;
+        if (first!=null) first.prev=entry;
+    }
+
     static private void AddEntry(PICEntry entry) {
-        PICEntry find_entry=pic_queue.next_entry;
-        if (find_entry == null) {
-            entry.next=null;
-            pic_queue.next_entry=entry;
-        } else if (find_entry.index>entry.index) {
-            pic_queue.next_entry=entry;
-            entry.next=find_entry;
-        } else {
-            while (find_entry!=null) {
-                if (find_entry.next!=null) {
-                    /* See if the next index comes later than this one */
-                    if (find_entry.next.index > entry.index) {
-                        entry.next=find_entry.next;
-                        find_entry.next=entry;
-                        break;
-                    } else {
-                        find_entry=find_entry.next;
-                    }
-                } else {
-                    entry.next=find_entry.next;
-                    find_entry.next=entry;
-                    break;
-                }
-            }
+        if (pic_queue.used==pic_queue.heap.length) {
+            PICEntry[] heap=new PICEntry[pic_queue.heap.length*2];
+            System.arraycopy(pic_queue.heap, 0, heap, 0, pic_queue.used);
+            pic_queue.heap=heap;
         }
-        /*Bits*/int cycles=PIC_MakeCycles(pic_queue.next_entry.index-PIC_TickIndex());
+        entry.seq=pic_queue.seq++;
+        siftUp(entry, pic_queue.used++);
+        LinkEntry(entry);
+
+        /*Bits*/int cycles=PIC_MakeCycles(pic_queue.heap[0].index-PIC_FullIndex());
         if (cycles<CPU.CPU_Cycles) {
             CPU.CPU_CycleLeft+=CPU.CPU_Cycles;
             CPU.CPU_Cycles=0;
         }
     }
 
+    // Takes the entry out of the heap and out of the list of its handler, entry.next is left alone so the
+    // callers can keep walking that list
+    static private void RemoveEntry(PICEntry entry) {
+        int pos=entry.pos;
+        PICEntry last=pic_queue.heap[--pic_queue.used];
+        pic_queue.heap[pic_queue.used]=null;
+        if (last!=entry) {
+            if (pos>0 && before(last, pic_queue.heap[(pos-1)>>1]))
+                siftUp(last, pos);
+            else
+                siftDown(last, pos);
+        }
+        if (entry.prev!=null) entry.prev.next=entry.next;
+        else entry.pic_event.pending=entry.next;
+        if (entry.next!=null) entry.next.prev=entry.prev;
+    }
+
+    // The handlers outlive the queue, they can't point into one that is thrown away
+    static private void ClearQueue() {
+        if (pic_queue==null) return;
+        for (int i=0;i<pic_queue.used;i++)
+            pic_queue.heap[i].pic_event.pending=null;
+    }
+
     static boolean InEventService = false;
     static double srv_lag = 0;
 
+    // Pending events are saved in heap order, the handlers are the same objects after a restore since they are
+    // never recreated while the machine is running
+    static private final class SavedState {
+        PIC_Controller[] pics = new PIC_Controller[2];
+        double[] index;
+        int[] value;
+        long[] seq;
+        PIC_EventHandler[] pic_event;
+        long nextSeq;
+        int ticks;
+        int irqCheck;
+        boolean inEventService;
+        double srv_lag;
+    }
+
+    public static Object PIC_SaveState() {
+        SavedState s = new SavedState();
+        for (int i=0;i<pics.length;i++) {
+            s.pics[i] = new PIC_Controller();
+            s.pics[i].copy(pics[i]);
+        }
+        int count = pic_queue.used;
+        s.index = new double[count];
+        s.value = new int[count];
+        s.seq = new long[count];
+        s.pic_event = new PIC_EventHandler[count];
+        for (int i=0;i<count;i++) {
+            PICEntry entry = pic_queue.heap[i];
+            s.index[i] = entry.index;
+            s.value[i] = entry.value;
+            s.seq[i] = entry.seq;
+            s.pic_event[i] = entry.pic_event;
+        }
+        s.nextSeq = pic_queue.seq;
+        s.ticks = PIC_Ticks;
+        s.irqCheck = PIC_IRQCheck;
+        s.inEventService = InEventService;
+        s.srv_lag = srv_lag;
+        return s;
+    }
+
+    public static void PIC_RestoreState(Object state) {
+        SavedState s = (SavedState)state;
+        for (int i=0;i<pics.length;i++)
+            pics[i].copy(s.pics[i]);
+        int count = s.index.length;
+        ClearQueue();
+        pic_queue = new Pic_queue();
+        if (count>pic_queue.heap.length)
+            pic_queue.heap = new PICEntry[count];
+        for (int i=0;i<count;i++) {
+            PICEntry entry = new PICEntry();
+            entry.index = s.index[i];
+            entry.value = s.value[i];
+            entry.seq = s.seq[i];
+            entry.pic_event = s.pic_event[i];
+            entry.pos = i;
+            pic_queue.heap[i] = entry;
+            LinkEntry(entry);
+        }
+        pic_queue.used = count;
+        pic_queue.seq = s.nextSeq;
+        PIC_Ticks = s.ticks;
+        PIC_IRQCheck = s.irqCheck;
+        InEventService = s.inEventService;
+        srv_lag = s.srv_lag;
+    }
+
     IoHandler.IO_ReadHandleObject[] ReadHandler = new IoHandler.IO_ReadHandleObject[4];
 	IoHandler.IO_WriteHandleObject[] WriteHandler = new IoHandler.IO_WriteHandleObject[4];
 
@@ -564,13 +694,6 @@ public class Pic extends Module_base {
 		ReadHandler[3].Install(0xa1,read_data,IoHandler.IO_MB);
 		WriteHandler[2].Install(0xa0,write_command,IoHandler.IO_MB);
 		WriteHandler[3].Install(0xa1,write_data,IoHandler.IO_MB);
-		/* Initialize the pic queue */
-		for (i=0;i<PIC_QUEUESIZE-1;i++) {
-			pic_queue.entries[i].next=pic_queue.entries[i+1];
-		}
-		pic_queue.entries[PIC_QUEUESIZE-1].next=null;
-		pic_queue.free_entry=pic_queue.entries[0];
-		pic_queue.next_entry=null;
     }
 
     static Pic test;
@@ -582,12 +705,14 @@ public class Pic extends Module_base {
                 pics[i] = null;
             master = null;
             slave = null;
+            ClearQueue();
             pic_queue = null;
         }
     };
     
     public static Section.SectionFunction PIC_Init = new Section.SectionFunction() {
         public void call(Section section) {
+            ClearQueue();
             pic_queue = new Pic_queue();
             for (int i=0;i<pics.length;i++)
                 pics[i] = new PIC_Controller();
@@ -1,126 +1,609 @@
 package jdos.hardware;
 
 import jdos.gui.Render;
+import jdos.misc.Log;
 
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
+// Guest memory.  The rest of the emulator only uses the static methods here, where the memory actually lives is
+// up to the backend picked by [dosbox] memtype:
+//   int    - an int[] on the Java heap, the original implementation
+//   direct - a little endian direct ByteBuffer, outside of the heap so large memory sizes don't make the heap
+//            bigger or give the GC more to scan
+//   mapped - like direct, but backed by a memory mapped file
+//   sparse - int[] chunks on the Java heap that are only allocated once they are written to, for large memsize
+//            values where most of the memory is never used
+// Only one backend is ever created in a run, so HotSpot sees a single receiver at every call and inlines it.
 final public class RAM {
-    public static int[] direct;
+    static public final String INT = "int";
+    static public final String DIRECT = "direct";
+    static public final String MAPPED = "mapped";
+    static public final String SPARSE = "sparse";
+
+    static abstract public class Backend {
+        abstract public int size();
+        public int committed() {return size();} // bytes of host memory in use
+        abstract public byte readbs(int address);
+        abstract public int readw(int address);
+        abstract public int readd(int address);
+        abstract public void writebs(int address, byte value);
+        abstract public void writew(int address, int value);
+        abstract public void writed(int address, int value);
+        public void free() {}
+        // A copy of the memory that restore can put back, as many times as needed
+        abstract public Object snapshot();
+        abstract public void restore(Object snapshot);
+
+        public void read(int src, byte[] dest, int offset, int size) {
+            for (int i = 0; i < size; i++)
+                dest[offset + i] = readbs(src + i);
+        }
+        public void write(int dest, byte[] src, int offset, int size) {
+            for (int i = 0; i < size; i++)
+                writebs(dest + i, src[offset + i]);
+        }
+        public void copy(int dst, int src, int amount) {
+            for (int i = 0; i < amount; i++)
+                writebs(dst + i, readbs(src + i));
+        }
+        public void fill(int dest, int size, byte value) {
+            for (int i = 0; i < size; i++)
+                writebs(dest + i, value);
+        }
+    }
+
+    // The int[] code is shared by the int and sparse backends, address is a byte offset into local
+    static final class IntBackend extends Backend {
+        final int[] direct;
+
+        IntBackend(int size) {
+            direct = new int[(size + 3) >> 2];
+        }
+
+        public int size() {
+            return direct.length << 2;
+        }
+
+        public Object snapshot() {
+            return direct.clone();
+        }
+
+        public void restore(Object snapshot) {
+            System.arraycopy((int[]) snapshot, 0, direct, 0, direct.length);
+        }
+
+        static byte readbs(int[] local, int address) {
+            return (byte) (local[(address >>> 2)] >>> ((address & 0x3) << 3));
+        }
+
+        static int readw(int[] local, int address) {
+            int rem = address & 0x3;
+            int index = (address >>> 2);
+            int val = local[index] >>> (rem << 3);
+            if (rem == 3) {
+                val |= local[index + 1] << 8;
+            }
+            return val & 0xFFFF;
+        }
+
+        static int readd(int[] local, int address) {
+            int rem = (address & 0x3);
+            if (rem == 0) {
+                return local[address >>> 2];
+            }
+            int off = rem << 3;
+            int index = (address >>> 2);
+            return local[index] >>> off | local[index + 1] << (32 - off);
+        }
+
+        static void writebs(int[] local, int address, byte value) {
+            int off = (address & 0x3) << 3;
+            int mask = ~(0xFF << off);
+            int index = (address >>> 2);
+            local[index] = local[index] & mask | (value & 0xFF) << off;
+        }
+
+        static void writew(int[] local, int address, int value) {
+            int rem = (address & 0x3);
+            int index = (address >>> 2);
+            value &= 0xFFFF;
+            if (rem == 3) {
+                local[index] = (local[index] & 0xFFFFFF | value << 24);
+                index++;
+                local[index] = (local[index] & 0xFFFFFF00 | value >>> 8);
+            } else {
+                int off = rem << 3;
+                int mask = ~(0xFFFF << off);
+                local[index] = (local[index] & mask | value << off);
+            }
+        }
+
+        static void writed(int[] local, int address, int val) {
+            int rem = (address & 0x3);
+            if (rem == 0) {
+                local[address >>> 2] = val;
+            } else {
+                int index = (address >>> 2);
+                int off = rem << 3;
+                int mask = -1 << off;
+                local[index] = (local[index] & ~mask) | (val << off);
+                index++;
+                local[index] = (local[index] & mask) | (val >>> (32 - off));
+            }
+        }
+
+        static void read(int[] local, int src, byte[] dest, int dest_offset, int size) {
+            // bytes up to the first aligned int, then whole ints, then what is left
+            int begin = Math.min((4 - (src & 3)) & 3, size);
+            for (int i = 0; i < begin; i++)
+                dest[i + dest_offset] = readbs(local, src + i);
+            int off = dest_offset + begin;
+            int index = (src + begin) >>> 2;
+            int i = begin;
+            for (; i + 3 < size; i += 4) {
+                int v = local[index++];
+                dest[off++] = (byte) v;
+                dest[off++] = (byte) (v >> 8);
+                dest[off++] = (byte) (v >> 16);
+                dest[off++] = (byte) (v >> 24);
+            }
+            for (; i < size; i++)
+                dest[i + dest_offset] = readbs(local, src + i);
+        }
+
+        static void write(int[] local, int dest, byte[] src, int src_offset, int size) {
+            int begin = Math.min((4 - (dest & 3)) & 3, size);
+            for (int i = 0; i < begin; i++)
+                writebs(local, dest + i, src[i + src_offset]);
+            int off = src_offset + begin;
+            int index = (dest + begin) >>> 2;
+            int i = begin;
+            for (; i + 3 < size; i += 4) {
+                local[index++] = (src[off] & 0xFF) | (src[off + 1] & 0xFF) << 8 | (src[off + 2] & 0xFF) << 16 | src[off + 3] << 24;
+                off += 4;
+            }
+            for (; i < size; i++)
+                writebs(local, dest + i, src[i + src_offset]);
+        }
+
+        static void fill(int[] local, int dest, int size, byte b) {
+            int begin = Math.min((4 - (dest & 3)) & 3, size);
+            for (int i = 0; i < begin; i++)
+                writebs(local, dest + i, b);
+            dest += begin;
+            size -= begin;
+            int index = (dest >>> 2);
+            int len = (size >>> 2);
+            int value = b & 0xFF;
+            Arrays.fill(local, index, index + len, (value << 24) | (value << 16) | (value << 8) | value);
+            dest += len << 2;
+            size &= 0x3;
+            for (int i = 0; i < size; i++)
+                writebs(local, dest + i, b);
+        }
+
+        public byte readbs(int address) {
+            return readbs(direct, address);
+        }
+
+        public int readw(int address) {
+            return readw(direct, address);
+        }
+
+        public int readd(int address) {
+            return readd(direct, address);
+        }
+
+        public void writebs(int address, byte value) {
+            writebs(direct, address, value);
+        }
+
+        public void writew(int address, int value) {
+            writew(direct, address, value);
+        }
+
+        public void writed(int address, int val) {
+            writed(direct, address, val);
+        }
+
+        public void read(int src, byte[] dest, int dest_offset, int size) {
+            read(direct, src, dest, dest_offset, size);
+        }
+
+        public void write(int dest, byte[] src, int src_offset, int size) {
+            write(direct, dest, src, src_offset, size);
+        }
+
+        public void copy(int dst, int src, int amount) {
+            int src_align = src & 0x3;
+            int dst_align = dst & 0x3;
+            if (src_align == dst_align) {
+                while ((src & 0x3) > 0 && amount > 0) {
+                    writebs(dst++, readbs(src++));
+                    amount--;
+                }
+                int len = (amount >>> 2);
+                if (len > 0)
+                    System.arraycopy(direct, src >>> 2, direct, dst >>> 2, len);
+                len = len << 2;
+                if (len == amount)
+                    return;
+                dst += len;
+                src += len;
+                amount -= len;
+            }
+            super.copy(dst, src, amount);
+        }
+
+        public void fill(int dest, int size, byte b) {
+            fill(direct, dest, size, b);
+        }
+    }
+
+    // Memory is only allocated in 64k chunks the first time something other than 0 is written to them, until
+    // then reads return 0.  Accesses that cross the end of a chunk are split into bytes.
+    //
+    // Chunks are also the unit of copy on write for snapshots.  A snapshot keeps the chunks as they are and marks
+    // them read only, the first write after that gives the live memory a copy of its own.
+    static final class SparseBackend extends Backend {
+        static final int SHIFT = 16;
+        static final int CHUNK = 1 << SHIFT;
+        static final int MASK = CHUNK - 1;
+
+        int[][] chunks;
+        final boolean[] writable; // false if the chunk hasn't been allocated yet or belongs to a snapshot
+        int committed = 0;
+
+        SparseBackend(int size) {
+            chunks = new int[(size + MASK) >>> SHIFT][];
+            writable = new boolean[chunks.length];
+        }
+
+        public Object snapshot() {
+            Arrays.fill(writable, false);
+            return chunks.clone();
+        }
+
+        public void restore(Object snapshot) {
+            chunks = (int[][]) ((int[][]) snapshot).clone();
+            Arrays.fill(writable, false);
+            committed = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                if (chunks[i] != null)
+                    committed++;
+            }
+        }
+
+        public int size() {
+            return chunks.length << SHIFT;
+        }
+
+        public int committed() {
+            return committed << SHIFT;
+        }
+
+        private int[] commit(int address) {
+            int index = address >>> SHIFT;
+            int[] chunk = chunks[index];
+            if (!writable[index]) {
+                if (chunk == null) {
+                    chunk = new int[CHUNK >> 2];
+                    committed++;
+                } else {
+                    chunk = (int[]) chunk.clone();
+                }
+                chunks[index] = chunk;
+                writable[index] = true;
+            }
+            return chunk;
+        }
+
+        public byte readbs(int address) {
+            int[] chunk = chunks[address >>> SHIFT];
+            if (chunk == null)
+                return 0;
+            return IntBackend.readbs(chunk, address & MASK);
+        }
+
+        public int readw(int address) {
+            if ((address & MASK) > CHUNK - 2)
+                return (readbs(address) & 0xFF) | (readbs(address + 1) & 0xFF) << 8;
+            int[] chunk = chunks[address >>> SHIFT];
+            if (chunk == null)
+                return 0;
+            return IntBackend.readw(chunk, address & MASK);
+        }
+
+        public int readd(int address) {
+            if ((address & MASK) > CHUNK - 4)
+                return readw(address) | readw(address + 2) << 16;
+            int[] chunk = chunks[address >>> SHIFT];
+            if (chunk == null)
+                return 0;
+            return IntBackend.readd(chunk, address & MASK);
+        }
+
+        public void writebs(int address, byte value) {
+            int[] chunk;
+            if (writable[address >>> SHIFT])
+                chunk = chunks[address >>> SHIFT];
+            else if (value == 0 && chunks[address >>> SHIFT] == null)
+                return;
+            else
+                chunk = commit(address);
+            IntBackend.writebs(chunk, address & MASK, value);
+        }
+
+        public void writew(int address, int value) {
+            if ((address & MASK) > CHUNK - 2) {
+                writebs(address, (byte) value);
+                writebs(address + 1, (byte) (value >> 8));
+                return;
+            }
+            int[] chunk;
+            if (writable[address >>> SHIFT])
+                chunk = chunks[address >>> SHIFT];
+            else if ((value & 0xFFFF) == 0 && chunks[address >>> SHIFT] == null)
+                return;
+            else
+                chunk = commit(address);
+            IntBackend.writew(chunk, address & MASK, value);
+        }
+
+        public void writed(int address, int value) {
+            if ((address & MASK) > CHUNK - 4) {
+                writew(address, value);
+                writew(address + 2, value >>> 16);
+                return;
+            }
+            int[] chunk;
+            if (writable[address >>> SHIFT])
+                chunk = chunks[address >>> SHIFT];
+            else if (value == 0 && chunks[address >>> SHIFT] == null)
+                return;
+            else
+                chunk = commit(address);
+            IntBackend.writed(chunk, address & MASK, value);
+        }
+
+        public void read(int src, byte[] dest, int offset, int size) {
+            while (size > 0) {
+                int len = Math.min(size, CHUNK - (src & MASK));
+                int[] chunk = chunks[src >>> SHIFT];
+                if (chunk == null)
+                    Arrays.fill(dest, offset, offset + len, (byte) 0);
+                else
+                    IntBackend.read(chunk, src & MASK, dest, offset, len);
+                src += len;
+                offset += len;
+                size -= len;
+            }
+        }
+
+        public void write(int dest, byte[] src, int offset, int size) {
+            while (size > 0) {
+                int len = Math.min(size, CHUNK - (dest & MASK));
+                IntBackend.write(commit(dest), dest & MASK, src, offset, len);
+                dest += len;
+                offset += len;
+                size -= len;
+            }
+        }
+
+        public void fill(int dest, int size, byte value) {
+            while (size > 0) {
+                int len = Math.min(size, CHUNK - (dest & MASK));
+                if (value != 0 || chunks[dest >>> SHIFT] != null)
+                    IntBackend.fill(commit(dest), dest & MASK, len, value);
+                dest += len;
+                size -= len;
+            }
+        }
+    }
+
+    static final class BufferBackend extends Backend {
+        final ByteBuffer buffer;
+        final RandomAccessFile file;
+
+        BufferBackend(ByteBuffer buffer, RandomAccessFile file) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        public int size() {
+            return buffer.capacity();
+        }
+
+        public Object snapshot() {
+            ByteBuffer from = buffer.duplicate();
+            from.clear();
+            ByteBuffer copy = ByteBuffer.allocateDirect(from.capacity());
+            copy.put(from);
+            return copy;
+        }
+
+        public void restore(Object snapshot) {
+            ByteBuffer from = ((ByteBuffer) snapshot).duplicate();
+            from.clear();
+            ByteBuffer to = buffer.duplicate();
+            to.clear();
+            to.put(from);
+        }
+
+        public byte readbs(int address) {
+            return buffer.get(address);
+        }
+
+        public int readw(int address) {
+            return buffer.getShort(address) & 0xFFFF;
+        }
+
+        public int readd(int address) {
+            return buffer.getInt(address);
+        }
+
+        public void writebs(int address, byte value) {
+            buffer.put(address, value);
+        }
+
+        public void writew(int address, int value) {
+            buffer.putShort(address, (short) value);
+        }
+
+        public void writed(int address, int value) {
+            buffer.putInt(address, value);
+        }
+
+        public void read(int src, byte[] dest, int offset, int size) {
+            ByteBuffer b = buffer.duplicate();
+            b.position(src);
+            b.get(dest, offset, size);
+        }
+
+        public void write(int dest, byte[] src, int offset, int size) {
+            ByteBuffer b = buffer.duplicate();
+            b.position(dest);
+            b.put(src, offset, size);
+        }
+
+        public void copy(int dst, int src, int amount) {
+            // overlapping copies have to go byte by byte in the same order memcpy always did
+            if (dst > src && dst < src + amount) {
+                super.copy(dst, src, amount);
+                return;
+            }
+            ByteBuffer from = buffer.duplicate();
+            from.position(src);
+            from.limit(src + amount);
+            ByteBuffer to = buffer.duplicate();
+            to.position(dst);
+            to.put(from);
+        }
+
+        public void free() {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+    }
+
+    private static Backend ram;
+    private static String type = INT;
+    private static String file = "";
+
+    // Picks the backend used by the next alloc
+    static void setType(String type, String file) {
+        if (!type.equals(DIRECT) && !type.equals(MAPPED) && !type.equals(SPARSE))
+            type = INT;
+        RAM.type = type;
+        RAM.file = file;
+    }
+
+    public static String type() {
+        return type;
+    }
+
+    public static int size() {
+        return ram.size();
+    }
+
+    public static int committed() {
+        return ram.committed();
+    }
+
+    // Only the sparse backend does this without copying all of memory, see SparseBackend
+    public static Object snapshot() {
+        return ram.snapshot();
+    }
+
+    public static void restore(Object snapshot) {
+        ram.restore(snapshot);
+    }
 
     static void alloc(int size) {
-        direct = new int[size >> 2];
+        if (type.equals(DIRECT)) {
+            ram = new BufferBackend(ByteBuffer.allocateDirect(size), null);
+        } else if (type.equals(MAPPED)) {
+            try {
+                File f;
+                if (file.length() == 0) {
+                    f = File.createTempFile("jdosbox", ".ram");
+                    f.deleteOnExit();
+                } else {
+                    f = new File(file);
+                }
+                RandomAccessFile raf = new RandomAccessFile(f, "rw");
+                raf.setLength(0); // start with memory that is all zero like the other backends
+                raf.setLength(size);
+                ram = new BufferBackend(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size), raf);
+            } catch (java.io.IOException e) {
+                Log.exit("Can't map main memory to "+(file.length()==0?"a temporary file":file)+": "+e.getMessage());
+            }
+        } else if (type.equals(SPARSE)) {
+            ram = new SparseBackend(size);
+        } else {
+            ram = new IntBackend(size);
+        }
     }
 
     static void free() {
-        direct = null;
+        if (ram != null)
+            ram.free();
+        ram = null;
     }
 
     public static byte readbs(/*HostPt*/int address) {
-        return (byte) (direct[(address >> 2)] >>> ((address & 0x3) << 3));
+        return ram.readbs(address);
     }
 
     public static /*Bit8u*/short readb(/*HostPt*/int address) {
-        return (short) ((direct[(address >>> 2)] >>> ((address & 0x3) << 3)) & 0xFF);
+        return (short) (ram.readbs(address) & 0xFF);
     }
 
     public static /*Bit16u*/int readw(/*HostPt*/int address) {
-        int rem = address & 0x3;
-        int[] local = direct;
-        int index = (address >>> 2);
-        int val = local[index] >>> (rem << 3);
-        if (rem == 3) {
-            val |= local[index + 1] << 8;
-        }
-        return val & 0xFFFF;
+        return ram.readw(address);
     }
 
     public static /*Bit32u*/int readd(/*HostPt*/int address) {
-        int rem = (address & 0x3);
-        if (rem == 0) {
-            return direct[address >>> 2];
-        }
-        int off = rem << 3;
-        int[] local = direct;
-        int index = (address >>> 2);
-        return local[index] >>> off | local[index + 1] << (32 - off);
+        return ram.readd(address);
     }
 
     public static void writeb(/*HostPt*/int address,/*Bit8u*/ int value) {
-        int off = (address & 0x3) << 3;
-        int[] local = direct;
-        int mask = ~(0xFF << off);
-        int index = (address >>> 2);
-        int val = local[index] & mask | (value & 0xFF) << off;
-        local[index] = val;
+        ram.writebs(address, (byte) value);
     }
 
     public static void writebs(/*HostPt*/int address, byte value) {
-        int off = (address & 0x3) << 3;
-        int[] local = direct;
-        int mask = ~(0xFF << off);
-        int index = (address >>> 2);
-        int val = local[index] & mask | (value & 0xFF) << off;
-        local[index] = val;
+        ram.writebs(address, value);
     }
 
     public static void writew(/*HostPt*/int address,/*Bit16u*/int value) {
-        int rem = (address & 0x3);
-        int[] local = direct;
-        int index = (address >>> 2);
-        value &= 0xFFFF;
-        if (rem == 3) {
-            local[index] = (local[index] & 0xFFFFFF | value << 24);
-            index++;
-            local[index] = (local[index] & 0xFFFFFF00 | value >>> 8);
-        } else {
-            int off = rem << 3;
-            int mask = ~(0xFFFF << off);
-            local[index] = (local[index] & mask | value << off);
-        }
+        ram.writew(address, value);
     }
 
     public static void writed(/*HostPt*/int address,/*Bit32u*/int val) {
-        int rem = (address & 0x3);
-        if (rem == 0) {
-            direct[address >>> 2] = val;
-        } else {
-            int index = (address >>> 2);
-            int[] local = direct;
-            int off = rem << 3;
-            int mask = -1 << off;
-            local[index] = (local[index] & ~mask) | (val << off);
-            index++;
-            local[index] = (local[index] & mask) | (val >>> (32 - off));
-        }
+        ram.writed(address, val);
     }
 
     static public void memcpy(int dest, byte[] src, int srcOffset, /*Bitu*/int size) {
-        for (int i = 0; i < size; i++)
-            writeb(dest++, src[srcOffset++]);
+        ram.write(dest, src, srcOffset, size);
     }
 
     static public void memcpy(byte[] dest, int dest_offset, /*PhysPt*/int src,/*Bitu*/int size) {
-        int begin = src & 3;
-        int end = size & ~3;
-        for (int i = 0; i < begin && i < size; i++)
-            dest[i + dest_offset] = readbs(src + i);
-        int off = dest_offset + begin;
-        int index = (src + begin) >> 2;
-        for (int i = begin; i < end && i + 3 < size; i += 4) {
-            int v = direct[index++];
-            dest[off++] = (byte) v;
-            dest[off++] = (byte) (v >> 8);
-            dest[off++] = (byte) (v >> 16);
-            dest[off++] = (byte) (v >> 24);
-        }
-        for (int i = end; i < size; i++)
-            dest[i + dest_offset] = readbs(src + i);
+        ram.read(src, dest, dest_offset, size);
     }
 
     static public void memcpy(Render.Render_t.SRC dst, int offset, /*PhysPt*/int src,/*Bitu*/int amount) {
         if (dst.outWrite8 != null) {
-            for (int i = 0; i < amount; i++)
-                dst.outWrite8[i + offset] = readbs(src + i);
+            ram.read(src, dst.outWrite8, offset, amount);
         } else if (dst.outWrite16 != null) {
             offset >>= 1;
             amount >>= 1;
@@ -139,27 +622,7 @@ final public class RAM {
     }
 
     static public void memcpy(/*PhysPt*/int dst,/*PhysPt*/int src,/*Bitu*/int amount) {
-        int src_align = src & 0x3;
-        int dst_align = dst & 0x3;
-        if (src_align == dst_align) {
-            while ((src & 0x3) > 0 && amount > 0) {
-                writeb(dst++, readb(src++));
-                amount--;
-            }
-            int len = (amount >>> 2);
-            if (len > 0)
-                System.arraycopy(direct, src >>> 2, direct, dst >>> 2, len);
-            len = len << 2;
-            if (len == amount)
-                return;
-            dst += len;
-            src += len;
-            amount -= len;
-        }
-
-        for (int i = 0; i < amount; i++) {
-            writeb(dst++, readb(src++));
-        }
+        ram.copy(dst, src, amount);
     }
 
     static public void zeroset(int dest, int size) {
@@ -167,16 +630,6 @@ final public class RAM {
     }
 
     static public void memset(int dest, int size, int value) {
-        if ((dest & 0x3) == 0) {
-            int index = (dest >>> 2);
-            int len = (size >>> 2);
-            value &= 0xFF;
-            Arrays.fill(direct, index, index + len, (value << 24) | (value << 16) | (value << 8) | value);
-            size = (size & 0x3) << 3;
-            dest += len << 2;
-        }
-        byte b = (byte) value;
-        for (int i = 0; i < size; i++)
-            writeb(dest++, b);
+        ram.fill(dest, size, (byte) value);
     }
 }
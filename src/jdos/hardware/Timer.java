@@ -1,6 +1,7 @@
 package jdos.hardware;
 
 import jdos.cpu.CPU;
+import jdos.cpu.Idle;
 import jdos.misc.Log;
 import jdos.misc.setup.Module_base;
 import jdos.misc.setup.Section;
@@ -45,16 +46,11 @@ public class Timer extends Module_base {
     }
 
     static public void TIMER_AddTick() {
+        Idle.totalCycles+=CPU.CPU_CycleMax;
         /* Setup new amount of cycles for PIC */
         CPU.CPU_CycleLeft=CPU.CPU_CycleMax;
         CPU.CPU_Cycles=0;
         Pic.PIC_Ticks++;
-        /* Go through the list of scheduled events and lower their index with 1000 */
-        Pic.PICEntry entry=Pic.pic_queue.next_entry;
-        while (entry != null) {
-            entry.index -= 1.0;
-            entry=entry.next;
-        }
         /* Call our list of ticker handlers */
         TickerBlock ticker=firstticker;
         while (ticker!=null) {
@@ -92,6 +88,24 @@ public class Timer extends Module_base {
         boolean counterstatus_set;
         boolean counting;
         boolean update_count;
+
+        void copy(PIT_Block from) {
+            cntr = from.cntr;
+            delay = from.delay;
+            start = from.start;
+            read_latch = from.read_latch;
+            write_latch = from.write_latch;
+            mode = from.mode;
+            latch_mode = from.latch_mode;
+            read_state = from.read_state;
+            write_state = from.write_state;
+            bcd = from.bcd;
+            go_read_latch = from.go_read_latch;
+            new_mode = from.new_mode;
+            counterstatus_set = from.counterstatus_set;
+            counting = from.counting;
+            update_count = from.update_count;
+        }
     }
 
     static private PIT_Block[] pit = new PIT_Block[3];
@@ -102,6 +116,35 @@ public class Timer extends Module_base {
     // reprogrammed.
     static private boolean latched_timerstatus_locked;
 
+    // The PIT0 event itself is part of the Pic state
+    static private final class SavedState {
+        PIT_Block[] pit = new PIT_Block[3];
+        boolean gate2;
+        short latched_timerstatus;
+        boolean latched_timerstatus_locked;
+    }
+
+    public static Object TIMER_SaveState() {
+        SavedState s = new SavedState();
+        for (int i=0;i<pit.length;i++) {
+            s.pit[i] = new PIT_Block();
+            s.pit[i].copy(pit[i]);
+        }
+        s.gate2 = gate2;
+        s.latched_timerstatus = latched_timerstatus;
+        s.latched_timerstatus_locked = latched_timerstatus_locked;
+        return s;
+    }
+
+    public static void TIMER_RestoreState(Object state) {
+        SavedState s = (SavedState)state;
+        for (int i=0;i<pit.length;i++)
+            pit[i].copy(s.pit[i]);
+        gate2 = s.gate2;
+        latched_timerstatus = s.latched_timerstatus;
+        latched_timerstatus_locked = s.latched_timerstatus_locked;
+    }
+
     static private Pic.PIC_EventHandler PIT0_Event = new Pic.PIC_EventHandler() {
         public void call(/*Bitu*/int val) {
             Pic.PIC_ActivateIRQ(0);
@@ -1,5 +1,6 @@
 package jdos.hardware.mame;
 
+import jdos.Dosbox;
 import jdos.cpu.Paging;
 import jdos.gui.Render;
 import jdos.hardware.Memory;
@@ -2067,7 +2068,7 @@ public class VoodooCommon extends PCI_Device {
     	/* reset the last_op_time to now and start processing the next command */
     	if (pci.op_pending)
     	{
-    		pci.op_end_time = System.nanoTime();
+    		pci.op_end_time = now();
     		flush_fifos();
     	}
     
@@ -3269,7 +3270,7 @@ public class VoodooCommon extends PCI_Device {
     		if (cycles > 0)
     		{
     			pci.op_pending = true;
-    			pci.op_end_time = System.nanoTime() + cycles * attoseconds_per_cycle;
+    			pci.op_end_time = now() + cycles * attoseconds_per_cycle;
     
 //    			if (LOG_FIFO_VERBOSE) logerror("VOODOO.%d.FIFO:direct write start at %d.%08X%08X end at %d.%08X%08X\n", index,
 //    				device.machine().time().seconds, (UINT32)(device.machine().time().attoseconds >> 32), (UINT32)device.machine().time().attoseconds,
@@ -3284,10 +3285,17 @@ public class VoodooCommon extends PCI_Device {
      *
      *************************************/
     static boolean in_flush = false;
+
+    // With [dosbox] virtualtime the clock is the emulated time
+    static private long now() {
+        if (Dosbox.virtualTime)
+            return (long)(Pic.PIC_FullIndex()*1000000.0);
+        return System.nanoTime();
+    }
     
     private void flush_fifos()
     {
-        long current_time = System.nanoTime();
+        long current_time = now();
 
         /* check for recursive calls */
         if (in_flush)
@@ -4780,7 +4788,7 @@ public class VoodooCommon extends PCI_Device {
             if (cycles!=0)
             {
                 pci.op_pending = true;
-                pci.op_end_time = System.nanoTime() + cycles * attoseconds_per_cycle;
+                pci.op_end_time = now() + cycles * attoseconds_per_cycle;
 
 //                if (LOG_FIFO_VERBOSE) logerror("VOODOO.%d.FIFO:direct write start at %d.%08X%08X end at %d.%08X%08X\n", index,
 //                    device.machine().time().seconds, (UINT32)(device.machine().time().attoseconds >> 32), (UINT32)device.machine().time().attoseconds,
@@ -1932,6 +1932,11 @@ public class Floppy {
         return result;
     }
 
+    // true while the controller is running a command or a drive is seeking
+    static public boolean isBusy() {
+        return isa != null && (isa.msr & (FD_MSR_CMDBUSY|FD_MSR_DRV0BUSY|FD_MSR_DRV1BUSY|FD_MSR_DRV2BUSY|FD_MSR_DRV3BUSY))!=0;
+    }
+
     static public boolean isDriveReady(int index) {
         return isa.drives[index].drive != FDRIVE_DRV_NONE;
     }
@@ -1940,16 +1945,28 @@ public class Floppy {
     static private IoHandler.IO_ReadHandleObject[] ReadHandler = new IoHandler.IO_ReadHandleObject[6];
     static private IoHandler.IO_WriteHandleObject[] WriteHandler = new IoHandler.IO_WriteHandleObject[6];
 
-    private static final IoHandler.IO_ReadHandler read_handler = new IoHandler.IO_ReadHandler() {
+    /* The blocks are for rep insb/outsb on the fifo in non-dma mode, every byte still goes through the
+     * controller so a sector boundary or the end of the transfer happens at the same byte */
+    private static final IoHandler.IO_ReadHandler read_handler = new IoHandler.IO_ReadBlockHandler() {
         public /*Bitu*/int call(/*Bitu*/int port, /*Bitu*/int iolen) {
             return fdctrl_read(isa, port);
         }
+        public int readBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            for (int i=0;i<count;i++)
+                buf[offset+i] = (byte)fdctrl_read(isa, port);
+            return count;
+        }
     };
 
-    private final static IoHandler.IO_WriteHandler write_handler  = new IoHandler.IO_WriteHandler() {
+    private final static IoHandler.IO_WriteHandler write_handler  = new IoHandler.IO_WriteBlockHandler() {
         public void call(/*Bitu*/int port, /*Bitu*/int val, /*Bitu*/int iolen) {
             fdctrl_write(isa, port, val);
         }
+        public int writeBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            for (int i=0;i<count;i++)
+                fdctrl_write(isa, port, buf[offset+i] & 0xFF);
+            return count;
+        }
     };
 
     public static void initIO() {
@@ -1779,6 +1779,44 @@ public class IDE extends Internal {
         return ret;
     }
 
+    /* rep insw/insd and outsw/outsd: the part of the pio buffer that is left goes in one copy, stops at the
+     * end of the transfer so that the next sector or the status phase starts just like with single accesses */
+    static private int ide_data_read_block(Object opaque, int size, byte[] buf, int offset, int count) {
+        IDEBus bus = (IDEBus)opaque;
+        IDEState s = idebus_active_if(bus);
+
+        if ((s.status & DRQ_STAT)==0 || !ide_is_pio_out(s)) {
+            return 0;
+        }
+
+        int n = Math.min(count, (s.data_end - s.data_ptr_offset + size - 1) / size);
+        if (n <= 0)
+            return 0;
+        System.arraycopy(s.data_ptr, s.data_ptr_offset, buf, offset, n * size);
+        s.data_ptr_offset += n * size;
+        if (s.data_ptr_offset >= s.data_end)
+            s.end_transfer_func.call(s);
+        return n;
+    }
+
+    static private int ide_data_write_block(Object opaque, int size, byte[] buf, int offset, int count) {
+        IDEBus bus = (IDEBus)opaque;
+        IDEState s = idebus_active_if(bus);
+
+        if ((s.status & DRQ_STAT)==0 || ide_is_pio_out(s)) {
+            return 0;
+        }
+
+        int n = Math.min(count, (s.data_end - s.data_ptr_offset + size - 1) / size);
+        if (n <= 0)
+            return 0;
+        System.arraycopy(buf, offset, s.data_ptr, s.data_ptr_offset, n * size);
+        s.data_ptr_offset += n * size;
+        if (s.data_ptr_offset >= s.data_end)
+            s.end_transfer_func.call(s);
+        return n;
+    }
+
     final static private Internal.EndTransferFunc ide_dummy_transfer_stop = new Internal.EndTransferFunc() {
         public void call(Internal.IDEState s) {
             s.data_ptr = s.io_buffer;
@@ -2105,18 +2143,26 @@ public class IDE extends Internal {
         }
     };
 
-    public final static IoHandler.IO_WriteHandler ide_data_writew_handler  = new IoHandler.IO_WriteHandler() {
+    public final static IoHandler.IO_WriteHandler ide_data_writew_handler  = new IoHandler.IO_WriteBlockHandler() {
         public void call(/*Bitu*/int port, /*Bitu*/int val, /*Bitu*/int iolen) {
             IDEBus ide = match_ide_controller(port);
             ide_data_writew(ide, port, val);
         }
+        public int writeBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            IDEBus ide = match_ide_controller(port);
+            return ide_data_write_block(ide, iolen, buf, offset, count);
+        }
     };
 
-    public final static IoHandler.IO_WriteHandler ide_data_writel_handler  = new IoHandler.IO_WriteHandler() {
+    public final static IoHandler.IO_WriteHandler ide_data_writel_handler  = new IoHandler.IO_WriteBlockHandler() {
         public void call(/*Bitu*/int port, /*Bitu*/int val, /*Bitu*/int iolen) {
             IDEBus ide = match_ide_controller(port);
             ide_data_writel(ide, port, val);
         }
+        public int writeBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            IDEBus ide = match_ide_controller(port);
+            return ide_data_write_block(ide, iolen, buf, offset, count);
+        }
     };
 
     public static final IoHandler.IO_ReadHandler ide_ioport_read_handler = new IoHandler.IO_ReadHandler() {
@@ -2126,18 +2172,26 @@ public class IDE extends Internal {
         }
     };
 
-    public static final IoHandler.IO_ReadHandler ide_data_readw_handler = new IoHandler.IO_ReadHandler() {
+    public static final IoHandler.IO_ReadHandler ide_data_readw_handler = new IoHandler.IO_ReadBlockHandler() {
         public /*Bitu*/int call(/*Bitu*/int port, /*Bitu*/int iolen) {
             IDEBus ide = match_ide_controller(port);
             return ide_data_readw(ide, port);
         }
+        public int readBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            IDEBus ide = match_ide_controller(port);
+            return ide_data_read_block(ide, iolen, buf, offset, count);
+        }
     };
 
-    public static final IoHandler.IO_ReadHandler ide_data_readl_handler = new IoHandler.IO_ReadHandler() {
+    public static final IoHandler.IO_ReadHandler ide_data_readl_handler = new IoHandler.IO_ReadBlockHandler() {
         public /*Bitu*/int call(/*Bitu*/int port, /*Bitu*/int iolen) {
             IDEBus ide = match_ide_controller(port);
             return ide_data_readl(ide, port);
         }
+        public int readBlock(/*Bitu*/int port, /*Bitu*/int iolen, byte[] buf, int offset, int count) {
+            IDEBus ide = match_ide_controller(port);
+            return ide_data_read_block(ide, iolen, buf, offset, count);
+        }
     };
 
     public static final IoHandler.IO_ReadHandler ide_status_read_handler = new IoHandler.IO_ReadHandler() {
@@ -2172,6 +2226,20 @@ public class IDE extends Internal {
         return idecontroller[index];
     }
 
+    // true while a command or a pio transfer is in progress on any of the drives
+    static public boolean isBusy() {
+        for (int i=0;i<idecontroller.length;i++) {
+            IDEBus bus = idecontroller[i];
+            if (bus == null)
+                continue;
+            for (int j=0;j<bus.ifs.length;j++) {
+                if ((bus.ifs[j].status & (BUSY_STAT|DRQ_STAT))!=0)
+                    return true;
+            }
+        }
+        return false;
+    }
+
     static public void IDE_Auto(IntRef index,BooleanRef slave) {
         IDEBus c;
         int i;
@@ -1,7 +1,9 @@
 package jdos.hardware.qemu;
 
+import jdos.Dosbox;
 import jdos.gui.Main;
 import jdos.hardware.IoHandler;
+import jdos.hardware.Pic;
 import jdos.hardware.RAM;
 import jdos.misc.Log;
 import jdos.util.FileIO;
@@ -18,11 +20,16 @@ public class Qemu {
         return 100;
     }
 
+    // With [dosbox] virtualtime the clock is the emulated time
     static public long qemu_get_clock_ns() {
+        if (Dosbox.virtualTime)
+            return (long)(Pic.PIC_FullIndex()*1000000.0);
         return System.nanoTime();
     }
 
     static public long qemu_get_clock_ms() {
+        if (Dosbox.virtualTime)
+            return (long)Pic.PIC_FullIndex();
         return System.currentTimeMillis();
     }
 
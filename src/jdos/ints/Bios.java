@@ -16,6 +16,7 @@ import jdos.misc.setup.Section;
 import jdos.types.LogSeverities;
 import jdos.types.LogTypes;
 import jdos.types.MachineType;
+import jdos.util.CalendarHelper;
 import jdos.util.IntRef;
 
 import java.util.Calendar;
@@ -599,7 +600,7 @@ public class Bios extends Module_base {
 
     static void BIOS_HostTimeSync() {
         /* Setup time and date */
-        Calendar calendar = Calendar.getInstance();
+        Calendar calendar = CalendarHelper.now();
 
         Dos.dos.date.day=(byte)calendar.get(Calendar.DAY_OF_MONTH);
         Dos.dos.date.month=(byte)(calendar.get(Calendar.MONTH)+1);
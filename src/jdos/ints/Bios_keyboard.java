@@ -4,6 +4,7 @@ import jdos.Dosbox;
 import jdos.cpu.CPU;
 import jdos.cpu.CPU_Regs;
 import jdos.cpu.Callback;
+import jdos.cpu.Idle;
 import jdos.hardware.IoHandler;
 import jdos.hardware.Memory;
 import jdos.misc.Log;
@@ -475,6 +476,7 @@ public class Bios_keyboard {
                 } else {
                     /* enter small idle loop to allow for irqs to happen */
                     CPU_Regs.reg_ip(CPU_Regs.reg_ip()+1);
+                    Idle.poll();
                 }
                 break;
             case 0x10: /* GET KEYSTROKE (enhanced keyboards only) */
@@ -487,6 +489,7 @@ public class Bios_keyboard {
                 } else {
                     /* enter small idle loop to allow for irqs to happen */
                     CPU_Regs.reg_ip(CPU_Regs.reg_ip()+1);
+                    Idle.poll();
                 }
                 break;
             case 0x01: /* CHECK FOR KEYSTROKE */
@@ -506,6 +509,7 @@ public class Bios_keyboard {
                     } else {
                         /* no key available */
                         Callback.CALLBACK_SZF(true);
+                        Idle.poll();
                         break;
                     }
         //			Callback.CALLBACK_Idle();
@@ -514,6 +518,7 @@ public class Bios_keyboard {
             case 0x11: /* CHECK FOR KEYSTROKE (enhanced keyboards only) */
                 if (!check_key(temp)) {
                     Callback.CALLBACK_SZF(true);
+                    Idle.poll();
                 } else {
                     Callback.CALLBACK_SZF(false);
                     if (((temp.value&0xff)==0xf0) && (temp.value>>8)!=0) {
@@ -81,6 +81,10 @@ public class EMS extends Module_base {
 	        data[3]=(byte)((val >> 8) & 0xFF);
         }
         byte[] data = new byte[4];
+
+        void copy(EMM_Mapping from) {
+            System.arraycopy(from.data, 0, data, 0, data.length);
+        }
     }
 
     static private class EMM_Handle {
@@ -93,9 +97,18 @@ public class EMS extends Module_base {
         String name="";
         boolean saved_page_map;
         EMM_Mapping[] page_map=new EMM_Mapping[EMM_MAX_PHYS];
+
+        void copy(EMM_Handle from) {
+            pages = from.pages;
+            mem = from.mem;
+            name = from.name;
+            saved_page_map = from.saved_page_map;
+            for (int i=0;i<page_map.length;i++)
+                page_map[i].copy(from.page_map[i]);
+        }
     }
 
-    private static int ems_type;
+    static int ems_type;
 
     private final static EMM_Handle[] emm_handles = new EMM_Handle[EMM_MAX_HANDLES];
     private final static EMM_Mapping[] emm_mappings = new EMM_Mapping[EMM_MAX_PHYS];
@@ -249,7 +262,7 @@ public class EMS extends Module_base {
         return true;
     }
 
-    private static /*Bit8u*/short EMM_AllocateMemory(/*Bit16u*/int pages, /*Bit16u*/IntRef dhandle, boolean can_allocate_zpages) {
+    static /*Bit8u*/short EMM_AllocateMemory(/*Bit16u*/int pages, /*Bit16u*/IntRef dhandle, boolean can_allocate_zpages) {
         /* Check for 0 page allocation */
         if (pages==0) {
             if (!can_allocate_zpages) return EMM_ZERO_PAGES;
@@ -306,7 +319,7 @@ public class EMS extends Module_base {
         return EMM_NO_ERROR;
     }
 
-    private static /*Bit8u*/short EMM_MapPage(/*Bitu*/int phys_page,/*Bit16u*/int handle,/*Bit16u*/int log_page) {
+    static /*Bit8u*/short EMM_MapPage(/*Bitu*/int phys_page,/*Bit16u*/int handle,/*Bit16u*/int log_page) {
     //	LOG_MSG("EMS MapPage handle %d phys %d log %d",handle,phys_page,log_page);
         /* Check for too high physical page */
         if (phys_page>=EMM_MAX_PHYS) return EMM_ILL_PHYS;
@@ -408,7 +421,7 @@ public class EMS extends Module_base {
         return EMM_ILL_PHYS;
     }
 
-    private static /*Bit8u*/short EMM_ReleaseMemory(/*Bit16u*/int handle) {
+    static /*Bit8u*/short EMM_ReleaseMemory(/*Bit16u*/int handle) {
         /* Check for valid handle */
         if (!ValidHandle(handle)) return EMM_INVALID_HANDLE;
 
@@ -1404,21 +1417,7 @@ public class EMS extends Module_base {
         emm_device = new device_EMM(ems_type!=2);
 		Dos_devices.DOS_AddDevice(emm_device);
 
-        /* Clear handle and page tables */
-        /*Bitu*/int i;
-        for (i=0;i<EMM_MAX_HANDLES;i++) {
-            emm_handles[i].mem=0;
-            emm_handles[i].pages=NULL_HANDLE;
-            emm_handles[i].name="";
-        }
-        for (i=0;i<EMM_MAX_PHYS;i++) {
-            emm_mappings[i].page(NULL_PAGE);
-            emm_mappings[i].handle(NULL_HANDLE);
-        }
-        for (i=0;i<0x40;i++) {
-            emm_segmentmappings[i].page(NULL_PAGE);
-            emm_segmentmappings[i].handle(NULL_HANDLE);
-        }
+        EMM_ClearTables();
 
         EMM_AllocateSystemHandle(8);	// allocate OS-dedicated handle (ems handle zero, 128kb)
 
@@ -1472,6 +1471,59 @@ public class EMS extends Module_base {
         }
     }
 
+    /* Clear handle and page tables */
+    static void EMM_ClearTables() {
+        for (int i=0;i<EMM_MAX_HANDLES;i++) {
+            emm_handles[i] = new EMM_Handle();
+            emm_handles[i].mem=0;
+            emm_handles[i].pages=NULL_HANDLE;
+            emm_handles[i].name="";
+        }
+        for (int i=0;i<EMM_MAX_PHYS;i++) {
+            emm_mappings[i] = new EMM_Mapping();
+            emm_mappings[i].page(NULL_PAGE);
+            emm_mappings[i].handle(NULL_HANDLE);
+        }
+        for (int i=0;i<0x40;i++) {
+            emm_segmentmappings[i] = new EMM_Mapping();
+            emm_segmentmappings[i].page(NULL_PAGE);
+            emm_segmentmappings[i].handle(NULL_HANDLE);
+        }
+    }
+
+    // For Checkpoint, the pages are saved by RAM.snapshot and the page handles by Memory.  The page frame and
+    // the other mapped segments are mapped again on restore since they live in the paging tables
+    public static Object EMS_SaveState() {
+        if (emm_handles[0] == null)
+            return null;
+        EMM_Handle[] handles = new EMM_Handle[EMM_MAX_HANDLES];
+        for (int i=0;i<handles.length;i++) {
+            handles[i] = new EMM_Handle();
+            handles[i].copy(emm_handles[i]);
+        }
+        EMM_Mapping[] mappings = new EMM_Mapping[EMM_MAX_PHYS+0x40];
+        for (int i=0;i<mappings.length;i++) {
+            mappings[i] = new EMM_Mapping();
+            mappings[i].copy(i<EMM_MAX_PHYS ? emm_mappings[i] : emm_segmentmappings[i-EMM_MAX_PHYS]);
+        }
+        return new Object[] {handles, mappings};
+    }
+
+    public static void EMS_RestoreState(Object state) {
+        if (state == null || emm_handles[0] == null)
+            return;
+        EMM_Handle[] handles = (EMM_Handle[])((Object[])state)[0];
+        EMM_Mapping[] mappings = (EMM_Mapping[])((Object[])state)[1];
+        for (int i=0;i<handles.length;i++)
+            emm_handles[i].copy(handles[i]);
+        for (int i=0;i<EMM_MAX_PHYS;i++)
+            emm_mappings[i].copy(mappings[i]);
+        for (int i=0;i<0x40;i++)
+            emm_segmentmappings[i].copy(mappings[i+EMM_MAX_PHYS]);
+        if (ems_type>0)
+            EMM_RestoreMappingTable();
+    }
+
     void close() {
         if (ems_type<=0) return;
 
@@ -65,6 +65,13 @@ public class XMS extends Module_base {
         /*MemHandle*/int mem;
         /*Bit8u*/short locked;
         boolean	free;
+
+        void copy(XMS_Block from) {
+            size = from.size;
+            mem = from.mem;
+            locked = from.locked;
+            free = from.free;
+        }
     }
 
 //    private static class XMS_MemMove {
@@ -109,7 +116,7 @@ public class XMS extends Module_base {
         return 0;
     }
 
-    private static /*Bitu*/int XMS_AllocateMemory(/*Bitu*/int size, /*Bit16u*/IntRef handle) {	// size = kb
+    static /*Bitu*/int XMS_AllocateMemory(/*Bitu*/int size, /*Bit16u*/IntRef handle) {	// size = kb
         /* Find free handle */
         /*Bit16u*/int index=1;
         while (!xms_handles[index].free) {
@@ -132,7 +139,7 @@ public class XMS extends Module_base {
         return 0;
     }
 
-    private static /*Bitu*/int XMS_FreeMemory(/*Bitu*/int handle) {
+    static /*Bitu*/int XMS_FreeMemory(/*Bitu*/int handle) {
         if (InvalidHandle(handle)) return XMS_INVALID_HANDLE;
         Memory.MEM_ReleasePages(xms_handles[handle].mem);
         xms_handles[handle].mem=-1;
@@ -439,7 +446,6 @@ public class XMS extends Module_base {
         Section_prop section=(Section_prop)configuration;
         umb_available=false;
         if (!section.Get_bool("xms")) return;
-        /*Bitu*/int i;
         Bios.BIOS_ZeroExtendedSize(true);
         Dos_misc.DOS_AddMultiplexHandler(multiplex_xms);
 
@@ -453,7 +459,16 @@ public class XMS extends Module_base {
         //	callback XMS_Handler
         //	retf
 
-        for (i=0;i<XMS_HANDLES;i++) {
+        XMS_ClearHandles();
+
+        /* Set up UMB chain */
+        umb_available=section.Get_bool("umb");
+        boolean ems_available = EMS.GetEMSType(section)>0;
+        Dos_memory.DOS_BuildUMBChain(section.Get_bool("umb"),ems_available);
+    }
+
+    static void XMS_ClearHandles() {
+        for (int i=0;i<XMS_HANDLES;i++) {
             xms_handles[i] = new XMS_Block();
             xms_handles[i].free=true;
             xms_handles[i].mem=-1;
@@ -462,11 +477,27 @@ public class XMS extends Module_base {
         }
         /* Disable the 0 handle */
         xms_handles[0].free	= false;
+    }
 
-        /* Set up UMB chain */
-        umb_available=section.Get_bool("umb");
-        boolean ems_available = EMS.GetEMSType(section)>0;
-        Dos_memory.DOS_BuildUMBChain(section.Get_bool("umb"),ems_available);
+    // For Checkpoint, the memory of the blocks is saved by RAM.snapshot and the page handles by Memory.  Nothing
+    // is saved if the driver isn't loaded
+    public static Object XMS_SaveState() {
+        if (xms_handles[0] == null)
+            return null;
+        XMS_Block[] s = new XMS_Block[XMS_HANDLES];
+        for (int i=0;i<XMS_HANDLES;i++) {
+            s[i] = new XMS_Block();
+            s[i].copy(xms_handles[i]);
+        }
+        return s;
+    }
+
+    public static void XMS_RestoreState(Object state) {
+        if (state == null || xms_handles[0] == null)
+            return;
+        XMS_Block[] s = (XMS_Block[])state;
+        for (int i=0;i<XMS_HANDLES;i++)
+            xms_handles[i].copy(s[i]);
     }
 
     void ShutDown(){
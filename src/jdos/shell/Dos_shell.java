@@ -1152,7 +1152,7 @@ public class Dos_shell extends Program {
             if (HELP(args, "DATE")) return;
             if(ScanCMDBool(args,"h")) {
                 // synchronize date with host parameter
-                Calendar calendar = Calendar.getInstance();
+                Calendar calendar = CalendarHelper.now();
 
                 CPU_Regs.reg_ecx.word(calendar.get(Calendar.YEAR));
                 CPU_Regs.reg_edx.high(calendar.get(Calendar.MONTH) + 1);
@@ -1698,7 +1698,7 @@ public class Dos_shell extends Program {
             if (HELP(args, "TIME")) return;
             if(ScanCMDBool(args,"h")) {
                 // synchronize date with host parameter
-                Calendar calendar = Calendar.getInstance();
+                Calendar calendar = CalendarHelper.now();
 
                 // reg_ah=0x2d; // set system time TODO
                 // CALLBACK_RunRealInt(0x21);
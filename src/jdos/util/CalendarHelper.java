@@ -1,10 +1,25 @@
 package jdos.util;
 
+import jdos.Dosbox;
 import jdos.dos.Dos;
+import jdos.hardware.Pic;
 
 import java.util.Calendar;
+import java.util.TimeZone;
 
 public class CalendarHelper {
+    // The date and time the guest sees.  With [dosbox] virtualtime it starts at a fixed date and only moves with
+    // the emulated milliseconds so that every run sees the same clock.
+    public static Calendar now() {
+        if (!Dosbox.virtualTime)
+            return Calendar.getInstance();
+        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        c.clear();
+        c.set(2000, Calendar.JANUARY, 1);
+        c.add(Calendar.MILLISECOND, Pic.PIC_Ticks);
+        return c;
+    }
+
     public static int Dos_time(long time) {
         Calendar c = Calendar.getInstance();
         c.setTimeInMillis(time);
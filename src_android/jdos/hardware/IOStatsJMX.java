@@ -0,0 +1,10 @@
+package jdos.hardware;
+
+// There is no jmx on android, IOSTATS.COM still shows the counters
+public class IOStatsJMX {
+    static public void register() {
+    }
+
+    static public void unregister() {
+    }
+}
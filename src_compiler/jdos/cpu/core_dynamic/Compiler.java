@@ -13,12 +13,16 @@ import jdos.misc.setup.Section_prop;
 
 import java.io.InputStream;
 import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.LinkedList;
+import java.util.PriorityQueue;
 
 public class Compiler extends Helper {
     public static int compiledMethods = 0;
     public static long compiledOps = 0;
+    public static long deadFlags = 0;
+    public static long cachedRegisterOps = 0;
+    public static long uncachedRegisterOps = 0;
+    // keep the general purpose registers in locals of the compiled method, see RegisterCache
+    public static boolean cacheRegisters = false;
     public static boolean saveClasses = false;
     public static int min_block_size = 1;
     public static boolean alwayUseFastVersion = false; // useful for unit test
@@ -27,54 +31,124 @@ public class Compiler extends Helper {
     static final private boolean cacheSegments = true;
 
     private static Thread[] compilerThread = null;
-    private static final LinkedList compilerQueue = new LinkedList();
+    private static final PriorityQueue compilerQueue = new PriorityQueue();
+    private static long queueSequence = 0;
+    private static final Object statsLock = new Object();
 
     // :TODO: update CMPXCHG to update flags like in normal core
 
-    // Set to 0 during unit test
-    public static int processorCount = 1; //Runtime.getRuntime().availableProcessors()-1; // :TODO: not sure if the compiler is thread safe
+    // Set to 0 during unit test, otherwise set from the [compiler] threads setting before the first compile
+    public static int processorCount = Math.max(1, Runtime.getRuntime().availableProcessors()-1);
     public static boolean thowException = false; // true during unit test
 
-    static {
+    // The priority is the block's run count when it was queued, a block that keeps running while it waits
+    // in the queue is re-queued with its current count when it reaches the head so that the hottest blocks
+    // are compiled first during a backlog.
+    private static final class QueueEntry implements Comparable {
+        QueueEntry(DecodeBlock block) {
+            this.block = block;
+            this.priority = block.runCount;
+            this.sequence = queueSequence++;
+        }
+        // traces are only built from blocks that are already hot, so they go ahead of everything else
+        QueueEntry(Trace trace) {
+            this.trace = trace;
+            this.priority = Integer.MAX_VALUE;
+            this.sequence = queueSequence++;
+        }
+        // as are blocks that are compiled again
+        QueueEntry(OptimizeOp optimize) {
+            this.optimize = optimize;
+            this.priority = Integer.MAX_VALUE;
+            this.sequence = queueSequence++;
+        }
+        DecodeBlock block;
+        Trace trace;
+        OptimizeOp optimize;
+        int priority;
+        long sequence;
+
+        public int compareTo(Object o) {
+            QueueEntry other = (QueueEntry)o;
+            if (priority != other.priority)
+                return priority > other.priority ? -1 : 1;
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    // How many times a worker will re-sort the head of the queue before it just takes what is there
+    private static final int MAX_REQUEUE = 8;
+
+    static private QueueEntry nextFromQueue() throws InterruptedException {
+        synchronized (compilerQueue) {
+            int requeued = 0;
+            while (true) {
+                if (compilerQueue.isEmpty()) {
+                    compilerQueue.wait();
+                    continue;
+                }
+                QueueEntry entry = (QueueEntry)compilerQueue.poll();
+                if (entry.trace != null)
+                    return entry;
+                if (entry.optimize != null) {
+                    if (entry.optimize.parent.optimize != entry.optimize)
+                        continue; // the cache block was cleared or one of its successors was
+                    return entry;
+                }
+                if (!entry.block.active)
+                    continue; // the cache block was cleared while this was waiting
+                if (requeued < MAX_REQUEUE && entry.block.runCount != entry.priority && !compilerQueue.isEmpty()) {
+                    requeued++;
+                    compilerQueue.add(new QueueEntry(entry.block));
+                    continue;
+                }
+                return entry;
+            }
+        }
+    }
+
+    static private synchronized void startThreads() {
+        if (compilerThread != null)
+            return;
         compilerThread = new Thread[processorCount];
         for (int i = 0; i < compilerThread.length; i++) {
             compilerThread[i] = new Thread(new Runnable() {
                 public void run() {
                     try {
                         while (true) {
-                            DecodeBlock nextBlock = null;
-                            synchronized (compilerQueue) {
-                                if (compilerQueue.isEmpty())
-                                    compilerQueue.wait();
-                                if (!compilerQueue.isEmpty())
-                                    nextBlock = (DecodeBlock) compilerQueue.pop();
+                            QueueEntry entry = nextFromQueue();
+                            if (entry.trace != null) {
+                                do_compile(entry.trace);
+                                continue;
                             }
-                            if (nextBlock == null) {
-                                break;
+                            if (entry.optimize != null) {
+                                do_compile(entry.optimize);
+                                continue;
                             }
-                            if (nextBlock.active) {
-                                Op result = do_compile(nextBlock);
-                                if (result != null) {
-                                    //nextBlock.op = nextBlock.next;
-                                    // In Doom, bypassing the DecodeBlock call and instead having Core_dynamic call
-                                    // the compiled code directly led to a nice increase in performance (10% at the time
-                                    // of testing).  Keep in mind self modified code detection is not enabled within
-                                    // the compiled code, hopefully by having the code run in the dynamic core 100-1000
-                                    // times before being marked as needing compiling will weed out all the blocks
-                                    // that modify themselves.
-                                    //
-                                    // Do not set nextBlock.parent.code on this thread, because depending on the timing
-                                    // on the machine it is being run on, it may result in weird behavior.
-                                    nextBlock.compiledOp = result;
-                                }
+                            DecodeBlock nextBlock = entry.block;
+                            Op result = do_compile(nextBlock);
+                            if (result != null) {
+                                //nextBlock.op = nextBlock.next;
+                                // In Doom, bypassing the DecodeBlock call and instead having Core_dynamic call
+                                // the compiled code directly led to a nice increase in performance (10% at the time
+                                // of testing).  Keep in mind self modified code detection is not enabled within
+                                // the compiled code, hopefully by having the code run in the dynamic core 100-1000
+                                // times before being marked as needing compiling will weed out all the blocks
+                                // that modify themselves.
+                                //
+                                // Do not set nextBlock.parent.code on this thread, because depending on the timing
+                                // on the machine it is being run on, it may result in weird behavior.
+                                nextBlock.compiledOp = result;
                             }
                         }
+                    } catch (InterruptedException e) {
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                     System.out.println("Compiler thread has exited");
                 }
-            });
+            }, "Compiler "+i);
+            compilerThread[i].setDaemon(true);
             compilerThread[i].start();
         }
     }
@@ -91,30 +165,67 @@ public class Compiler extends Helper {
 
     static public void compile(DecodeBlock block) {
         if (block == null) {
-            for (int i = 0; i < compilerThread.length; i++)
-            try {
-                compilerThread[i].join();
-            } catch (Exception e) {
+            if (compilerThread != null) {
+                for (int i = 0; i < compilerThread.length; i++)
+                try {
+                    compilerThread[i].join();
+                } catch (Exception e) {
+                }
             }
             return;
         }
-        synchronized (compilerQueue) {
-            if (processorCount > 0) {
-                compilerQueue.add(block);
+        if (processorCount > 0) {
+            if (compilerThread == null)
+                startThreads();
+            synchronized (compilerQueue) {
+                compilerQueue.add(new QueueEntry(block));
                 compilerQueue.notify();
-            } else {
-                Op result = do_compile(block);
-                if (result != null)
-                    block.compiledOp = result;
             }
+        } else {
+            Op result = do_compile(block);
+            if (result != null)
+                block.compiledOp = result;
+        }
+    }
+
+    static public void compile(Trace trace) {
+        if (processorCount > 0) {
+            if (compilerThread == null)
+                startThreads();
+            synchronized (compilerQueue) {
+                compilerQueue.add(new QueueEntry(trace));
+                compilerQueue.notify();
+            }
+        } else {
+            do_compile(trace);
+        }
+    }
+
+    static public void compile(OptimizeOp op) {
+        if (processorCount > 0) {
+            if (compilerThread == null)
+                startThreads();
+            synchronized (compilerQueue) {
+                compilerQueue.add(new QueueEntry(op));
+                compilerQueue.notify();
+            }
+        } else {
+            do_compile(op);
         }
     }
 
     static public void removeFromQueue(DecodeBlock block) {
+        // The entry is dropped by the worker when it reaches the head of the queue, this avoids a linear
+        // search of the queue every time a cache block is cleared
+        block.active = false;
+    }
+
+    static public int queueSize() {
         synchronized (compilerQueue) {
-            compilerQueue.remove(block);
+            return compilerQueue.size();
         }
     }
+
     static private int searchFlag(Op searchOp, int flag, int result) {
         while (searchOp!=null) {
             if ((searchOp.gets() & flag) != 0)
@@ -123,8 +234,11 @@ public class Compiler extends Helper {
                 return result;
             searchOp = searchOp.next;
         }
-        // Always set the flag before a jump
-        return result | flag;
+        // Always set the flag before a jump, unless FlagLiveness found that nothing after the block reads it
+        if ((state().liveOut & flag) != 0)
+            return result | flag;
+        state().deadFlags++;
+        return result;
     }
 
     static private boolean isDec(Op op) {
@@ -248,8 +362,103 @@ public class Compiler extends Helper {
             return ss;
         }
     }
-    static private Op opThatSetFlags = null;
+    // Everything that is tracked while generating the source of a single block, each compiler thread has its own
+    static private final class State {
+        Op opThatSetFlags;
+        boolean eaaStarted;
+        boolean valStarted;
+        boolean val2Started;
+        boolean longValStarted;
+        boolean shortValStarted;
+        // flags the code after the block can use, only less than all of them when BlockProfile knows its successors
+        int liveOut = CPU_Regs.CF | CPU_Regs.PF | CPU_Regs.AF | CPU_Regs.ZF | CPU_Regs.SF | CPU_Regs.OF;
+        int deadFlags; // flags left out because of liveOut
+    }
+
+    static private final ThreadLocal state = new ThreadLocal() {
+        protected Object initialValue() {
+            return new State();
+        }
+    };
+
+    static private State state() {
+        return (State)state.get();
+    }
+
+    // Javassist doesn't support labeled break/continue, so instead of pasting the source of each block into one
+    // method the trace calls each block's compiled op from its own call site.  Each site only ever sees one
+    // class so the JVM inlines the blocks and the whole loop ends up in a single compiled method.
+    static public void do_compile(Trace trace) {
+        StringBuilder method = new StringBuilder();
+        method.append("int b = 0;\nwhile (true) {\nswitch (b) {\n");
+        for (int i=0;i<trace.blocks.length;i++) {
+            method.append("case ");
+            method.append(i);
+            method.append(": {\nint r = ops[");
+            method.append(i);
+            method.append("].call();\n");
+            for (int l=0;l<2;l++) {
+                int target = trace.targets[i][l];
+                if (target < 0)
+                    continue;
+                method.append("if (r == Constants.BR_Link");
+                method.append(l+1);
+                method.append(") {\nif (CPU.CPU_Cycles<=0) return r;\n");
+                // the link is only still there if neither block has been cleared
+                method.append("if (blocks[");
+                method.append(i);
+                method.append("].generation!=");
+                method.append(trace.generations[i]);
+                method.append(" || blocks[");
+                method.append(target);
+                method.append("].generation!=");
+                method.append(trace.generations[target]);
+                method.append(") return invalid(r);\n");
+                method.append("Core_dynamic.currentBlock = blocks[");
+                method.append(target);
+                method.append("];\nb = ");
+                method.append(target);
+                method.append(";\nbreak;\n}\n");
+            }
+            method.append("return r;\n}\n");
+        }
+        method.append("}\n}\n");
+        try {
+            String className = nextClassName();
+            ClassPool pool = (ClassPool)Compiler.pool.get();
+            CtClass codeBlock = pool.makeClass(className);
+            codeBlock.setSuperclass(pool.getCtClass("jdos.cpu.core_dynamic.TraceOp"));
+            codeBlock.addMethod(CtNewMethod.make("public int call() {" + method.toString() + "}", codeBlock));
+            Class clazz = new BlockClassLoader().define(codeBlock.toBytecode());
+            codeBlock.detach();
+            TraceOp op = (TraceOp)clazz.newInstance();
+            op.blocks = trace.blocks;
+            op.ops = trace.ops;
+            op.original = trace.original;
+            op.cycle = trace.original.cycle;
+            trace.op = op;
+        } catch (Exception e) {
+            System.out.println(method.toString());
+            e.printStackTrace();
+            trace.failed = true;
+            if (thowException)
+                throw new RuntimeException("Failed to compile trace");
+        }
+    }
+
+    static public void do_compile(OptimizeOp op) {
+        Op result = do_compile(op, op.liveOut);
+        if (result != null)
+            op.optimizedOp = result;
+        else
+            op.failed = true;
+    }
+
     static public Op do_compile(Op op) {
+        return do_compile(op, CPU_Regs.CF | CPU_Regs.PF | CPU_Regs.AF | CPU_Regs.ZF | CPU_Regs.SF | CPU_Regs.OF);
+    }
+
+    static private Op do_compile(Op op, int liveOut) {
         Op prev = op;
         op = op.next;
         StringBuilder method = new StringBuilder();
@@ -266,15 +475,14 @@ public class Compiler extends Helper {
         int runningEipCount = 0;
         boolean loop = false;
         String loopCondition = null;
-        eaaStarted = false;
-        valStarted = false;
-        val2Started = false;
-        longValStarted = false;
-        shortValStarted = false;
-        opThatSetFlags = null;
+        state.set(new State());
+        state().liveOut = liveOut;
 
+        RegisterCache registers = cacheRegisters ? new RegisterCache(method) : null;
         while (op != null) {
             boolean tryPageFault = false;
+            if (registers != null)
+                registers.begin();
             if (true) {
                 count++;
                 if (start == null) {
@@ -418,7 +626,7 @@ public class Compiler extends Helper {
                 }
                 boolean reset = seg.wasSet;
                 if (shouldSet>0)
-                    opThatSetFlags = op;
+                    state().opThatSetFlags = op;
                 if (!loopClosed && compile_op(op, alwayUseFastVersion?0:shouldSet, method, (runningEipCount>0)?"CPU_Regs.reg_eip+="+runningEipCount+";":"", seg)) {
                     if (combineEIP) {
                         if (testLocalVariableAccess)
@@ -473,6 +681,8 @@ public class Compiler extends Helper {
                         Log.exit("Instruction "+Integer.toHexString(op.c)+" jumped but there was another instruction after it: "+Integer.toHexString(op.next.c));
                     }
                 }
+                if (registers != null)
+                    registers.end();
                 if (reset) {
                     seg.reset();
                 }
@@ -481,17 +691,26 @@ public class Compiler extends Helper {
             }
         }
         if (count >= min_block_size) {
-            if (eaaStarted) {
+            if (state().eaaStarted) {
                 method.insert(eaaPos, "int eaa;");
             }
+            if (registers != null)
+                registers.finish();
             Op compiled = compileMethod(start, method, true);
             if (compiled != null) {
                 // once this is assigned it is live
                 start.next = compiled;
-                compiledMethods++;
-                compiledOps+=count;
-                if ((compiledMethods % 250)==0) {
-                    System.out.println("Compiled "+compiledMethods+" blocks ("+compilerQueue.size()+" in queue, ave ops/block: "+((float)compiledOps/compiledMethods));
+                synchronized (statsLock) {
+                    compiledMethods++;
+                    compiledOps+=count;
+                    deadFlags+=state().deadFlags;
+                    if (registers != null) {
+                        cachedRegisterOps+=registers.cached;
+                        uncachedRegisterOps+=registers.barriers;
+                    }
+                    if ((compiledMethods % 250)==0) {
+                        System.out.println("Compiled "+compiledMethods+" blocks ("+queueSize()+" in queue, ave ops/block: "+((float)compiledOps/compiledMethods)+", deferred "+BlockProfile.deferred+", refused "+BlockProfile.refused+", optimized "+BlockProfile.optimized+", reverted "+BlockProfile.reverted+", dead flags "+deadFlags+", register ops cached "+cachedRegisterOps+"/"+(cachedRegisterOps+uncachedRegisterOps)+")");
+                    }
                 }
                 return compiled;
             }
@@ -804,8 +1023,8 @@ public class Compiler extends Helper {
         }
     }
     static String getO() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB: return "Flags.lf_resb() == 0x80";
                 case Op.FLAG_TYPE_INCW: return "Flags.lf_resw() == 0x8000";
                 case Op.FLAG_TYPE_INCD: return "Flags.lf_resd() == 0x80000000";
@@ -883,8 +1102,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_O()";
     }
     static String getNO() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB: return "Flags.lf_resb() != 0x80";
                 case Op.FLAG_TYPE_INCW: return "Flags.lf_resw() != 0x8000";
                 case Op.FLAG_TYPE_INCD: return "Flags.lf_resd() != 0x80000000";
@@ -962,8 +1181,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_NO()";
     }
     static String getB() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB:
                 case Op.FLAG_TYPE_INCW:
                 case Op.FLAG_TYPE_INCD:
@@ -1044,8 +1263,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_B()";
     }
     static String getNB() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB:
                 case Op.FLAG_TYPE_INCW:
                 case Op.FLAG_TYPE_INCD:
@@ -1126,8 +1345,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_NB()";
     }
     static String getZ() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB:
                 case Op.FLAG_TYPE_DECB:
                 case Op.FLAG_TYPE_ADDB:
@@ -1187,8 +1406,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_Z()";
     }
     static String getNZ() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB:
                 case Op.FLAG_TYPE_DECB:
                 case Op.FLAG_TYPE_ADDB:
@@ -1249,8 +1468,8 @@ public class Compiler extends Helper {
     }
 
     static String getBE() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_SUBB:
                 case Op.FLAG_TYPE_CMPB:
                     return "Flags.lf_var1b()<=Flags.lf_var2b()";
@@ -1266,8 +1485,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_BE()";
     }
     static String getNBE() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_SUBB:
                 case Op.FLAG_TYPE_CMPB:
                     return "Flags.lf_var1b()>Flags.lf_var2b()";
@@ -1283,8 +1502,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_NBE()";
     }
     static String getS() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB:
                 case Op.FLAG_TYPE_DECB:
                 case Op.FLAG_TYPE_ADDB:
@@ -1344,8 +1563,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_S()";
     }
     static String getNS() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_INCB:
                 case Op.FLAG_TYPE_DECB:
                 case Op.FLAG_TYPE_ADDB:
@@ -1405,8 +1624,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_NS()";
     }
     static String getP() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            if (opThatSetFlags.getFlagType()>0)
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            if (state().opThatSetFlags.getFlagType()>0)
                 return "Flags.parity_lookup[Flags.lf_resb() & 0xFF] != 0";
             else
                 return "CPU_Regs.GETFLAG(CPU_Regs.PF) != 0";
@@ -1414,8 +1633,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_P()";
     }
     static String getNP() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            if (opThatSetFlags.getFlagType()>0)
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            if (state().opThatSetFlags.getFlagType()>0)
                 return "Flags.parity_lookup[Flags.lf_resb() & 0xFF] == 0";
             else
                 return "CPU_Regs.GETFLAG(CPU_Regs.PF) == 0";
@@ -1423,8 +1642,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_NP()";
     }
     static String getL() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_SUBB:
                 case Op.FLAG_TYPE_CMPB:
                     return "(byte)Flags.lf_var1b()<(byte)Flags.lf_var2b()";
@@ -1440,8 +1659,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_L()";
     }
     static String getNL() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_SUBB:
                 case Op.FLAG_TYPE_CMPB:
                     return "(byte)Flags.lf_var1b()>=(byte)Flags.lf_var2b()";
@@ -1457,8 +1676,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_NL()";
     }
     static String getLE() {
-        if (inlineFlags && opThatSetFlags!=null){
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null){
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_SUBB:
                 case Op.FLAG_TYPE_CMPB:
                     return "(byte)Flags.lf_var1b()<=(byte)Flags.lf_var2b()";
@@ -1474,8 +1693,8 @@ public class Compiler extends Helper {
         return "Flags.TFLG_LE()";
     }
     static String getNLE() {
-        if (inlineFlags && opThatSetFlags!=null) {
-            switch (opThatSetFlags.getFlagType()) {
+        if (inlineFlags && state().opThatSetFlags!=null) {
+            switch (state().opThatSetFlags.getFlagType()) {
                 case Op.FLAG_TYPE_SUBB:
                 case Op.FLAG_TYPE_CMPB:
                     return "(byte)Flags.lf_var1b()>(byte)Flags.lf_var2b()";
@@ -1578,40 +1797,35 @@ public class Compiler extends Helper {
     static void memory_writed(EaaBase eaa, StringBuilder method) {
 
     }
-    static boolean eaaStarted = false;
-    static boolean valStarted = false;
-    static boolean val2Started = false;
-    static boolean longValStarted = false;
-    static boolean shortValStarted = false;
     static private final boolean testLocalVariableAccess = false;
     static void declareLongVal(StringBuilder method) {
-        if (!longValStarted || testLocalVariableAccess) {
+        if (!state().longValStarted || testLocalVariableAccess) {
             method.append("long ");
-            longValStarted = true;
+            state().longValStarted = true;
         }
     }
     static void declareShortVal(StringBuilder method) {
-        if (!shortValStarted || testLocalVariableAccess) {
+        if (!state().shortValStarted || testLocalVariableAccess) {
             method.append("short ");
-            shortValStarted = true;
+            state().shortValStarted = true;
         }
     }
     static void declareVal(StringBuilder method) {
-        if (!valStarted || testLocalVariableAccess) {
+        if (!state().valStarted || testLocalVariableAccess) {
             method.append("int ");
-            valStarted = true;
+            state().valStarted = true;
         }
     }
     static void declareVal2(StringBuilder method) {
-        if (!val2Started || testLocalVariableAccess) {
+        if (!state().val2Started || testLocalVariableAccess) {
             method.append("int ");
-            val2Started = true;
+            state().val2Started = true;
         }
     }
     static void memory_start(EaaBase eaa, Seg seg, StringBuilder method) {
-        if (!eaaStarted || testLocalVariableAccess) {
+        if (!state().eaaStarted || testLocalVariableAccess) {
             //method.append("int ");
-            eaaStarted = true;
+            state().eaaStarted = true;
         }
         method.append("eaa = ");
         toStringValue(eaa, seg, method);
@@ -1619,9 +1833,9 @@ public class Compiler extends Helper {
     }
 
     static void memory_start(EaaBase eaa, Seg seg, StringBuilder method, boolean zero) {
-        if (!eaaStarted || testLocalVariableAccess) {
+        if (!state().eaaStarted || testLocalVariableAccess) {
             //method.append("int ");
-            eaaStarted = true;
+            state().eaaStarted = true;
         }
         method.append("eaa = ");
         toStringValue(eaa, seg, method, zero);
@@ -7382,10 +7596,17 @@ public class Compiler extends Helper {
         return true;
     }
 
-    static private ClassPool pool = ClassPool.getDefault();
+    // Javassist's ClassPool is not safe to share between the compiler threads, each thread gets its own.
+    // The classes being compiled never reference each other so nothing is lost by not sharing them.
+    static private final ThreadLocal pool = new ThreadLocal() {
+        protected Object initialValue() {
+            return createPool();
+        }
+    };
     static java.security.MessageDigest md;
 
-    static {
+    static private ClassPool createPool() {
+        ClassPool pool = new ClassPool(true);
         pool.importPackage("jdos.cpu.core_dynamic");
         pool.importPackage("jdos.cpu");
         pool.importPackage("jdos.fpu");
@@ -7413,6 +7634,10 @@ public class Compiler extends Helper {
             public void close() {
             }
         });
+        return pool;
+    }
+
+    static {
         try {
             md = java.security.MessageDigest.getInstance("MD5");
         } catch (Exception e) {
@@ -7422,11 +7647,15 @@ public class Compiler extends Helper {
 
     static private int count = 0;
 
+    static private synchronized String nextClassName() {
+        return "CacheBlock" + (count++);
+    }
+
     static private Op compileMethod(Op op, StringBuilder method, boolean jump) {
         //System.out.println(method.toString());
         try {
-            String className = "CacheBlock" + (count++);
-            // :TODO: research using a new pool for each block since the classes don't need to see each other
+            String className = nextClassName();
+            ClassPool pool = (ClassPool)Compiler.pool.get();
             CtClass codeBlock = pool.makeClass(className);
             codeBlock.setSuperclass(pool.getCtClass("jdos.cpu.core_dynamic.Op"));
             if (!jump)
@@ -7449,16 +7678,19 @@ public class Compiler extends Helper {
 
             // Make the dynamic class belong to its own class loader so that when we
             // release the decoder block the class and class loader will be unloaded
-            URLClassLoader cl = (URLClassLoader) codeBlock.getClass().getClassLoader();
-            cl = URLClassLoader.newInstance(cl.getURLs(), cl);
-            Class clazz = codeBlock.toClass(cl, null);
+            byte[] byteCode = codeBlock.toBytecode();
+            Class clazz = new BlockClassLoader().define(byteCode);
             Op compiledCode = (Op) clazz.newInstance();
             codeBlock.detach();
+            if (op instanceof DecodeBlock && ((DecodeBlock)op).opCode != null) {
+                DecodeBlock block = (DecodeBlock)op;
+                JitCache.store(block.mode, block.opCode, byteCode);
+            }
             if (saveClasses) {
                 if (op instanceof DecodeBlock) {
                     DecodeBlock block = (DecodeBlock)op;
                     String header = "package jdos.cpu.core_dynamic;\n\nimport jdos.cpu.core_dynamic.*;\nimport jdos.cpu.*;\nimport jdos.fpu.*;\nimport jdos.hardware.*;\nimport jdos.util.*;\nimport jdos.cpu.core_normal.*;\nimport jdos.cpu.core_share.*;\n\npublic final class "+className+" extends Op {\npublic int call() {";
-                    Loader.add(codeBlock.getName(), codeBlock.toBytecode(), block.codeStart, getOpCode(block.codeStart, block.codeLen), header+method.toString()+"\n}");
+                    Loader.add(codeBlock.getName(), byteCode, block.codeStart, getOpCode(block.codeStart, block.codeLen), header+method.toString()+"\n}");
                 } else {
                     Log.exit("Tried to save an incomplete code block");
                 }
@@ -7478,6 +7710,15 @@ public class Compiler extends Helper {
             Section_prop section=(Section_prop)newconfig;
             DecodeBlock.compileThreshold = section.Get_int("threshold");
             min_block_size = section.Get_int("min_block_size");
+            Trace.threshold = section.Get_int("trace");
+            BlockProfile.optimizeThreshold = section.Get_int("optimize");
+            cacheRegisters = section.Get_bool("registers");
+            int threads = section.Get_int("threads");
+            if (threads > 0)
+                processorCount = threads;
+            if (Dosbox.virtualTime)
+                processorCount = 0; // a background compile finishes at a different point in every run
+            JitCache.open(section.Get_path("cache").realpath);
         }
     };
 }
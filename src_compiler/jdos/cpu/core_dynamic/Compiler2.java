@@ -4614,7 +4614,13 @@ public class Compiler2 extends Compiler {
                     method.append(seg.getSs());
                     method.append(";Core.base_val_ds=");
                     method.append(seg.val);
-                    method.append(";return ModifiedDecode.call();");
+                    Decoder.ModifiedDecodeOp o = (Decoder.ModifiedDecodeOp) op;
+                    if (o.page == null)
+                        method.append(";return ModifiedDecode.call();");
+                    else if (o.block != null)
+                        method.append(";return Decoder.modifiedDecode(true);");
+                    else
+                        method.append(";return Decoder.modifiedDecode(false);");
                     return false;
                 } else {
                     Log.exit("[Compiler] Unhandled op: " + op);
@@ -0,0 +1,238 @@
+package jdos.cpu.core_dynamic;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Keeps the general purpose registers that a compiled block uses in locals of the generated call method
+// instead of going through CPU_Regs.reg_xxx.dword for every access.
+//
+// The source of each op is rewritten after Compiler has generated it.  Ops fall into three groups:
+//   - ops that only do arithmetic on registers and the lazy flags use the locals directly
+//   - ops that can throw, like memory access, first write back every local that has changed so that the
+//     exception sees the registers as they were before the instruction, then use the locals
+//   - everything else, calls that might look at the registers themselves, returns and anything the
+//     rewrite doesn't understand, write back the changed locals first and run the source as it was.  The
+//     locals are loaded again the next time they are needed.
+// Since every exit from the block is a return inside an op of the last group, CPU_Regs is always up to date
+// when the block is left.  ESP is never cached since push and pop use it without naming it.
+//
+// Only used with [compiler] registers=true, CoreBenchmark didn't show it to be faster.  testDynamic runs it
+// against the normal core.
+final class RegisterCache {
+    static private final String[] NAMES = new String[] {"eax", "ecx", "edx", "ebx", "ebp", "esi", "edi"};
+    static private final String MARKER = "/*regs*/";
+
+    static private final Pattern REGISTER = Pattern.compile("CPU_Regs\\.reg_(eax|ecx|edx|ebx|ebp|esi|edi)\\b");
+    static private final Pattern CALL = Pattern.compile("([A-Za-z_][A-Za-z_0-9]*(\\.[A-Za-z_][A-Za-z_0-9]*)*)\\s*\\(");
+
+    // Instructions that read or write the registers themselves
+    static private final String[] IMPLICIT = new String[] {"Instructions.AAA", "Instructions.AAD", "Instructions.AAM", "Instructions.AAS",
+            "Instructions.DAA", "Instructions.DAS", "Instructions.DIV", "Instructions.IDIV", "Instructions.MUL", "Instructions.IMULB",
+            "Instructions.IMULW", "Instructions.IMULD", "FPU.FNSTSW_AX", "FPU.FPU_ESC"};
+
+    static private final int PURE = 0;
+    static private final int THROWS = 1;
+    static private final int BARRIER = 2;
+
+    private final StringBuilder method;
+    private int used = 0;   // registers that need a local
+    private int loaded = 0; // registers whose local holds the current value
+    private int dirty = 0;  // registers whose local is newer than CPU_Regs
+    int cached = 0;   // ops that use the locals
+    int barriers = 0; // ops that go through CPU_Regs
+
+    RegisterCache(StringBuilder method) {
+        this.method = method;
+    }
+
+    // Called before the source of an op is generated
+    void begin() {
+        method.append(MARKER);
+    }
+
+    // Called after the source of an op has been generated, rewrites it to use the locals
+    void end() {
+        int start = method.lastIndexOf(MARKER);
+        if (start < 0)
+            return;
+        String source = method.substring(start + MARKER.length());
+        method.setLength(start);
+
+        int[] regs = new int[1];
+        String rewritten = rewrite(source, regs);
+        int kind = rewritten == null ? BARRIER : classify(rewritten);
+        if (kind == BARRIER) {
+            flush();
+            loaded = 0;
+            method.append(source);
+            barriers++;
+            return;
+        }
+        if (kind == THROWS)
+            flush();
+        int load = regs[0] & ~loaded;
+        for (int i=0;i<NAMES.length;i++) {
+            if ((load & (1<<i)) != 0) {
+                method.append("l_");
+                method.append(NAMES[i]);
+                method.append("=CPU_Regs.reg_");
+                method.append(NAMES[i]);
+                method.append(".dword;");
+            }
+        }
+        loaded |= regs[0];
+        used |= regs[0];
+        // a register only shows up in the source of an op that reads or writes it, treating every one
+        // of them as written costs at most a store of the same value
+        dirty |= regs[0];
+        method.append(rewritten);
+        cached++;
+    }
+
+    // Called once the whole block has been generated, declares the locals at the start of the method
+    void finish() {
+        StringBuilder declare = new StringBuilder();
+        for (int i=0;i<NAMES.length;i++) {
+            if ((used & (1<<i)) != 0) {
+                declare.append("int l_");
+                declare.append(NAMES[i]);
+                declare.append("=0;");
+            }
+        }
+        method.insert(0, declare.toString());
+    }
+
+    private void flush() {
+        for (int i=0;i<NAMES.length;i++) {
+            if ((dirty & (1<<i)) != 0) {
+                method.append("CPU_Regs.reg_");
+                method.append(NAMES[i]);
+                method.append(".dword=l_");
+                method.append(NAMES[i]);
+                method.append(";");
+            }
+        }
+        dirty = 0;
+    }
+
+    static private int index(String name) {
+        for (int i=0;i<NAMES.length;i++) {
+            if (NAMES[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    // Replaces every access to a cached register with its local, returns null if there is one it doesn't understand
+    static private String rewrite(String source, int[] regs) {
+        Matcher m = REGISTER.matcher(source);
+        StringBuilder result = new StringBuilder(source.length());
+        int pos = 0;
+        while (m.find(pos)) {
+            String name = m.group(1);
+            String local = "l_"+name;
+            result.append(source, pos, m.start());
+            regs[0] |= 1 << index(name);
+            int end = m.end();
+            if (source.startsWith(".dword", end) && !Character.isJavaIdentifierPart(charAt(source, end+6))) {
+                if (charAt(source, end+6) == '(')
+                    return null;
+                result.append(local);
+                pos = end + 6;
+            } else if (source.startsWith(".word()", end)) {
+                result.append("(").append(local).append(" & 0xFFFF)");
+                pos = end + 7;
+            } else if (source.startsWith(".low()", end)) {
+                result.append("(").append(local).append(" & 0xFF)");
+                pos = end + 6;
+            } else if (source.startsWith(".high()", end)) {
+                result.append("((").append(local).append(" >> 8) & 0xFF)");
+                pos = end + 7;
+            } else {
+                String setter = null;
+                if (source.startsWith(".word(", end))
+                    setter = "word";
+                else if (source.startsWith(".low(", end))
+                    setter = "low";
+                else if (source.startsWith(".high(", end))
+                    setter = "high";
+                if (setter == null)
+                    return null; // passed as a Reg or something else the rewrite doesn't know about
+                int open = end + setter.length() + 1;
+                int close = closing(source, open);
+                if (close < 0)
+                    return null;
+                // the value can use registers as well
+                String value = rewrite(source.substring(open+1, close), regs);
+                if (value == null)
+                    return null;
+                result.append(local).append("=");
+                if (setter.equals("word"))
+                    result.append("(").append(local).append(" & 0xFFFF0000) | ((").append(value).append(") & 0xFFFF)");
+                else if (setter.equals("low"))
+                    result.append("(").append(local).append(" & 0xFFFFFF00) | ((").append(value).append(") & 0xFF)");
+                else
+                    result.append("(").append(local).append(" & 0xFFFF00FF) | (((").append(value).append(") & 0xFF) << 8)");
+                pos = close + 1;
+            }
+        }
+        result.append(source, pos, source.length());
+        return result.toString();
+    }
+
+    static private char charAt(String s, int index) {
+        return index < s.length() ? s.charAt(index) : ' ';
+    }
+
+    static private int closing(String s, int open) {
+        int depth = 0;
+        for (int i=open;i<s.length();i++) {
+            char c = s.charAt(i);
+            if (c == '(')
+                depth++;
+            else if (c == ')') {
+                depth--;
+                if (depth == 0)
+                    return i;
+            } else if (c == '"' || c == '\'') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    static private int classify(String source) {
+        if (contains(source, "return") || contains(source, "continue") || contains(source, "break"))
+            return BARRIER;
+        int kind = contains(source, "throw") ? THROWS : PURE;
+        Matcher m = CALL.matcher(source);
+        while (m.find()) {
+            String name = m.group(1);
+            if (name.equals("if") || name.equals("while") || name.equals("for") || name.equals("switch") || name.equals("catch"))
+                continue;
+            for (int i=0;i<IMPLICIT.length;i++) {
+                if (name.startsWith(IMPLICIT[i]))
+                    return BARRIER;
+            }
+            if (name.startsWith("Flags.") || name.startsWith("CPU_Regs.") || name.startsWith("Instructions.") || name.startsWith("Math."))
+                continue;
+            if (name.startsWith("Memory.") || name.startsWith("RAM.") || name.startsWith("Paging.") || name.startsWith("FPU.") || name.startsWith("CPU.CPU_Push") || name.startsWith("CPU.CPU_Pop")) {
+                kind = THROWS;
+                continue;
+            }
+            return BARRIER;
+        }
+        return kind;
+    }
+
+    static private boolean contains(String source, String word) {
+        int index = 0;
+        while ((index = source.indexOf(word, index)) >= 0) {
+            int end = index + word.length();
+            if ((index == 0 || !Character.isJavaIdentifierPart(source.charAt(index-1))) && (end == source.length() || !Character.isJavaIdentifierPart(source.charAt(end))))
+                return true;
+            index = end;
+        }
+        return false;
+    }
+}
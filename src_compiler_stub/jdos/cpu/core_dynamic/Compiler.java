@@ -6,12 +6,19 @@ public class Compiler {
     static public boolean saveClasses = false;
     static public int min_block_size = 1;
     static public boolean alwayUseFastVersion = true;
+    static public boolean cacheRegisters = false;
     static public int processorCount = 0;
     static public boolean thowException = false;
     static public final boolean ENABLED = false;
 
     public static void compile(DecodeBlock op) {
     }
+    public static void compile(Trace trace) {
+        trace.failed = true;
+    }
+    public static void compile(OptimizeOp op) {
+        op.failed = true;
+    }
     static public void removeFromQueue(DecodeBlock block) {
     }
     final public static Section.SectionFunction Compiler_Init = new Section.SectionFunction() {
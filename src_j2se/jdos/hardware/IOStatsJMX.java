@@ -0,0 +1,118 @@
+package jdos.hardware;
+
+import jdos.misc.Log;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.Vector;
+
+// Registers IOStats with the platform mbean server as jdos:type=IOStats.  Every emulator in jdos.Instances
+// has its own IOStats, the ones after the first get an instance number in their name.
+public class IOStatsJMX implements IOStatsMXBean {
+    static private ObjectName name;
+
+    static public void register() {
+        if (name != null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (int i=0;name==null;i++) {
+                ObjectName n = new ObjectName(i==0 ? "jdos:type=IOStats" : "jdos:type=IOStats,instance="+i);
+                if (!server.isRegistered(n)) {
+                    server.registerMBean(new IOStatsJMX(), n);
+                    name = n;
+                }
+            }
+        } catch (Throwable e) {
+            // applets are not allowed to do this
+            Log.log_msg("IOStats: could not register the jmx bean: "+e);
+        }
+    }
+
+    static public void unregister() {
+        if (name == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Throwable e) {
+        }
+        name = null;
+    }
+
+    static private String[] lines(Hashtable totals, String what) {
+        Vector names = new Vector(totals.keySet());
+        Collections.sort(names);
+        String[] result = new String[names.size()];
+        for (int i=0;i<result.length;i++) {
+            long[] t = (long[])totals.get(names.elementAt(i));
+            result[i] = names.elementAt(i)+": "+t[0]+what+", "+t[1]+" ns";
+        }
+        return result;
+    }
+
+    public boolean isEnabled() {
+        return IOStats.enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled) IOStats.start();
+        else IOStats.stop();
+    }
+
+    public long getPortReads() {
+        return IOStats.totalReads();
+    }
+
+    public long getPortWrites() {
+        return IOStats.totalWrites();
+    }
+
+    public long getPortTime() {
+        return IOStats.totalNanos();
+    }
+
+    public String[] getDevices() {
+        return lines(IOStats.deviceTotals(), " accesses");
+    }
+
+    public String[] getEvents() {
+        return lines(IOStats.eventTotals(), " events");
+    }
+
+    public long[] getIrqRaised() {
+        return (long[])IOStats.irqRaised.clone();
+    }
+
+    public long[] getIrqAcked() {
+        return (long[])IOStats.irqAcked.clone();
+    }
+
+    public int getQueueDepth() {
+        return IOStats.queueDepth();
+    }
+
+    public int getMaxQueueDepth() {
+        return IOStats.maxQueueDepth;
+    }
+
+    public long getQueueRuns() {
+        return IOStats.queueRuns;
+    }
+
+    public long getEventsRun() {
+        return IOStats.eventsRun;
+    }
+
+    public int getMaxEventsPerRun() {
+        return IOStats.maxEventsPerRun;
+    }
+
+    public void reset() {
+        IOStats.reset();
+    }
+
+    public String report(int top) {
+        return IOStats.report(top);
+    }
+}
@@ -0,0 +1,26 @@
+package jdos.hardware;
+
+// The IOStats counters as seen from jconsole or any other jmx client, times are in nanoseconds
+public interface IOStatsMXBean {
+    public boolean isEnabled();
+    public void setEnabled(boolean enabled);
+
+    public long getPortReads();
+    public long getPortWrites();
+    public long getPortTime();
+    // one line per device: name, port accesses and time
+    public String[] getDevices();
+    public String[] getEvents();
+
+    public long[] getIrqRaised();
+    public long[] getIrqAcked();
+
+    public int getQueueDepth();
+    public int getMaxQueueDepth();
+    public long getQueueRuns();
+    public long getEventsRun();
+    public int getMaxEventsPerRun();
+
+    public void reset();
+    public String report(int top);
+}
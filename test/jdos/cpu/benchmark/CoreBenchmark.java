@@ -0,0 +1,317 @@
+package jdos.cpu.benchmark;
+
+import jdos.cpu.*;
+import jdos.cpu.core_dynamic.BlockProfile;
+import jdos.cpu.core_dynamic.Compiler;
+import jdos.cpu.core_dynamic.DecodeBlock;
+import jdos.cpu.core_dynamic.Trace;
+import jdos.hardware.Memory;
+import jdos.hardware.Pic;
+import jdos.hardware.RAM;
+import jdos.misc.setup.*;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Vector;
+
+// Runs fixed instruction streams through each cpu core and reports how many guest instructions per second
+// each one manages.  The machine is set up the same way as InstructionsTestCase, real mode with 4MB of
+// memory and no devices.
+//
+// java -cp ... jdos.cpu.benchmark.CoreBenchmark
+//     -Dbench.cores=normal,switch,dynamic,compiled   cores to run, compiled is skipped with the compiler stub
+//     -Dbench.workloads=alu,string,fpu,farcall,paging
+//     -Dbench.warmup=3 -Dbench.iterations=5         runs of each workload before and while measuring
+//     -Dbench.format=csv|json -Dbench.out=file      the report goes to stdout if there is no file
+//     -Dbench.registers=false                       compiled without keeping registers in locals, [compiler] registers
+//
+// Each result is the best of the measured runs, the instruction count is worked out from the loops in the
+// workload so it is the same for every core.  A rep prefixed string instruction counts once per element.
+public class CoreBenchmark {
+    static private final int CODE_SEG = 0x1000;  // each core gets its own 64kb of code so their blocks don't mix
+    static private final int DATA_SEG = 0x8000;
+    static private final int PAGE_DIR = 0x300000;
+    static private final int CHUNK = 10000;      // cycles per call to the core
+
+    static private class Workload {
+        String name;
+        int[] code;
+        int end;           // offset of the jmp $ the workload finishes on
+        long instructions;
+        boolean paging;
+        String state;      // registers at the end of the first core that ran it, every core has to agree
+
+        Workload(String name, int[] code, long instructions) {
+            this.name = name;
+            this.code = code;
+            this.instructions = instructions;
+            for (int i=0;i<code.length-1;i++) {
+                if (code[i]==0xEB && code[i+1]==0xFE)
+                    end = i;
+            }
+        }
+    }
+
+    static private class Result {
+        String core;
+        Workload workload;
+        long best = Long.MAX_VALUE;
+        long total;
+        int count;
+    }
+
+    static private Workload[] workloads() {
+        Vector<Workload> result = new Vector<Workload>();
+        // 65536 times: 8 register alu ops, dec cx, jnz
+        result.add(new Workload("alu", new int[] {
+                0xB9, 0x00, 0x00,   // mov cx,0
+                0x01, 0xD8,         // A: add ax,bx
+                0x31, 0xC2,         // xor dx,ax
+                0x01, 0xD6,         // add si,dx
+                0x47,               // inc di
+                0x11, 0xFD,         // adc bp,di
+                0x88, 0xE3,         // mov bl,ah
+                0x00, 0xCF,         // add bh,cl
+                0x29, 0xF0,         // sub ax,si
+                0x49,               // dec cx
+                0x75, 0xEE,         // jnz A
+                0xEB, 0xFE          // jmp $
+        }, 1+65536L*10));
+        // 256 times: copy 16kb with rep movsw
+        result.add(new Workload("string", new int[] {
+                0xBA, 0x00, 0x01,   // mov dx,256
+                0xBE, 0x00, 0x00,   // A: mov si,0
+                0xBF, 0x00, 0x80,   // mov di,8000
+                0xB9, 0x00, 0x20,   // mov cx,2000
+                0xFC,               // cld
+                0xF3, 0xA5,         // rep movsw
+                0x4A,               // dec dx
+                0x75, 0xF1,         // jnz A
+                0xEB, 0xFE          // jmp $
+        }, 1+256L*(6+0x2000)));
+        // 65536 times: a = a * b + c on single precision memory operands
+        result.add(new Workload("fpu", new int[] {
+                0xB9, 0x00, 0x00,         // mov cx,0
+                0xDB, 0xE3,               // fninit
+                0xD9, 0x06, 0x00, 0x00,   // A: fld dword [0]
+                0xD8, 0x0E, 0x04, 0x00,   // fmul dword [4]
+                0xD8, 0x06, 0x08, 0x00,   // fadd dword [8]
+                0xD9, 0x1E, 0x0C, 0x00,   // fstp dword [c]
+                0x49,                     // dec cx
+                0x75, 0xED,               // jnz A
+                0xEB, 0xFE                // jmp $
+        }, 2+65536L*6));
+        // 65536 times: call far to a retf
+        result.add(new Workload("farcall", new int[] {
+                0xB9, 0x00, 0x00,               // mov cx,0
+                0x9A, 0x0D, 0x00, 0x00, 0x00,   // A: call far cs:F, the segment is filled in by load
+                0x49,                           // dec cx
+                0x75, 0xF8,                     // jnz A
+                0xEB, 0xFE,                     // jmp $
+                0xCB                            // F: retf
+        }, 1+65536L*4));
+        // 65536 times: a load and a read-modify-write that move to a different page every time, with paging on
+        Workload paging = new Workload("paging", new int[] {
+                0xB9, 0x00, 0x00,               // mov cx,0
+                0x8B, 0x04,                     // A: mov ax,[si]
+                0x01, 0x05,                     // add [di],ax
+                0x81, 0xC6, 0x04, 0x10,         // add si,1004
+                0x81, 0xC7, 0x08, 0x20,         // add di,2008
+                0x49,                           // dec cx
+                0x75, 0xF1,                     // jnz A
+                0xEB, 0xFE                      // jmp $
+        }, 1+65536L*6);
+        paging.paging = true;
+        result.add(paging);
+
+        Workload[] all = new Workload[result.size()];
+        result.copyInto(all);
+        return all;
+    }
+
+    static private Section_prop dosbox_prop = new Section_prop("dosbox");
+    static private Section_prop cpu_prop = new Section_prop("cpu");
+
+    static private void boot() {
+        CPU.initialize();
+        Compiler.processorCount = 0; // compile on this thread so the compiled tier is there from the first run
+        Compiler.thowException = true;
+        Core_dynamic.CPU_Core_Dynamic_Cache_Init(true);
+
+        Prop_string Pstring = cpu_prop.Add_string("core", Property.Changeable.WhenIdle,"auto");
+        Pstring.Set_values(new String[] { "auto", "dynamic", "normal", "simple"});
+        Pstring = cpu_prop.Add_string("cputype",Property.Changeable.Always,"auto");
+        Pstring.Set_values(new String[] { "auto", "386", "486", "pentium", "386_prefetch", "486_prefetch", "p6"});
+        Prop_multival_remain Pmulti_remain = cpu_prop.Add_multiremain("cycles",Property.Changeable.Always," ");
+        Pstring = Pmulti_remain.GetSection().Add_string("type",Property.Changeable.Always,"auto");
+        Pmulti_remain.SetValue("auto");
+        Pstring.Set_values(new String[] { "auto","fixed","max","%u"});
+        Pmulti_remain.GetSection().Add_string("parameters",Property.Changeable.Always,"");
+        cpu_prop.Add_int("cycleup",Property.Changeable.Always,10);
+        cpu_prop.Add_int("cycledown",Property.Changeable.Always,20);
+        cpu_prop.Add_int("cacheblocks",Property.Changeable.OnlyAtStart,Core_dynamic.CACHE_BLOCKS);
+        dosbox_prop.Add_int("memsize", Property.Changeable.OnlyAtStart, 4);
+
+        Paging.PAGING_Init.call(dosbox_prop);
+        Memory.MEM_Init.call(dosbox_prop);
+        CPU.CPU_Init.call(cpu_prop);
+        Pic.PIC_Init.call(null);
+        CPU.cpu.code.big = false;
+        CPU.cpu.pmode = false;
+
+        // identity map the first 4mb for the paging workload
+        RAM.writed(PAGE_DIR, (PAGE_DIR+0x1000) | 7);
+        for (int i=0;i<1024;i++)
+            RAM.writed(PAGE_DIR+0x1000+i*4, (i<<12) | 7);
+    }
+
+    static private CPU.CPU_Decoder core(String name) {
+        Core_dynamic.instruction_count = 32;
+        Core_switch.instruction_count = 32;
+        DecodeBlock.compileThreshold = 0;
+        Trace.threshold = 0;
+        BlockProfile.optimizeThreshold = 0;
+        if (name.equals("normal"))
+            return Core_normal.CPU_Core_Normal_Run;
+        if (name.equals("switch"))
+            return Core_switch.CPU_Core_Switch_Run;
+        if (name.equals("dynamic"))
+            return Core_dynamic.CPU_Core_Dynamic_Run;
+        if (name.equals("compiled")) {
+            if (!Compiler.ENABLED)
+                return null;
+            DecodeBlock.compileThreshold = 1;
+            Compiler.min_block_size = 1;
+            Trace.threshold = Integer.getInteger("bench.trace", 0).intValue();
+            Compiler.cacheRegisters = !"false".equals(System.getProperty("bench.registers"));
+            BlockProfile.optimizeThreshold = Integer.getInteger("bench.optimize", 0).intValue();
+            return Core_dynamic.CPU_Core_Dynamic_Run;
+        }
+        throw new IllegalArgumentException("Unknown core: "+name);
+    }
+
+    static private void load(int codeSeg, int offset, Workload workload) {
+        for (int i=0;i<workload.code.length;i++)
+            RAM.writeb((codeSeg<<4)+offset+i, workload.code[i]);
+        if (workload.name.equals("farcall")) {
+            RAM.writew((codeSeg<<4)+offset+4, offset+13);
+            RAM.writew((codeSeg<<4)+offset+6, codeSeg);
+        }
+    }
+
+    static private void reset(int codeSeg, int offset) {
+        CPU_Regs.reg_eax.dword = 0;
+        CPU_Regs.reg_ecx.dword = 0;
+        CPU_Regs.reg_edx.dword = 0;
+        CPU_Regs.reg_ebx.dword = 0;
+        CPU_Regs.reg_esp.dword = 0xFFFE;
+        CPU_Regs.reg_ebp.dword = 0;
+        CPU_Regs.reg_esi.dword = 0;
+        CPU_Regs.reg_edi.dword = 0;
+        CPU_Regs.flags = 0;
+        CPU_Regs.SegSet16CS(codeSeg);
+        CPU_Regs.SegSet16DS(DATA_SEG);
+        CPU_Regs.SegSet16ES(DATA_SEG);
+        CPU_Regs.SegSet16SS(DATA_SEG+0x1000);
+        CPU_Regs.reg_eip = offset;
+        RAM.writed((DATA_SEG<<4), Float.floatToIntBits(1.5f));
+        RAM.writed((DATA_SEG<<4)+4, Float.floatToIntBits(1.0001f));
+        RAM.writed((DATA_SEG<<4)+8, Float.floatToIntBits(0.5f));
+    }
+
+    static private long run(CPU.CPU_Decoder decoder, int codeSeg, int offset, Workload workload) {
+        reset(codeSeg, offset);
+        if (workload.paging) {
+            Paging.PAGING_SetDirBase(PAGE_DIR);
+            Paging.PAGING_Enable(true);
+        }
+        int end = offset+workload.end;
+        long start = System.nanoTime();
+        while (CPU_Regs.reg_eip != end) {
+            CPU.CPU_Cycles = CHUNK;
+            decoder.call();
+        }
+        long time = System.nanoTime()-start;
+        if (workload.paging)
+            Paging.PAGING_Enable(false);
+        return time;
+    }
+
+    static private String state() {
+        return Integer.toHexString(CPU_Regs.reg_eax.dword)+" "+Integer.toHexString(CPU_Regs.reg_ecx.dword)+" "+Integer.toHexString(CPU_Regs.reg_edx.dword)+" "+
+                Integer.toHexString(CPU_Regs.reg_ebx.dword)+" "+Integer.toHexString(CPU_Regs.reg_esp.dword)+" "+Integer.toHexString(CPU_Regs.reg_ebp.dword)+" "+
+                Integer.toHexString(CPU_Regs.reg_esi.dword)+" "+Integer.toHexString(CPU_Regs.reg_edi.dword);
+    }
+
+    static private void report(Vector<Result> results, PrintStream out, boolean json) {
+        if (json) {
+            out.println("{\"java\":\""+System.getProperty("java.version")+"\",\"os\":\""+System.getProperty("os.name")+" "+System.getProperty("os.arch")+"\",\"time\":"+System.currentTimeMillis()+",\"results\":[");
+        } else {
+            out.println("core,workload,instructions,runs,best_ms,average_ms,mips");
+        }
+        for (int i=0;i<results.size();i++) {
+            Result r = results.elementAt(i);
+            double best = r.best/1000000.0;
+            double average = r.total/1000000.0/r.count;
+            double mips = r.workload.instructions/(r.best/1000.0);
+            if (json) {
+                out.println("{\"core\":\""+r.core+"\",\"workload\":\""+r.workload.name+"\",\"instructions\":"+r.workload.instructions+",\"runs\":"+r.count+",\"best_ms\":"+best+",\"average_ms\":"+average+",\"mips\":"+mips+"}"+(i+1<results.size()?",":""));
+            } else {
+                out.println(r.core+","+r.workload.name+","+r.workload.instructions+","+r.count+","+best+","+average+","+mips);
+            }
+        }
+        if (json)
+            out.println("]}");
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] cores = System.getProperty("bench.cores", "normal,switch,dynamic,compiled").split(",");
+        String names = ","+System.getProperty("bench.workloads", "alu,string,fpu,farcall,paging")+",";
+        int warmup = Integer.getInteger("bench.warmup", 3).intValue();
+        int iterations = Integer.getInteger("bench.iterations", 5).intValue();
+        boolean json = System.getProperty("bench.format", "csv").equals("json");
+        String file = System.getProperty("bench.out");
+
+        boot();
+        Workload[] all = workloads();
+        Vector<Result> results = new Vector<Result>();
+        for (int c=0;c<cores.length;c++) {
+            CPU.CPU_Decoder decoder = core(cores[c]);
+            if (decoder == null) {
+                System.err.println(cores[c]+" skipped, the compiler isn't part of this build");
+                continue;
+            }
+            int codeSeg = CODE_SEG*(c+1);
+            for (int w=0;w<all.length;w++) {
+                Workload workload = all[w];
+                if (names.indexOf(","+workload.name+",")<0)
+                    continue;
+                int offset = w*0x1000;
+                load(codeSeg, offset, workload);
+                for (int i=0;i<warmup;i++)
+                    run(decoder, codeSeg, offset, workload);
+                Result result = new Result();
+                result.core = cores[c];
+                result.workload = workload;
+                for (int i=0;i<iterations;i++) {
+                    long time = run(decoder, codeSeg, offset, workload);
+                    result.best = Math.min(result.best, time);
+                    result.total += time;
+                    result.count++;
+                }
+                if (workload.state == null)
+                    workload.state = state();
+                else if (!workload.state.equals(state()))
+                    System.err.println(cores[c]+" "+workload.name+" ended with "+state()+" instead of "+workload.state);
+                results.add(result);
+                System.err.println(cores[c]+" "+workload.name+" "+(result.best/1000000)+"ms");
+            }
+        }
+        PrintStream out = System.out;
+        if (file != null)
+            out = new PrintStream(new FileOutputStream(file));
+        report(results, out, json);
+        if (out != System.out)
+            out.close();
+    }
+}
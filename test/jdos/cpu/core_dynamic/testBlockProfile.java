@@ -0,0 +1,72 @@
+package jdos.cpu.core_dynamic;
+
+import jdos.cpu.CPUException;
+import jdos.cpu.PageFaultException;
+import jdos.cpu.instructions.InstructionsTestCase;
+import jdos.hardware.Memory;
+
+public class testBlockProfile extends InstructionsTestCase {
+    private CodePageHandlerDynRec handler;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        handler = new CodePageHandlerDynRec();
+        handler.SetupAt(0x20, Memory.MEM_GetPageHandler(0x20));
+    }
+
+    private CacheBlockDynRec block(int address) {
+        CacheBlockDynRec block = new CacheBlockDynRec();
+        handler.phys_page = address >>> 12;
+        block.page.handler = handler;
+        block.page.start = address & 0xFFF;
+        return block;
+    }
+
+    // a full table drops the address that was decoded the longest time ago, not everything
+    public void testEviction() {
+        BlockProfile rewritten = BlockProfile.get(block(0x20010));
+        rewritten.invalidations = 2;
+        BlockProfile old = BlockProfile.get(block(0x20020));
+        for (int i=0;i<BlockProfile.MAX_PROFILES;i++) {
+            BlockProfile.get(block(0x1000000+i*16));
+            // the code that keeps being rewritten is decoded again every so often
+            if ((i % 1000)==0)
+                assertSame(rewritten, BlockProfile.get(block(0x20010)));
+        }
+        assertSame(rewritten, BlockProfile.get(block(0x20010)));
+        assertEquals(2, rewritten.invalidations);
+        assertNotSame(old, BlockProfile.get(block(0x20020)));
+    }
+
+    private void run(DecodeBlock decode, RuntimeException exception) {
+        try {
+            decode.call();
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    // page faults are part of running the block, only the others count as exits through an exception
+    public void testExceptions() {
+        if (!Compiler.ENABLED)
+            return;
+        final RuntimeException[] exception = new RuntimeException[1];
+        Op op = new Op() {
+            public int call() {
+                throw exception[0];
+            }
+        };
+        CacheBlockDynRec block = block(0x20030);
+        DecodeBlock decode = new DecodeBlock(block, op, 0x20030, 1);
+        decode.threshold = 0; // never compiled
+        BlockProfile profile = block.profile;
+        int exceptions = profile.exceptions;
+        exception[0] = new PageFaultException();
+        run(decode, exception[0]);
+        assertEquals(exceptions, profile.exceptions);
+        exception[0] = new CPUException();
+        run(decode, exception[0]);
+        assertEquals(exceptions+1, profile.exceptions);
+    }
+}
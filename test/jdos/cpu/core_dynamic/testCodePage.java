@@ -0,0 +1,163 @@
+package jdos.cpu.core_dynamic;
+
+import jdos.cpu.CPU;
+import jdos.cpu.Paging;
+import jdos.cpu.instructions.InstructionsTestCase;
+import jdos.hardware.Memory;
+import jdos.hardware.RAM;
+
+// The code map of a code page, a bit for every byte that is part of a block and a bit in code_groups for every
+// 64 bytes that have any
+public class testCodePage extends InstructionsTestCase {
+    static private final int PAGE = 0x20;
+    static private final int BASE = PAGE << 12;
+
+    private CodePageHandlerDynRec handler;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        handler = new CodePageHandlerDynRec();
+        handler.SetupAt(PAGE, Memory.MEM_GetPageHandler(PAGE));
+        handler.GetHostReadPt(PAGE);
+    }
+
+    // a store of size bytes at addr that changes them, true if the page saw it as a store to code
+    private boolean hits(int addr, int size) {
+        long codeStores = CodePageHandlerDynRec.codeStores;
+        switch (size) {
+            case 1: handler.writeb(BASE+addr, ~RAM.readb(BASE+addr)); break;
+            case 2: handler.writew(BASE+addr, ~RAM.readw(BASE+addr)); break;
+            default: handler.writed(BASE+addr, ~RAM.readd(BASE+addr)); break;
+        }
+        return CodePageHandlerDynRec.codeStores != codeStores;
+    }
+
+    public void testBoundaries() {
+        handler.addCode(0x3F);
+        handler.addCode(0x40);
+        handler.addCode(0xFFF);
+        assertEquals(3|(1l<<63), handler.code_groups);
+
+        assertFalse(handler.hasCode(0, 0x3E));
+        assertTrue(handler.hasCode(0x3F, 0x3F));
+        assertTrue(handler.hasCode(0x40, 0x40));
+        assertFalse(handler.hasCode(0x41, 0x7F));
+        assertFalse(handler.hasCode(0x80, 0xFFE));
+        assertTrue(handler.hasCode(0xFFF, 0xFFF));
+        assertTrue(handler.hasCode(0, 0xFFF));
+
+        // stores that end right before or start right after the code and ones that only just reach it
+        assertFalse(hits(0x3E, 1));
+        assertFalse(hits(0x3B, 4));
+        assertTrue(hits(0x3C, 4));
+        assertTrue(hits(0x3E, 2));
+        assertTrue(hits(0x40, 4));
+        assertFalse(hits(0x41, 4));
+        assertFalse(hits(0xFFB, 4));
+        assertTrue(hits(0xFFC, 4));
+        assertTrue(hits(0xFFF, 1));
+    }
+
+    public void testRemoveCode() {
+        // two blocks over 0x40, one over 0x41
+        handler.addCode(0x40);
+        handler.addCode(0x40);
+        handler.addCode(0x41);
+        handler.addCode(0x100);
+        handler.removeCode(0x41);
+        assertFalse(handler.hasCode(0x41, 0x41));
+        assertTrue(handler.hasCode(0x40, 0x40));
+        assertEquals((1l<<1)|(1l<<4), handler.code_groups);
+
+        // the group is still marked until the last block over its last byte goes
+        handler.removeCode(0x40);
+        assertEquals(1, handler.write_map.p[0x40]);
+        assertTrue(handler.hasCode(0x40, 0x40));
+        assertEquals((1l<<1)|(1l<<4), handler.code_groups);
+        handler.removeCode(0x40);
+        assertEquals(1l<<4, handler.code_groups);
+        assertFalse(handler.hasCode(0, 0xFF));
+        assertFalse(hits(0x40, 4));
+        // ranges over two groups with code in only one of them
+        assertTrue(handler.hasCode(0x100, 0x140));
+        assertTrue(handler.hasCode(0xC0, 0x100));
+
+        // there's nothing left to remove
+        handler.removeCode(0x40);
+        assertEquals(0, handler.write_map.p[0x40]);
+        assertEquals(1l<<4, handler.code_groups);
+
+        handler.removeCode(0x100);
+        assertEquals(0, handler.code_groups);
+        assertFalse(handler.hasCode(0, 0xFFF));
+    }
+
+    public void testPutback() {
+        DynDecode decode = Helper.decode;
+        // another block covers 0x40 already
+        handler.addCode(0x40);
+        decode.page.code = handler;
+        decode.page.invmap = null;
+        decode.page.index = 0x3E;
+        decode.code = BASE+0x3E;
+        decode.setTLB(decode.code);
+        Helper.decode_fetchb();
+        Helper.decode_fetchw();
+        Helper.decode_fetchb();
+        assertEquals(0x42, decode.page.index);
+        assertEquals(2, handler.write_map.p[0x40]);
+        assertEquals(3, handler.code_groups);
+
+        Helper.decode_putback(3);
+        assertEquals(0x3F, decode.page.index);
+        assertEquals(BASE+0x3F, decode.code);
+        assertTrue(handler.hasCode(0x3E, 0x3E));
+        assertFalse(handler.hasCode(0x3F, 0x3F));
+        assertEquals(1, handler.write_map.p[0x40]);
+        assertFalse(handler.hasCode(0x41, 0x41));
+        assertEquals(3, handler.code_groups);
+
+        Helper.decode_putback(1);
+        handler.removeCode(0x40);
+        assertEquals(0, handler.code_groups);
+    }
+
+    // only the linear pages of the code page are unlinked when it goes, not the whole tlb
+    public void testRelease() {
+        int pd = 0x180000;
+        int pt = 0x181000;
+        for (int i=0;i<1024;i++) {
+            Memory.phys_writed(pd+i*4, 0);
+            Memory.phys_writed(pt+i*4, (i<<12)|7);
+        }
+        Memory.phys_writed(pd, pt|7);
+        // 0x200000 and 0x201000 are the same physical page
+        Memory.phys_writed(pt+0x200*4, 0x1A0000|7);
+        Memory.phys_writed(pt+0x201*4, 0x1A0000|7);
+        try {
+            CPU.cpu.cpl = 0;
+            Paging.PAGING_SetDirBase(pd);
+            Paging.PAGING_Enable(true);
+            Memory.mem_readb(0x202000);
+            CodePageHandlerDynRec code = Decoder_basic.MakeCodePage(0x200000);
+            Memory.mem_readb(0x200000);
+            Memory.mem_readb(0x201000);
+            assertSame(code, Paging.get_tlb_readhandler(0x200000));
+            assertSame(code, Paging.get_tlb_readhandler(0x201000));
+            int generations = Paging.generations;
+
+            code.Release();
+            assertNotSame(code, Paging.get_tlb_readhandler(0x200000));
+            assertNotSame(code, Paging.get_tlb_readhandler(0x201000));
+            assertEquals(Paging.INVALID_ADDRESS, Paging.get_tlb_read(0x200000));
+            assertEquals(Paging.INVALID_ADDRESS, Paging.get_tlb_read(0x201000));
+            assertTrue(Paging.get_tlb_read(0x202000) != Paging.INVALID_ADDRESS);
+            assertEquals(generations, Paging.generations);
+            // and they link to the page's own handler again
+            assertEquals(Memory.phys_readb(0x1A0000), Memory.mem_readb(0x201000));
+            assertSame(Memory.MEM_GetPageHandler(0x1A0), Paging.get_tlb_readhandler(0x201000));
+        } finally {
+            Paging.PAGING_Enable(false);
+        }
+    }
+}
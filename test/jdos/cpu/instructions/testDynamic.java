@@ -0,0 +1,227 @@
+package jdos.cpu.instructions;
+
+import jdos.cpu.*;
+import jdos.cpu.core_dynamic.CodePageHandlerDynRec;
+import jdos.cpu.core_dynamic.Compiler;
+import jdos.hardware.RAM;
+
+// Runs small programs with the dynamic core, compiled from the first run, and checks they end the same way
+// as with the normal core
+public class testDynamic extends InstructionsTestCase {
+    static private final int CODE = 0x10000;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Core_dynamic.instruction_count = 32;
+        Compiler.alwayUseFastVersion = false; // the loops need the flags
+    }
+
+    protected void load(int[] code) {
+        for (int i=0;i<code.length;i++)
+            RAM.writeb(CODE+i, code[i]);
+    }
+
+    // runs from cs:0 until the jmp $ at end, ds is the code segment so the program can change itself
+    protected String run(CPU.CPU_Decoder decoder, int[] code, int end) {
+        load(code);
+        clearReg();
+        CPU_Regs.flags = 0;
+        CPU_Regs.reg_esp.dword = 0xFFFE;
+        CPU_Regs.SegSet16CS(CODE >> 4);
+        CPU_Regs.SegSet16DS(CODE >> 4);
+        CPU_Regs.SegSet16ES(CODE >> 4);
+        CPU_Regs.SegSet16SS(MEM_BASE_SS >> 4);
+        CPU_Regs.reg_eip = 0;
+        for (int i=0;i<100000 && CPU_Regs.reg_eip!=end;i++) {
+            CPU.CPU_Cycles = 100;
+            // the same as Dosbox.DOSBOX_RunMachine
+            try {
+                decoder.call();
+            } catch (PageFaultException e) {
+                if (e.shouldRunException) {
+                    Paging.pageFault = true;
+                    CPU.CPU_Exception(CPU.cpu.exception.which, CPU.cpu.exception.error);
+                    Paging.pageFault = false;
+                }
+            } catch (CPUException e) {
+            }
+        }
+        assertEquals(end, CPU_Regs.reg_eip);
+        Flags.FillFlags();
+        return Integer.toHexString(CPU_Regs.reg_eax.dword)+" "+Integer.toHexString(CPU_Regs.reg_ecx.dword)+" "+Integer.toHexString(CPU_Regs.reg_edx.dword)+" "+
+                Integer.toHexString(CPU_Regs.reg_ebx.dword)+" "+Integer.toHexString(CPU_Regs.reg_esp.dword)+" "+Integer.toHexString(CPU_Regs.reg_ebp.dword)+" "+
+                Integer.toHexString(CPU_Regs.reg_esi.dword)+" "+Integer.toHexString(CPU_Regs.reg_edi.dword)+" "+Integer.toHexString(CPU_Regs.flags & CPU_Regs.FMASK_TEST);
+    }
+
+    // real mode interrupt vector to an offset in the code segment
+    protected void vector(int number, int offset) {
+        RAM.writew(number*4, offset);
+        RAM.writew(number*4+2, CODE >> 4);
+    }
+
+    // compiled with and without the registers kept in locals
+    protected void compare(int[] code, int end) {
+        String expected = run(Core_normal.CPU_Core_Normal_Run, code, end);
+        boolean cacheRegisters = Compiler.cacheRegisters;
+        try {
+            Compiler.cacheRegisters = true;
+            assertEquals(expected, run(Core_dynamic.CPU_Core_Dynamic_Run, code, end));
+            Core_dynamic.CPU_Core_Dynamic_Cache_Init(true);
+            Compiler.cacheRegisters = false;
+            assertEquals(expected, run(Core_dynamic.CPU_Core_Dynamic_Run, code, end));
+        } finally {
+            Compiler.cacheRegisters = cacheRegisters;
+        }
+    }
+
+    // register ops around instructions that are left to helpers which use the registers themselves
+    public void testRegistersAroundHelpers() {
+        if (!Compiler.ENABLED)
+            return;
+        compare(new int[] {
+                0xB8, 0x34, 0x12,   // mov ax,1234
+                0xBB, 0x05, 0x00,   // mov bx,5
+                0x01, 0xD8,         // add ax,bx
+                0xF7, 0xE3,         // mul bx
+                0x01, 0xC6,         // add si,ax
+                0x89, 0xD1,         // mov cx,dx
+                0x41,               // inc cx
+                0xF7, 0xF3,         // div bx
+                0x11, 0xC7,         // adc di,ax
+                0x53,               // push bx
+                0x50,               // push ax
+                0x5A,               // pop dx
+                0x87, 0xD9,         // xchg cx,bx
+                0x37,               // aaa
+                0x01, 0xC5,         // add bp,ax
+                0x98,               // cbw
+                0x29, 0xC6,         // sub si,ax
+                0x5B,               // pop bx
+                0xEB, 0xFE          // jmp $
+        }, 0x1F);
+    }
+
+    // the divide error handler has to see the registers as they were changed before the div in the same block
+    public void testRegistersAtException() {
+        if (!Compiler.ENABLED)
+            return;
+        int[] code = new int[0x28];
+        int[] main = new int[] {
+                0xB8, 0x00, 0x10,   // mov ax,1000
+                0xBB, 0x00, 0x00,   // mov bx,0
+                0xBA, 0x00, 0x00,   // mov dx,0
+                0x05, 0x34, 0x00,   // add ax,34
+                0x46,               // inc si
+                0xF7, 0xF3,         // div bx
+                0x01, 0xC7,         // add di,ax
+                0xEB, 0xFE          // jmp $
+        };
+        int[] handler = new int[] {
+                0x89, 0xC5,         // mov bp,ax
+                0x89, 0xF1,         // mov cx,si
+                0xBB, 0x04, 0x00,   // mov bx,4
+                0xCF                // iret
+        };
+        System.arraycopy(main, 0, code, 0, main.length);
+        System.arraycopy(handler, 0, code, 0x20, handler.length);
+        vector(0, 0x20);
+        compare(code, 0x11);
+        assertEquals(0x1034, CPU_Regs.reg_ebp.dword);
+        assertEquals(1, CPU_Regs.reg_ecx.dword);
+        assertEquals(0x40D, CPU_Regs.reg_edi.dword);
+    }
+
+    // same for a page fault, the handler maps the page and the write is done again
+    public void testRegistersAtPageFault() {
+        if (!Compiler.ENABLED)
+            return;
+        int[] code = new int[0x38];
+        int[] main = new int[] {
+                0xBB, 0x00, 0x30,   // mov bx,3000
+                0x8E, 0xC3,         // mov es,bx
+                0xB8, 0x11, 0x11,   // mov ax,1111
+                0x40,               // inc ax
+                0x01, 0xC6,         // add si,ax
+                0x26, 0x89, 0x05,   // mov [es:di],ax
+                0x01, 0xC5,         // add bp,ax
+                0xEB, 0xFE          // jmp $
+        };
+        int[] handler = new int[] {
+                0x89, 0xC1,                     // mov cx,ax
+                0x89, 0xF2,                     // mov dx,si
+                0x1E,                           // push ds
+                0xBB, 0x00, 0x81,               // mov bx,8100
+                0x8E, 0xDB,                     // mov ds,bx
+                0x66, 0xC7, 0x06, 0xC0, 0x00,   // mov dword [c0],30007 the page table entry for 30000
+                0x07, 0x00, 0x03, 0x00,
+                0x1F,                           // pop ds
+                0xCF                            // iret, there is no error code in real mode
+        };
+        System.arraycopy(main, 0, code, 0, main.length);
+        System.arraycopy(handler, 0, code, 0x20, handler.length);
+        vector(14, 0x20);
+        boolean cacheRegisters = Compiler.cacheRegisters;
+        try {
+            CPU.cpu.cpl = 0;
+            Paging.PAGING_SetDirBase(0x80000);
+            Paging.PAGING_Enable(true);
+            String expected = null;
+            for (int i=0;i<3;i++) {
+                // the page directory with everything but 30000 mapped
+                RAM.writed(0x80000, 0x81000 | 7);
+                for (int page=0;page<1024;page++)
+                    RAM.writed(0x81000+page*4, page == 0x30 ? 0 : (page<<12) | 7);
+                Paging.PAGING_ClearTLB();
+                RAM.writew(0x30000, 0);
+                String result = run(i == 0 ? Core_normal.CPU_Core_Normal_Run : Core_dynamic.CPU_Core_Dynamic_Run, code, 0x10);
+                assertEquals(0x1112, RAM.readw(0x30000));
+                assertEquals(0x1112, CPU_Regs.reg_ecx.dword);
+                assertEquals(0x1112, CPU_Regs.reg_edx.dword);
+                if (expected == null)
+                    expected = result;
+                else
+                    assertEquals(expected, result);
+                Compiler.cacheRegisters = i == 0;
+                Core_dynamic.CPU_Core_Dynamic_Cache_Init(true);
+            }
+        } finally {
+            Compiler.cacheRegisters = cacheRegisters;
+            Paging.PAGING_Enable(false);
+        }
+    }
+
+    // The add is changed every time around the loop.  For the first 10 times it is run from C, the blocks there
+    // are cleared so often that they aren't compiled, and after that from the jump target which gets a new block
+    // that is compiled and that ends with the add or starts with it.  It still has to get a block of its own
+    // once it has been run a while without being changed.
+    private void modifiedInstruction(int target) {
+        int[] code = new int[] {
+                0xB9, 0xC8, 0x00,               // mov cx,200
+                0x88, 0x0E, 0x12, 0x00,         // A: mov [imm],cl
+                0x81, 0xF9, 0xBE, 0x00,         // cmp cx,190
+                0x77, 0x02,                     // ja C
+                0xEB, target-0x0F,              // jmp target
+                0x90,                           // C: nop
+                0x90,                           // nop
+                0x04, 0x00,                     // add al,imm
+                0x49,                           // dec cx
+                0x75, 0xED,                     // jnz A
+                0xEB, 0xFE                      // jmp $
+        };
+        String expected = run(Core_normal.CPU_Core_Normal_Run, code, 0x16);
+        assertEquals(200*201/2 & 0xFF, CPU_Regs.reg_eax.dword);
+        long fallbackBlocks = CodePageHandlerDynRec.fallbackBlocks;
+        assertEquals(expected, run(Core_dynamic.CPU_Core_Dynamic_Run, code, 0x16));
+        assertTrue(CodePageHandlerDynRec.fallbackBlocks > fallbackBlocks);
+    }
+
+    public void testModifiedInstruction() {
+        if (Compiler.ENABLED)
+            modifiedInstruction(0x10);
+    }
+
+    public void testModifiedBlockStart() {
+        if (Compiler.ENABLED)
+            modifiedInstruction(0x11);
+    }
+}
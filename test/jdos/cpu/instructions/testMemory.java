@@ -0,0 +1,154 @@
+package jdos.cpu.instructions;
+
+import jdos.cpu.CPU;
+import jdos.cpu.Paging;
+import jdos.hardware.Memory;
+import jdos.hardware.RAM;
+
+public class testMemory extends InstructionsTestCase {
+    static private final int BASE = 0x20000;
+    static private final int PD = 0x180000;
+    static private final int PT = 0x181000;
+
+    private void fill(int address, int size, int value) {
+        for (int i=0;i<size;i++)
+            RAM.writeb(address+i, value);
+    }
+
+    public void testBlockRead16() {
+        Memory.mem_writed(BASE, 0x44332211);
+        int[] data = new int[3];
+        Memory.MEM_BlockRead16u(BASE, data, 1, 2);
+        assertEquals(0, data[0]);
+        assertEquals(0x2211, data[1]);
+        assertEquals(0x4433, data[2]);
+        short[] s = new short[2];
+        Memory.MEM_BlockRead(BASE+1, s, 2);
+        assertEquals(0x3322, s[0]);
+        assertEquals(0x44, s[1] & 0xFF);
+
+        // more than one buffer full
+        for (int i=0;i<0x1800;i++)
+            Memory.mem_writew(BASE+i*2, i);
+        data = new int[0x1801];
+        Memory.MEM_BlockRead16u(BASE, data, 1, 0x1800);
+        s = new short[0x1800];
+        Memory.MEM_BlockRead(BASE, s, 0x1800);
+        for (int i=0;i<0x1800;i++) {
+            assertEquals(i, data[i+1]);
+            assertEquals(i, s[i]);
+        }
+    }
+
+    public void testUnalignedRead() {
+        for (int i=0;i<32;i++)
+            RAM.writeb(BASE+i, i+1);
+        for (int start=0;start<4;start++) {
+            for (int size=0;size<20;size++) {
+                byte[] b = new byte[size+2];
+                RAM.memcpy(b, 1, BASE+start, size);
+                assertEquals(0, b[0]);
+                for (int i=0;i<size;i++)
+                    assertEquals(start+i+1, b[i+1]);
+                assertEquals(0, b[size+1]);
+            }
+        }
+    }
+
+    public void testMemsetTail() {
+        for (int start=0;start<4;start++) {
+            for (int size=0;size<12;size++) {
+                fill(BASE, 64, 0xEE);
+                RAM.memset(BASE+start, size, 0x5A);
+                for (int i=0;i<64;i++)
+                    assertEquals(i>=start && i<start+size ? 0x5A : 0xEE, RAM.readb(BASE+i));
+            }
+        }
+    }
+
+    public void testBlockWriteOffset() {
+        fill(BASE, 16, 0xEE);
+        byte[] b = new byte[] {1, 2, 3, 4, 5, 6};
+        // whatever is past the end of the array is written as 0
+        Memory.MEM_BlockWrite(BASE, b, 2, 6);
+        assertEquals(0x06050403, Memory.mem_readd(BASE));
+        assertEquals(0, Memory.mem_readw(BASE+4));
+        assertEquals(0xEE, Memory.mem_readb(BASE+6));
+
+        // an offset past the end only writes zeros
+        fill(BASE-4, 20, 0xEE);
+        Memory.MEM_BlockWrite(BASE, b, 8, 4);
+        assertEquals(0xEE, Memory.mem_readb(BASE-1));
+        assertEquals(0, Memory.mem_readd(BASE));
+        assertEquals(0xEE, Memory.mem_readb(BASE+4));
+    }
+
+    public void testOverlappingCopy() {
+        fill(BASE, 64, 0);
+        RAM.writeb(BASE, 'A');
+        RAM.writeb(BASE+1, 'B');
+        // a forward copy onto itself repeats the first byte
+        Memory.mem_memcpy(BASE+1, BASE, 31);
+        for (int i=0;i<32;i++)
+            assertEquals('A', RAM.readb(BASE+i));
+        assertEquals(0, RAM.readb(BASE+32));
+
+        for (int i=0;i<8;i++)
+            RAM.writeb(BASE+0x1000+i, i);
+        Memory.mem_memcpy(BASE+0x1002, BASE+0x1000, 6);
+        int[] expected = new int[] {0, 1, 0, 1, 0, 1, 0, 1};
+        for (int i=0;i<8;i++)
+            assertEquals(expected[i], RAM.readb(BASE+0x1000+i));
+    }
+
+    public void testPageCrossing() {
+        for (int i=0;i<1024;i++) {
+            Memory.phys_writed(PD+i*4, 0);
+            Memory.phys_writed(PT+i*4, (i<<12)|7);
+        }
+        Memory.phys_writed(PD, PT|7);
+        // two linear pages next to each other that are backwards in physical memory
+        Memory.phys_writed(PT+0x200*4, 0x1A0000|7);
+        Memory.phys_writed(PT+0x201*4, 0x190000|7);
+        try {
+            CPU.cpu.cpl = 0;
+            Paging.PAGING_SetDirBase(PD);
+            Paging.PAGING_Enable(true);
+
+            byte[] b = new byte[32];
+            for (int i=0;i<b.length;i++)
+                b[i] = (byte)(i+1);
+            fill(0x1A0FF0, 16, 0);
+            fill(0x190000, 32, 0);
+            Memory.MEM_BlockWrite(0x200FF0, b, b.length);
+            for (int i=0;i<16;i++) {
+                assertEquals(i+1, RAM.readb(0x1A0FF0+i));
+                assertEquals(i+17, RAM.readb(0x190000+i));
+            }
+            assertEquals(0, RAM.readb(0x190010));
+
+            byte[] r = new byte[32];
+            Memory.MEM_BlockRead(0x200FF0, r, r.length);
+            for (int i=0;i<r.length;i++)
+                assertEquals(b[i], r[i]);
+
+            int[] w = new int[2];
+            Memory.MEM_BlockRead16u(0x200FFE, w, 0, 2);
+            assertEquals(0x100F, w[0]);
+            assertEquals(0x1211, w[1]);
+
+            Memory.mem_memset(0x200FFC, 0x77, 8);
+            assertEquals(0x77777777, RAM.readd(0x1A0FFC));
+            assertEquals(0x77777777, RAM.readd(0x190000));
+            assertEquals(21, RAM.readb(0x190004));
+
+            Memory.mem_memcpy(0x100000, 0x200FF8, 16);
+            assertEquals(0x77777777, Memory.mem_readd(0x100004));
+            assertEquals(0x77777777, Memory.mem_readd(0x100008));
+            assertEquals(0x0C0B0A09, Memory.mem_readd(0x100000));
+            assertEquals(0x18171615, Memory.mem_readd(0x10000C));
+        } finally {
+            Paging.PAGING_Enable(false);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package jdos.cpu.instructions;
+
+import jdos.cpu.CPU;
+import jdos.cpu.CPU_Regs;
+import jdos.cpu.Paging;
+import jdos.hardware.Memory;
+
+public class testPaging extends InstructionsTestCase {
+    static private final int PD = 0x180000;
+    static private final int PT = 0x181000;
+
+    private void setupTables() {
+        for (int i=0;i<1024;i++) {
+            Memory.phys_writed(PD+i*4, 0);
+            Memory.phys_writed(PT+i*4, (i<<12)|7);
+        }
+        Memory.phys_writed(PD, PT|7);   // 0-4MB through a page table
+        Memory.phys_writed(PD+4, 0x87); // 4-8MB is one 4MB page on physical 0
+        Memory.phys_writed(PD+8, 0x87); // so is 8-12MB
+    }
+
+    public void testLargePage() {
+        int arch = CPU.CPU_ArchitectureType;
+        try {
+            CPU.CPU_ArchitectureType = CPU.CPU_ARCHTYPE_PENTIUM;
+            CPU_Regs.reg_eax.dword = 1;
+            CPU.CPU_CPUID();
+            assertTrue((CPU_Regs.reg_edx.dword & (1<<3))!=0);
+
+            setupTables();
+            CPU.cpu.cpl = 0;
+            CPU.CPU_SET_CRX(4, 0x10);
+            Paging.PAGING_SetDirBase(PD);
+            Paging.PAGING_Enable(true);
+
+            Memory.mem_writed(0x550010, 0x12345678);
+            assertEquals(0x12345678, Memory.phys_readd(0x150010));
+            assertEquals(0x12345678, Memory.mem_readd(0x950010));
+            assertEquals(0x60, Memory.phys_readd(PD+4) & 0x60); // accessed and dirty
+            assertEquals(0x20, Memory.phys_readd(PD+8) & 0x60); // only accessed
+            // the pages around it come from the same directory entry and are linked right away
+            assertTrue(Paging.get_tlb_read(0x95F000) != Paging.INVALID_ADDRESS);
+            // the first write goes through the foiler and sets the dirty bit
+            Memory.mem_writed(0x950020, 0xCAFE);
+            assertEquals(0x60, Memory.phys_readd(PD+8) & 0x60);
+            assertEquals(0xCAFE, Memory.mem_readd(0x550020));
+            // 4k pages next to it still work
+            Memory.mem_writed(0x1234, 0x55);
+            assertEquals(0x55, Memory.phys_readd(0x1234));
+        } finally {
+            Paging.PAGING_Enable(false);
+            CPU.CPU_SET_CRX(4, 0);
+            CPU.CPU_ArchitectureType = arch;
+        }
+    }
+
+    public void testLinkGroup() {
+        // never linked since the tlb was set up
+        Memory.mem_writed(0x200000, 1);
+        assertTrue(Paging.get_tlb_read(0x20F000) != Paging.INVALID_ADDRESS);
+        // unlinked in this generation
+        Paging.PAGING_UnlinkPages(0x200, Paging.LINK_GROUP);
+        assertEquals(Paging.INVALID_ADDRESS, Paging.get_tlb_read(0x201000));
+        assertEquals(1, Memory.mem_readd(0x200000));
+        assertTrue(Paging.get_tlb_read(0x201000) != Paging.INVALID_ADDRESS);
+        assertTrue(Paging.get_tlb_read(0x20F000) != Paging.INVALID_ADDRESS);
+    }
+}
@@ -2801,4 +2801,15 @@ public class testPrefix_none extends InstructionsTestCase{
         decoder.call();
         assertTrue(CPU_Regs.reg_edx.dword==0xFFFF);
     }
+
+    // 0xce
+    //INTO
+    public void testInto() {
+        newInstruction(0xce);
+        int eip = CPU_Regs.reg_eip;
+        CPU_Regs.SETFLAGBIT(CPU_Regs.OF, false);
+        decoder.call();
+        // without overflow it is just the next instruction
+        assertEquals(eip+1, CPU_Regs.reg_eip);
+    }
 }
@@ -0,0 +1,314 @@
+package jdos.cpu.instructions;
+
+import jdos.cpu.*;
+import jdos.hardware.IO;
+import jdos.hardware.IOStats;
+import jdos.hardware.RAM;
+import jdos.hardware.qemu.IDE;
+import jdos.hardware.qemu.Internal;
+import jdos.misc.setup.Property;
+import jdos.misc.setup.Section_prop;
+import jdos.util.FileIO;
+import jdos.util.FileIOFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Runs rep string instructions, which go through StringOp.FastString, and checks they end the same way as the
+// same instruction without rep in a loop, which is done one element at a time
+public class testStrings extends InstructionsTestCase {
+    static private final int CODE = 0x10000;
+    static private final int DATA = 0x50000;  // ds and es
+    static private final int SIZE = 0x10010;  // the segment and what an element at ffff can reach past it
+
+    static private final int MOVSB = 0xA4;
+    static private final int MOVSW = 0xA5;
+    static private final int CMPSB = 0xA6;
+    static private final int CMPSW = 0xA7;
+    static private final int STOSW = 0xAB;
+    static private final int LODSW = 0xAD;
+    static private final int SCASB = 0xAE;
+    static private final int SCASW = 0xAF;
+    static private final int INSW = 0x6D;
+    static private final int OUTSW = 0x6F;
+
+    static private final int REP = 0xF3;
+    static private final int REPNE = 0xF2;
+
+    static private final int IDE_DATA = 0x1F0;
+    static private final int READ_SECTORS = 0x20;
+    static private final int WRITE_SECTORS = 0x30;
+    static private final int LBA = 2;
+
+    private byte[] memory;
+    private int dx;
+    private FileIO disk;
+    private int command;  // ide command given to the primary master at the start of every run, 0 for none
+    private int sectors;
+
+    protected void tearDown() throws Exception {
+        IOStats.stop();
+        if (disk != null) {
+            // the partial transfers leave the drive busy, which would keep later tests from taking checkpoints
+            resetDrive();
+            disk.close();
+        }
+        super.tearDown();
+    }
+
+    private byte[] data() {
+        byte[] data = new byte[SIZE];
+        for (int i=0;i<data.length;i++)
+            data[i] = (byte)(i*7+(i>>8));
+        return data;
+    }
+
+    // runs from cs:0 until the jmp $ at end, memory has what was in DATA afterwards
+    private String run(int[] code, int end, byte[] data, int si, int di, int cx, int ax) {
+        for (int i=0;i<code.length;i++)
+            RAM.writeb(CODE+i, code[i]);
+        RAM.memcpy(DATA, data, 0, data.length);
+        clearReg();
+        CPU_Regs.flags = 0;
+        CPU_Regs.reg_esi.dword = si;
+        CPU_Regs.reg_edi.dword = di;
+        CPU_Regs.reg_ecx.dword = cx;
+        CPU_Regs.reg_eax.dword = ax;
+        CPU_Regs.reg_edx.dword = dx;
+        CPU_Regs.reg_esp.dword = 0xFFFE;
+        CPU_Regs.SegSet16CS(CODE >> 4);
+        CPU_Regs.SegSet16DS(DATA >> 4);
+        CPU_Regs.SegSet16ES(DATA >> 4);
+        CPU_Regs.SegSet16SS(MEM_BASE_SS >> 4);
+        CPU_Regs.reg_eip = 0;
+        if (command!=0)
+            ideCommand();
+        for (int i=0;i<100000 && CPU_Regs.reg_eip!=end;i++) {
+            CPU.CPU_Cycles = 100;
+            Core_normal.CPU_Core_Normal_Run.call();
+        }
+        assertEquals(end, CPU_Regs.reg_eip);
+        Flags.FillFlags();
+        memory = new byte[SIZE];
+        RAM.memcpy(memory, 0, DATA, SIZE);
+        String result = Integer.toHexString(CPU_Regs.reg_eax.dword)+" "+Integer.toHexString(CPU_Regs.reg_ecx.dword)+" "+
+                Integer.toHexString(CPU_Regs.reg_esi.dword)+" "+Integer.toHexString(CPU_Regs.reg_edi.dword)+" "+Integer.toHexString(CPU_Regs.flags & CPU_Regs.FMASK_TEST);
+        if (command!=0) {
+            Internal.IDEState drive = IDE.getDrive(0, 0);
+            result += " irqs="+IOStats.irqRaised[14]+" status="+Integer.toHexString(drive.status)+" nsector="+drive.nsector+" offset="+drive.data_ptr_offset+
+                    " disk="+Arrays.hashCode(readDisk());
+        }
+        return result;
+    }
+
+    // a disk of 64 sectors on the primary master
+    private byte[] attachDisk() throws IOException {
+        byte[] image = new byte[64*512];
+        for (int i=0;i<image.length;i++)
+            image[i] = (byte)(i*3+(i>>9));
+        File file = File.createTempFile("disk", ".img");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(image);
+        out.close();
+        Section_prop section = new Section_prop("ide");
+        section.Add_bool("primary", Property.Changeable.OnlyAtStart, true);
+        IDE.IDE_Init.call(section);
+        disk = FileIOFactory.open(file.getPath(), FileIOFactory.MODE_READ|FileIOFactory.MODE_WRITE);
+        IDE.IDE_Attach(false, 0, false, disk, 0, 0, 0);
+        IDE.getIDEController(0).initIO();
+        return image;
+    }
+
+    private byte[] readDisk() {
+        byte[] b = new byte[sectors*512];
+        try {
+            disk.seek(LBA*512);
+            disk.read(b, 0, b.length);
+        } catch (IOException e) {
+            fail(e.toString());
+        }
+        return b;
+    }
+
+    private void resetDrive() {
+        IO.IO_WriteB(0x3F6, 0x04);  // srst
+        IO.IO_WriteB(0x3F6, 0x00);
+    }
+
+    // the sectors written to are cleared first and the drive is reset, a run that stopped part way through
+    // leaves DRQ set and the drive would ignore the next command, so that every run starts the same way
+    private void ideCommand() {
+        if (command==WRITE_SECTORS) {
+            try {
+                disk.seek(LBA*512);
+                disk.write(new byte[sectors*512]);
+            } catch (IOException e) {
+                fail(e.toString());
+            }
+        }
+        resetDrive();
+        IOStats.reset();
+        IOStats.start();
+        IO.IO_WriteB(0x1F6, 0xE0);  // lba, master
+        IO.IO_WriteB(0x1F2, sectors);
+        IO.IO_WriteB(0x1F3, LBA);
+        IO.IO_WriteB(0x1F4, 0);
+        IO.IO_WriteB(0x1F5, 0);
+        IO.IO_WriteB(0x1F7, command);
+    }
+
+    // rep is REP or REPNE in front of op, loop is the loop instruction that does the same one element at a time
+    private void compare(boolean backward, int rep, int loop, int op, byte[] data, int si, int di, int cx, int ax) {
+        int direction = backward?0xFD:0xFC;   // std or cld
+        String expected = run(new int[] {direction, op, loop, 0xFD, 0xEB, 0xFE}, 4, data, si, di, cx, ax);
+        byte[] expectedMemory = memory;
+        assertEquals(expected, run(new int[] {direction, rep, op, 0xEB, 0xFE}, 3, data, si, di, cx, ax));
+        assertTrue(Arrays.equals(expectedMemory, memory));
+    }
+
+    private void compare(boolean backward, int op, byte[] data, int si, int di, int cx) {
+        compare(backward, REP, 0xE2, op, data, si, di, cx, 0);
+    }
+
+    public void testMovsOverlapForward() {
+        byte[] data = data();
+        // di just above si repeats the first elements, that includes distances shorter than an element
+        for (int distance=1;distance<=5;distance++) {
+            compare(false, MOVSB, data, 0x100, 0x100+distance, 0x300);
+            compare(false, MOVSW, data, 0x100, 0x100+distance, 0x300);
+        }
+        compare(false, MOVSB, data, 0x100+3, 0x100, 0x300);
+    }
+
+    public void testMovsOverlapBackward() {
+        byte[] data = data();
+        for (int distance=1;distance<=5;distance++) {
+            compare(true, MOVSB, data, 0x800, 0x800-distance, 0x300);
+            compare(true, MOVSW, data, 0x800, 0x800-distance, 0x300);
+        }
+        compare(true, MOVSW, data, 0x800-3, 0x800, 0x300);
+    }
+
+    public void testCmpsStops() {
+        byte[] data = data();
+        System.arraycopy(data, 0x1000, data, 0x3000, 0x1000);
+        data[0x3123] = 0;
+        // repe stops at the first difference, in the middle of a run
+        compare(false, REP, 0xE1, CMPSB, data, 0x1000, 0x3000, 0x800, 0);
+        compare(false, REP, 0xE1, CMPSW, data, 0x1000, 0x3000, 0x800, 0);
+        compare(true, REP, 0xE1, CMPSB, data, 0x1800, 0x3800, 0x800, 0);
+        // repne stops at the first one that is the same
+        compare(false, REPNE, 0xE0, CMPSB, data, 0x1000, 0x3001, 0x800, 0);
+        data[0x3200] = data[0x1200];
+        compare(false, REPNE, 0xE0, CMPSB, data, 0x1000+0x100, 0x3000+0x100, 0x800, 0);
+        // and when nothing stops it, the flags come from the last element
+        compare(false, REP, 0xE1, CMPSW, data, 0x1000, 0x3000, 0x80, 0);
+    }
+
+    public void testScasStops() {
+        byte[] data = data();
+        Arrays.fill(data, 0x2000, 0x3000, (byte)0x11);
+        data[0x2345] = 0x22;
+        compare(false, REPNE, 0xE0, SCASB, data, 0, 0x2000, 0x800, 0x22);
+        compare(true, REPNE, 0xE0, SCASB, data, 0, 0x2FFF, 0x1000, 0x22);
+        compare(false, REP, 0xE1, SCASB, data, 0, 0x2000, 0x800, 0x11);
+        compare(false, REP, 0xE1, SCASW, data, 0, 0x2001, 0x800, 0x1111);
+        // nothing found
+        compare(false, REPNE, 0xE0, SCASB, data, 0, 0x2400, 0x100, 0x22);
+    }
+
+    public void testPageCrossing() {
+        byte[] data = data();
+        // every element on an odd address, one of them in each page crosses into the next
+        compare(false, MOVSW, data, 0x0FF1, 0x6001, 0x1800);
+        compare(true, MOVSW, data, 0x4001, 0x9FF1, 0x1800);
+        compare(false, STOSW, data, 0, 0x1FFF, 0x1000);
+        compare(false, LODSW, data, 0x1FFF, 0, 0x1000);
+        System.arraycopy(data, 0x1000, data, 0x5001, 0x3000);
+        compare(false, REP, 0xE1, CMPSW, data, 0x1000, 0x5001, 0x1000, 0);
+
+        // the runs go on in bulk after the element that crosses
+        RAM.memcpy(DATA, data, 0, data.length);
+        CPU.cpu.direction = 1;
+        CPU_Regs.reg_esi.dword = 0x0FF1;
+        CPU_Regs.reg_edi.dword = 0x6001;
+        CPU_Regs.reg_ecx.dword = 0x1800;
+        assertEquals(0, StringOp.FastString(StringOp.R_MOVSW, DATA, DATA, 0x1800, false));
+        assertEquals(0, CPU_Regs.reg_ecx.dword);
+        assertEquals(0x0FF1+0x3000, CPU_Regs.reg_esi.dword);
+    }
+
+    public void testOffsetWrap() {
+        byte[] data = data();
+        compare(false, MOVSB, data, 0xFFF0, 0x8000, 0x40);
+        compare(false, MOVSW, data, 0xFFF1, 0x8000, 0x40);
+        compare(false, MOVSW, data, 0x8000, 0xFFF1, 0x40);
+        compare(true, MOVSB, data, 0x0010, 0x8000, 0x40);
+        compare(true, MOVSW, data, 0x8000, 0x0011, 0x40);
+        compare(false, STOSW, data, 0, 0xFFFF, 0x10);
+        compare(false, REP, 0xE1, CMPSB, data, 0xFFF0, 0xFFF0, 0x40, 0);
+
+        CPU.cpu.direction = 1;
+        CPU_Regs.reg_esi.dword = 0xFFF1;
+        CPU_Regs.reg_edi.dword = 0x8000;
+        CPU_Regs.reg_ecx.dword = 0x40;
+        assertEquals(0, StringOp.FastString(StringOp.R_MOVSW, DATA, DATA, 0x40, false));
+        assertEquals(0x0071, CPU_Regs.reg_esi.dword);
+    }
+
+    // READ SECTORS gives an interrupt with DRQ set for every sector, after the last one DRQ is clear
+    public void testInswFromIde() throws IOException {
+        byte[] image = attachDisk();
+        byte[] data = data();
+        dx = IDE_DATA;
+        command = READ_SECTORS;
+        sectors = 3;
+        // into a page boundary
+        compare(false, INSW, data, 0, 0x0F00, 3*256);
+        assertEquals(3, IOStats.irqRaised[14]);
+        assertEquals(0, IDE.getDrive(0, 0).status & Internal.DRQ_STAT);
+        for (int i=0;i<3*512;i++)
+            assertEquals(image[LBA*512+i], memory[0x0F00+i]);
+
+        // part of a sector, the second one is still there to be read
+        compare(false, INSW, data, 0, 0x0F00, 300);
+        assertEquals(2, IOStats.irqRaised[14]);
+        assertEquals(Internal.DRQ_STAT, IDE.getDrive(0, 0).status & Internal.DRQ_STAT);
+        assertEquals((300-256)*2, IDE.getDrive(0, 0).data_ptr_offset);
+
+        // the block path does it all
+        command = 0;
+        RAM.memcpy(DATA, data, 0, data.length);
+        command = READ_SECTORS;
+        ideCommand();
+        CPU.cpu.direction = 1;
+        CPU_Regs.reg_edi.dword = 0x0F00;
+        CPU_Regs.reg_ecx.dword = 3*256;
+        CPU_Regs.reg_edx.dword = IDE_DATA;
+        assertEquals(0, StringOp.FastString(StringOp.R_INSW, DATA, DATA, 3*256, false));
+        assertEquals(0x0F00+3*512, CPU_Regs.reg_edi.dword);
+    }
+
+    // WRITE SECTORS has DRQ set right away and gives an interrupt when each sector has been written
+    public void testOutswToIde() throws IOException {
+        attachDisk();
+        byte[] data = data();
+        dx = IDE_DATA;
+        command = WRITE_SECTORS;
+        sectors = 3;
+        compare(false, OUTSW, data, 0x0F00, 0, 3*256);
+        assertEquals(3, IOStats.irqRaised[14]);
+        assertEquals(0, IDE.getDrive(0, 0).status & Internal.DRQ_STAT);
+        byte[] written = readDisk();
+        for (int i=0;i<written.length;i++)
+            assertEquals(data[0x0F00+i], written[i]);
+
+        compare(false, OUTSW, data, 0x0F00, 0, 300);
+        assertEquals(1, IOStats.irqRaised[14]);
+        assertEquals(Internal.DRQ_STAT, IDE.getDrive(0, 0).status & Internal.DRQ_STAT);
+        assertEquals((300-256)*2, IDE.getDrive(0, 0).data_ptr_offset);
+    }
+}
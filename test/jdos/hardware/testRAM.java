@@ -0,0 +1,105 @@
+package jdos.hardware;
+
+import junit.framework.TestCase;
+
+public class testRAM extends TestCase {
+    static private final int CHUNK = RAM.SparseBackend.CHUNK;
+
+    private String oldType;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        oldType = RAM.type();
+        RAM.setType(RAM.SPARSE, "");
+        RAM.alloc(4*CHUNK);
+    }
+
+    protected void tearDown() throws Exception {
+        RAM.free();
+        RAM.setType(oldType, "");
+        super.tearDown();
+    }
+
+    public void testChunkBoundary() {
+        for (int i=1;i<4;i++) {
+            RAM.writed(CHUNK-i, 0x44332211);
+            assertEquals(0x44332211, RAM.readd(CHUNK-i));
+            assertEquals(0x2211, RAM.readw(CHUNK-i));
+            assertEquals(0x3322, RAM.readw(CHUNK-i+1));
+            assertEquals(0x11, RAM.readb(CHUNK-i));
+            assertEquals(0x44, RAM.readb(CHUNK-i+3));
+        }
+        RAM.writew(2*CHUNK-1, 0xBBAA);
+        assertEquals(0xAA, RAM.readb(2*CHUNK-1));
+        assertEquals(0xBB, RAM.readb(2*CHUNK));
+        assertEquals(0xBBAA, RAM.readw(2*CHUNK-1));
+        assertEquals(3*CHUNK, RAM.committed());
+    }
+
+    public void testBlockBoundary() {
+        byte[] b = new byte[16];
+        for (int i=0;i<b.length;i++)
+            b[i] = (byte)(i+1);
+        RAM.memcpy(CHUNK-5, b, 0, b.length);
+        byte[] r = new byte[18];
+        RAM.memcpy(r, 1, CHUNK-5, b.length);
+        for (int i=0;i<b.length;i++)
+            assertEquals(b[i], r[i+1]);
+        assertEquals(0, r[0]);
+        assertEquals(0, r[17]);
+
+        RAM.memset(2*CHUNK-3, 6, 0x5A);
+        assertEquals(0x5A5A5A5A, RAM.readd(2*CHUNK-2));
+        assertEquals(0, RAM.readb(2*CHUNK+3));
+        RAM.memcpy(3*CHUNK-2, 2*CHUNK-3, 6);
+        assertEquals(0x5A5A5A5A, RAM.readd(3*CHUNK-2));
+        assertEquals(0x5A5A, RAM.readw(3*CHUNK+2));
+        assertEquals(4*CHUNK, RAM.committed());
+    }
+
+    public void testZeroWrite() {
+        assertEquals(0, RAM.committed());
+        RAM.writeb(10, 0);
+        RAM.writew(CHUNK-1, 0);
+        RAM.writed(2*CHUNK-2, 0);
+        RAM.zeroset(3*CHUNK, CHUNK);
+        assertEquals(0, RAM.committed());
+        assertEquals(0, RAM.readd(2*CHUNK-2));
+
+        RAM.writeb(10, 1);
+        assertEquals(CHUNK, RAM.committed());
+        // zeros in a chunk that is already there are still written
+        RAM.writed(8, 0);
+        assertEquals(0, RAM.readb(10));
+        assertEquals(CHUNK, RAM.committed());
+    }
+
+    public void testSnapshot() {
+        RAM.writed(0x100, 0x12345678);
+        RAM.writed(CHUNK+0x100, 0x11111111);
+        Object snapshot = RAM.snapshot();
+
+        // writes after the snapshot get a copy of the chunk and leave the snapshot alone
+        RAM.writed(0x100, 0xCAFE);
+        RAM.writed(CHUNK+0x104, 0x22222222);
+        RAM.writed(2*CHUNK, 0x33333333);
+        assertEquals(0xCAFE, RAM.readd(0x100));
+        assertEquals(3*CHUNK, RAM.committed());
+
+        RAM.restore(snapshot);
+        assertEquals(0x12345678, RAM.readd(0x100));
+        assertEquals(0x11111111, RAM.readd(CHUNK+0x100));
+        assertEquals(0, RAM.readd(CHUNK+0x104));
+        assertEquals(0, RAM.readd(2*CHUNK));
+        assertEquals(2*CHUNK, RAM.committed());
+
+        // nor do writes after the restore, it can be restored again
+        RAM.writed(0x100, 0xBEEF);
+        RAM.memset(CHUNK, 0x200, 0x77);
+        assertEquals(0xBEEF, RAM.readd(0x100));
+        RAM.restore(snapshot);
+        assertEquals(0x12345678, RAM.readd(0x100));
+        assertEquals(0x11111111, RAM.readd(CHUNK+0x100));
+        assertEquals(0, RAM.readd(CHUNK));
+    }
+}
@@ -0,0 +1,120 @@
+package jdos.ints;
+
+import jdos.cpu.instructions.InstructionsTestCase;
+import jdos.dos.DOS_File;
+import jdos.dos.Dos_files;
+import jdos.hardware.Checkpoint;
+import jdos.hardware.Memory;
+import jdos.hardware.Timer;
+import jdos.hardware.VGA;
+import jdos.misc.setup.Section_prop;
+import jdos.util.IntRef;
+import jdos.util.LongRef;
+
+public class testCheckpoint extends InstructionsTestCase {
+    static private final int FRAME = 0xE0000;
+
+    Section_prop timer_prop = new Section_prop("timer");
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Timer.TIMER_Init.call(timer_prop);
+        XMS.XMS_ClearHandles();
+        EMS.EMM_ClearTables();
+        EMS.ems_type = 1;
+    }
+
+    protected void tearDown() throws Exception {
+        EMS.ems_type = 0;
+        timer_prop.ExecuteDestroy(true);
+        super.tearDown();
+    }
+
+    public void testRestore() {
+        IntRef handle = new IntRef(0);
+        assertEquals(0, EMS.EMM_AllocateMemory(4, handle, false));
+        int first = handle.value;
+        assertEquals(0, EMS.EMM_MapPage(0, first, 1));
+        Memory.mem_writed(FRAME, 0x11111111);
+        IntRef xms = new IntRef(0);
+        assertEquals(0, XMS.XMS_AllocateMemory(64, xms));
+        int block = xms.value;
+        int free = Memory.MEM_FreeTotal();
+
+        Checkpoint checkpoint = Checkpoint.take();
+
+        // another ems handle mapped over the first one which is then released, the xms block is swapped for a
+        // bigger one
+        assertEquals(0, EMS.EMM_AllocateMemory(4, handle, false));
+        int second = handle.value;
+        assertEquals(0, EMS.EMM_MapPage(0, second, 0));
+        Memory.mem_writed(FRAME, 0x22222222);
+        assertEquals(0, EMS.EMM_ReleaseMemory(first));
+        assertEquals(0, XMS.XMS_FreeMemory(block));
+        assertEquals(0, XMS.XMS_AllocateMemory(128, xms));
+        assertTrue(free != Memory.MEM_FreeTotal());
+
+        assertTrue(checkpoint.restore());
+        // the page frame shows the first handle again
+        assertEquals(0x11111111, Memory.mem_readd(FRAME));
+        assertEquals(free, Memory.MEM_FreeTotal());
+        assertEquals(0, EMS.EMM_MapPage(1, first, 1));
+        assertEquals(0x11111111, Memory.mem_readd(FRAME+0x4000));
+        // the second handle is free again
+        assertEquals(0, EMS.EMM_AllocateMemory(4, handle, false));
+        assertEquals(second, handle.value);
+        assertEquals(0, EMS.EMM_ReleaseMemory(second));
+        // and the xms block is the one with 64kb
+        assertEquals(0, XMS.XMS_FreeMemory(block));
+        assertEquals(free+16, Memory.MEM_FreeTotal());
+
+        // it can be restored again
+        assertTrue(checkpoint.restore());
+        assertEquals(free, Memory.MEM_FreeTotal());
+        assertEquals(0x11111111, Memory.mem_readd(FRAME));
+    }
+
+    public void testFilesChanged() {
+        Memory.mem_writed(0x20000, 1);
+        Checkpoint checkpoint = Checkpoint.take();
+        Memory.mem_writed(0x20000, 2);
+        DOS_File file = new DOS_File() {
+            public boolean Read(byte[] data, IntRef size) {return false;}
+            public boolean Write(byte[] data, IntRef size) {return false;}
+            public boolean Seek(LongRef pos, int type) {return false;}
+            public boolean Close() {return true;}
+            public int GetInformation() {return 0;}
+        };
+        file.open = true;
+        file.refCtr = 1;
+        try {
+            Dos_files.Files[10] = file;
+            assertFalse(checkpoint.restore());
+            assertEquals(2, Memory.mem_readd(0x20000));
+        } finally {
+            Dos_files.Files[10] = null;
+        }
+        assertTrue(checkpoint.restore());
+        assertEquals(1, Memory.mem_readd(0x20000));
+    }
+
+    public void testVideoModeChanged() {
+        VGA.VGA_Type old = VGA.vga;
+        VGA.vga = new VGA.VGA_Type();
+        try {
+            VGA.vga.mode = VGA.M_TEXT;
+            Memory.mem_writed(0x20000, 1);
+            Checkpoint checkpoint = Checkpoint.take();
+            Memory.mem_writed(0x20000, 2);
+            VGA.vga.mode = VGA.M_VGA;
+            assertNotNull(checkpoint.unrestorable());
+            assertFalse(checkpoint.restore());
+            assertEquals(2, Memory.mem_readd(0x20000));
+            VGA.vga.mode = VGA.M_TEXT;
+            assertTrue(checkpoint.restore());
+            assertEquals(1, Memory.mem_readd(0x20000));
+        } finally {
+            VGA.vga = old;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package jdos;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileWriter;
+
+public class testInstances extends TestCase {
+    private File conf(String extra) throws Exception {
+        File f = File.createTempFile("instance", ".conf");
+        f.deleteOnExit();
+        FileWriter w = new FileWriter(f);
+        w.write("[mixer]\nnosound=true\n[midi]\nmpu401=none\n[dosbox]\n"+extra);
+        w.close();
+        return f;
+    }
+
+    public void testExitOnlyStopsOneInstance() throws Exception {
+        Thread good = Instances.start("good", new String[] {"-conf", conf("").getPath()});
+        // main memory can't be mapped to a file in a directory that isn't there, that is a Log.exit
+        Thread bad = Instances.start("bad", new String[] {"-conf", conf("memtype=mapped\nmemfile="+new File("nosuchdir", "ram").getAbsolutePath()+"\n").getPath()});
+        try {
+            bad.join(60000);
+            assertFalse(bad.isAlive());
+            Thread.sleep(1000);
+            assertTrue(good.isAlive());
+        } finally {
+            Instances.stop(good);
+            good.join(60000);
+        }
+        assertFalse(good.isAlive());
+    }
+}